@@ -1,11 +1,14 @@
 package org.janelia.alignment;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
 import java.io.File;
 import java.io.Serializable;
 import java.net.URI;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.janelia.alignment.json.InternedStringDeserializer;
 import org.janelia.alignment.loader.ImageLoader.LoaderType;
 
 /**
@@ -19,6 +22,7 @@ public class ImageAndMask implements Serializable {
     private LoaderType imageLoaderType;
     private Integer imageSliceNumber;
 
+    @JsonDeserialize(using = InternedStringDeserializer.class)
     private String maskUrl;
     private LoaderType maskLoaderType;
     private Integer maskSliceNumber;
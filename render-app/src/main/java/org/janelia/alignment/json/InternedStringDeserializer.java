@@ -0,0 +1,45 @@
+package org.janelia.alignment.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import java.io.IOException;
+
+/**
+ * Deserializes string values through a shared weak interner so that equal values
+ * (e.g. mask URLs, group ids, or transform class names repeated across thousands of tile specs)
+ * reference the same in-memory instance.
+ *
+ * Apply to frequently repeated fields with {@code @JsonDeserialize(using = InternedStringDeserializer.class)}
+ * or to the elements of string collections with {@code @JsonDeserialize(contentUsing = ...)}.
+ * Interned values are weakly held, so they are released as soon as no deserialized object references them.
+ *
+ * @author Eric Trautman
+ */
+public class InternedStringDeserializer
+        extends StdScalarDeserializer<String> {
+
+    public InternedStringDeserializer() {
+        super(String.class);
+    }
+
+    @Override
+    public String deserialize(final JsonParser parser,
+                              final DeserializationContext context)
+            throws IOException {
+        return intern(StringDeserializer.instance.deserialize(parser, context));
+    }
+
+    /**
+     * @return the shared instance that is equal to the specified value (or null if the value is null).
+     */
+    public static String intern(final String value) {
+        return value == null ? null : INTERNER.intern(value);
+    }
+
+    private static final Interner<String> INTERNER = Interners.newWeakInterner();
+}
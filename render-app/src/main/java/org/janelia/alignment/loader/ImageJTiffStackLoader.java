@@ -1,13 +1,26 @@
 package org.janelia.alignment.loader;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import ij.ImagePlus;
+import ij.io.FileInfo;
+import ij.io.FileOpener;
 import ij.io.Opener;
+import ij.io.TiffDecoder;
 import ij.process.ImageProcessor;
 
+import java.io.File;
+import java.io.IOException;
+
 /**
  * Uses ImageJ to load individual slices from a 3D TIFF stack.
  * Note that ImageJ assumes that slices are indexed 1 .. N.
  *
+ * Parsed TIFF directories for local stack files are cached (and reused until a file is modified)
+ * so that each slice load only needs to read the slice's pixels instead of re-parsing
+ * every image file directory in the stack.
+ *
  * @author Eric Trautman
  */
 public class ImageJTiffStackLoader
@@ -21,18 +34,24 @@ public class ImageJTiffStackLoader
     public ImageProcessor load(final String urlString)
             throws IllegalArgumentException {
 
-        // openers keep state about the file being opened, so we need to create a new opener for each load
-        final Opener opener = new Opener();
-        opener.setSilentMode(true);
-
         String path = urlString;
         if (urlString.startsWith("file:")) { // note: not worrying about file://<host>/<path> URLs for now
             path = urlString.substring(5);
         }
 
+        final File file = new File(path);
+
         final ImagePlus imagePlus;
         try {
-            imagePlus = opener.openImage(path, getSliceNumber());
+            if (file.isFile()) {
+                final FileInfo sliceInfo = getSliceFileInfo(getDirectory(file), getSliceNumber());
+                imagePlus = new FileOpener(sliceInfo).openImage();
+            } else {
+                // openers keep state about the file being opened, so we need to create a new opener for each load
+                final Opener opener = new Opener();
+                opener.setSilentMode(true);
+                imagePlus = opener.openImage(path, getSliceNumber());
+            }
         } catch (final Throwable t) {
             throw new IllegalArgumentException(getErrorMessage(urlString), t);
         }
@@ -44,7 +63,98 @@ public class ImageJTiffStackLoader
         return imagePlus.getProcessor();
     }
 
+    /**
+     * Discards all cached TIFF directories.
+     */
+    public static void clearDirectoryCache() {
+        DIRECTORY_CACHE.invalidateAll();
+    }
+
+    /**
+     * @return image file directory information for the specified slice
+     *         (derived the same way {@link Opener#openImage(String, int)} does for tiff files).
+     */
+    static FileInfo getSliceFileInfo(final FileInfo[] directory,
+                                     final int sliceNumber)
+            throws IllegalArgumentException {
+
+        // clone first entry since it holds stack level info (e.g. calibration) and openers may change it
+        final FileInfo sliceInfo = (FileInfo) directory[0].clone();
+
+        if ((directory.length == 1) && (sliceInfo.nImages > 1)) {
+
+            // ImageJ stacks have one directory with contiguous slice data
+            if ((sliceNumber < 1) || (sliceNumber > sliceInfo.nImages)) {
+                throw new IllegalArgumentException("slice " + sliceNumber + " is out of range 1-" +
+                                                   sliceInfo.nImages);
+            }
+            final long sliceSize = (long) sliceInfo.width * sliceInfo.height * sliceInfo.getBytesPerPixel();
+            sliceInfo.longOffset = sliceInfo.getOffset() +
+                                   ((sliceNumber - 1) * (sliceSize + sliceInfo.gapBetweenImages));
+
+        } else {
+
+            if ((sliceNumber < 1) || (sliceNumber > directory.length)) {
+                throw new IllegalArgumentException("slice " + sliceNumber + " is out of range 1-" +
+                                                   directory.length);
+            }
+            final FileInfo directoryInfo = directory[sliceNumber - 1];
+            sliceInfo.longOffset = directoryInfo.getOffset();
+            sliceInfo.stripOffsets = directoryInfo.stripOffsets;
+            sliceInfo.stripLengths = directoryInfo.stripLengths;
+
+        }
+
+        sliceInfo.offset = 0;
+        sliceInfo.nImages = 1;
+
+        return sliceInfo;
+    }
+
+    private static FileInfo[] getDirectory(final File file)
+            throws Exception {
+
+        final String key = file.getAbsolutePath();
+        final long lastModified = file.lastModified();
+
+        CachedDirectory cachedDirectory = DIRECTORY_CACHE.get(key, () -> new CachedDirectory(file, lastModified));
+        if (cachedDirectory.lastModified != lastModified) {
+            cachedDirectory = new CachedDirectory(file, lastModified);
+            DIRECTORY_CACHE.put(key, cachedDirectory);
+        }
+
+        return cachedDirectory.directory;
+    }
+
     private String getErrorMessage(final String urlString) {
         return "failed to create imagePlus instance for slice " + getSliceNumber() + " of '" + urlString + "'";
     }
+
+    /**
+     * Parsed directory for a stack file along with the file's modification time when it was parsed.
+     */
+    private static class CachedDirectory {
+
+        private final long lastModified;
+        private final FileInfo[] directory;
+
+        CachedDirectory(final File file,
+                        final long lastModified)
+                throws IOException {
+
+            final TiffDecoder decoder = new TiffDecoder(file.getAbsoluteFile().getParent() + File.separator,
+                                                        file.getName());
+            final FileInfo[] directory = decoder.getTiffInfo();
+            if ((directory == null) || (directory.length == 0)) {
+                throw new IOException("failed to parse tiff directory for " + file.getAbsolutePath());
+            }
+
+            this.lastModified = lastModified;
+            this.directory = directory;
+        }
+    }
+
+    // directories are small, so many can be cached
+    private static final Cache<String, CachedDirectory> DIRECTORY_CACHE =
+            CacheBuilder.newBuilder().maximumSize(1000).build();
 }
@@ -11,7 +11,7 @@ import ij.process.ImageProcessor;
 public interface ImageLoader {
 
     enum LoaderType {
-        IMAGEJ_DEFAULT, IMAGEJ_TIFF_STACK, H5_SLICE, N5_SLICE, IMAGEJ_COMPOSITE, DYNAMIC_MASK
+        IMAGEJ_DEFAULT, IMAGEJ_TIFF_STACK, H5_SLICE, N5_SLICE, IMAGEJ_COMPOSITE, DYNAMIC_MASK, TIFF_PYRAMID
     }
 
     boolean hasSame3DContext(final ImageLoader otherLoader);
@@ -61,6 +61,10 @@ public interface ImageLoader {
                 case DYNAMIC_MASK:
                     imageLoader = DynamicMaskLoader.INSTANCE;
                     break;
+
+                case TIFF_PYRAMID:
+                    imageLoader = TiffPyramidLoader.INSTANCE;
+                    break;
             }
         }
 
@@ -0,0 +1,175 @@
+package org.janelia.alignment.loader;
+
+import ij.ImagePlus;
+import ij.process.ImageProcessor;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Loads one mipmap level from a multi-page TIFF container that holds all derived levels (1 - n) for a source image.
+ * Level n is stored as page n - 1 of the container, so a level can be read with a single open of one file.
+ * Pages are plain (strip based) TIFF images, not tiled TIFF images, so loading a level always decodes the whole level.
+ * Containers are identified as:
+ * <pre>
+ *     file://[containerPath]?level=[level]
+ *
+ *     Example:
+ *       file:///nrs/flyTEM/rendered_mipmaps/FAFB00/pyramid/groups/flyTEM/data/row2col3.tif.tif?level=3
+ * </pre>
+ *
+ * @author Eric Trautman
+ */
+public class TiffPyramidLoader
+        implements ImageLoader {
+
+    /** Shareable instance of this loader. */
+    public static final TiffPyramidLoader INSTANCE = new TiffPyramidLoader();
+
+    private static final Pattern LEVEL_PATTERN = Pattern.compile(".*level=(\\d+).*");
+
+    /**
+     * @return true (always) because pyramid containers hold 2D sources.
+     */
+    @Override
+    public boolean hasSame3DContext(final ImageLoader otherLoader) {
+        return true;
+    }
+
+    @Override
+    public ImageProcessor load(final String urlString)
+            throws IllegalArgumentException {
+
+        final ImageProcessor imageProcessor;
+
+        try {
+
+            final URI uri = new URI(urlString);
+            final String scheme = uri.getScheme();
+
+            if ((scheme != null) && (! scheme.equals("file"))) {
+                throw new IllegalArgumentException(scheme + " scheme not currently supported, must be a local file");
+            }
+
+            final int pageIndex = getLevel(uri.getQuery()) - 1;
+
+            final BufferedImage levelImage;
+            try (final ImageInputStream inputStream = ImageIO.createImageInputStream(new File(uri.getPath()))) {
+
+                if (inputStream == null) {
+                    throw new IOException("failed to open " + uri.getPath());
+                }
+
+                final ImageReader reader = getTiffReader();
+                try {
+                    reader.setInput(inputStream);
+                    levelImage = reader.read(pageIndex);
+                } finally {
+                    reader.dispose();
+                }
+            }
+
+            imageProcessor = new ImagePlus(urlString, levelImage).getProcessor();
+
+        } catch (final Throwable t) {
+            throw new IllegalArgumentException("failed to load tiff pyramid level '" + urlString + "'", t);
+        }
+
+        return imageProcessor;
+    }
+
+    /**
+     * Writes the specified level images as pages of one multi-page TIFF container
+     * (using the default strip layout of the TIFF writer, not tiles).
+     * The container is first written to a temporary file and then moved into place
+     * so that concurrent readers never see a partially written container.
+     *
+     * @param  levelImages    images for levels 1 - n (in level order).
+     * @param  containerFile  file for the container.
+     *
+     * @throws IOException
+     *   if the container cannot be written.
+     */
+    public static void saveTiffPyramid(final List<BufferedImage> levelImages,
+                                       final File containerFile)
+            throws IOException {
+
+        final File parentDirectory = containerFile.getParentFile();
+        final File tmpFile = File.createTempFile("." + containerFile.getName() + ".", ".tmp", parentDirectory);
+
+        try {
+
+            final ImageWriter writer = getTiffWriter();
+            try (final ImageOutputStream outputStream = ImageIO.createImageOutputStream(tmpFile)) {
+                writer.setOutput(outputStream);
+                writer.prepareWriteSequence(null);
+                for (final BufferedImage levelImage : levelImages) {
+                    writer.writeToSequence(new IIOImage(levelImage, null, null), null);
+                }
+                writer.endWriteSequence();
+            } finally {
+                writer.dispose();
+            }
+
+            Files.move(tmpFile.toPath(),
+                       containerFile.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+
+        } finally {
+            Files.deleteIfExists(tmpFile.toPath());
+        }
+    }
+
+    private static int getLevel(final String query)
+            throws IllegalArgumentException {
+        if (query != null) {
+            final Matcher m = LEVEL_PATTERN.matcher(query);
+            if (m.matches()) {
+                final int level = Integer.parseInt(m.group(1));
+                if (level > 0) {
+                    return level;
+                }
+            }
+        }
+        throw new IllegalArgumentException("pyramid url must specify a level greater than zero (e.g. ?level=1)");
+    }
+
+    private static ImageReader getTiffReader()
+            throws IOException {
+        final Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("tiff");
+        if (! readers.hasNext()) {
+            throw new IOException("no ImageIO reader available for tiff format");
+        }
+        return readers.next();
+    }
+
+    private static ImageWriter getTiffWriter()
+            throws IOException {
+        final Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("tiff");
+        while (writers.hasNext()) {
+            final ImageWriter writer = writers.next();
+            if (writer.canWriteSequence()) {
+                return writer;
+            }
+            writer.dispose();
+        }
+        throw new IOException("no ImageIO writer that supports multi-page tiff sequences is available");
+    }
+
+}
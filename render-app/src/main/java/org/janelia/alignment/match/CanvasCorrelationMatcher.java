@@ -2,12 +2,17 @@ package org.janelia.alignment.match;
 
 import ij.ImagePlus;
 import ij.gui.Roi;
+import ij.process.FloatProcessor;
 import ij.process.ImageProcessor;
 
 import java.awt.Rectangle;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import mpicbg.models.Point;
 import mpicbg.models.PointMatch;
@@ -119,11 +124,11 @@ public class CanvasCorrelationMatcher
         final int numTests = (endStep / scaledStepSize) + Math.min(1, (endStep % scaledStepSize));
         final double stepIncrement = endStep / (double) numTests;
 
-        LOG.debug("getCandidateMatches: renderScale={}, minResultThreshold={}, scaledSampleSize={}, scaledStepSize={}, numTests={}, stepIncrement={}",
-                  renderScale, ccParameters.minResultThreshold, scaledSampleSize, scaledStepSize, numTests, stepIncrement);
-
-        final List<PointMatch> candidates = new ArrayList<>();
+        LOG.debug("getCandidateMatches: renderScale={}, minResultThreshold={}, scaledSampleSize={}, scaledStepSize={}, numTests={}, stepIncrement={}, numberOfThreads={}",
+                  renderScale, ccParameters.minResultThreshold, scaledSampleSize, scaledStepSize, numTests, stepIncrement,
+                  ccParameters.numberOfThreads);
 
+        final List<CorrelationSample> samples = new ArrayList<>(numTests);
         for (int i = 0; i < numTests; ++i) {
 
             final int minXOrY = (int) Math.round(i * stepIncrement) + startStep;
@@ -139,34 +144,49 @@ public class CanvasCorrelationMatcher
                 r2PCM = new Rectangle(minXOrY, unmaskedArea2.y, sampleWidthOrHeight, unmaskedArea2.height);
             }
 
-            final Roi roi1 = new Roi(r1PCM);
-            final Roi roi2 = new Roi(r2PCM);
+            samples.add(new CorrelationSample(minXOrY, maxXOrY, new Roi(r1PCM), new Roi(r2PCM)));
+        }
 
-            if (visualizeSampleRois) {
-                ip1.setRoi(roi1);
-                ip2.setRoi(roi2);
-            }
+        // all samples share the same (read-only) stitching parameters
+        final StitchingParameters params = ccParameters.toStitchingParameters();
+
+        final FloatProcessor floatProcessor1 = visualizeSampleRois ? null : toFloatProcessor(ip1);
+        final FloatProcessor floatProcessor2 = visualizeSampleRois ? null : toFloatProcessor(ip2);
+        final int numberOfThreads = getNumberOfThreads(numTests);
+
+        final List<PairWiseStitchingResult> results;
+        if ((floatProcessor1 == null) || (floatProcessor2 == null)) {
+            results = correlateSamples(ip1, ip2, samples, params, visualizeSampleRois);
+        } else if (numberOfThreads == 1) {
+            results = correlateSamples(new ImagePlus(ip1.getTitle(), floatProcessor1),
+                                       new ImagePlus(ip2.getTitle(), floatProcessor2),
+                                       samples,
+                                       params,
+                                       false);
+        } else {
+            results = correlateSamplesInParallel(floatProcessor1,
+                                                 floatProcessor2,
+                                                 samples,
+                                                 params,
+                                                 numberOfThreads);
+        }
 
-            final StitchingParameters params = ccParameters.toStitchingParameters();
+        final List<PointMatch> candidates = new ArrayList<>();
+
+        for (int i = 0; i < numTests; ++i) {
 
-            final PairWiseStitchingResult result =
-                    PairWiseStitchingImgLib.stitchPairwise(ip1,
-                                                           ip2,
-                                                           roi1,
-                                                           roi2,
-                                                           1,
-                                                           1,
-                                                           params);
+            final CorrelationSample sample = samples.get(i);
+            final PairWiseStitchingResult result = results.get(i);
 
             if (result.getCrossCorrelation() >= ccParameters.minResultThreshold) {
 
-                LOG.debug(minXOrY + " > " + maxXOrY + ", shift : " + Util.printCoordinates(result.getOffset()) +
+                LOG.debug(sample.minXOrY + " > " + sample.maxXOrY + ", shift : " + Util.printCoordinates(result.getOffset()) +
                           ", correlation (R)=" + result.getCrossCorrelation());
 
                 final int stepDim = stepThroughY ? 1 : 0;
                 final int otherDim = stepThroughY ? 0 : 1;
                 final double r1XOrY = 0;
-                final double center1XorY = minXOrY + scaledSampleSize / 2.0;
+                final double center1XorY = sample.minXOrY + scaledSampleSize / 2.0;
 
                 final double r2XOrY = -result.getOffset(otherDim);
                 final double center2XorY = center1XorY - result.getOffset(stepDim);
@@ -199,6 +219,137 @@ public class CanvasCorrelationMatcher
         return candidates;
     }
 
+    private int getNumberOfThreads(final int numTests) {
+        final int numberOfThreads = ccParameters.numberOfThreads == null ? 1 : ccParameters.numberOfThreads;
+        return Math.max(1, Math.min(numberOfThreads, numTests));
+    }
+
+    /**
+     * Correlates each sample sequentially on the calling thread.
+     *
+     * @return correlation results in sample order.
+     */
+    private static List<PairWiseStitchingResult> correlateSamples(final ImagePlus ip1,
+                                                                  final ImagePlus ip2,
+                                                                  final List<CorrelationSample> samples,
+                                                                  final StitchingParameters params,
+                                                                  final boolean visualizeSampleRois) {
+
+        final List<PairWiseStitchingResult> results = new ArrayList<>(samples.size());
+
+        for (final CorrelationSample sample : samples) {
+
+            if (visualizeSampleRois) {
+                ip1.setRoi(sample.roi1);
+                ip2.setRoi(sample.roi2);
+            }
+
+            results.add(sample.correlate(ip1, ip2, params));
+        }
+
+        return results;
+    }
+
+    /**
+     * Correlates samples concurrently using a pool of the specified size.
+     * Each task wraps the shared (read-only) float pixel arrays in its own processors
+     * so that no pixels are copied and no ImageJ roi state is shared between threads.
+     *
+     * @return correlation results in sample order.
+     */
+    private static List<PairWiseStitchingResult> correlateSamplesInParallel(final FloatProcessor floatProcessor1,
+                                                                            final FloatProcessor floatProcessor2,
+                                                                            final List<CorrelationSample> samples,
+                                                                            final StitchingParameters params,
+                                                                            final int numberOfThreads) {
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
+
+        try {
+
+            final List<Future<PairWiseStitchingResult>> futures = new ArrayList<>(samples.size());
+            for (final CorrelationSample sample : samples) {
+                futures.add(executorService.submit(
+                        () -> sample.correlate(new ImagePlus("canvas1", shallowCopy(floatProcessor1)),
+                                               new ImagePlus("canvas2", shallowCopy(floatProcessor2)),
+                                               params)));
+            }
+
+            final List<PairWiseStitchingResult> results = new ArrayList<>(samples.size());
+            for (final Future<PairWiseStitchingResult> future : futures) {
+                results.add(future.get());
+            }
+
+            return results;
+
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while correlating samples", e);
+        } catch (final ExecutionException e) {
+            throw new IllegalStateException("failed to correlate samples", e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Stitching converts its sources to float for every phase correlation,
+     * so convert 8-bit, 16-bit and 32-bit canvases once up front instead of once per sample.
+     *
+     * @return float version of the specified image or null if the image type (e.g. RGB) cannot be converted losslessly.
+     */
+    private static FloatProcessor toFloatProcessor(final ImagePlus imagePlus) {
+        final FloatProcessor floatProcessor;
+        switch (imagePlus.getType()) {
+            case ImagePlus.GRAY8:
+            case ImagePlus.GRAY16:
+                floatProcessor = imagePlus.getProcessor().convertToFloatProcessor();
+                break;
+            case ImagePlus.GRAY32:
+                floatProcessor = (FloatProcessor) imagePlus.getProcessor();
+                break;
+            default:
+                floatProcessor = null;
+        }
+        return floatProcessor;
+    }
+
+    private static FloatProcessor shallowCopy(final FloatProcessor floatProcessor) {
+        return new FloatProcessor(floatProcessor.getWidth(),
+                                  floatProcessor.getHeight(),
+                                  (float[]) floatProcessor.getPixels());
+    }
+
+    private static class CorrelationSample {
+
+        private final int minXOrY;
+        private final int maxXOrY;
+        private final Roi roi1;
+        private final Roi roi2;
+
+        CorrelationSample(final int minXOrY,
+                          final int maxXOrY,
+                          final Roi roi1,
+                          final Roi roi2) {
+            this.minXOrY = minXOrY;
+            this.maxXOrY = maxXOrY;
+            this.roi1 = roi1;
+            this.roi2 = roi2;
+        }
+
+        PairWiseStitchingResult correlate(final ImagePlus ip1,
+                                          final ImagePlus ip2,
+                                          final StitchingParameters params) {
+            return PairWiseStitchingImgLib.stitchPairwise(ip1,
+                                                          ip2,
+                                                          roi1,
+                                                          roi2,
+                                                          1,
+                                                          1,
+                                                          params);
+        }
+    }
+
     private static Rectangle findRectangle(final ImageProcessor mask) {
         // TODO: assumes it is not rotated
 
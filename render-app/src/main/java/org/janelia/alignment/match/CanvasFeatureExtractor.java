@@ -2,11 +2,13 @@ package org.janelia.alignment.match;
 
 import ij.process.ImageProcessor;
 
+import java.awt.Rectangle;
 import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Callable;
 
 import mpicbg.ij.SIFT;
 import mpicbg.imagefeatures.Feature;
@@ -33,6 +35,7 @@ public class CanvasFeatureExtractor implements Serializable {
     private final FloatArray2DSIFT.Param coreSiftParameters;
     private final double minScale;
     private final double maxScale;
+    private int numberOfThreads;
 
     private transient ImageProcessorCache imageProcessorCache;
 
@@ -52,9 +55,19 @@ public class CanvasFeatureExtractor implements Serializable {
 
         this.minScale = minScale;
         this.maxScale = maxScale;
+        this.numberOfThreads = 1;
         this.imageProcessorCache = ImageProcessorCache.DISABLED_CACHE;
     }
 
+    /**
+     * @param  numberOfThreads  number of threads to use when extracting features from a single canvas.
+     *                          Values greater than 1 enable region based extraction for large canvases,
+     *                          see {@link #extractFeaturesFromImageAndMask}.
+     */
+    public void setNumberOfThreads(final int numberOfThreads) {
+        this.numberOfThreads = Math.max(1, numberOfThreads);
+    }
+
     public void setImageProcessorCache(final ImageProcessorCache imageProcessorCache) {
         this.imageProcessorCache = imageProcessorCache;
     }
@@ -203,6 +216,12 @@ public class CanvasFeatureExtractor implements Serializable {
     /**
      * Extract SIFT features from specified buffered image.
      *
+     * When this extractor has been configured to use more than one thread and the image is large enough,
+     * the full scale octave is extracted from overlapping regions of the image in parallel
+     * (keeping only the features located in each region's non-overlapping core)
+     * while the remaining octaves are extracted from a half scale copy of the whole image.
+     * Results are nearly identical to single threaded extraction and are returned in the same form.
+     *
      * @param  imageProcessor  image to process.
      * @param  maskProcessor   (optional) mask identifying feature locations that should be removed.
      *
@@ -231,11 +250,13 @@ public class CanvasFeatureExtractor implements Serializable {
                  siftParameters.minOctaveSize,
                  siftParameters.maxOctaveSize);
 
-        final FloatArray2DSIFT sift = new FloatArray2DSIFT(siftParameters);
-        final SIFT ijSIFT = new SIFT(sift);
-
-        final List<Feature> featureList = new ArrayList<>();
-        ijSIFT.extractFeatures(imageProcessor, featureList);
+        final List<Feature> featureList;
+        final List<Rectangle> regionCores = getRegionCores(w, h, siftParameters);
+        if (regionCores.size() > 1) {
+            featureList = extractFeaturesInParallel(imageProcessor, siftParameters, regionCores);
+        } else {
+            featureList = extractFeatures(imageProcessor, siftParameters);
+        }
 
         if (featureList.size() == 0) {
 
@@ -285,15 +306,95 @@ public class CanvasFeatureExtractor implements Serializable {
         return featureList;
     }
 
+    private static List<Feature> extractFeatures(final ImageProcessor imageProcessor,
+                                                 final FloatArray2DSIFT.Param siftParameters) {
+        final FloatArray2DSIFT sift = new FloatArray2DSIFT(siftParameters);
+        final SIFT ijSIFT = new SIFT(sift);
+        final List<Feature> featureList = new ArrayList<>();
+        ijSIFT.extractFeatures(imageProcessor, featureList);
+        return featureList;
+    }
+
+    /**
+     * Splits the image into a grid of (roughly) one region per thread.
+     * Region extraction is only possible when the full scale octave would be processed
+     * (maxOctaveSize does not force the image to be downsampled by more than a pixel) and the image is large enough
+     * for each region core to be at least {@link #MIN_REGION_CORE_SIZE} pixels wide and tall.
+     *
+     * @return list of non-overlapping region cores that tile the image
+     *         (or a single core for the whole image if region extraction is not possible).
+     */
+    private List<Rectangle> getRegionCores(final int width,
+                                           final int height,
+                                           final FloatArray2DSIFT.Param siftParameters) {
+
+        final boolean isRegionExtractionPossible = (Math.max(width, height) <= siftParameters.maxOctaveSize) &&
+                                                   (Math.min(width, height) >= siftParameters.minOctaveSize);
+
+        return ParallelBlockExtractor.getBlockCores(width,
+                                                    height,
+                                                    isRegionExtractionPossible ? numberOfThreads : 1,
+                                                    MIN_REGION_CORE_SIZE);
+    }
+
+    private List<Feature> extractFeaturesInParallel(final ImageProcessor imageProcessor,
+                                                    final FloatArray2DSIFT.Param siftParameters,
+                                                    final List<Rectangle> regionCores) {
+
+        final int width = imageProcessor.getWidth();
+        final int height = imageProcessor.getHeight();
+
+        // margin needs to cover the initial blur and the descriptor window of full scale features
+        final int margin = Math.max(MIN_REGION_MARGIN, siftParameters.fdSize * 16);
+
+        final List<Callable<List<Feature>>> coarseTasks = new ArrayList<>();
+
+        // octaves below full scale are extracted from a half scale copy of the whole image
+        // (SIFT downsamples any image that does not fit within maxOctaveSize - 1)
+        if ((Math.min(width, height) / 2) >= siftParameters.minOctaveSize) {
+            final FloatArray2DSIFT.Param coarseParameters = siftParameters.clone();
+            coarseParameters.maxOctaveSize = (Math.max(width, height) / 2) + 1;
+            coarseTasks.add(() -> extractFeatures(imageProcessor, coarseParameters));
+        }
+
+        // full scale octave is extracted from overlapping regions
+        return ParallelBlockExtractor.extract(
+                imageProcessor,
+                regionCores,
+                margin,
+                numberOfThreads,
+                regionProcessor -> {
+                    // limit region extraction to the full scale octave (half scale octave is smaller than minOctaveSize)
+                    final int regionWidth = regionProcessor.getWidth();
+                    final int regionHeight = regionProcessor.getHeight();
+                    final FloatArray2DSIFT.Param regionParameters = siftParameters.clone();
+                    regionParameters.minOctaveSize = ((Math.min(regionWidth, regionHeight) + 1) / 2) + 1;
+                    regionParameters.maxOctaveSize = Math.max(regionWidth, regionHeight) + 1;
+                    return extractFeatures(regionProcessor, regionParameters);
+                },
+                (feature, regionX, regionY) -> {
+                    feature.location[0] += regionX;
+                    feature.location[1] += regionY;
+                    return feature.location;
+                },
+                coarseTasks,
+                "features");
+    }
+
     public static CanvasFeatureExtractor build(final FeatureExtractionParameters featureExtraction) {
 
         final FloatArray2DSIFT.Param siftParameters = new FloatArray2DSIFT.Param();
         siftParameters.fdSize = featureExtraction.fdSize;
         siftParameters.steps = featureExtraction.steps;
 
-        return new CanvasFeatureExtractor(siftParameters,
-                                          featureExtraction.minScale,
-                                          featureExtraction.maxScale);
+        final CanvasFeatureExtractor extractor = new CanvasFeatureExtractor(siftParameters,
+                                                                            featureExtraction.minScale,
+                                                                            featureExtraction.maxScale);
+        if (featureExtraction.numberOfThreads != null) {
+            extractor.setNumberOfThreads(featureExtraction.numberOfThreads);
+        }
+
+        return extractor;
     }
 
     private static final Logger LOG = LoggerFactory.getLogger(CanvasFeatureExtractor.class);
@@ -304,4 +405,10 @@ public class CanvasFeatureExtractor implements Serializable {
      */
     private static final double AVERAGE_KILOBYTES_PER_FEATURE = 0.6; // 600 bytes
 
+    /** Smallest region core (in pixels) worth extracting on a separate thread. */
+    private static final int MIN_REGION_CORE_SIZE = 512;
+
+    /** Smallest overlap (in pixels) between extraction regions. */
+    private static final int MIN_REGION_MARGIN = 64;
+
 }
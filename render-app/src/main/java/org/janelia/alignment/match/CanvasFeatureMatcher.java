@@ -2,10 +2,15 @@ package org.janelia.alignment.match;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import mpicbg.ij.FeatureTransform;
 import mpicbg.imagefeatures.Feature;
+import mpicbg.models.Point;
 import mpicbg.models.PointMatch;
 import mpicbg.util.Timer;
 
@@ -52,16 +57,74 @@ public class CanvasFeatureMatcher implements Serializable {
         final Timer timer = new Timer();
         timer.start();
 
-        final List<PointMatch> candidates = new ArrayList<>(canvas1Features.size());
-
-        FeatureTransform.matchFeatures(canvas1Features, canvas2Features, candidates, rod);
+        final List<PointMatch> candidates;
+        final boolean candidatesOrderedByQuality = matchFilter.isPrioritizeByRatio();
+        if (candidatesOrderedByQuality) {
+            candidates = matchFeaturesOrderedByRatio(canvas1Features, canvas2Features, rod);
+        } else {
+            candidates = new ArrayList<>(canvas1Features.size());
+            FeatureTransform.matchFeatures(canvas1Features, canvas2Features, candidates, rod);
+        }
 
-        final CanvasMatchResult result = matchFilter.buildMatchResult(candidates);
+        final CanvasMatchResult result = matchFilter.buildMatchResult(candidates, candidatesOrderedByQuality);
 
         LOG.info("deriveMatchResult: exit, result={}, elapsedTime={}s", result, (timer.stop() / 1000));
 
         return result;
     }
 
+    /**
+     * Identifies the same candidates as {@link FeatureTransform#matchFeatures} but
+     * returns them ordered by their descriptor distance ratio (most distinctive matches first).
+     *
+     * @return candidate matches ordered by ratio.
+     */
+    static List<PointMatch> matchFeaturesOrderedByRatio(final List<Feature> canvas1Features,
+                                                        final List<Feature> canvas2Features,
+                                                        final double rod) {
+
+        final List<PointMatch> candidates = new ArrayList<>(canvas1Features.size());
+        final Map<PointMatch, Double> candidateRatios = new HashMap<>();
+
+        for (final Feature feature1 : canvas1Features) {
+            Feature best = null;
+            double bestDistance = Double.MAX_VALUE;
+            double secondBestDistance = Double.MAX_VALUE;
+
+            for (final Feature feature2 : canvas2Features) {
+                final double distance = feature1.descriptorDistance(feature2);
+                if (distance < bestDistance) {
+                    secondBestDistance = bestDistance;
+                    bestDistance = distance;
+                    best = feature2;
+                } else if (distance < secondBestDistance) {
+                    secondBestDistance = distance;
+                }
+            }
+
+            if ((best != null) && (secondBestDistance < Double.MAX_VALUE)) {
+                final double ratio = bestDistance / secondBestDistance;
+                if (ratio < rod) {
+                    final PointMatch candidate =
+                            new PointMatch(new Point(new double[] { feature1.location[0], feature1.location[1] }),
+                                           new Point(new double[] { best.location[0], best.location[1] }));
+                    candidates.add(candidate);
+                    candidateRatios.put(candidate, ratio);
+                }
+            }
+        }
+
+        // remove ambiguous matches (more than one canvas 1 feature matched to the same canvas 2 feature)
+        final Map<String, Integer> canvas2LocationCounts = new HashMap<>();
+        for (final PointMatch candidate : candidates) {
+            canvas2LocationCounts.merge(Arrays.toString(candidate.getP2().getL()), 1, Integer::sum);
+        }
+        candidates.removeIf(candidate -> canvas2LocationCounts.get(Arrays.toString(candidate.getP2().getL())) > 1);
+
+        candidates.sort(Comparator.comparingDouble(candidateRatios::get));
+
+        return candidates;
+    }
+
     private static final Logger LOG = LoggerFactory.getLogger(CanvasFeatureMatcher.class);
 }
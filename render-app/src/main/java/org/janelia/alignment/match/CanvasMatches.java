@@ -54,7 +54,6 @@ public class CanvasMatches implements Serializable, Comparable<CanvasMatches> {
     private Integer matchCount;
 
     // no-arg constructor needed for JSON deserialization
-    @SuppressWarnings("unused")
     private CanvasMatches() {
     }
 
@@ -87,6 +86,35 @@ public class CanvasMatches implements Serializable, Comparable<CanvasMatches> {
         normalize();
     }
 
+    /**
+     * Restores previously saved (and therefore already normalized) matches without re-normalizing them.
+     * The stored match count is retained when matches are omitted so that count-only queries
+     * (that exclude match details) still report the number of correspondences.
+     *
+     * @return matches built from the specified stored values.
+     */
+    public static CanvasMatches fromStoredValues(final String pGroupId,
+                                                 final String pId,
+                                                 final String qGroupId,
+                                                 final String qId,
+                                                 final ConsensusSetData consensusSetData,
+                                                 final Matches matches,
+                                                 final Integer matchCount) {
+        final CanvasMatches canvasMatches = new CanvasMatches();
+        canvasMatches.pGroupId = pGroupId;
+        canvasMatches.pId = pId;
+        canvasMatches.qGroupId = qGroupId;
+        canvasMatches.qId = qId;
+        canvasMatches.consensusSetData = consensusSetData;
+        canvasMatches.matches = matches;
+        if (matches == null) {
+            canvasMatches.matchCount = matchCount;
+        } else {
+            canvasMatches.setMatchCount();
+        }
+        return canvasMatches;
+    }
+
     /**
      * Ensures that for any two canvases (tiles), the source (p) and target (q) are consistently assigned.
      * This is done by using lexicographic ordering of the group and canvas ids.
@@ -151,7 +179,7 @@ public class CanvasMatches implements Serializable, Comparable<CanvasMatches> {
         }
     }
 
-    ConsensusSetData getConsensusSetData() {
+    public ConsensusSetData getConsensusSetData() {
         return consensusSetData;
     }
 
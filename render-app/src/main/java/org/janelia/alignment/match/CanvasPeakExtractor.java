@@ -3,10 +3,13 @@ package org.janelia.alignment.match;
 import ij.ImagePlus;
 import ij.process.ColorProcessor;
 import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
 
+import java.awt.Rectangle;
 import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import mpicbg.imglib.algorithm.scalespace.DifferenceOfGaussianPeak;
@@ -135,6 +138,11 @@ public class CanvasPeakExtractor
     /**
      * Extract Gaussian peaks from specified image and mask processors.
      *
+     * When {@link GeometricDescriptorParameters#numberOfThreads} is greater than 1 and the image is large enough,
+     * the image is split into a grid of blocks that are processed in parallel.
+     * Each block is extended by a margin that covers the Gaussian support so that
+     * peaks found in a block's core match the peaks found when processing the whole image.
+     *
      * @return list of peaks.
      */
     List<DifferenceOfGaussianPeak<FloatType>> extractPeaksFromImageAndMask(final ImageProcessor image,
@@ -150,22 +158,20 @@ public class CanvasPeakExtractor
             throw new IllegalArgumentException("DoG needs a single-channel processor, no ColorProcessor");
         }
 
-        final ImagePlus imagePlus = new ImagePlus("", image);
-
         final DescriptorParameters descriptorParameters = gdParameters.toDescriptorParameters();
 
-        final int channel = 0;       // rendered result is always single channel, so set channel to 0
-        final int timePoint = 0;     // timePoint is always 0 for pair wise matching
+        // the same range must be used for every block so that all pixels are normalized consistently
+        final float[] minMax = getMinMax(image);
 
-        final float[] minMax = new float[]{0, 255};  //TODO: adjust for 16-bit later, use imagePlus.getBitDepth() ?
+        final List<Rectangle> blockCores = getBlockCores(image.getWidth(), image.getHeight());
 
         // get the peaks
-        final List<DifferenceOfGaussianPeak<FloatType>> peakList =
-                extractCandidates(imagePlus,
-                                  channel,
-                                  timePoint,
-                                  descriptorParameters,
-                                  minMax);
+        final List<DifferenceOfGaussianPeak<FloatType>> peakList;
+        if (blockCores.size() > 1) {
+            peakList = extractPeaksInParallel(image, descriptorParameters, minMax, blockCores);
+        } else {
+            peakList = extractPeaks(image, descriptorParameters, minMax);
+        }
 
         // if a mask exists, remove any peaks on or next to a masked pixel
         if (mask != null) {
@@ -195,6 +201,80 @@ public class CanvasPeakExtractor
         return peakList;
     }
 
+    private static List<DifferenceOfGaussianPeak<FloatType>> extractPeaks(final ImageProcessor image,
+                                                                          final DescriptorParameters descriptorParameters,
+                                                                          final float[] minMax) {
+
+        final ImagePlus imagePlus = new ImagePlus("", image);
+
+        final int channel = 0;       // rendered result is always single channel, so set channel to 0
+        final int timePoint = 0;     // timePoint is always 0 for pair wise matching
+
+        return extractCandidates(imagePlus,
+                                 channel,
+                                 timePoint,
+                                 descriptorParameters,
+                                 minMax);
+    }
+
+    /**
+     * @return intensity range used to normalize pixels before DoG processing.
+     *         16-bit images use their display range (set from the channel intensity range when rendered)
+     *         so that they can be processed natively without first being converted to 8-bit.
+     *         All other images use the 8-bit range.
+     */
+    static float[] getMinMax(final ImageProcessor image) {
+        final float[] minMax;
+        if ((image instanceof ShortProcessor) && (image.getMax() > image.getMin())) {
+            minMax = new float[] { (float) image.getMin(), (float) image.getMax() };
+        } else {
+            minMax = new float[] { 0, 255 };
+        }
+        return minMax;
+    }
+
+    /**
+     * Splits the image into a grid of (roughly) one block per thread,
+     * where each block core is at least {@link #MIN_BLOCK_CORE_SIZE} pixels wide and tall.
+     *
+     * @return list of non-overlapping block cores that tile the image
+     *         (or a single core for the whole image if parallel extraction is not possible).
+     */
+    List<Rectangle> getBlockCores(final int width,
+                                  final int height) {
+        return ParallelBlockExtractor.getBlockCores(width, height, getNumberOfThreads(), MIN_BLOCK_CORE_SIZE);
+    }
+
+    private List<DifferenceOfGaussianPeak<FloatType>> extractPeaksInParallel(final ImageProcessor image,
+                                                                             final DescriptorParameters descriptorParameters,
+                                                                             final float[] minMax,
+                                                                             final List<Rectangle> blockCores) {
+
+        // margin needs to cover the support of the larger Gaussian kernel
+        // plus the neighborhood used for extrema detection and sub-pixel localization
+        final int margin = Math.max(MIN_BLOCK_MARGIN, (int) Math.ceil(8 * descriptorParameters.sigma2));
+
+        return ParallelBlockExtractor.extract(
+                image,
+                blockCores,
+                margin,
+                getNumberOfThreads(),
+                blockProcessor -> extractPeaks(blockProcessor, descriptorParameters, minMax),
+                (peak, blockX, blockY) -> {
+                    final int x = peak.getPosition(0) + blockX;
+                    final int y = peak.getPosition(1) + blockY;
+                    peak.setPixelLocation(x, 0);
+                    peak.setPixelLocation(y, 1);
+                    return new double[] { x, y };
+                },
+                Collections.emptyList(),
+                "peaks");
+    }
+
+    private int getNumberOfThreads() {
+        return gdParameters.numberOfThreads == null ? 1 : Math.max(1, gdParameters.numberOfThreads);
+    }
+
     public void filterPeaksByInliers(final List<DifferenceOfGaussianPeak<FloatType>> canvasPeaks,
                                      final double peakRenderScale,
                                      final List<Point> inlierPoints,
@@ -345,4 +425,10 @@ public class CanvasPeakExtractor
 
 
     private static final Logger LOG = LoggerFactory.getLogger(CanvasPeakExtractor.class);
+
+    /** Smallest block core (in pixels) worth processing on a separate thread. */
+    private static final int MIN_BLOCK_CORE_SIZE = 512;
+
+    /** Smallest overlap (in pixels) between blocks. */
+    private static final int MIN_BLOCK_MARGIN = 32;
 }
@@ -47,6 +47,9 @@ public class MatchFilter
     private final int minNumInliers;
     private final Integer maxNumInliers;
     private final FilterType filterType;
+    private final int numberOfThreads;
+    private final Double ransacConfidence;
+    private final boolean prioritizeByRatio;
 
     /**
      * Sets up everything that is needed to derive point matches from the feature lists of two canvases.
@@ -63,26 +66,49 @@ public class MatchFilter
         this.maxTrust = matchParameters.matchMaxTrust;
         this.maxNumInliers = matchParameters.matchMaxNumInliers;
         this.filterType = matchParameters.matchFilter;
+        this.numberOfThreads = matchParameters.matchNumberOfThreads == null ? 1 : matchParameters.matchNumberOfThreads;
+        this.ransacConfidence = matchParameters.matchRansacConfidence;
+        this.prioritizeByRatio = (matchParameters.matchPrioritizeByRatio != null) &&
+                                 matchParameters.matchPrioritizeByRatio;
     }
 
     FilterType getFilterType() {
         return filterType;
     }
 
+    /**
+     * @return true if match candidates should be ordered by descriptor distance ratio
+     *         (see {@link #buildMatchResult(List, boolean)}).
+     */
+    public boolean isPrioritizeByRatio() {
+        return prioritizeByRatio;
+    }
+
     public List<PointMatch> filterMatches(final List<PointMatch> candidates,
                                           final Model model) {
+        return filterMatches(candidates, model, false);
+    }
+
+    /**
+     * @param  candidates                  list of all candidate matches.
+     * @param  model                       model to fit.
+     * @param  candidatesOrderedByQuality  indicates candidates are ordered from best to worst.
+     *
+     * @return list of inlier matches.
+     */
+    public List<PointMatch> filterMatches(final List<PointMatch> candidates,
+                                          final Model model,
+                                          final boolean candidatesOrderedByQuality) {
 
         final List<PointMatch> inliers = new ArrayList<>(candidates.size());
 
         if (candidates.size() > 0) {
             try {
-                model.filterRansac(candidates,
-                                   inliers,
-                                   iterations,
-                                   maxEpsilon,
-                                   minInlierRatio,
-                                   minNumInliers,
-                                   maxTrust);
+                filterRansac(model,
+                             candidates,
+                             inliers,
+                             maxTrust,
+                             candidatesOrderedByQuality);
             } catch (final NotEnoughDataPointsException e) {
                 LOG.warn("failed to filter outliers", e);
             }
@@ -108,6 +134,17 @@ public class MatchFilter
      * @return list of consensus set match lists in order of quality.
      */
     public List<List<PointMatch>> filterConsensusMatches(final List<PointMatch> candidates) {
+        return filterConsensusMatches(candidates, false);
+    }
+
+    /**
+     * @param  candidates                  list of all candidate matches.
+     * @param  candidatesOrderedByQuality  indicates candidates are ordered from best to worst.
+     *
+     * @return list of consensus set match lists in order of quality.
+     */
+    public List<List<PointMatch>> filterConsensusMatches(final List<PointMatch> candidates,
+                                                         final boolean candidatesOrderedByQuality) {
 
         final List<List<PointMatch>> listOfInliersLists = new ArrayList<>();
         final int totalNumberOfCandidates = candidates.size();
@@ -117,12 +154,11 @@ public class MatchFilter
             final Model model = getModel();
             final List<PointMatch> modelInliers = new ArrayList<>();
             try {
-                modelFound = model.filterRansac(candidates,
-                                                modelInliers,
-                                                iterations,
-                                                maxEpsilon,
-                                                minInlierRatio,
-                                                minNumInliers);
+                modelFound = filterRansac(model,
+                                          candidates,
+                                          modelInliers,
+                                          null,
+                                          candidatesOrderedByQuality);
             } catch (final NotEnoughDataPointsException e) {
                 modelFound = false;
             }
@@ -171,6 +207,56 @@ public class MatchFilter
         return model;
     }
 
+    /**
+     * Runs the standard mpicbg RANSAC filter unless multiple threads, adaptive termination,
+     * or prioritized sampling have been requested, in which case a {@link ParallelRansac} filter is used.
+     *
+     * @param  maxTrust  max trust for robust refinement or null to use the mpicbg default.
+     */
+    private boolean filterRansac(final Model model,
+                                 final List<PointMatch> candidates,
+                                 final List<PointMatch> inliers,
+                                 final Double maxTrust,
+                                 final boolean candidatesOrderedByQuality)
+            throws NotEnoughDataPointsException {
+
+        final boolean usePrioritizedSampling = prioritizeByRatio && candidatesOrderedByQuality;
+
+        final boolean modelFound;
+        if ((numberOfThreads > 1) || (ransacConfidence != null) || usePrioritizedSampling) {
+            final ParallelRansac ransac = new ParallelRansac(numberOfThreads,
+                                                             ransacConfidence,
+                                                             usePrioritizedSampling);
+            modelFound = ransac.filterRansac(model,
+                                             candidates,
+                                             inliers,
+                                             iterations,
+                                             maxEpsilon,
+                                             minInlierRatio,
+                                             minNumInliers,
+                                             maxTrust == null ? DEFAULT_MAX_TRUST : maxTrust);
+        } else if (maxTrust == null) {
+            //noinspection unchecked
+            modelFound = model.filterRansac(candidates,
+                                            inliers,
+                                            iterations,
+                                            maxEpsilon,
+                                            minInlierRatio,
+                                            minNumInliers);
+        } else {
+            //noinspection unchecked
+            modelFound = model.filterRansac(candidates,
+                                            inliers,
+                                            iterations,
+                                            maxEpsilon,
+                                            minInlierRatio,
+                                            minNumInliers,
+                                            maxTrust);
+        }
+
+        return modelFound;
+    }
+
     private void postProcessInliers(final List<PointMatch> inliers) {
 
         // TODO: remove this extra check once RANSAC filter issue is fixed
@@ -189,6 +275,18 @@ public class MatchFilter
     }
 
     public CanvasMatchResult buildMatchResult(final List<PointMatch> candidates) {
+        return buildMatchResult(candidates, false);
+    }
+
+    /**
+     * @param  candidates                  list of all candidate matches.
+     * @param  candidatesOrderedByQuality  indicates candidates are ordered from best to worst
+     *                                     (allows prioritized RANSAC sampling when it is enabled).
+     *
+     * @return filtered match result.
+     */
+    public CanvasMatchResult buildMatchResult(final List<PointMatch> candidates,
+                                              final boolean candidatesOrderedByQuality) {
 
         CanvasMatchResult result = null;
         switch (filterType) {
@@ -197,16 +295,17 @@ public class MatchFilter
                 break;
             case SINGLE_SET:
                 final Model model = getModel();
-                final List<PointMatch> inliers = filterMatches(candidates, model);
+                final List<PointMatch> inliers = filterMatches(candidates, model, candidatesOrderedByQuality);
                 result = new CanvasMatchResult(this, Collections.singletonList(inliers), candidates.size());
                 break;
             case CONSENSUS_SETS:
-                final List<List<PointMatch>> consensusMatches = filterConsensusMatches(candidates);
+                final List<List<PointMatch>> consensusMatches = filterConsensusMatches(candidates,
+                                                                                       candidatesOrderedByQuality);
                 result = new CanvasMatchResult(this, consensusMatches, candidates.size());
                 break;
             case AGGREGATED_CONSENSUS_SETS:
                 final List<PointMatch> aggregatedMatches = new ArrayList<>(candidates.size());
-                filterConsensusMatches(candidates).forEach(aggregatedMatches::addAll);
+                filterConsensusMatches(candidates, candidatesOrderedByQuality).forEach(aggregatedMatches::addAll);
 
                 result = new CanvasMatchResult(this, Collections.singletonList(aggregatedMatches), candidates.size());
                 break;
@@ -216,4 +315,7 @@ public class MatchFilter
     }
 
     private static final Logger LOG = LoggerFactory.getLogger(MatchFilter.class);
+
+    /** Max trust used by mpicbg filterRansac when one is not specified (consensus set filtering relies upon this). */
+    private static final double DEFAULT_MAX_TRUST = 3.0;
 }
@@ -0,0 +1,176 @@
+package org.janelia.alignment.match;
+
+import ij.process.ColorProcessor;
+import ij.process.ImageProcessor;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared logic for extracting items (e.g. features or peaks) from a large canvas in parallel.
+ *
+ * The canvas is split into a grid of non-overlapping block cores.
+ * Each block core is expanded by a margin, cropped from the canvas, and processed on a separate thread.
+ * Items found in a block's margin are dropped since they belong to (and are kept by) another block.
+ *
+ * @author Eric Trautman
+ */
+class ParallelBlockExtractor {
+
+    /** Extracts items from a cropped block. */
+    @FunctionalInterface
+    interface BlockItemExtractor<T> {
+        List<T> extract(ImageProcessor blockProcessor);
+    }
+
+    /** Moves an item from block to canvas coordinates. */
+    @FunctionalInterface
+    interface BlockItemTranslator<T> {
+        /**
+         * @return the item's (x, y) location in canvas coordinates.
+         */
+        double[] translate(T item,
+                           int blockX,
+                           int blockY);
+    }
+
+    /**
+     * Splits a canvas into a grid of (roughly) one block per thread,
+     * where each block core is at least minCoreSize pixels wide and tall.
+     *
+     * @return list of non-overlapping block cores that tile the canvas
+     *         (or a single core for the whole canvas if parallel extraction is not possible).
+     */
+    static List<Rectangle> getBlockCores(final int width,
+                                         final int height,
+                                         final int numberOfThreads,
+                                         final int minCoreSize) {
+
+        int columns = 1;
+        int rows = 1;
+        if (numberOfThreads > 1) {
+            final double aspectRatio = (double) width / height;
+            columns = (int) Math.ceil(Math.sqrt(numberOfThreads * aspectRatio));
+            columns = Math.max(1, Math.min(columns, width / minCoreSize));
+            rows = (int) Math.ceil((double) numberOfThreads / columns);
+            rows = Math.max(1, Math.min(rows, height / minCoreSize));
+        }
+
+        final List<Rectangle> blockCores = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            final int minY = (row * height) / rows;
+            final int maxY = ((row + 1) * height) / rows;
+            for (int column = 0; column < columns; column++) {
+                final int minX = (column * width) / columns;
+                final int maxX = ((column + 1) * width) / columns;
+                blockCores.add(new Rectangle(minX, minY, maxX - minX, maxY - minY));
+            }
+        }
+
+        return blockCores;
+    }
+
+    /**
+     * Extracts items from each block of the specified canvas in parallel.
+     *
+     * @param  canvas           canvas pixels.
+     * @param  blockCores       non-overlapping block cores that tile the canvas.
+     * @param  margin           number of pixels to add around each core when cropping its block.
+     * @param  numberOfThreads  maximum number of threads to use.
+     * @param  extractor        extracts items from a cropped block.
+     * @param  translator       moves extracted items from block to canvas coordinates.
+     * @param  additionalTasks  other (e.g. whole canvas) tasks to run on the same threads
+     *                          whose items are included (without filtering) in the result.
+     * @param  itemsName        name of the extracted items for log and error messages.
+     *
+     * @return list of items extracted from all block cores and additional tasks.
+     *
+     * @throws IllegalStateException
+     *   if extraction fails or is interrupted.
+     */
+    static <T> List<T> extract(final ImageProcessor canvas,
+                               final List<Rectangle> blockCores,
+                               final int margin,
+                               final int numberOfThreads,
+                               final BlockItemExtractor<T> extractor,
+                               final BlockItemTranslator<T> translator,
+                               final List<Callable<List<T>>> additionalTasks,
+                               final String itemsName)
+            throws IllegalStateException {
+
+        final int width = canvas.getWidth();
+        final int height = canvas.getHeight();
+
+        final List<Callable<List<T>>> tasks = new ArrayList<>(additionalTasks);
+
+        // blocks are cropped here because setting the roi is not thread safe
+        for (final Rectangle core : blockCores) {
+
+            final Rectangle block = new Rectangle(core.x - margin,
+                                                  core.y - margin,
+                                                  core.width + (2 * margin),
+                                                  core.height + (2 * margin)).intersection(
+                                                          new Rectangle(0, 0, width, height));
+
+            canvas.setRoi(block);
+            final ImageProcessor blockProcessor = canvas.crop();
+            if (! (canvas instanceof ColorProcessor)) {
+                // normalize blocks with the whole canvas range (crop resets the range for float and short data)
+                blockProcessor.setMinAndMax(canvas.getMin(), canvas.getMax());
+            }
+
+            tasks.add(() -> {
+                final List<T> coreItems = new ArrayList<>();
+                for (final T item : extractor.extract(blockProcessor)) {
+                    final double[] location = translator.translate(item, block.x, block.y);
+                    // drop items from the overlap since they belong to (and are kept by) another block
+                    if (core.contains(location[0], location[1])) {
+                        coreItems.add(item);
+                    }
+                }
+                return coreItems;
+            });
+        }
+        canvas.resetRoi();
+
+        final int threadCount = Math.max(1, Math.min(numberOfThreads, tasks.size()));
+
+        LOG.info("extract: extracting {} from {} blocks with margin {} using {} threads",
+                 itemsName, blockCores.size(), margin, threadCount);
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        try {
+
+            final List<Future<List<T>>> futures = new ArrayList<>(tasks.size());
+            for (final Callable<List<T>> task : tasks) {
+                futures.add(executorService.submit(task));
+            }
+
+            final List<T> itemList = new ArrayList<>();
+            for (final Future<List<T>> future : futures) {
+                itemList.addAll(future.get());
+            }
+
+            return itemList;
+
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while extracting " + itemsName, e);
+        } catch (final ExecutionException e) {
+            throw new IllegalStateException("failed to extract " + itemsName, e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelBlockExtractor.class);
+}
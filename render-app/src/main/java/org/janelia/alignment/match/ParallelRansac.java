@@ -0,0 +1,373 @@
+package org.janelia.alignment.match;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mpicbg.models.IllDefinedDataPointsException;
+import mpicbg.models.Model;
+import mpicbg.models.NotEnoughDataPointsException;
+import mpicbg.models.PointMatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * RANSAC outlier filter that produces the same kind of result as {@link Model#filterRansac}
+ * (best hypothesis inliers followed by {@link Model#filter} robust refinement) but:
+ * <ul>
+ *     <li>evaluates hypotheses across multiple threads,</li>
+ *     <li>optionally stops early once enough hypotheses have been evaluated to find an
+ *         all-inlier sample with the requested confidence (based upon the best inlier ratio seen so far),</li>
+ *     <li>optionally draws early samples from the best candidates first (PROSAC style) when
+ *         candidates are ordered by quality.</li>
+ * </ul>
+ *
+ * Hypotheses are evaluated without applying models to the shared candidate point matches,
+ * so the candidates are only modified by the final (single threaded) refinement step.
+ *
+ * Results do not depend upon the number of threads or thread timing:
+ * each iteration draws its sample from its own seeded random generator,
+ * and the hypotheses found by all threads are merged by replaying them in iteration order
+ * (applying the same early termination limit a single threaded search would have applied).
+ *
+ * @author Eric Trautman
+ */
+public class ParallelRansac {
+
+    private final int numberOfThreads;
+    private final Double confidence;
+    private final boolean candidatesOrderedByQuality;
+
+    /**
+     * @param  numberOfThreads             number of threads to use for evaluating hypotheses.
+     * @param  confidence                  probability (e.g. 0.999) of having drawn at least one all-inlier
+     *                                     sample required for early termination or null to always run
+     *                                     the full number of iterations.
+     * @param  candidatesOrderedByQuality  indicates that candidates are ordered from best to worst
+     *                                     (e.g. by descriptor distance ratio) so that early samples
+     *                                     should be drawn from the front of the list.
+     */
+    public ParallelRansac(final int numberOfThreads,
+                          final Double confidence,
+                          final boolean candidatesOrderedByQuality) {
+        this.numberOfThreads = Math.max(1, numberOfThreads);
+        this.confidence = confidence;
+        this.candidatesOrderedByQuality = candidatesOrderedByQuality;
+    }
+
+    /**
+     * Filters the specified candidates.
+     * Parameters and results have the same semantics as {@link Model#filterRansac}.
+     *
+     * @return true if a model was found; otherwise false.
+     *
+     * @throws NotEnoughDataPointsException
+     *   if there are fewer candidates than the model needs.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public boolean filterRansac(final Model model,
+                                final List<PointMatch> candidates,
+                                final List<PointMatch> inliers,
+                                final int maxIterations,
+                                final double maxEpsilon,
+                                final double minInlierRatio,
+                                final int minNumInliers,
+                                final double maxTrust)
+            throws NotEnoughDataPointsException {
+
+        inliers.clear();
+
+        final int minNumMatches = model.getMinNumMatches();
+        if (candidates.size() < minNumMatches) {
+            throw new NotEnoughDataPointsException(candidates.size() + " data points are not enough to solve the Model, at least " +
+                                                   minNumMatches + " data points required.");
+        }
+
+        final SearchState state = new SearchState(maxIterations);
+
+        final int taskCount = Math.min(numberOfThreads, maxIterations);
+        final List<Callable<List<Hypothesis>>> tasks = new ArrayList<>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            final Model taskModel = model.copy();
+            tasks.add(() -> search(taskModel, candidates, state, maxIterations,
+                                   maxEpsilon, minInlierRatio, minNumInliers));
+        }
+
+        final List<Hypothesis> improvements = new ArrayList<>();
+        if (taskCount == 1) {
+            try {
+                improvements.addAll(tasks.get(0).call());
+            } catch (final Exception e) {
+                throw new IllegalStateException("failed to evaluate hypotheses", e);
+            }
+        } else {
+            final ExecutorService executorService = Executors.newFixedThreadPool(taskCount);
+            try {
+                final List<Future<List<Hypothesis>>> futures = new ArrayList<>(taskCount);
+                for (final Callable<List<Hypothesis>> task : tasks) {
+                    futures.add(executorService.submit(task));
+                }
+                for (final Future<List<Hypothesis>> future : futures) {
+                    improvements.addAll(future.get());
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while evaluating hypotheses", e);
+            } catch (final ExecutionException e) {
+                throw new IllegalStateException("failed to evaluate hypotheses", e.getCause());
+            } finally {
+                executorService.shutdownNow();
+            }
+        }
+
+        final Hypothesis best = selectBest(improvements, candidates.size(), minNumMatches, maxIterations);
+
+        LOG.debug("filterRansac: evaluated {} of {} hypotheses with {} thread(s), best has {} inliers",
+                  state.evaluatedCount.get(), maxIterations, taskCount, best == null ? 0 : best.inliers.size());
+
+        boolean modelFound = false;
+        if (best != null) {
+            model.set(best.model);
+            modelFound = model.filter(best.inliers, inliers, maxTrust, minNumInliers);
+        }
+
+        if (! modelFound) {
+            inliers.clear();
+        }
+
+        return modelFound;
+    }
+
+    /** State shared by all search tasks. */
+    private static class SearchState {
+
+        private final AtomicInteger nextIteration;
+        private final AtomicInteger iterationLimit;
+        private final AtomicInteger evaluatedCount;
+
+        SearchState(final int maxIterations) {
+            this.nextIteration = new AtomicInteger(0);
+            this.iterationLimit = new AtomicInteger(maxIterations);
+            this.evaluatedCount = new AtomicInteger(0);
+        }
+
+        void reduceLimit(final int limit) {
+            iterationLimit.accumulateAndGet(limit, Math::min);
+        }
+    }
+
+    /** A model (and its inliers) found by a search task for a specific iteration. */
+    @SuppressWarnings("rawtypes")
+    private static class Hypothesis {
+
+        private final int iteration;
+        private final Model model;
+        private final List<PointMatch> inliers;
+        private final double cost;
+
+        Hypothesis(final int iteration,
+                   final Model model,
+                   final List<PointMatch> inliers,
+                   final int candidateCount) {
+            this.iteration = iteration;
+            this.model = model;
+            this.inliers = inliers;
+            // same cost Model.test assigns (1 - inlier ratio)
+            this.cost = Math.max(0.0, Math.min(1.0, 1.0 - ((double) inliers.size() / candidateCount)));
+        }
+
+        /**
+         * Same comparison as AbstractModel.betterThan (used by Model.ransac):
+         * only a strictly lower cost wins, so the earlier of two equally good hypotheses is kept.
+         */
+        boolean isBetterThan(final Hypothesis other) {
+            return (other == null) || (cost < other.cost);
+        }
+    }
+
+    /**
+     * Replays hypothesis improvements from all tasks in iteration order to select the hypothesis
+     * a single threaded search would have selected.
+     *
+     * Each task only returns the hypotheses that improved upon its own earlier (lower iteration) hypotheses,
+     * but that is sufficient because the best hypothesis within any prefix of iterations is always an
+     * improvement for the task that evaluated it.  Tasks claim iterations in order and always finish the
+     * iterations they claim, so every iteration a single threaded search would have evaluated
+     * (before reaching its early termination limit) has been evaluated.
+     */
+    private Hypothesis selectBest(final List<Hypothesis> improvements,
+                                  final int candidateCount,
+                                  final int minNumMatches,
+                                  final int maxIterations) {
+
+        improvements.sort(Comparator.comparingInt(h -> h.iteration));
+
+        Hypothesis best = null;
+        int iterationLimit = maxIterations;
+        for (final Hypothesis hypothesis : improvements) {
+            if (hypothesis.iteration >= iterationLimit) {
+                break;
+            }
+            if (hypothesis.isBetterThan(best)) {
+                best = hypothesis;
+                if (confidence != null) {
+                    final double inlierRatio = (double) best.inliers.size() / candidateCount;
+                    iterationLimit = Math.min(iterationLimit,
+                                              getRequiredIterations(inlierRatio, minNumMatches,
+                                                                    confidence, maxIterations));
+                }
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * @return the hypotheses that improved upon this task's earlier hypotheses (in iteration order).
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private List<Hypothesis> search(final Model model,
+                                    final List<PointMatch> candidates,
+                                    final SearchState state,
+                                    final int maxIterations,
+                                    final double maxEpsilon,
+                                    final double minInlierRatio,
+                                    final int minNumInliers) {
+
+        final int minNumMatches = model.getMinNumMatches();
+        final int candidateCount = candidates.size();
+        final double maxEpsilonSquared = maxEpsilon * maxEpsilon;
+
+        // PROSAC style: grow the sample pool from the best candidates to all candidates
+        // over the first quarter of the iteration budget
+        final int growthIterations = Math.max(1, maxIterations / 4);
+
+        final List<Hypothesis> improvements = new ArrayList<>();
+        Hypothesis best = null;
+        final List<PointMatch> minMatches = new ArrayList<>(minNumMatches);
+
+        for (int iteration = state.nextIteration.getAndIncrement();
+             iteration < state.iterationLimit.get();
+             iteration = state.nextIteration.getAndIncrement()) {
+
+            state.evaluatedCount.incrementAndGet();
+
+            // seed each iteration independently so that samples do not depend upon which thread draws them
+            final SplittableRandom random = new SplittableRandom(RANDOM_SEED + iteration);
+
+            int poolSize = candidateCount;
+            if (candidatesOrderedByQuality && (iteration < growthIterations)) {
+                poolSize = (int) Math.ceil(candidateCount * (iteration + 1.0) / growthIterations);
+                poolSize = Math.min(candidateCount, Math.max(2 * minNumMatches, poolSize));
+            }
+
+            minMatches.clear();
+            while (minMatches.size() < minNumMatches) {
+                final PointMatch pointMatch = candidates.get(random.nextInt(poolSize));
+                if (! minMatches.contains(pointMatch)) {
+                    minMatches.add(pointMatch);
+                }
+            }
+
+            List<PointMatch> hypothesisInliers;
+            try {
+                model.fit(minMatches);
+                hypothesisInliers = findInliers(model, candidates, maxEpsilonSquared);
+
+                // refit to the inliers until the inlier set stops growing (same as mpicbg ransac)
+                int previousInlierCount = 0;
+                while (isGood(hypothesisInliers.size(), candidateCount, minNumMatches, minInlierRatio, minNumInliers) &&
+                       (hypothesisInliers.size() > previousInlierCount)) {
+                    previousInlierCount = hypothesisInliers.size();
+                    model.fit(hypothesisInliers);
+                    hypothesisInliers = findInliers(model, candidates, maxEpsilonSquared);
+                }
+            } catch (final NotEnoughDataPointsException | IllDefinedDataPointsException e) {
+                continue;
+            }
+
+            if (isGood(hypothesisInliers.size(), candidateCount, minNumMatches, minInlierRatio, minNumInliers)) {
+
+                final Hypothesis hypothesis = new Hypothesis(iteration, model.copy(), hypothesisInliers, candidateCount);
+
+                if (hypothesis.isBetterThan(best)) {
+
+                    best = hypothesis;
+                    improvements.add(hypothesis);
+
+                    if (confidence != null) {
+                        final double inlierRatio = (double) hypothesisInliers.size() / candidateCount;
+                        state.reduceLimit(getRequiredIterations(inlierRatio, minNumMatches, confidence, maxIterations));
+                    }
+                }
+            }
+        }
+
+        return improvements;
+    }
+
+    /**
+     * @return list of candidates within epsilon of the model's prediction
+     *         (computed without modifying the candidates).
+     */
+    @SuppressWarnings("rawtypes")
+    private static List<PointMatch> findInliers(final Model model,
+                                                final List<PointMatch> candidates,
+                                                final double maxEpsilonSquared) {
+        final List<PointMatch> inliers = new ArrayList<>();
+        for (final PointMatch candidate : candidates) {
+            final double[] transformed = model.apply(candidate.getP1().getL());
+            final double[] target = candidate.getP2().getW();
+            double distanceSquared = 0;
+            for (int d = 0; d < transformed.length; d++) {
+                final double delta = transformed[d] - target[d];
+                distanceSquared += delta * delta;
+            }
+            if (distanceSquared < maxEpsilonSquared) {
+                inliers.add(candidate);
+            }
+        }
+        return inliers;
+    }
+
+    private static boolean isGood(final int inlierCount,
+                                  final int candidateCount,
+                                  final int minNumMatches,
+                                  final double minInlierRatio,
+                                  final int minNumInliers) {
+        final double inlierRatio = (double) inlierCount / candidateCount;
+        return (inlierCount >= minNumMatches) && (inlierCount >= minNumInliers) && (inlierRatio > minInlierRatio);
+    }
+
+    /**
+     * @return number of iterations needed to draw at least one all-inlier sample with the specified confidence.
+     */
+    static int getRequiredIterations(final double inlierRatio,
+                                     final int sampleSize,
+                                     final double confidence,
+                                     final int maxIterations) {
+        final double allInlierProbability = Math.pow(inlierRatio, sampleSize);
+        final int requiredIterations;
+        if (allInlierProbability >= 1.0) {
+            requiredIterations = 1;
+        } else if (allInlierProbability <= 0.0) {
+            requiredIterations = maxIterations;
+        } else {
+            final double iterations = Math.log(1.0 - confidence) / Math.log(1.0 - allInlierProbability);
+            requiredIterations = (int) Math.min(maxIterations, Math.ceil(iterations));
+        }
+        return requiredIterations;
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelRansac.class);
+
+    private static final long RANDOM_SEED = 69997;
+}
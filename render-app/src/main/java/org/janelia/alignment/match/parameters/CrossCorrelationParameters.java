@@ -51,6 +51,12 @@ public class CrossCorrelationParameters
     )
     public Boolean subpixelAccuracy;
 
+    @Parameter(
+            names = "--ccNumberOfThreads",
+            description = "Number of threads to use for correlating the samples of each canvas pair."
+    )
+    public Integer numberOfThreads;
+
     void setDefaults() {
 
         if (checkPeaks == null) {
@@ -60,6 +66,10 @@ public class CrossCorrelationParameters
         if (subpixelAccuracy == null) {
             subpixelAccuracy = true;
         }
+
+        if (numberOfThreads == null) {
+            numberOfThreads = 1;
+        }
     }
 
     public int getScaledSampleSize(final double renderScale) {
@@ -40,6 +40,14 @@ public class FeatureExtractionParameters
     )
     public Integer steps;
 
+    @Parameter(
+            names = "--SIFTnumberOfThreads",
+            description = "Number of threads to use for extracting the features of each canvas " +
+                          "(full scale octaves of large canvases are extracted from overlapping regions in parallel).  " +
+                          "Omit parameter to use a single thread."
+    )
+    public Integer numberOfThreads;
+
     public void setDefaults() {
 
         if (fdSize == null) {
@@ -110,6 +110,13 @@ public class GeometricDescriptorParameters
     )
     public Double gdStoredMatchWeight;
 
+    @Parameter(
+            names = "--gdNumberOfThreads",
+            description = "Number of threads to use for extracting the peaks of each canvas " +
+                          "(large canvases are split into overlapping blocks that are processed in parallel)"
+    )
+    public Integer numberOfThreads;
+
     void setDefaults() {
 
         if (numberOfNeighbors == null) {
@@ -125,6 +125,29 @@ public class MatchDerivationParameters implements Serializable {
     )
     public FilterType matchFilter = FilterType.SINGLE_SET;
 
+    @Parameter(
+            names = "--matchNumberOfThreads",
+            description = "Number of threads to use for evaluating RANSAC hypotheses when filtering matches.  " +
+                          "Omit parameter to use a single thread."
+    )
+    public Integer matchNumberOfThreads;
+
+    @Parameter(
+            names = "--matchRansacConfidence",
+            description = "Stop RANSAC filtering once enough hypotheses have been evaluated to draw an " +
+                          "all-inlier sample with this probability (e.g. 0.999).  " +
+                          "Omit parameter to always evaluate matchIterations hypotheses."
+    )
+    public Double matchRansacConfidence;
+
+    @Parameter(
+            names = "--matchPrioritizeByRatio",
+            description = "Order SIFT match candidates by descriptor distance ratio and " +
+                          "draw early RANSAC samples from the best candidates (PROSAC style)",
+            arity = 1
+    )
+    public Boolean matchPrioritizeByRatio;
+
     @Parameter(
             names = "--matchFullScaleCoverageRadius",
             description = "Full scale radius to use for coverage analysis"
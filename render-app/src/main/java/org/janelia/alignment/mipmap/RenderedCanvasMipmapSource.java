@@ -31,6 +31,7 @@ import org.janelia.alignment.mapper.SingleChannelWithBinaryMaskMapper;
 import org.janelia.alignment.mapper.SingleColorChannelWithAlphaMapper;
 import org.janelia.alignment.spec.TileSpec;
 import org.janelia.alignment.util.ImageProcessorCache;
+import org.janelia.alignment.util.RenderMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -410,6 +411,9 @@ public class RenderedCanvasMipmapSource
 
             final long mapStop = System.currentTimeMillis();
 
+            RenderMetrics.record(RenderMetrics.TILE_MESH, meshCreationStop - mapStart);
+            RenderMetrics.record(RenderMetrics.TILE_MAP, mapStop - meshCreationStop);
+
             LOG.debug("mapPixels: mapping of {} took {} milliseconds to process (mesh:{}, map{}:{})",
                       source.getSourceName(),
                       mapStop - mapStart,
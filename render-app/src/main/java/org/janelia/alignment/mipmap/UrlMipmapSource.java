@@ -2,8 +2,16 @@ package org.janelia.alignment.mipmap;
 
 import ij.process.ImageProcessor;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWithMasks;
 
@@ -11,6 +19,7 @@ import org.janelia.alignment.ChannelMap;
 import org.janelia.alignment.ImageAndMask;
 import org.janelia.alignment.spec.ChannelSpec;
 import org.janelia.alignment.util.ImageProcessorCache;
+import org.janelia.alignment.util.RenderMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,6 +27,11 @@ import org.slf4j.LoggerFactory;
  * A {@link MipmapSource} implementation that loads pixel data from image and
  * mask URLs (files/resources) identified in {@link ChannelSpec channel specs}.
  *
+ * Masks and additional channels are loaded concurrently (on a shared pool of daemon threads)
+ * while the first channel image is loaded on the calling thread,
+ * so that the load time for multi-channel and masked sources is driven by the slowest load
+ * instead of the sum of all loads.
+ *
  * @author Eric Trautman
  */
 public class UrlMipmapSource
@@ -97,87 +111,86 @@ public class UrlMipmapSource
 
             final long loadMipStart = System.currentTimeMillis();
 
-            final ChannelSpec firstChannelSpec = channelSpecList.get(0);
-
-            int downSampleLevels = 0;
+            final ChannelLoad firstChannelLoad = new ChannelLoad(channelSpecList.get(0), mipmapLevel);
+            final ChannelSpec firstChannelSpec = firstChannelLoad.channelSpec;
+            final ImageAndMask imageAndMask = firstChannelLoad.imageAndMask;
+            final int downSampleLevels = firstChannelLoad.downSampleLevels;
 
-            final Map.Entry<Integer, ImageAndMask> mipmapEntry = firstChannelSpec.getFloorMipmapEntry(mipmapLevel);
-            final ImageAndMask imageAndMask = mipmapEntry.getValue();
-
-            final int currentMipmapLevel = mipmapEntry.getKey();
-            if (currentMipmapLevel < mipmapLevel) {
-                downSampleLevels = mipmapLevel - currentMipmapLevel;
-            } else if (currentMipmapLevel > mipmapLevel) {
+            if (firstChannelLoad.currentMipmapLevel > mipmapLevel) {
                 throw new IllegalArgumentException(
                         "The highest resolution mipmap for " + imageAndMask.getImageUrl() + " is level " +
-                        currentMipmapLevel + " but a level " + mipmapLevel +
+                        firstChannelLoad.currentMipmapLevel + " but a level " + mipmapLevel +
                         " mipmap is needed.  Upscaling is not currently supported.");
             }
 
-            final ImageProcessor imageProcessor = imageProcessorCache.get(imageAndMask.getImageUrl(),
-                                                                          downSampleLevels,
-                                                                          false,
-                                                                          firstChannelSpec.is16Bit(),
-                                                                          imageAndMask.getImageLoaderType(),
-                                                                          imageAndMask.getImageSliceNumber());
-            final long loadMipStop = System.currentTimeMillis();
+            // start all other loads before loading the first channel image on this thread
+            final List<ChannelLoad> additionalChannelLoads = new ArrayList<>(channelSpecList.size());
+            firstChannelLoad.startLoads(false);
+            for (int i = 1; i < channelSpecList.size(); i++) {
+                final ChannelLoad channelLoad = new ChannelLoad(channelSpecList.get(i), mipmapLevel);
+                channelLoad.startLoads(true);
+                additionalChannelLoads.add(channelLoad);
+            }
 
-            if (imageProcessor.getWidth() == 0 || imageProcessor.getHeight() == 0) {
+            try {
 
-                LOG.debug("skipping " + getSourceName() + " mipmap " + imageAndMask.getImageUrl() +
-                          " with zero dimension after down-sampling " + downSampleLevels + " levels");
+                final ImageProcessor imageProcessor = firstChannelLoad.getImage();
+                final long loadMipStop = System.currentTimeMillis();
 
-            } else {
+                if (imageProcessor.getWidth() == 0 || imageProcessor.getHeight() == 0) {
+
+                    LOG.debug("skipping " + getSourceName() + " mipmap " + imageAndMask.getImageUrl() +
+                              " with zero dimension after down-sampling " + downSampleLevels + " levels");
 
-                // open mask
-                final ImageProcessor maskProcessor;
-                final String maskUrl = imageAndMask.getMaskUrl();
-                if ((maskUrl != null) && (! excludeMask)) {
-                    maskProcessor = imageProcessorCache.get(maskUrl,
-                                                            downSampleLevels,
-                                                            true,
-                                                            false,
-                                                            imageAndMask.getMaskLoaderType(),
-                                                            imageAndMask.getMaskSliceNumber());
                 } else {
-                    maskProcessor = null;
-                }
 
-                final long loadMaskStop = System.currentTimeMillis();
+                    // open mask
+                    final ImageProcessor maskProcessor = firstChannelLoad.getMask();
 
-                setMinAndMaxIntensity(imageProcessor, firstChannelSpec);
+                    final long loadMaskStop = System.currentTimeMillis();
 
-                final ImageProcessorWithMasks firstChannel =
-                        new ImageProcessorWithMasks(imageProcessor, maskProcessor, null);
+                    setMinAndMaxIntensity(imageProcessor, firstChannelSpec);
 
-                // log warning if source.mask gets "quietly" removed (because of size)
-                if ((maskProcessor != null) && (firstChannel.mask == null)) {
-                    LOG.warn("getChannels: {} mask removed because image {} size ({}x{}) differs from mask {} size ({}x{})",
-                             sourceName,
-                             imageAndMask.getImageUrl(), imageProcessor.getWidth(), imageProcessor.getHeight(),
-                             imageAndMask.getMaskUrl(), maskProcessor.getWidth(), maskProcessor.getHeight());
-                }
+                    final ImageProcessorWithMasks firstChannel =
+                            new ImageProcessorWithMasks(imageProcessor, maskProcessor, null);
+
+                    // log warning if source.mask gets "quietly" removed (because of size)
+                    if ((maskProcessor != null) && (firstChannel.mask == null)) {
+                        LOG.warn("getChannels: {} mask removed because image {} size ({}x{}) differs from mask {} size ({}x{})",
+                                 sourceName,
+                                 imageAndMask.getImageUrl(), imageProcessor.getWidth(), imageProcessor.getHeight(),
+                                 imageAndMask.getMaskUrl(), maskProcessor.getWidth(), maskProcessor.getHeight());
+                    }
+
+                    channels.put(firstChannelSpec.getName(), firstChannel);
 
-                channels.put(firstChannelSpec.getName(), firstChannel);
+                    if (additionalChannelLoads.size() > 0) {
+                        loadAdditionalChannels(imageProcessor.getWidth(),
+                                               imageProcessor.getHeight(),
+                                               mipmapLevel,
+                                               additionalChannelLoads,
+                                               channels);
+                    }
 
-                if (channelSpecList.size() > 1) {
-                    loadAdditionalChannels(imageProcessor.getWidth(),
-                                           imageProcessor.getHeight(),
-                                           mipmapLevel,
-                                           channels);
+                    final long loadAdditionalChannelsStop = System.currentTimeMillis();
+
+                    RenderMetrics.record(RenderMetrics.TILE_LOAD, loadAdditionalChannelsStop - loadMipStart);
+
+                    LOG.debug("getChannels: {} took {} milliseconds to load level {} (first mip:{}, downSampleLevels:{}, first mask:{}, additional channels:{}), cacheSize:{}",
+                              sourceName,
+                              loadAdditionalChannelsStop - loadMipStart,
+                              mipmapLevel,
+                              loadMipStop - loadMipStart,
+                              downSampleLevels,
+                              loadMaskStop - loadMipStop,
+                              loadAdditionalChannelsStop - loadMaskStop,
+                              imageProcessorCache.size());
                 }
 
-                final long loadAdditionalChannelsStop = System.currentTimeMillis();
-
-                LOG.debug("getChannels: {} took {} milliseconds to load level {} (first mip:{}, downSampleLevels:{}, first mask:{}, additional channels:{}), cacheSize:{}",
-                          sourceName,
-                          loadAdditionalChannelsStop - loadMipStart,
-                          mipmapLevel,
-                          loadMipStop - loadMipStart,
-                          downSampleLevels,
-                          loadMaskStop - loadMipStop,
-                          loadAdditionalChannelsStop - loadMaskStop,
-                          imageProcessorCache.size());
+            } finally {
+                // only has an effect for loads that are no longer needed (e.g. after a failure or empty first channel)
+                firstChannelLoad.cancel();
+                additionalChannelLoads.forEach(ChannelLoad::cancel);
             }
         }
 
@@ -185,53 +198,29 @@ public class UrlMipmapSource
     }
 
     /**
-     * Loads remaining channel data for multi-channel images.
+     * Collects remaining (concurrently loaded) channel data for multi-channel images.
      *
-     * @param  firstChannelWidth    first channel width (at requested mipmap level).
-     * @param  firstChannelHeight   first channel height (at requested mipmap level).
-     * @param  mipmapLevel          requested mipmap level for all channels.
-     * @param  channels             map of pixel data for all source channels.
+     * @param  firstChannelWidth       first channel width (at requested mipmap level).
+     * @param  firstChannelHeight      first channel height (at requested mipmap level).
+     * @param  mipmapLevel             requested mipmap level for all channels.
+     * @param  additionalChannelLoads  started loads for all channels after the first channel.
+     * @param  channels                map of pixel data for all source channels.
      */
     private void loadAdditionalChannels(final int firstChannelWidth,
                                         final int firstChannelHeight,
                                         final int mipmapLevel,
+                                        final List<ChannelLoad> additionalChannelLoads,
                                         final ChannelMap channels) {
 
-        for (int i = 1; i < channelSpecList.size(); i++) {
-
-            final ChannelSpec channelSpec = channelSpecList.get(i);
-            final Map.Entry<Integer, ImageAndMask> mipmapEntry =
-                    channelSpec.getFloorMipmapEntry(mipmapLevel);
-            final ImageAndMask imageAndMask = mipmapEntry.getValue();
+        for (final ChannelLoad channelLoad : additionalChannelLoads) {
 
-            int downSampleLevels = 0;
-            final int currentMipmapLevel = mipmapEntry.getKey();
-            if (currentMipmapLevel < mipmapLevel) {
-                downSampleLevels = mipmapLevel - currentMipmapLevel;
-            }
-
-            final ImageProcessor imageProcessor = imageProcessorCache.get(imageAndMask.getImageUrl(),
-                                                                          downSampleLevels,
-                                                                          false,
-                                                                          channelSpec.is16Bit(),
-                                                                          imageAndMask.getImageLoaderType(),
-                                                                          imageAndMask.getImageSliceNumber());
+            final ChannelSpec channelSpec = channelLoad.channelSpec;
+            final ImageProcessor imageProcessor = channelLoad.getImage();
 
             if (imageProcessor.getWidth() == firstChannelWidth && imageProcessor.getWidth() == firstChannelHeight) {
 
                 // open mask
-                final ImageProcessor maskProcessor;
-                final String maskUrl = imageAndMask.getMaskUrl();
-                if ((maskUrl != null) && (! excludeMask)) {
-                    maskProcessor = imageProcessorCache.get(maskUrl,
-                                                            downSampleLevels,
-                                                            true,
-                                                            false,
-                                                            imageAndMask.getMaskLoaderType(),
-                                                            imageAndMask.getMaskSliceNumber());
-                } else {
-                    maskProcessor = null;
-                }
+                final ImageProcessor maskProcessor = channelLoad.getMask();
 
                 setMinAndMaxIntensity(imageProcessor, channelSpec);
 
@@ -243,7 +232,7 @@ public class UrlMipmapSource
             } else {
 
                 LOG.warn("loadAdditionalChannels: skipping {} channel {} mipmap {} because level {} dimensions ({}x{}) differ from primary channel ({}x{})",
-                         getSourceName(), channelSpec.getName(), imageAndMask.getImageUrl(),
+                         getSourceName(), channelSpec.getName(), channelLoad.imageAndMask.getImageUrl(),
                          mipmapLevel, imageProcessor.getWidth(), imageProcessor.getHeight(),
                          firstChannelWidth, firstChannelHeight);
             }
@@ -281,6 +270,145 @@ public class UrlMipmapSource
         imageProcessor.setMinAndMax(minChannelIntensity, maxChannelIntensity);
     }
 
+    /**
+     * Image and mask loads for one channel at a specific mipmap level.
+     * Loads that have not been started (or that are still queued for the shared load executor)
+     * are run on the calling thread when their data is requested.
+     */
+    private class ChannelLoad {
+
+        private final ChannelSpec channelSpec;
+        private final ImageAndMask imageAndMask;
+        private final int currentMipmapLevel;
+        private final int downSampleLevels;
+        private FutureTask<ImageProcessor> imageFuture;
+        private FutureTask<ImageProcessor> maskFuture;
+
+        ChannelLoad(final ChannelSpec channelSpec,
+                    final int mipmapLevel) {
+            this.channelSpec = channelSpec;
+            final Map.Entry<Integer, ImageAndMask> mipmapEntry = channelSpec.getFloorMipmapEntry(mipmapLevel);
+            this.imageAndMask = mipmapEntry.getValue();
+            this.currentMipmapLevel = mipmapEntry.getKey();
+            this.downSampleLevels = Math.max(0, mipmapLevel - currentMipmapLevel);
+            this.imageFuture = null;
+            this.maskFuture = null;
+        }
+
+        boolean hasMask() {
+            return (imageAndMask.getMaskUrl() != null) && (! excludeMask);
+        }
+
+        void startLoads(final boolean includeImage) {
+            if (includeImage) {
+                imageFuture = new FutureTask<>(this::loadImage);
+                LOAD_EXECUTOR.execute(imageFuture);
+            }
+            if (hasMask()) {
+                maskFuture = new FutureTask<>(this::loadMask);
+                LOAD_EXECUTOR.execute(maskFuture);
+            }
+        }
+
+        ImageProcessor getImage()
+                throws IllegalArgumentException {
+            return imageFuture == null ? loadImage() : getLoadedProcessor(imageFuture, imageAndMask.getImageUrl());
+        }
+
+        ImageProcessor getMask()
+                throws IllegalArgumentException {
+            final ImageProcessor maskProcessor;
+            if (maskFuture != null) {
+                maskProcessor = getLoadedProcessor(maskFuture, imageAndMask.getMaskUrl());
+            } else if (hasMask()) {
+                maskProcessor = loadMask();
+            } else {
+                maskProcessor = null;
+            }
+            return maskProcessor;
+        }
+
+        void cancel() {
+            if (imageFuture != null) {
+                imageFuture.cancel(false);
+                LOAD_EXECUTOR.remove(imageFuture);
+            }
+            if (maskFuture != null) {
+                maskFuture.cancel(false);
+                LOAD_EXECUTOR.remove(maskFuture);
+            }
+        }
+
+        private ImageProcessor loadImage() {
+            return imageProcessorCache.get(imageAndMask.getImageUrl(),
+                                           downSampleLevels,
+                                           false,
+                                           channelSpec.is16Bit(),
+                                           imageAndMask.getImageLoaderType(),
+                                           imageAndMask.getImageSliceNumber());
+        }
+
+        private ImageProcessor loadMask() {
+            return imageProcessorCache.get(imageAndMask.getMaskUrl(),
+                                           downSampleLevels,
+                                           true,
+                                           false,
+                                           imageAndMask.getMaskLoaderType(),
+                                           imageAndMask.getMaskSliceNumber());
+        }
+    }
+
+    /**
+     * Runs the specified load on the calling thread if it is still queued
+     * (a future task only runs once, so the queued copy becomes a no-op) and then waits for it to complete.
+     *
+     * @return the processor loaded by the specified future, rethrowing the original cause of any load failure.
+     */
+    private static ImageProcessor getLoadedProcessor(final FutureTask<ImageProcessor> future,
+                                                     final String url)
+            throws IllegalArgumentException {
+        if (LOAD_EXECUTOR.remove(future)) {
+            LOG.debug("getLoadedProcessor: loading queued {} on calling thread", url);
+        }
+        future.run();
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while loading " + url, e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalArgumentException("failed to load " + url, cause);
+        }
+    }
+
+    private static ThreadPoolExecutor buildLoadExecutor() {
+        // loads are mostly I/O bound, so allow more threads than processors
+        final int threadCount = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+        final AtomicInteger threadNumber = new AtomicInteger(0);
+        final ThreadFactory threadFactory = runnable -> {
+            final Thread thread = new Thread(runnable, "url-mipmap-load-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount,
+                                                                   threadCount,
+                                                                   60L,
+                                                                   TimeUnit.SECONDS,
+                                                                   new LinkedBlockingQueue<>(),
+                                                                   threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // shared by all sources so that concurrent renders do not each create their own threads
+    private static final ThreadPoolExecutor LOAD_EXECUTOR = buildLoadExecutor();
+
     private static final Logger LOG = LoggerFactory.getLogger(UrlMipmapSource.class);
 
 }
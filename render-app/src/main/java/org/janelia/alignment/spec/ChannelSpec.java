@@ -1,11 +1,14 @@
 package org.janelia.alignment.spec;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
 import java.io.Serializable;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
 
 import org.janelia.alignment.ImageAndMask;
+import org.janelia.alignment.json.InternedStringDeserializer;
 import org.janelia.alignment.spec.stack.MipmapPathBuilder;
 
 /**
@@ -15,6 +18,7 @@ import org.janelia.alignment.spec.stack.MipmapPathBuilder;
  */
 public class ChannelSpec implements Serializable {
 
+    @JsonDeserialize(using = InternedStringDeserializer.class)
     private final String name;
     private Double minIntensity;
     private Double maxIntensity;
@@ -0,0 +1,323 @@
+package org.janelia.alignment.spec;
+
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+
+import org.janelia.alignment.json.JsonUtils;
+
+/**
+ * Intensity statistics for a source image (or an aggregation of statistics for many source images).
+ *
+ * Statistics are computed once (e.g. when mipmaps are generated) and stored in a catalog
+ * so that intensity range derivations for a layer or stack can be answered with metadata queries
+ * instead of reading every full resolution source image.
+ *
+ * @author Eric Trautman
+ */
+public class ImageStatistics
+        implements Serializable {
+
+    /** Number of histogram bins for all statistics (simplifies aggregation). */
+    public static final int HISTOGRAM_BIN_COUNT = 256;
+
+    private final String imageUrl;
+    private final Integer imageSliceNumber;
+    private final long pixelCount;
+    private final double min;
+    private final double max;
+    private final double mean;
+    private final double histogramMin;
+    private final double histogramMax;
+    private final long[] histogram;
+
+    // no-arg constructor needed for JSON deserialization
+    @SuppressWarnings("unused")
+    private ImageStatistics() {
+        this(null, null, 0, 0.0, 0.0, 0.0, 0.0, 0.0, null);
+    }
+
+    /**
+     * @param  imageUrl          URL of the source image (or null for aggregated statistics).
+     * @param  imageSliceNumber  slice number of the source image within a stack image (or null for single images).
+     * @param  pixelCount        number of (unmasked) pixels included in the statistics.
+     * @param  min               minimum pixel intensity.
+     * @param  max               maximum pixel intensity.
+     * @param  mean              mean pixel intensity.
+     * @param  histogramMin      intensity for the lower edge of the first histogram bin.
+     * @param  histogramMax      intensity for the upper edge of the last histogram bin.
+     * @param  histogram         pixel counts for {@link #HISTOGRAM_BIN_COUNT} equally sized bins.
+     */
+    public ImageStatistics(final String imageUrl,
+                           final Integer imageSliceNumber,
+                           final long pixelCount,
+                           final double min,
+                           final double max,
+                           final double mean,
+                           final double histogramMin,
+                           final double histogramMax,
+                           final long[] histogram) {
+        this.imageUrl = imageUrl;
+        this.imageSliceNumber = imageSliceNumber;
+        this.pixelCount = pixelCount;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.histogramMin = histogramMin;
+        this.histogramMax = histogramMax;
+        this.histogram = histogram;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public Integer getImageSliceNumber() {
+        return imageSliceNumber;
+    }
+
+    public long getPixelCount() {
+        return pixelCount;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getHistogramMin() {
+        return histogramMin;
+    }
+
+    public double getHistogramMax() {
+        return histogramMax;
+    }
+
+    public long[] getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * @param  fraction  percentile fraction (e.g. 0.001 or 0.999) for the desired clip point.
+     *
+     * @return approximate intensity for the specified percentile clamped to this image's min and max intensities.
+     *         The intensity is linearly interpolated within the histogram bin that contains the percentile
+     *         (assuming the bin's pixels are evenly spread across the bin).
+     */
+    public double getPercentileIntensity(final double fraction) {
+
+        double intensity = min;
+
+        if ((histogram != null) && (pixelCount > 0)) {
+            final long targetCount = Math.max(1, (long) Math.ceil(fraction * pixelCount));
+            final double binWidth = getBinWidth(histogramMin, histogramMax);
+            long cumulativeCount = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                final long previousCount = cumulativeCount;
+                cumulativeCount += histogram[i];
+                if (cumulativeCount >= targetCount) {
+                    final double fractionOfBin = (double) (targetCount - previousCount - 1) / histogram[i];
+                    intensity = histogramMin + ((i + fractionOfBin) * binWidth);
+                    break;
+                }
+            }
+        }
+
+        return Math.max(min, Math.min(max, intensity));
+    }
+
+    public String toJson() {
+        return JSON_HELPER.toJson(this);
+    }
+
+    @Override
+    public String toString() {
+        return "{imageUrl: " + imageUrl + ", imageSliceNumber: " + imageSliceNumber + ", pixelCount: " + pixelCount +
+               ", min: " + min + ", max: " + max + ", mean: " + mean + '}';
+    }
+
+    public static ImageStatistics fromJson(final String json) {
+        return JSON_HELPER.fromJson(json);
+    }
+
+    public static List<ImageStatistics> fromJsonArray(final String json) {
+        return JSON_HELPER.fromJsonArray(json);
+    }
+
+    /**
+     * Computes statistics for the specified image in a single pass over its pixels
+     * (two passes for 16-bit and floating point images since their histogram range is the image's
+     * actual intensity range rather than the full range of the pixel type).
+     *
+     * @param  imageUrl          URL of the source image.
+     * @param  imageSliceNumber  slice number of the source image within a stack image (or null for single images).
+     * @param  imageProcessor    source image pixels.
+     * @param  maskProcessor     optional source mask (pixels with zero mask values are excluded).
+     *
+     * @return statistics for the specified image.
+     */
+    public static ImageStatistics fromImageProcessor(final String imageUrl,
+                                                     final Integer imageSliceNumber,
+                                                     final ImageProcessor imageProcessor,
+                                                     final ImageProcessor maskProcessor) {
+
+        final ImageProcessor ip = imageProcessor instanceof ColorProcessor ?
+                                  imageProcessor.convertToByteProcessor() : imageProcessor;
+        final int numberOfPixels = ip.getPixelCount();
+        final boolean isMasked = (maskProcessor != null) && (maskProcessor.getPixelCount() == numberOfPixels);
+
+        final double histogramMin;
+        final double histogramMax;
+        if (ip instanceof ByteProcessor) {
+            histogramMin = 0;
+            histogramMax = 256;
+        } else {
+            double valueMin = Double.MAX_VALUE;
+            double valueMax = -Double.MAX_VALUE;
+            for (int i = 0; i < numberOfPixels; i++) {
+                if ((! isMasked) || (maskProcessor.get(i) != 0)) {
+                    final float value = ip.getf(i);
+                    valueMin = Math.min(valueMin, value);
+                    valueMax = Math.max(valueMax, value);
+                }
+            }
+            if (valueMin > valueMax) {
+                histogramMin = 0;
+                histogramMax = 0;
+            } else if (ip instanceof ShortProcessor) {
+                // include the upper edge of the max integer value so that it has the same bin width as the others
+                histogramMin = valueMin;
+                histogramMax = valueMax + 1;
+            } else {
+                histogramMin = valueMin;
+                histogramMax = valueMax;
+            }
+        }
+
+        final long[] histogram = new long[HISTOGRAM_BIN_COUNT];
+        final double binWidth = getBinWidth(histogramMin, histogramMax);
+        long pixelCount = 0;
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        double sum = 0;
+        for (int i = 0; i < numberOfPixels; i++) {
+            if ((! isMasked) || (maskProcessor.get(i) != 0)) {
+                final float value = ip.getf(i);
+                pixelCount++;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                sum += value;
+                histogram[getBinIndex(value, histogramMin, binWidth)]++;
+            }
+        }
+
+        if (pixelCount == 0) {
+            min = 0;
+            max = 0;
+        }
+
+        return new ImageStatistics(imageUrl,
+                                   imageSliceNumber,
+                                   pixelCount,
+                                   min,
+                                   max,
+                                   pixelCount == 0 ? 0 : sum / pixelCount,
+                                   histogramMin,
+                                   histogramMax,
+                                   histogram);
+    }
+
+    /**
+     * Aggregates the specified statistics (e.g. for all tiles in a layer).
+     * Histograms with different ranges are re-binned (by bin center) into a histogram
+     * that covers the range of all source histograms.
+     *
+     * @param  statisticsList  statistics to aggregate.
+     *
+     * @return aggregated statistics (without an image URL) or null if the list is empty.
+     */
+    public static ImageStatistics aggregate(final Collection<ImageStatistics> statisticsList) {
+
+        ImageStatistics aggregatedStatistics = null;
+
+        if (statisticsList.size() > 0) {
+
+            long pixelCount = 0;
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            double sum = 0;
+            double histogramMin = Double.MAX_VALUE;
+            double histogramMax = -Double.MAX_VALUE;
+            for (final ImageStatistics statistics : statisticsList) {
+                if (statistics.pixelCount > 0) {
+                    pixelCount += statistics.pixelCount;
+                    min = Math.min(min, statistics.min);
+                    max = Math.max(max, statistics.max);
+                    sum += statistics.mean * statistics.pixelCount;
+                    // empty (e.g. fully masked) images have no meaningful range, so only widen for others
+                    histogramMin = Math.min(histogramMin, statistics.histogramMin);
+                    histogramMax = Math.max(histogramMax, statistics.histogramMax);
+                }
+            }
+
+            if (pixelCount == 0) {
+                min = 0;
+                max = 0;
+                histogramMin = 0;
+                histogramMax = 0;
+            }
+
+            final long[] histogram = new long[HISTOGRAM_BIN_COUNT];
+            final double binWidth = getBinWidth(histogramMin, histogramMax);
+            for (final ImageStatistics statistics : statisticsList) {
+                if ((statistics.pixelCount > 0) && (statistics.histogram != null)) {
+                    final double sourceBinWidth = getBinWidth(statistics.histogramMin, statistics.histogramMax);
+                    for (int i = 0; i < statistics.histogram.length; i++) {
+                        final double binCenter = statistics.histogramMin + ((i + 0.5) * sourceBinWidth);
+                        histogram[getBinIndex(binCenter, histogramMin, binWidth)] += statistics.histogram[i];
+                    }
+                }
+            }
+
+            aggregatedStatistics = new ImageStatistics(null,
+                                                       null,
+                                                       pixelCount,
+                                                       min,
+                                                       max,
+                                                       pixelCount == 0 ? 0 : sum / pixelCount,
+                                                       histogramMin,
+                                                       histogramMax,
+                                                       histogram);
+        }
+
+        return aggregatedStatistics;
+    }
+
+    private static double getBinWidth(final double histogramMin,
+                                      final double histogramMax) {
+        final double range = histogramMax - histogramMin;
+        return range > 0 ? range / HISTOGRAM_BIN_COUNT : 1.0;
+    }
+
+    private static int getBinIndex(final double value,
+                                   final double histogramMin,
+                                   final double binWidth) {
+        final int index = (int) ((value - histogramMin) / binWidth);
+        return Math.max(0, Math.min(HISTOGRAM_BIN_COUNT - 1, index));
+    }
+
+    private static final JsonUtils.Helper<ImageStatistics> JSON_HELPER =
+            new JsonUtils.Helper<>(ImageStatistics.class);
+}
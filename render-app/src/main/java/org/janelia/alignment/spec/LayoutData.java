@@ -1,7 +1,11 @@
 package org.janelia.alignment.spec;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
 import java.io.Serializable;
 
+import org.janelia.alignment.json.InternedStringDeserializer;
+
 import io.swagger.annotations.ApiModelProperty;
 
 /**
@@ -12,12 +16,15 @@ import io.swagger.annotations.ApiModelProperty;
 public class LayoutData implements Serializable {
 
     @ApiModelProperty(value = "Immutable section identifier for tile (typically text form of z value from acquisition system)")
+    @JsonDeserialize(using = InternedStringDeserializer.class)
     private final String sectionId;
 
     @ApiModelProperty(value = "Identifies camera array used for tile acquisition")
+    @JsonDeserialize(using = InternedStringDeserializer.class)
     private final String temca;
 
     @ApiModelProperty(value = "Identifies camera used for tile acquisition")
+    @JsonDeserialize(using = InternedStringDeserializer.class)
     private final String camera;
 
     @ApiModelProperty(value = "Tile row from grid-based acquisition system")
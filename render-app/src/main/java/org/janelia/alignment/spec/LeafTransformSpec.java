@@ -16,11 +16,15 @@
  */
 package org.janelia.alignment.spec;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
 import java.util.Map;
 import java.util.Set;
 
 import mpicbg.models.CoordinateTransform;
 
+import org.janelia.alignment.json.InternedStringDeserializer;
+
 /**
  * Specifies a {@link mpicbg.trakem2.transform.CoordinateTransform} implementation
  * along with it's initialization properties.
@@ -31,7 +35,11 @@ public class LeafTransformSpec extends TransformSpec {
 
     public static final String TYPE = "leaf";
 
+    @JsonDeserialize(using = InternedStringDeserializer.class)
     private final String className;
+
+    // not interned since most leaf data (e.g. per-tile affine parameters) is unique to each tile
+    // and shared transforms (e.g. lens corrections) are already shared when references are resolved
     private final String dataString;
 
     private transient Class clazz;
@@ -0,0 +1,156 @@
+package org.janelia.alignment.spec;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.janelia.alignment.json.JsonUtils;
+
+/**
+ * Incrementally parses {@link ResolvedTileSpecCollection} JSON, handing each fully resolved tile spec
+ * to a consumer as soon as it is read so that callers can process large collections
+ * without holding every tile spec in memory.
+ *
+ * Tile specs can only be resolved after all shared transform specs have been read.
+ * When transform specs are written first (as done by {@link ResolvedTileSpecStreamWriter} and
+ * {@link ResolvedTileSpecCollection#toJson()}), tile specs are never buffered.
+ * Otherwise, tile specs are held until the transform specs have been parsed.
+ *
+ * @author Eric Trautman
+ */
+public class ResolvedTileSpecStreamReader {
+
+    private final Consumer<TileSpec> tileSpecConsumer;
+    private final Map<String, TransformSpec> transformIdToSpecMap;
+    private boolean transformSpecsRead;
+    private int tileSpecCount;
+
+    /**
+     * @param  tileSpecConsumer  consumer for each resolved tile spec.
+     */
+    public ResolvedTileSpecStreamReader(final Consumer<TileSpec> tileSpecConsumer) {
+        this.tileSpecConsumer = tileSpecConsumer;
+        this.transformIdToSpecMap = new HashMap<>();
+        this.transformSpecsRead = false;
+        this.tileSpecCount = 0;
+    }
+
+    /**
+     * @return map of all shared transform specs read so far.
+     */
+    public Map<String, TransformSpec> getTransformIdToSpecMap() {
+        return transformIdToSpecMap;
+    }
+
+    /**
+     * @return number of tile specs passed to the consumer so far.
+     */
+    public int getTileSpecCount() {
+        return tileSpecCount;
+    }
+
+    /**
+     * Parses the specified collection JSON, passing each resolved tile spec to this reader's consumer.
+     *
+     * @param  json  collection JSON to parse.
+     *
+     * @return number of tile specs read.
+     *
+     * @throws IllegalArgumentException
+     *   if the JSON cannot be parsed or if any tile spec references an unknown transform spec.
+     */
+    public int read(final Reader json)
+            throws IllegalArgumentException {
+
+        try (final JsonParser parser = JsonUtils.FAST_MAPPER.getFactory().createParser(json)) {
+
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("resolved tile spec collection JSON must start with an object");
+            }
+
+            List<TileSpec> unresolvedTileSpecs = new ArrayList<>();
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+                final String fieldName = parser.getCurrentName();
+                parser.nextToken();
+
+                if (ResolvedTileSpecStreamWriter.TRANSFORM_MAP_FIELD_NAME.equals(fieldName)) {
+
+                    readTransformSpecs(parser);
+                    unresolvedTileSpecs.forEach(this::resolveAndConsume);
+                    unresolvedTileSpecs = null;
+
+                } else if (ResolvedTileSpecStreamWriter.TILE_MAP_FIELD_NAME.equals(fieldName)) {
+
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        parser.nextToken();
+                        final TileSpec tileSpec = parser.readValueAs(TileSpec.class);
+                        if (transformSpecsRead) {
+                            resolveAndConsume(tileSpec);
+                        } else {
+                            unresolvedTileSpecs.add(tileSpec);
+                        }
+                    }
+
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            if (unresolvedTileSpecs != null) {
+                // collection did not contain any shared transform specs
+                transformSpecsRead = true;
+                unresolvedTileSpecs.forEach(this::resolveAndConsume);
+            }
+
+        } catch (final IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+
+        return tileSpecCount;
+    }
+
+    private void readTransformSpecs(final JsonParser parser)
+            throws IOException {
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            final TransformSpec transformSpec = parser.readValueAs(TransformSpec.class);
+            transformIdToSpecMap.put(transformSpec.getId(), transformSpec);
+        }
+
+        for (final TransformSpec transformSpec : transformIdToSpecMap.values()) {
+            if (! transformSpec.isFullyResolved()) {
+                transformSpec.resolveReferences(transformIdToSpecMap);
+            }
+        }
+
+        transformSpecsRead = true;
+    }
+
+    private void resolveAndConsume(final TileSpec tileSpec)
+            throws IllegalArgumentException {
+
+        final ListTransformSpec transforms = tileSpec.getTransforms();
+        if (! transforms.isFullyResolved()) {
+            transforms.resolveReferences(transformIdToSpecMap);
+            if (! transforms.isFullyResolved()) {
+                throw new IllegalArgumentException("tile " + tileSpec.getTileId() +
+                                                   " requires the following transform ids " +
+                                                   transforms.getUnresolvedIds());
+            }
+        }
+
+        tileSpecConsumer.accept(tileSpec);
+        tileSpecCount++;
+    }
+
+}
@@ -0,0 +1,115 @@
+package org.janelia.alignment.spec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.janelia.alignment.json.JsonUtils;
+
+/**
+ * Incrementally writes {@link ResolvedTileSpecCollection} JSON so that large collections can be
+ * streamed (e.g. directly from database cursors) without materializing the whole collection in memory.
+ *
+ * All shared transform specs must be written before the first tile spec.
+ * The written JSON has the same structure as {@link ResolvedTileSpecCollection#toJson()}, so it can be
+ * parsed with {@link ResolvedTileSpecCollection#fromJson} or {@link ResolvedTileSpecStreamReader}.
+ *
+ * @author Eric Trautman
+ */
+public class ResolvedTileSpecStreamWriter
+        implements Closeable {
+
+    static final String TRANSFORM_MAP_FIELD_NAME = "transformIdToSpecMap";
+    static final String TILE_MAP_FIELD_NAME = "tileIdToSpecMap";
+
+    private final JsonGenerator generator;
+    private boolean writingTileSpecs;
+    private int transformSpecCount;
+    private int tileSpecCount;
+
+    /**
+     * @param  outputStream  stream to write to.  The stream is not closed when this writer is closed.
+     */
+    public ResolvedTileSpecStreamWriter(final OutputStream outputStream)
+            throws IOException {
+        this.generator = JsonUtils.FAST_MAPPER.getFactory().createGenerator(outputStream);
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.generator.writeStartObject();
+        this.generator.writeObjectFieldStart(TRANSFORM_MAP_FIELD_NAME);
+        this.writingTileSpecs = false;
+        this.transformSpecCount = 0;
+        this.tileSpecCount = 0;
+    }
+
+    public int getTransformSpecCount() {
+        return transformSpecCount;
+    }
+
+    public int getTileSpecCount() {
+        return tileSpecCount;
+    }
+
+    /**
+     * Writes the specified shared transform spec.
+     *
+     * @throws IllegalStateException
+     *   if any tile specs have already been written.
+     */
+    public void writeTransformSpec(final TransformSpec transformSpec)
+            throws IllegalStateException, IOException {
+
+        if (writingTileSpecs) {
+            throw new IllegalStateException("transform specs must be written before tile specs");
+        }
+
+        generator.writeFieldName(transformSpec.getId());
+        generator.writeObject(transformSpec);
+        transformSpecCount++;
+    }
+
+    /**
+     * Writes the specified tile spec.
+     */
+    public void writeTileSpec(final TileSpec tileSpec)
+            throws IOException {
+
+        if (! writingTileSpecs) {
+            startTileSpecs();
+        }
+
+        generator.writeFieldName(tileSpec.getTileId());
+        generator.writeObject(tileSpec);
+        tileSpecCount++;
+    }
+
+    public void flush()
+            throws IOException {
+        generator.flush();
+    }
+
+    /**
+     * Completes the JSON document and flushes all written data to the underlying stream.
+     */
+    @Override
+    public void close()
+            throws IOException {
+
+        if (! writingTileSpecs) {
+            startTileSpecs();
+        }
+
+        generator.writeEndObject(); // tile map
+        generator.writeEndObject(); // collection
+        generator.close();
+    }
+
+    private void startTileSpecs()
+            throws IOException {
+        generator.writeEndObject(); // transform map
+        generator.writeObjectFieldStart(TILE_MAP_FIELD_NAME);
+        writingTileSpecs = true;
+    }
+
+}
@@ -17,6 +17,7 @@
 package org.janelia.alignment.spec;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 import java.awt.Rectangle;
 import java.awt.geom.Rectangle2D;
@@ -40,6 +41,7 @@ import mpicbg.trakem2.transform.TransformMesh;
 
 import org.janelia.alignment.ImageAndMask;
 import org.janelia.alignment.RenderParameters;
+import org.janelia.alignment.json.InternedStringDeserializer;
 import org.janelia.alignment.json.JsonUtils;
 import org.janelia.alignment.spec.stack.MipmapPathBuilder;
 
@@ -53,6 +55,7 @@ public class TileSpec implements Serializable {
 
     private String tileId;
     private LayoutData layout;
+    @JsonDeserialize(using = InternedStringDeserializer.class)
     private String groupId;
     private Double z;
     private Double minX;
@@ -71,6 +74,7 @@ public class TileSpec implements Serializable {
     private ListTransformSpec transforms;
     private double meshCellSize = RenderParameters.DEFAULT_MESH_CELL_SIZE;
 
+    @JsonDeserialize(contentUsing = InternedStringDeserializer.class)
     private Set<String> labels;
 
     /** cached mesh to speed up local coordinates calculations (see {@link #getLocalCoordinates}) */
@@ -1,9 +1,13 @@
 package org.janelia.alignment.spec;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
 import java.io.Serializable;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
+import org.janelia.alignment.json.InternedStringDeserializer;
+
 /**
  * Any information about a {@link TransformSpec} that is NOT directly needed for rendering
  * (not directly needed for implementation of the transformation).
@@ -15,6 +19,7 @@ public class TransformSpecMetaData implements Serializable {
     /** The default label for a lens correction transform. */
     public static final String LENS_CORRECTION_LABEL = "lens";
 
+    @JsonDeserialize(contentUsing = InternedStringDeserializer.class)
     private Set<String> labels;
 
     public TransformSpecMetaData() {
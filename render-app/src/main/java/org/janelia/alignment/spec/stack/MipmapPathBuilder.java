@@ -1,6 +1,7 @@
 package org.janelia.alignment.spec.stack;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 import java.io.Serializable;
 import java.util.AbstractMap;
@@ -9,7 +10,10 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.janelia.alignment.ImageAndMask;
+import org.janelia.alignment.Utils;
+import org.janelia.alignment.json.InternedStringDeserializer;
 import org.janelia.alignment.json.JsonUtils;
+import org.janelia.alignment.loader.ImageLoader.LoaderType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,6 +50,24 @@ import io.swagger.annotations.ApiModelProperty;
  *     The level is placed before the source file path to reduce the number of files in any one directory.
  * </p>
  *
+ * <p>
+ *     When the {@link StorageMode#TIFF_PYRAMID} storage mode is specified, all derived levels for a source
+ *     are stored as pages of one multi-page TIFF container (see {@link org.janelia.alignment.loader.TiffPyramidLoader}).
+ *     Derived URLs for that mode have the form:
+ * <pre>
+ *         file:[root path]/pyramid/[source (level 0) path].tif?level=[level]
+ * </pre>
+ * </p>
+ *
+ * <p>
+ *     When per slice levels are requested, separate 2D levels are derived for each slice of
+ *     {@link LoaderType#IMAGEJ_TIFF_STACK} sources by appending the slice number to the source path:
+ * <pre>
+ *         [root path]/[level]/[source (level 0) path].slice[slice number].[extension]
+ * </pre>
+ *     Without this option, derived levels for TIFF stack sources are expected to be stacks themselves.
+ * </p>
+ *
  * @author Eric Trautman
  */
 public class MipmapPathBuilder
@@ -65,10 +87,25 @@ public class MipmapPathBuilder
 
     public static final String DYNAMIC_MASK_PROTOCOL = "mask://";
 
+    /** Identifies how the derived levels for each source are stored. */
+    public enum StorageMode {
+
+        /** Each level is stored in a separate file (the default). */
+        FILE_PER_LEVEL,
+
+        /** All levels are stored as pages of one multi-page TIFF file per source. */
+        TIFF_PYRAMID
+    }
+
+    @JsonDeserialize(using = InternedStringDeserializer.class)
     private final String rootPath;
     private final Integer numberOfLevels;
+    @JsonDeserialize(using = InternedStringDeserializer.class)
     private final String extension;
+    @JsonDeserialize(using = InternedStringDeserializer.class)
     private final String imageMipmapPatternString;
+    private final StorageMode storageMode;
+    private final Boolean perSlice;
 
     private transient Pattern imageMipmapPattern;
 
@@ -79,12 +116,31 @@ public class MipmapPathBuilder
         this.numberOfLevels = null;
         this.extension = null;
         this.imageMipmapPatternString = null;
+        this.storageMode = null;
+        this.perSlice = null;
     }
 
     public MipmapPathBuilder(final String rootPath,
                              final Integer numberOfLevels,
                              final String extension,
                              final String imageMipmapPatternString) throws IllegalArgumentException {
+        this(rootPath, numberOfLevels, extension, imageMipmapPatternString, null);
+    }
+
+    public MipmapPathBuilder(final String rootPath,
+                             final Integer numberOfLevels,
+                             final String extension,
+                             final String imageMipmapPatternString,
+                             final StorageMode storageMode) throws IllegalArgumentException {
+        this(rootPath, numberOfLevels, extension, imageMipmapPatternString, storageMode, false);
+    }
+
+    public MipmapPathBuilder(final String rootPath,
+                             final Integer numberOfLevels,
+                             final String extension,
+                             final String imageMipmapPatternString,
+                             final StorageMode storageMode,
+                             final boolean perSlice) throws IllegalArgumentException {
 
         if (rootPath == null) {
             throw new IllegalArgumentException("rootPath must be specified for MipmapPathBuilder");
@@ -107,6 +163,18 @@ public class MipmapPathBuilder
         }
 
         this.imageMipmapPatternString = imageMipmapPatternString;
+
+        if (StorageMode.TIFF_PYRAMID.equals(storageMode)) {
+            if (! TIFF_EXTENSION.equals(this.extension)) {
+                throw new IllegalArgumentException("extension must be '" + TIFF_EXTENSION + "' for " +
+                                                   storageMode + " storage");
+            }
+            this.storageMode = storageMode;
+        } else {
+            this.storageMode = null; // omit default mode from JSON
+        }
+
+        this.perSlice = perSlice ? Boolean.TRUE : null; // omit default from JSON
     }
 
     @ApiModelProperty(
@@ -146,6 +214,27 @@ public class MipmapPathBuilder
         return imageMipmapPatternString;
     }
 
+    @ApiModelProperty(
+            value = "identifies how derived levels are stored (omit for FILE_PER_LEVEL)",
+            notes = "TIFF_PYRAMID stores all derived levels for a source in one multi-page TIFF file " +
+                    "to reduce the number of files that need to be created and looked up.")
+    public StorageMode getStorageMode() {
+        return storageMode == null ? StorageMode.FILE_PER_LEVEL : storageMode;
+    }
+
+    @ApiModelProperty(
+            value = "indicates whether separate 2D levels are derived for each slice of TIFF stack sources",
+            notes = "When true, the source slice number is included in derived paths so that levels for " +
+                    "different slices of the same stack do not collide.")
+    public boolean isPerSlice() {
+        return (perSlice != null) && perSlice;
+    }
+
+    @JsonIgnore
+    public boolean isTiffPyramid() {
+        return StorageMode.TIFF_PYRAMID.equals(storageMode);
+    }
+
     @JsonIgnore
     public Pattern getImageMipmapPattern() {
         if ((imageMipmapPattern == null) && (imageMipmapPatternString != null)) {
@@ -155,7 +244,10 @@ public class MipmapPathBuilder
     }
 
     public boolean hasSamePathAndExtension(final MipmapPathBuilder that) {
-        return this.rootPath.equals(that.rootPath) && this.extension.equals(that.extension);
+        return this.rootPath.equals(that.rootPath) &&
+               this.extension.equals(that.extension) &&
+               (this.isTiffPyramid() == that.isTiffPyramid()) &&
+               (this.isPerSlice() == that.isPerSlice());
     }
 
     public String toJson() {
@@ -183,10 +275,16 @@ public class MipmapPathBuilder
 
         final ImageAndMask sourceImageAndMask = sourceEntry.getValue();
 
+        final Integer derivedImageSlice =
+                imageMipmapPatternString == null ? getPerSliceNumber(sourceImageAndMask.getImageLoaderType(),
+                                                                     sourceImageAndMask.getImageSliceNumber()) : null;
+        final Integer derivedMaskSlice = getPerSliceNumber(sourceImageAndMask.getMaskLoaderType(),
+                                                           sourceImageAndMask.getMaskSliceNumber());
+
         final String derivedImageUrl;
         if (imageMipmapPatternString == null) {
 
-            derivedImageUrl = deriveMipmapUrl(sourceImageAndMask.getImageUrl(), derivedLevel);
+            derivedImageUrl = deriveMipmapUrl(sourceImageAndMask.getImageUrl(), derivedLevel, derivedImageSlice);
 
         } else {
 
@@ -211,11 +309,36 @@ public class MipmapPathBuilder
 
             String derivedMaskUrl = null;
             if (sourceImageAndMask.hasMask()) {
-                derivedMaskUrl = deriveMipmapUrl(sourceImageAndMask.getMaskUrl(), derivedLevel);
+                derivedMaskUrl = deriveMipmapUrl(sourceImageAndMask.getMaskUrl(), derivedLevel, derivedMaskSlice);
             }
 
-            final ImageAndMask derivedImageAndMask = sourceImageAndMask.copyWithDerivedUrls(derivedImageUrl,
-                                                                                            derivedMaskUrl);
+            final ImageAndMask derivedImageAndMask;
+            if (isTiffPyramid()) {
+                final LoaderType derivedImageLoaderType =
+                        imageMipmapPatternString == null ? LoaderType.TIFF_PYRAMID : sourceImageAndMask.getImageLoaderType();
+                final Integer derivedImageSliceNumber =
+                        imageMipmapPatternString == null ? null : sourceImageAndMask.getImageSliceNumber();
+                final boolean isDynamicMask = LoaderType.DYNAMIC_MASK.equals(sourceImageAndMask.getMaskLoaderType());
+                derivedImageAndMask = new ImageAndMask(derivedImageUrl,
+                                                       derivedImageLoaderType,
+                                                       derivedImageSliceNumber,
+                                                       derivedMaskUrl,
+                                                       isDynamicMask ? LoaderType.DYNAMIC_MASK : LoaderType.TIFF_PYRAMID,
+                                                       null);
+            } else if ((derivedImageSlice != null) || (derivedMaskSlice != null)) {
+                // per slice levels are plain 2D images, so they are loaded with the default loader
+                final boolean isImageSlice = derivedImageSlice != null;
+                final boolean isMaskSlice = (derivedMaskUrl != null) && (derivedMaskSlice != null);
+                derivedImageAndMask = new ImageAndMask(
+                        derivedImageUrl,
+                        isImageSlice ? null : sourceImageAndMask.getImageLoaderType(),
+                        isImageSlice ? null : sourceImageAndMask.getImageSliceNumber(),
+                        derivedMaskUrl,
+                        (derivedMaskUrl == null) || isMaskSlice ? null : sourceImageAndMask.getMaskLoaderType(),
+                        (derivedMaskUrl == null) || isMaskSlice ? null : sourceImageAndMask.getMaskSliceNumber());
+            } else {
+                derivedImageAndMask = sourceImageAndMask.copyWithDerivedUrls(derivedImageUrl, derivedMaskUrl);
+            }
 
             try {
                 if (validate) {
@@ -231,8 +354,17 @@ public class MipmapPathBuilder
         return derivedEntry;
     }
 
+    /**
+     * @return the source slice number if separate levels should be derived for the source's slice, otherwise null.
+     */
+    private Integer getPerSliceNumber(final LoaderType sourceLoaderType,
+                                      final Integer sourceSliceNumber) {
+        return isPerSlice() && LoaderType.IMAGEJ_TIFF_STACK.equals(sourceLoaderType) ? sourceSliceNumber : null;
+    }
+
     private String deriveMipmapUrl(final String urlString,
-                                   final int derivedLevel) {
+                                   final int derivedLevel,
+                                   final Integer sliceNumber) {
 
         final StringBuilder sb = new StringBuilder(256);
 
@@ -245,7 +377,11 @@ public class MipmapPathBuilder
         } else {
 
             sb.append(rootPath);
-            sb.append(derivedLevel);
+            if (isTiffPyramid()) {
+                sb.append(PYRAMID_DIRECTORY_NAME);
+            } else {
+                sb.append(derivedLevel);
+            }
 
             final int colonIndex = urlString.indexOf(':');
             if (colonIndex > -1) {
@@ -257,14 +393,32 @@ public class MipmapPathBuilder
                 sb.append(urlString);
             }
 
+            if (sliceNumber != null) {
+                sb.append(SLICE_PATH_PREFIX);
+                sb.append(sliceNumber);
+            }
+
             sb.append('.');
             sb.append(extension);
 
+            if (isTiffPyramid()) {
+                // make sure the level query parameter is not treated as part of a (scheme-less) file path
+                final String containerUrl = Utils.convertPathOrUriStringToUri(sb.toString()).toString();
+                sb.setLength(0);
+                sb.append(containerUrl);
+                sb.append("?level=");
+                sb.append(derivedLevel);
+            }
+
         }
 
         return sb.toString();
     }
 
+    private static final String TIFF_EXTENSION = "tif";
+    private static final String PYRAMID_DIRECTORY_NAME = "pyramid";
+    private static final String SLICE_PATH_PREFIX = ".slice";
+
     private static final Logger LOG = LoggerFactory.getLogger(MipmapPathBuilder.class);
 
     private static final JsonUtils.Helper<MipmapPathBuilder> JSON_HELPER =
@@ -165,7 +165,9 @@ public class StackVersion
             this.mipmapPathBuilder = new MipmapPathBuilder(mipmapPathBuilder.getRootPath(),
                                                            mipmapPathBuilder.getNumberOfLevels(),
                                                            mipmapPathBuilder.getExtension(),
-                                                           mipmapPathBuilder.getImageMipmapPatternString());
+                                                           mipmapPathBuilder.getImageMipmapPatternString(),
+                                                           mipmapPathBuilder.getStorageMode(),
+                                                           mipmapPathBuilder.isPerSlice());
         }
     }
 
@@ -383,5 +383,5 @@ public class AffineWarpField
         return defaultValues;
     }
 
-    private static final int VALUES_PER_AFFINE = 6;
+    static final int VALUES_PER_AFFINE = 6;
 }
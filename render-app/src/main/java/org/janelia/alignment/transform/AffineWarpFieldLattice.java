@@ -0,0 +1,103 @@
+package org.janelia.alignment.transform;
+
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+
+/**
+ * Immutable, thread safe evaluator for the coefficients of an n-linearly interpolated {@link AffineWarpField}.
+ *
+ * Affine coefficients are stored contiguously for each grid cell center (the lattice nodes)
+ * so that each evaluation is a simple bilinear lookup of the four surrounding nodes.
+ * Results are identical to those produced by the field's ImgLib2 accessor
+ * (n-linear interpolation of a border extended grid stretched across the field's pixel area),
+ * but evaluation does not position a shared accessor and allocates nothing.
+ *
+ * @author Eric Trautman
+ */
+class AffineWarpFieldLattice {
+
+    private final int rowCount;
+    private final int columnCount;
+    private final double xScale;
+    private final double yScale;
+    private final double[] nodeCoefficients;
+
+    /**
+     * @param  affineWarpField  field to evaluate.  Values are copied, so subsequent changes to the field
+     *                          are not reflected by this lattice.
+     */
+    AffineWarpFieldLattice(final AffineWarpField affineWarpField) {
+
+        this.rowCount = affineWarpField.getRowCount();
+        this.columnCount = affineWarpField.getColumnCount();
+        this.xScale = affineWarpField.getXScale();
+        this.yScale = affineWarpField.getYScale();
+
+        // re-order values from field order (all m00, then all m10, ...) to node order (m00, m10, ... for each node)
+        final double[] values = affineWarpField.getValues();
+        final int affineCount = rowCount * columnCount;
+        this.nodeCoefficients = new double[affineCount * AffineWarpField.VALUES_PER_AFFINE];
+        for (int node = 0; node < affineCount; node++) {
+            final int nodeOffset = node * AffineWarpField.VALUES_PER_AFFINE;
+            for (int i = 0; i < AffineWarpField.VALUES_PER_AFFINE; i++) {
+                nodeCoefficients[nodeOffset + i] = values[node + (i * affineCount)];
+            }
+        }
+    }
+
+    /**
+     * @return true if the specified field's coefficients can be evaluated with a lattice; otherwise false.
+     */
+    static boolean isSupported(final AffineWarpField affineWarpField) {
+        return affineWarpField.getInterpolatorFactory() instanceof NLinearInterpolatorFactory;
+    }
+
+    /**
+     * Populates the specified array with the interpolated affine coefficients for a warp field location.
+     *
+     * @param  x             x location relative to the warp field origin.
+     * @param  y             y location relative to the warp field origin.
+     * @param  coefficients  array to populate with coefficients in 'java' order: m00, m10, m01, m11, m02, m12
+     */
+    void getCoefficients(final double x,
+                         final double y,
+                         final double[] coefficients) {
+
+        // map location to lattice coordinates where each node is positioned at the center of a grid cell
+        final double u = (x / xScale) - 0.5;
+        final double v = (y / yScale) - 0.5;
+
+        final double uFloor = Math.floor(u);
+        final double vFloor = Math.floor(v);
+        final double uWeight = u - uFloor;
+        final double vWeight = v - vFloor;
+
+        // clamp node indexes to emulate border extension
+        final int column0 = clamp((int) uFloor, columnCount);
+        final int column1 = clamp((int) uFloor + 1, columnCount);
+        final int row0 = clamp((int) vFloor, rowCount);
+        final int row1 = clamp((int) vFloor + 1, rowCount);
+
+        final int offset00 = ((row0 * columnCount) + column0) * AffineWarpField.VALUES_PER_AFFINE;
+        final int offset01 = ((row0 * columnCount) + column1) * AffineWarpField.VALUES_PER_AFFINE;
+        final int offset10 = ((row1 * columnCount) + column0) * AffineWarpField.VALUES_PER_AFFINE;
+        final int offset11 = ((row1 * columnCount) + column1) * AffineWarpField.VALUES_PER_AFFINE;
+
+        final double w00 = (1.0 - uWeight) * (1.0 - vWeight);
+        final double w01 = uWeight * (1.0 - vWeight);
+        final double w10 = (1.0 - uWeight) * vWeight;
+        final double w11 = uWeight * vWeight;
+
+        for (int i = 0; i < AffineWarpField.VALUES_PER_AFFINE; i++) {
+            coefficients[i] = (w00 * nodeCoefficients[offset00 + i]) +
+                              (w01 * nodeCoefficients[offset01 + i]) +
+                              (w10 * nodeCoefficients[offset10 + i]) +
+                              (w11 * nodeCoefficients[offset11 + i]);
+        }
+    }
+
+    private static int clamp(final int index,
+                             final int count) {
+        return index < 0 ? 0 : (index >= count ? count - 1 : index);
+    }
+
+}
@@ -1,5 +1,8 @@
 package org.janelia.alignment.transform;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -16,6 +19,12 @@ import net.imglib2.view.composite.RealComposite;
 /**
  * Transform that utilizes an {@link AffineWarpField}.
  *
+ * Instances are safe to share across threads.
+ * Fields with n-linear interpolation (the default) are evaluated with a precomputed {@link AffineWarpFieldLattice}
+ * while fields with other interpolators use a separate ImgLib2 accessor for each thread.
+ * Fields loaded (via {@link #init}) from the same data string instance, as happens when many tiles reference
+ * the same shared transform spec, are decoded only once and share their field and lattice.
+ *
  * @author Eric Trautman
  */
 public class AffineWarpFieldTransform
@@ -26,8 +35,11 @@ public class AffineWarpFieldTransform
     private double[] locationOffsets;
     private AffineWarpField affineWarpField;
 
-    // ImgLib2 accessor for warp field
-    private RealRandomAccess<RealComposite<DoubleType>> warpFieldAccessor;
+    // precomputed evaluator for n-linear fields (null for fields with other interpolators)
+    private AffineWarpFieldLattice lattice;
+
+    // ImgLib2 accessors for warp field (one per thread since accessors are positioned for each evaluation)
+    private ThreadLocal<RealRandomAccess<RealComposite<DoubleType>>> warpFieldAccessors;
 
     /**
      * This constructor applies identity transform to entire space with no offset.
@@ -53,7 +65,7 @@ public class AffineWarpFieldTransform
 
         this.locationOffsets = locationOffsets;
         this.affineWarpField = affineWarpField;
-        setWarpFieldAccessor();
+        setEvaluator(null);
     }
 
     @Override
@@ -66,22 +78,12 @@ public class AffineWarpFieldTransform
     @Override
     public void applyInPlace(final double[] location) {
 
-        final double[] warpFieldLocation = { location[0] - locationOffsets[0], location[1] - locationOffsets[1] };
-
-        warpFieldAccessor.setPosition(warpFieldLocation);
-        final RealComposite<DoubleType> coefficients = warpFieldAccessor.get();
-
-        final double m00 = coefficients.get(0).getRealDouble();
-        final double m10 = coefficients.get(1).getRealDouble();
-        final double m01 = coefficients.get(2).getRealDouble();
-        final double m11 = coefficients.get(3).getRealDouble();
-        final double m02 = coefficients.get(4).getRealDouble();
-        final double m12 = coefficients.get(5).getRealDouble();
+        final double[] m = getCoefficients(location);
 
         // stolen from AffineModel2D.applyInPlace
         final double l0 = location[0];
-        location[0] = l0 * m00 + location[1] * m01 + m02;
-        location[1] = l0 * m10 + location[1] * m11 + m12;
+        location[0] = l0 * m[0] + location[1] * m[2] + m[4];
+        location[1] = l0 * m[1] + location[1] * m[3] + m[5];
     }
 
     /**
@@ -98,6 +100,14 @@ public class AffineWarpFieldTransform
     @Override
     public void init(final String data) throws IllegalArgumentException {
 
+        final SharedField sharedField = SHARED_FIELDS.getIfPresent(data);
+        if (sharedField != null) {
+            this.locationOffsets = sharedField.locationOffsets.clone();
+            this.affineWarpField = sharedField.affineWarpField;
+            setEvaluator(sharedField.lattice);
+            return;
+        }
+
         final String[] fields = data.split("\\s+");
 
         final int valuesStartIndex = 8;
@@ -153,7 +163,9 @@ public class AffineWarpFieldTransform
             throw new IllegalArgumentException("warp field data must contain at least " + valuesStartIndex + " fields");
         }
 
-        setWarpFieldAccessor();
+        setEvaluator(null);
+
+        SHARED_FIELDS.put(data, new SharedField(locationOffsets.clone(), affineWarpField, lattice));
     }
 
     @Override
@@ -187,6 +199,8 @@ public class AffineWarpFieldTransform
 
     /**
      * @return the warp field for this transform.
+     *         Fields loaded from shared data strings are shared by all transforms loaded from the same data,
+     *         so the returned field should not be modified.
      */
     public AffineWarpField getAffineWarpField() {
         return affineWarpField;
@@ -197,15 +211,10 @@ public class AffineWarpFieldTransform
      */
     public AffineModel2D getAffine(final double[] location) {
 
-        final double[] warpFieldLocation = { location[0] - locationOffsets[0], location[1] - locationOffsets[1] };
-
-        warpFieldAccessor.setPosition(warpFieldLocation);
-        final RealComposite<DoubleType> coefficients = warpFieldAccessor.get();
+        final double[] m = getCoefficients(location);
 
         final AffineModel2D model = new AffineModel2D();
-        model.set(coefficients.get(0).getRealDouble(), coefficients.get(1).getRealDouble(),
-                  coefficients.get(2).getRealDouble(), coefficients.get(3).getRealDouble(),
-                  coefficients.get(4).getRealDouble(), coefficients.get(5).getRealDouble());
+        model.set(m[0], m[1], m[2], m[3], m[4], m[5]);
 
         return model;
     }
@@ -251,10 +260,56 @@ public class AffineWarpFieldTransform
                 "}";
     }
 
-    private void setWarpFieldAccessor() throws IllegalArgumentException {
-        // set accessor and validate interpolator factory instance
+    /**
+     * @return the (potentially interpolated) affine coefficients in 'java' order (m00, m10, m01, m11, m02, m12)
+     *         for the specified world location.
+     */
+    private double[] getCoefficients(final double[] location) {
+
+        final double x = location[0] - locationOffsets[0];
+        final double y = location[1] - locationOffsets[1];
+
+        final double[] coefficients = new double[6];
+
+        if (lattice == null) {
+            final RealRandomAccess<RealComposite<DoubleType>> warpFieldAccessor = warpFieldAccessors.get();
+            warpFieldAccessor.setPosition(x, 0);
+            warpFieldAccessor.setPosition(y, 1);
+            final RealComposite<DoubleType> composite = warpFieldAccessor.get();
+            for (int i = 0; i < coefficients.length; i++) {
+                coefficients[i] = composite.get(i).getRealDouble();
+            }
+        } else {
+            lattice.getCoefficients(x, y, coefficients);
+        }
+
+        return coefficients;
+    }
+
+    /**
+     * Sets up coefficient evaluation for this transform's warp field.
+     *
+     * @param  sharedLattice  previously built lattice for the field or null to build a new one (when supported).
+     *
+     * @throws IllegalArgumentException
+     *   if the field's interpolator factory is invalid.
+     */
+    private void setEvaluator(final AffineWarpFieldLattice sharedLattice)
+            throws IllegalArgumentException {
+
+        if (sharedLattice != null) {
+            lattice = sharedLattice;
+        } else if (AffineWarpFieldLattice.isSupported(affineWarpField)) {
+            lattice = new AffineWarpFieldLattice(affineWarpField);
+        } else {
+            lattice = null;
+        }
+
+        warpFieldAccessors = ThreadLocal.withInitial(affineWarpField::getAccessor);
+
+        // validate interpolator factory instance
         try {
-            warpFieldAccessor = affineWarpField.getAccessor();
+            warpFieldAccessors.get();
         } catch (final Exception e) {
             final String factoryClassName = affineWarpField.getInterpolatorFactory().getClass().getCanonicalName();
             throw new IllegalArgumentException("interpolator factory class '" + factoryClassName + "' does not implement required interface", e);
@@ -319,6 +374,28 @@ public class AffineWarpFieldTransform
         return factory;
     }
 
+    /** Decoded field data for a data string. */
+    private static class SharedField {
+
+        private final double[] locationOffsets;
+        private final AffineWarpField affineWarpField;
+        private final AffineWarpFieldLattice lattice;
+
+        SharedField(final double[] locationOffsets,
+                    final AffineWarpField affineWarpField,
+                    final AffineWarpFieldLattice lattice) {
+            this.locationOffsets = locationOffsets;
+            this.affineWarpField = affineWarpField;
+            this.lattice = lattice;
+        }
+    }
+
+    /**
+     * Decoded fields keyed by data string instance (weak keys use identity comparison),
+     * so entries are released once the transform specs that own the data strings are released.
+     */
+    private static final Cache<String, SharedField> SHARED_FIELDS = CacheBuilder.newBuilder().weakKeys().build();
+
     private static final String BASE_64_ENCODING = "base64";
     private static final String NO_ENCODING = "none";
 
@@ -7,6 +7,11 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import mpicbg.models.Affine2D;
 import mpicbg.models.AffineModel2D;
@@ -16,17 +21,12 @@ import org.janelia.alignment.spec.stack.HierarchicalStack;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import net.imglib2.Cursor;
 import net.imglib2.KDTree;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RealCursor;
 import net.imglib2.RealPoint;
 import net.imglib2.RealPointSampleList;
 import net.imglib2.RealRandomAccess;
-import net.imglib2.Sampler;
-import net.imglib2.img.array.ArrayImg;
-import net.imglib2.img.array.ArrayImgs;
-import net.imglib2.img.basictypeaccess.array.IntArray;
 import net.imglib2.interpolation.InterpolatorFactory;
 import net.imglib2.neighborsearch.NearestNeighborSearch;
 import net.imglib2.neighborsearch.NearestNeighborSearchOnKDTree;
@@ -45,6 +45,9 @@ import net.imglib2.view.composite.RealComposite;
  *
  * The {@link #toIndexGridString} method provides an "ASCII Voronoi diagram" of the mapped consensus sets.
  *
+ * Nearest neighbor searches for fine grids can be split across multiple threads
+ * (see {@link #ConsensusWarpFieldBuilder(double, double, int, int, int)}).
+ *
  * @author Eric Trautman
  */
 public class ConsensusWarpFieldBuilder {
@@ -58,11 +61,12 @@ public class ConsensusWarpFieldBuilder {
 
     private final double pixelsPerRow;
     private final double pixelsPerColumn;
+    private final int numberOfThreads;
     private final List<Affine2D> consensusSetModelList;
     private final RealPointSampleList<ARGBType> consensusSetIndexSamples;
 
     /**
-     * Sets up a field with the specified dimensions.
+     * Sets up a field with the specified dimensions that is built using a single thread.
      *
      * @param  width                pixel width of the warp field.
      * @param  height               pixel height of the warp field.
@@ -73,10 +77,28 @@ public class ConsensusWarpFieldBuilder {
                                      final double height,
                                      final int rowCount,
                                      final int columnCount) {
+        this(width, height, rowCount, columnCount, 1);
+    }
+
+    /**
+     * Sets up a field with the specified dimensions.
+     *
+     * @param  width                pixel width of the warp field.
+     * @param  height               pixel height of the warp field.
+     * @param  rowCount             number of affine rows in the warp field.
+     * @param  columnCount          number of affine columns in the warp field.
+     * @param  numberOfThreads      number of threads to use for assigning consensus sets to grid cells.
+     */
+    public ConsensusWarpFieldBuilder(final double width,
+                                     final double height,
+                                     final int rowCount,
+                                     final int columnCount,
+                                     final int numberOfThreads) {
         this.width = width;
         this.height = height;
         this.rowCount = rowCount;
         this.columnCount = columnCount;
+        this.numberOfThreads = Math.max(1, numberOfThreads);
 
         this.pixelsPerRow = height / rowCount;
         this.pixelsPerColumn = width / columnCount;
@@ -218,7 +240,7 @@ public class ConsensusWarpFieldBuilder {
         LOG.info("mergeBuilder: merged result contains {} consensus sets", setPairToPointsMap.size());
 
         final ConsensusWarpFieldBuilder mergedBuilder =
-                new ConsensusWarpFieldBuilder(width, height, rowCount, columnCount);
+                new ConsensusWarpFieldBuilder(width, height, rowCount, columnCount, numberOfThreads);
 
         for (final List<RealPoint> setPoints : setPairToPointsMap.values()) {
             mergedBuilder.addConsensusSetData(new AffineModel2D(), setPoints);
@@ -412,29 +434,72 @@ public class ConsensusWarpFieldBuilder {
 
         final int[] targetCellIndexes = new int[getNumberOfCells()];
 
-        final ArrayImg<ARGBType, IntArray> target = ArrayImgs.argbs(targetCellIndexes, columnCount, rowCount);
+        // the tree can be shared, but searches are stateful so each task needs its own search
         final KDTree<ARGBType> kdTree = new KDTree<>(consensusSetIndexSamples);
-        final NearestNeighborSearch<ARGBType> nnSearchSamples = new NearestNeighborSearchOnKDTree<>(kdTree);
-
-        final Cursor<ARGBType> targetCursor = target.localizingCursor();
 
-        Sampler<ARGBType> sampler;
-        ARGBType sampleItem;
-        ARGBType targetItem;
-        while (targetCursor.hasNext()) {
-
-            targetCursor.fwd();
-            nnSearchSamples.search(targetCursor);
-            sampler = nnSearchSamples.getSampler();
+        final int taskCount = Math.min(numberOfThreads, rowCount);
+        final int rowsPerTask = (int) Math.ceil((double) rowCount / taskCount);
+        final List<Callable<Void>> tasks = new ArrayList<>(taskCount);
+        for (int fromRow = 0; fromRow < rowCount; fromRow += rowsPerTask) {
+            final int taskFromRow = fromRow;
+            final int taskToRow = Math.min(fromRow + rowsPerTask, rowCount);
+            tasks.add(() -> {
+                assignNearestConsensusSets(kdTree, taskFromRow, taskToRow, targetCellIndexes);
+                return null;
+            });
+        }
 
-            sampleItem = sampler.get();
-            targetItem = targetCursor.get();
-            targetItem.set(sampleItem);
+        if (tasks.size() == 1) {
+            try {
+                tasks.get(0).call();
+            } catch (final Exception e) {
+                throw new IllegalStateException("failed to assign consensus sets to grid cells", e);
+            }
+        } else {
+            final ExecutorService executorService = Executors.newFixedThreadPool(tasks.size());
+            try {
+                final List<Future<Void>> futures = new ArrayList<>(tasks.size());
+                for (final Callable<Void> task : tasks) {
+                    futures.add(executorService.submit(task));
+                }
+                for (final Future<Void> future : futures) {
+                    future.get();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while assigning consensus sets to grid cells", e);
+            } catch (final ExecutionException e) {
+                throw new IllegalStateException("failed to assign consensus sets to grid cells", e.getCause());
+            } finally {
+                executorService.shutdownNow();
+            }
         }
 
         return targetCellIndexes;
     }
 
+    /**
+     * Assigns the nearest consensus set index to each cell in the specified rows.
+     * Cell indexes are stored in row major order (the same order used by an imglib2 grid image).
+     */
+    private void assignNearestConsensusSets(final KDTree<ARGBType> kdTree,
+                                            final int fromRow,
+                                            final int toRow,
+                                            final int[] targetCellIndexes) {
+
+        final NearestNeighborSearch<ARGBType> nnSearchSamples = new NearestNeighborSearchOnKDTree<>(kdTree);
+        final RealPoint cellLocation = new RealPoint(2);
+
+        for (int row = fromRow; row < toRow; row++) {
+            cellLocation.setPosition(row, 1);
+            for (int column = 0; column < columnCount; column++) {
+                cellLocation.setPosition(column, 0);
+                nnSearchSamples.search(cellLocation);
+                targetCellIndexes[(row * columnCount) + column] = nnSearchSamples.getSampler().get().get();
+            }
+        }
+    }
+
     private int getNumberOfConsensusSets(final int[] modelIndexGrid) {
         final Set<Integer> distinctModelIndexes = new HashSet<>();
         for (final int modelIndex : modelIndexGrid) {
@@ -0,0 +1,77 @@
+package org.janelia.alignment.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * JVM wide registry of named {@link TimingHistogram} instances for the phases of the render pipeline.
+ *
+ * Timings are always recorded (recording is cheap), so that long running processes like the render web service
+ * can report where render time is spent without enabling debug logging.
+ *
+ * @author Eric Trautman
+ */
+public class RenderMetrics {
+
+    /** Time to query (and resolve) the tile specs for a render. */
+    public static final String TILE_SPEC_QUERY = "tileSpecQuery";
+
+    /** Time to load (or retrieve from cache) a tile's image, mask, and additional channel pixels. */
+    public static final String TILE_LOAD = "tileLoad";
+
+    /** Time to create a tile's transform mesh. */
+    public static final String TILE_MESH = "tileMesh";
+
+    /** Time to map a tile's pixels to the render target. */
+    public static final String TILE_MAP = "tileMap";
+
+    /** Time a web service render request waits for a render thread. */
+    public static final String RENDER_QUEUE_WAIT = "renderQueueWait";
+
+    /** Time a web service render task runs (excluding queue wait and encoding). */
+    public static final String RENDER = "render";
+
+    /** Prefix for the time to encode a rendered image, the image format is appended to the prefix. */
+    public static final String IMAGE_ENCODE_PREFIX = "imageEncode.";
+
+    private static final ConcurrentMap<String, TimingHistogram> NAME_TO_HISTOGRAM = new ConcurrentHashMap<>();
+
+    /**
+     * Records the specified elapsed time in the named histogram (creating the histogram if necessary).
+     */
+    public static void record(final String name,
+                              final long elapsedMillis) {
+        NAME_TO_HISTOGRAM.computeIfAbsent(name, n -> new TimingHistogram()).record(elapsedMillis);
+    }
+
+    /**
+     * Records the time elapsed since the specified start time in the named histogram.
+     *
+     * @return the current time (to simplify timing of consecutive phases).
+     */
+    public static long recordSince(final String name,
+                                   final long startMillis) {
+        final long now = System.currentTimeMillis();
+        record(name, now - startMillis);
+        return now;
+    }
+
+    /**
+     * @return snapshots of all histograms sorted by name.
+     */
+    public static Map<String, TimingHistogram.Snapshot> getSnapshots() {
+        final Map<String, TimingHistogram.Snapshot> nameToSnapshot = new TreeMap<>();
+        NAME_TO_HISTOGRAM.forEach((name, histogram) -> nameToSnapshot.put(name, histogram.getSnapshot()));
+        return nameToSnapshot;
+    }
+
+    /**
+     * Discards all recorded timings.
+     */
+    public static void reset() {
+        NAME_TO_HISTOGRAM.clear();
+    }
+
+}
@@ -38,6 +38,10 @@ public class RenderWebServiceUrls implements Serializable {
         return baseDataUrl + "/likelyUniqueId";
     }
 
+    public String getImageStatisticsUrlString() {
+        return baseDataUrl + "/imageStatistics";
+    }
+
     public String getOwnerUrlString() {
         return baseDataUrl + "/owner/" + owner;
     }
@@ -0,0 +1,430 @@
+package org.janelia.alignment.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.janelia.alignment.Utils;
+
+/**
+ * Writes an 8-bit grayscale image to a PNG or (uncompressed) TIFF file one horizontal stripe at a time,
+ * so that very large images can be encoded without ever holding all of their pixels in memory.
+ *
+ * Stripes must be written in order from top to bottom and must cover the full image height before the
+ * writer is closed.
+ *
+ * @author Eric Trautman
+ */
+public abstract class StripedImageWriter
+        implements Closeable {
+
+    /**
+     * @param  format  image format name.
+     *
+     * @return true if striped writing is supported for the specified format.
+     */
+    public static boolean isSupportedFormat(final String format) {
+        return Utils.PNG_FORMAT.equals(format) || Utils.TIFF_FORMAT.equals(format) || Utils.TIF_FORMAT.equals(format);
+    }
+
+    /**
+     * Opens a writer for the specified file.
+     *
+     * @param  file            file to write.
+     * @param  format          image format (png, tif, or tiff).
+     * @param  width           image width.
+     * @param  height          image height.
+     * @param  pixelWidth      (optional) calibrated width of each pixel, only used for TIFF files.
+     * @param  pixelHeight     (optional) calibrated height of each pixel, only used for TIFF files.
+     * @param  resolutionUnit  (optional) unit for calibrated pixel sizes (e.g. 'nm'), only used for TIFF files.
+     *
+     * @return writer for the specified file.
+     *
+     * @throws IllegalArgumentException
+     *   if the format is not supported.
+     *
+     * @throws IOException
+     *   if the file cannot be opened.
+     */
+    public static StripedImageWriter open(final File file,
+                                          final String format,
+                                          final int width,
+                                          final int height,
+                                          final Double pixelWidth,
+                                          final Double pixelHeight,
+                                          final String resolutionUnit)
+            throws IllegalArgumentException, IOException {
+
+        final StripedImageWriter writer;
+        if (Utils.PNG_FORMAT.equals(format)) {
+            writer = new PngWriter(file, width, height);
+        } else if (Utils.TIFF_FORMAT.equals(format) || Utils.TIF_FORMAT.equals(format)) {
+            writer = new TiffWriter(file, width, height, pixelWidth, pixelHeight, resolutionUnit);
+        } else {
+            throw new IllegalArgumentException("striped writing is not supported for '" + format + "' images");
+        }
+        return writer;
+    }
+
+    private final int width;
+    private final int height;
+    private int rowsWritten;
+
+    protected final DataOutputStream out;
+
+    protected StripedImageWriter(final File file,
+                                 final int width,
+                                 final int height)
+            throws IOException {
+        if ((width < 1) || (height < 1)) {
+            throw new IllegalArgumentException("invalid image size " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.rowsWritten = 0;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * Writes the next stripe of the image.
+     *
+     * @param  pixels    row ordered gray pixels for the stripe (may contain more rows than are written).
+     * @param  rowCount  number of rows to write.
+     *
+     * @throws IllegalArgumentException
+     *   if the stripe would extend beyond the bottom of the image or does not contain enough pixels.
+     *
+     * @throws IOException
+     *   if the stripe cannot be written.
+     */
+    public void writeStripe(final byte[] pixels,
+                            final int rowCount)
+            throws IllegalArgumentException, IOException {
+
+        if ((rowCount < 1) || (rowsWritten + rowCount > height)) {
+            throw new IllegalArgumentException("cannot write " + rowCount + " rows after row " + rowsWritten +
+                                               " of an image with height " + height);
+        }
+        if (pixels.length < (long) rowCount * width) {
+            throw new IllegalArgumentException("stripe has " + pixels.length + " pixels but " + rowCount +
+                                               " rows of width " + width + " were requested");
+        }
+
+        writeRows(pixels, rowCount);
+        rowsWritten += rowCount;
+    }
+
+    /**
+     * Finishes encoding and closes the file.
+     *
+     * @throws IOException
+     *   if the file cannot be finished or if fewer rows than the image height were written.
+     */
+    @Override
+    public void close()
+            throws IOException {
+        try {
+            if (rowsWritten == height) {
+                finish();
+            } else {
+                throw new IOException("only " + rowsWritten + " out of " + height + " rows were written");
+            }
+        } finally {
+            release();
+            out.close();
+        }
+    }
+
+    protected abstract void writeRows(final byte[] pixels,
+                                      final int rowCount)
+            throws IOException;
+
+    protected abstract void finish()
+            throws IOException;
+
+    /**
+     * Releases any native resources held by the writer.
+     * Called when the writer is closed, even if the image could not be finished.
+     */
+    protected void release() {
+    }
+
+    /**
+     * Writes unfiltered rows into a deflate stream that is split into IDAT chunks as it is produced.
+     */
+    private static class PngWriter
+            extends StripedImageWriter {
+
+        private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+        private static final int MAX_CHUNK_SIZE = 64 * 1024;
+
+        private final Deflater deflater;
+        private final DeflaterOutputStream imageDataStream;
+
+        PngWriter(final File file,
+                  final int width,
+                  final int height)
+                throws IOException {
+
+            super(file, width, height);
+
+            out.write(SIGNATURE);
+
+            final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream(13);
+            final DataOutputStream header = new DataOutputStream(headerBytes);
+            header.writeInt(width);
+            header.writeInt(height);
+            header.writeByte(8); // bit depth
+            header.writeByte(0); // color type: grayscale
+            header.writeByte(0); // compression method: deflate
+            header.writeByte(0); // filter method: adaptive
+            header.writeByte(0); // interlace method: none
+            writeChunk("IHDR", headerBytes.toByteArray(), headerBytes.size());
+
+            this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+            this.imageDataStream = new DeflaterOutputStream(new ImageDataChunkStream(), deflater, MAX_CHUNK_SIZE);
+        }
+
+        @Override
+        protected void writeRows(final byte[] pixels,
+                                 final int rowCount)
+                throws IOException {
+            final int width = getWidth();
+            for (int row = 0; row < rowCount; row++) {
+                imageDataStream.write(0); // filter type: none
+                imageDataStream.write(pixels, row * width, width);
+            }
+        }
+
+        @Override
+        protected void finish()
+                throws IOException {
+            imageDataStream.close(); // flushes the final IDAT chunk
+            writeChunk("IEND", new byte[0], 0);
+        }
+
+        @Override
+        protected void release() {
+            deflater.end();
+        }
+
+        private void writeChunk(final String type,
+                                final byte[] data,
+                                final int length)
+                throws IOException {
+            final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+            final CRC32 crc = new CRC32();
+            crc.update(typeBytes);
+            crc.update(data, 0, length);
+            out.writeInt(length);
+            out.write(typeBytes);
+            out.write(data, 0, length);
+            out.writeInt((int) crc.getValue());
+        }
+
+        /**
+         * Buffers compressed image data and writes it as IDAT chunks.
+         */
+        private class ImageDataChunkStream
+                extends OutputStream {
+
+            private final byte[] buffer = new byte[MAX_CHUNK_SIZE];
+            private int count = 0;
+
+            @Override
+            public void write(final int b)
+                    throws IOException {
+                if (count == buffer.length) {
+                    flushChunk();
+                }
+                buffer[count++] = (byte) b;
+            }
+
+            @Override
+            public void write(final byte[] b,
+                              final int off,
+                              final int len)
+                    throws IOException {
+                int offset = off;
+                int remaining = len;
+                while (remaining > 0) {
+                    if (count == buffer.length) {
+                        flushChunk();
+                    }
+                    final int copyLength = Math.min(remaining, buffer.length - count);
+                    System.arraycopy(b, offset, buffer, count, copyLength);
+                    count += copyLength;
+                    offset += copyLength;
+                    remaining -= copyLength;
+                }
+            }
+
+            @Override
+            public void close()
+                    throws IOException {
+                flushChunk();
+            }
+
+            private void flushChunk()
+                    throws IOException {
+                if (count > 0) {
+                    writeChunk("IDAT", buffer, count);
+                    count = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a little endian TIFF with a single uncompressed strip.
+     * Since the size of uncompressed pixel data is known in advance, the image file directory can be written
+     * before any pixels which allows the file to be written sequentially.
+     */
+    private static class TiffWriter
+            extends StripedImageWriter {
+
+        private static final int RATIONAL_DENOMINATOR = 1000000;
+
+        TiffWriter(final File file,
+                   final int width,
+                   final int height,
+                   final Double pixelWidth,
+                   final Double pixelHeight,
+                   final String resolutionUnit)
+                throws IOException {
+
+            super(file, width, height);
+
+            final boolean hasResolution = (pixelWidth != null) && (pixelHeight != null) && (resolutionUnit != null);
+
+            // ImageJ reads calibration units from the image description
+            final byte[] description = hasResolution ?
+                                       ("ImageJ=\nunit=" + resolutionUnit + "\n\0").getBytes(StandardCharsets.UTF_8) :
+                                       new byte[0];
+
+            final int entryCount = hasResolution ? 13 : 9;
+            final int directoryOffset = 8;
+            final int extraDataOffset = directoryOffset + 2 + (entryCount * 12) + 4;
+            // rational values must start on a word boundary
+            final int descriptionPadding = description.length % 2;
+            final int xResolutionOffset = extraDataOffset + description.length + descriptionPadding;
+            final int yResolutionOffset = xResolutionOffset + 8;
+            final int pixelDataOffset = hasResolution ? yResolutionOffset + 8 : extraDataOffset;
+
+            // offsets and byte counts are unsigned 32-bit values in (non-BigTIFF) files
+            final long pixelByteCount = (long) width * height;
+            if (pixelDataOffset + pixelByteCount > 0xffffffffL) {
+                throw new IllegalArgumentException("uncompressed " + width + "x" + height +
+                                                   " image is too large for a TIFF file");
+            }
+
+            // header
+            out.writeByte('I');
+            out.writeByte('I');
+            writeShort(42);
+            writeInt(directoryOffset);
+
+            // image file directory (entries must be sorted by tag)
+            writeShort(entryCount);
+            writeEntry(256, LONG, 1, width);                            // ImageWidth
+            writeEntry(257, LONG, 1, height);                           // ImageLength
+            writeEntry(258, SHORT, 1, 8);                               // BitsPerSample
+            writeEntry(259, SHORT, 1, 1);                               // Compression: none
+            writeEntry(262, SHORT, 1, 1);                               // PhotometricInterpretation: BlackIsZero
+            if (hasResolution) {
+                writeEntry(270, ASCII, description.length, extraDataOffset); // ImageDescription
+            }
+            writeEntry(273, LONG, 1, pixelDataOffset);                  // StripOffsets
+            writeEntry(277, SHORT, 1, 1);                               // SamplesPerPixel
+            writeEntry(278, LONG, 1, height);                           // RowsPerStrip
+            writeEntry(279, LONG, 1, (int) pixelByteCount);             // StripByteCounts
+            if (hasResolution) {
+                writeEntry(282, RATIONAL, 1, xResolutionOffset);        // XResolution
+                writeEntry(283, RATIONAL, 1, yResolutionOffset);        // YResolution
+                writeEntry(296, SHORT, 1, 1);                           // ResolutionUnit: none
+            }
+            writeInt(0); // no more directories
+
+            if (hasResolution) {
+                out.write(description);
+                if (descriptionPadding > 0) {
+                    out.writeByte(0);
+                }
+                writeRational(1.0 / pixelWidth);
+                writeRational(1.0 / pixelHeight);
+            }
+        }
+
+        @Override
+        protected void writeRows(final byte[] pixels,
+                                 final int rowCount)
+                throws IOException {
+            out.write(pixels, 0, rowCount * getWidth());
+        }
+
+        @Override
+        protected void finish() {
+            // nothing to do since all pixel data offsets were written with the header
+        }
+
+        private void writeEntry(final int tag,
+                                final int type,
+                                final int count,
+                                final int value)
+                throws IOException {
+            writeShort(tag);
+            writeShort(type);
+            writeInt(count);
+            if ((type == SHORT) && (count == 1)) {
+                writeShort(value);
+                writeShort(0);
+            } else {
+                writeInt(value);
+            }
+        }
+
+        private void writeRational(final double value)
+                throws IOException {
+            writeInt((int) Math.round(value * RATIONAL_DENOMINATOR));
+            writeInt(RATIONAL_DENOMINATOR);
+        }
+
+        private void writeShort(final int value)
+                throws IOException {
+            out.writeByte(value & 0xff);
+            out.writeByte((value >> 8) & 0xff);
+        }
+
+        private void writeInt(final int value)
+                throws IOException {
+            out.writeInt(Integer.reverseBytes(value));
+        }
+
+        private static final int ASCII = 2;
+        private static final int SHORT = 3;
+        private static final int LONG = 4;
+        private static final int RATIONAL = 5;
+    }
+
+}
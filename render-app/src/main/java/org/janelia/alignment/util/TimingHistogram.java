@@ -0,0 +1,170 @@
+package org.janelia.alignment.util;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe histogram of elapsed times (in milliseconds) using fixed, roughly logarithmic buckets.
+ *
+ * Recording is lock free and allocation free, so histograms can be updated from
+ * hot render paths without measurable overhead.
+ * Percentiles are estimated from bucket upper bounds.
+ *
+ * @author Eric Trautman
+ */
+public class TimingHistogram {
+
+    /** Inclusive upper bound (in milliseconds) for each bucket except the last (overflow) bucket. */
+    private static final long[] BUCKET_UPPER_BOUNDS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1_000, 2_000, 5_000, 10_000, 30_000, 60_000
+    };
+
+    private final LongAdder[] bucketCounts;
+    private final LongAdder count;
+    private final LongAdder totalMillis;
+    private final LongAccumulator maxMillis;
+
+    public TimingHistogram() {
+        this.bucketCounts = new LongAdder[BUCKET_UPPER_BOUNDS.length + 1];
+        for (int i = 0; i < bucketCounts.length; i++) {
+            bucketCounts[i] = new LongAdder();
+        }
+        this.count = new LongAdder();
+        this.totalMillis = new LongAdder();
+        this.maxMillis = new LongAccumulator(Math::max, 0);
+    }
+
+    /**
+     * Records the specified elapsed time.  Negative values (e.g. from clock adjustments) are recorded as zero.
+     */
+    public void record(final long elapsedMillis) {
+        final long millis = Math.max(0, elapsedMillis);
+        bucketCounts[getBucketIndex(millis)].increment();
+        count.increment();
+        totalMillis.add(millis);
+        maxMillis.accumulate(millis);
+    }
+
+    /**
+     * @return a point in time snapshot of this histogram's values.
+     *         Values recorded concurrently with snapshot creation may only be partially reflected.
+     */
+    public Snapshot getSnapshot() {
+        final long[] counts = new long[bucketCounts.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = bucketCounts[i].sum();
+        }
+        return new Snapshot(counts, totalMillis.sum(), maxMillis.get());
+    }
+
+    static int getBucketIndex(final long millis) {
+        int index = 0;
+        while ((index < BUCKET_UPPER_BOUNDS.length) && (millis > BUCKET_UPPER_BOUNDS[index])) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Immutable (JSON friendly) summary of histogram values.
+     */
+    public static class Snapshot implements Serializable {
+
+        private final long count;
+        private final long totalMillis;
+        private final double meanMillis;
+        private final long maxMillis;
+        private final long p50Millis;
+        private final long p90Millis;
+        private final long p99Millis;
+        private final Map<String, Long> bucketCounts;
+
+        Snapshot(final long[] counts,
+                 final long totalMillis,
+                 final long maxMillis) {
+
+            long totalCount = 0;
+            for (final long bucketCount : counts) {
+                totalCount += bucketCount;
+            }
+
+            this.count = totalCount;
+            this.totalMillis = totalMillis;
+            this.meanMillis = totalCount == 0 ? 0.0 : (double) totalMillis / totalCount;
+            this.maxMillis = maxMillis;
+            this.p50Millis = getPercentile(counts, totalCount, 0.50, maxMillis);
+            this.p90Millis = getPercentile(counts, totalCount, 0.90, maxMillis);
+            this.p99Millis = getPercentile(counts, totalCount, 0.99, maxMillis);
+
+            this.bucketCounts = new LinkedHashMap<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    final String bucketName = i < BUCKET_UPPER_BOUNDS.length ?
+                                              "<=" + BUCKET_UPPER_BOUNDS[i] :
+                                              ">" + BUCKET_UPPER_BOUNDS[BUCKET_UPPER_BOUNDS.length - 1];
+                    this.bucketCounts.put(bucketName, counts[i]);
+                }
+            }
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalMillis() {
+            return totalMillis;
+        }
+
+        public double getMeanMillis() {
+            return meanMillis;
+        }
+
+        public long getMaxMillis() {
+            return maxMillis;
+        }
+
+        public long getP50Millis() {
+            return p50Millis;
+        }
+
+        public long getP90Millis() {
+            return p90Millis;
+        }
+
+        public long getP99Millis() {
+            return p99Millis;
+        }
+
+        public Map<String, Long> getBucketCounts() {
+            return bucketCounts;
+        }
+
+        /**
+         * @return upper bound of the bucket containing the specified percentile
+         *         (capped by the max recorded value since it is usually a tighter bound).
+         */
+        private static long getPercentile(final long[] counts,
+                                          final long totalCount,
+                                          final double percentile,
+                                          final long maxMillis) {
+            long percentileMillis = 0;
+            if (totalCount > 0) {
+                final long targetCount = (long) Math.ceil(percentile * totalCount);
+                long cumulativeCount = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    cumulativeCount += counts[i];
+                    if (cumulativeCount >= targetCount) {
+                        percentileMillis = i < BUCKET_UPPER_BOUNDS.length ? BUCKET_UPPER_BOUNDS[i] : maxMillis;
+                        break;
+                    }
+                }
+                percentileMillis = Math.min(percentileMillis, maxMillis);
+            }
+            return percentileMillis;
+        }
+    }
+
+}
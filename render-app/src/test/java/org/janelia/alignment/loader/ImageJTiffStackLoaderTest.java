@@ -0,0 +1,78 @@
+package org.janelia.alignment.loader;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.io.FileSaver;
+import ij.process.ByteProcessor;
+import ij.process.ImageProcessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ImageJTiffStackLoader} class.
+ *
+ * @author Eric Trautman
+ */
+public class ImageJTiffStackLoaderTest {
+
+    private File stackFile;
+
+    @Before
+    public void setup() throws IOException {
+        stackFile = File.createTempFile("test_stack_", ".tif");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(stackFile.toPath());
+        ImageJTiffStackLoader.clearDirectoryCache();
+    }
+
+    @Test
+    public void testLoadSlices() {
+
+        saveStack(10);
+
+        final String stackUrl = stackFile.toURI().toString();
+        for (int sliceNumber = 1; sliceNumber <= 3; sliceNumber++) {
+            final ImageProcessor sliceProcessor = new ImageJTiffStackLoader(sliceNumber).load(stackUrl);
+            Assert.assertEquals("invalid width for slice " + sliceNumber, 16, sliceProcessor.getWidth());
+            Assert.assertEquals("invalid height for slice " + sliceNumber, 8, sliceProcessor.getHeight());
+            Assert.assertEquals("invalid pixel value for slice " + sliceNumber,
+                                sliceNumber * 10, sliceProcessor.get(3, 4));
+        }
+
+        // rewrite stack with different values to verify that changed files are re-parsed
+        saveStack(20);
+        Assert.assertTrue("failed to change modification time",
+                          stackFile.setLastModified(stackFile.lastModified() + 10000));
+
+        final ImageProcessor changedProcessor = new ImageJTiffStackLoader(2).load(stackUrl);
+        Assert.assertEquals("invalid pixel value for changed slice", 40, changedProcessor.get(3, 4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadMissingSlice() {
+        saveStack(10);
+        new ImageJTiffStackLoader(4).load(stackFile.toURI().toString());
+    }
+
+    private void saveStack(final int valueMultiplier) {
+        final ImageStack stack = new ImageStack(16, 8);
+        for (int sliceNumber = 1; sliceNumber <= 3; sliceNumber++) {
+            final ByteProcessor sliceProcessor = new ByteProcessor(16, 8);
+            sliceProcessor.set(sliceNumber * valueMultiplier);
+            stack.addSlice(sliceProcessor);
+        }
+        Assert.assertTrue("failed to save stack",
+                          new FileSaver(new ImagePlus("test", stack)).saveAsTiffStack(stackFile.getAbsolutePath()));
+    }
+
+}
@@ -0,0 +1,71 @@
+package org.janelia.alignment.loader;
+
+import ij.process.ByteProcessor;
+import ij.process.ImageProcessor;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link TiffPyramidLoader} class.
+ *
+ * @author Eric Trautman
+ */
+public class TiffPyramidLoaderTest {
+
+    private File containerFile;
+
+    @Before
+    public void setup() throws IOException {
+        containerFile = File.createTempFile("test_pyramid_", ".tif");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(containerFile.toPath());
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+
+        final List<BufferedImage> levelImages = new ArrayList<>();
+        int width = 64;
+        int height = 48;
+        for (int level = 1; level < 4; level++) {
+            final ByteProcessor levelProcessor = new ByteProcessor(width, height);
+            levelProcessor.set(level * 10);
+            levelImages.add(levelProcessor.getBufferedImage());
+            width = width / 2;
+            height = height / 2;
+        }
+
+        TiffPyramidLoader.saveTiffPyramid(levelImages, containerFile);
+
+        final String containerUrl = containerFile.toURI().toString();
+        for (int level = 1; level < 4; level++) {
+            final BufferedImage expectedImage = levelImages.get(level - 1);
+            final ImageProcessor loadedProcessor = TiffPyramidLoader.INSTANCE.load(containerUrl + "?level=" + level);
+            Assert.assertEquals("invalid width for level " + level,
+                                expectedImage.getWidth(), loadedProcessor.getWidth());
+            Assert.assertEquals("invalid height for level " + level,
+                                expectedImage.getHeight(), loadedProcessor.getHeight());
+            Assert.assertEquals("invalid pixel value for level " + level,
+                                level * 10, loadedProcessor.get(0, 0));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLoadWithoutLevel() {
+        TiffPyramidLoader.INSTANCE.load(containerFile.toURI().toString());
+    }
+
+}
@@ -0,0 +1,75 @@
+package org.janelia.alignment.match;
+
+import ij.process.ByteProcessor;
+
+import java.util.List;
+import java.util.Random;
+
+import mpicbg.imagefeatures.Feature;
+import mpicbg.imagefeatures.FloatArray2DSIFT;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link CanvasFeatureExtractor} class.
+ *
+ * @author Eric Trautman
+ */
+public class CanvasFeatureExtractorTest {
+
+    @Test
+    public void testParallelExtraction() {
+
+        final ByteProcessor imageProcessor = buildBlobImage(1200, 1100);
+
+        final CanvasFeatureExtractor sequentialExtractor = buildExtractor();
+        final List<Feature> sequentialFeatures =
+                sequentialExtractor.extractFeaturesFromImageAndMask(imageProcessor, null);
+
+        final CanvasFeatureExtractor parallelExtractor = buildExtractor();
+        parallelExtractor.setNumberOfThreads(4);
+        final List<Feature> parallelFeatures =
+                parallelExtractor.extractFeaturesFromImageAndMask(imageProcessor, null);
+
+        Assert.assertTrue("no features extracted sequentially", sequentialFeatures.size() > 0);
+
+        final double countRatio = (double) parallelFeatures.size() / sequentialFeatures.size();
+        Assert.assertEquals("parallel extraction found " + parallelFeatures.size() +
+                            " features but sequential extraction found " + sequentialFeatures.size(),
+                            1.0, countRatio, 0.2);
+
+        for (final Feature feature : parallelFeatures) {
+            Assert.assertTrue("feature location " + feature.location[0] + "," + feature.location[1] +
+                              " is outside of image",
+                              (feature.location[0] >= 0) && (feature.location[0] < imageProcessor.getWidth()) &&
+                              (feature.location[1] >= 0) && (feature.location[1] < imageProcessor.getHeight()));
+        }
+
+        // thread count is an execution detail, so it should not distinguish extractors (e.g. for caching)
+        Assert.assertEquals("extractors with different thread counts should be equal",
+                            sequentialExtractor, parallelExtractor);
+        Assert.assertEquals("extractors with different thread counts should have the same hash code",
+                            sequentialExtractor.hashCode(), parallelExtractor.hashCode());
+    }
+
+    private static CanvasFeatureExtractor buildExtractor() {
+        final FloatArray2DSIFT.Param coreSiftParameters = new FloatArray2DSIFT.Param();
+        coreSiftParameters.fdSize = 4;
+        coreSiftParameters.steps = 3;
+        return new CanvasFeatureExtractor(coreSiftParameters, 0.25, 1.0);
+    }
+
+    private static ByteProcessor buildBlobImage(final int width,
+                                                final int height) {
+        final ByteProcessor imageProcessor = new ByteProcessor(width, height);
+        final Random random = new Random(7);
+        for (int i = 0; i < 600; i++) {
+            imageProcessor.setValue(random.nextInt(256));
+            final int size = 4 + random.nextInt(40);
+            imageProcessor.fillOval(random.nextInt(width), random.nextInt(height), size, size);
+        }
+        return imageProcessor;
+    }
+
+}
@@ -0,0 +1,112 @@
+package org.janelia.alignment.match;
+
+import ij.process.ByteProcessor;
+import ij.process.ShortProcessor;
+
+import java.awt.Rectangle;
+import java.util.List;
+import java.util.Random;
+
+import mpicbg.imglib.algorithm.scalespace.DifferenceOfGaussianPeak;
+import mpicbg.imglib.type.numeric.real.FloatType;
+
+import org.janelia.alignment.match.parameters.GeometricDescriptorParameters;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link CanvasPeakExtractor} class.
+ *
+ * @author Eric Trautman
+ */
+public class CanvasPeakExtractorTest {
+
+    @Test
+    public void testGetMinMax() {
+
+        Assert.assertArrayEquals("invalid 8-bit range",
+                                 new float[] { 0, 255 },
+                                 CanvasPeakExtractor.getMinMax(new ByteProcessor(10, 10)),
+                                 0.0001f);
+
+        final ShortProcessor shortProcessor = new ShortProcessor(10, 10);
+        shortProcessor.setMinAndMax(100, 4000);
+        Assert.assertArrayEquals("invalid 16-bit range",
+                                 new float[] { 100, 4000 },
+                                 CanvasPeakExtractor.getMinMax(shortProcessor),
+                                 0.0001f);
+    }
+
+    @Test
+    public void testGetBlockCores() {
+
+        final GeometricDescriptorParameters gdParameters = new GeometricDescriptorParameters();
+        gdParameters.numberOfThreads = 4;
+        final CanvasPeakExtractor extractor = new CanvasPeakExtractor(gdParameters);
+
+        final List<Rectangle> blockCores = extractor.getBlockCores(1200, 1100);
+        Assert.assertEquals("invalid number of blocks", 4, blockCores.size());
+
+        long coveredArea = 0;
+        for (final Rectangle core : blockCores) {
+            coveredArea += (long) core.width * core.height;
+        }
+        Assert.assertEquals("blocks should tile image", 1200 * 1100, coveredArea);
+
+        Assert.assertEquals("small image should not be split",
+                            1, extractor.getBlockCores(600, 600).size());
+    }
+
+    @Test
+    public void testParallelExtraction() {
+
+        final ByteProcessor imageProcessor = buildBlobImage(1200, 1100);
+
+        final GeometricDescriptorParameters gdParameters = new GeometricDescriptorParameters();
+        gdParameters.lookForMaxima = true;
+
+        final List<DifferenceOfGaussianPeak<FloatType>> sequentialPeaks =
+                new CanvasPeakExtractor(gdParameters).extractPeaksFromImageAndMask(imageProcessor, null);
+
+        final GeometricDescriptorParameters parallelParameters = new GeometricDescriptorParameters();
+        parallelParameters.lookForMaxima = true;
+        parallelParameters.numberOfThreads = 4;
+
+        final List<DifferenceOfGaussianPeak<FloatType>> parallelPeaks =
+                new CanvasPeakExtractor(parallelParameters).extractPeaksFromImageAndMask(imageProcessor, null);
+
+        Assert.assertTrue("no peaks extracted sequentially", sequentialPeaks.size() > 0);
+
+        final double countRatio = (double) parallelPeaks.size() / sequentialPeaks.size();
+        Assert.assertEquals("parallel extraction found " + parallelPeaks.size() +
+                            " peaks but sequential extraction found " + sequentialPeaks.size(),
+                            1.0, countRatio, 0.05);
+
+        for (final DifferenceOfGaussianPeak<FloatType> peak : parallelPeaks) {
+            final double x = peak.getSubPixelPosition(0);
+            final double y = peak.getSubPixelPosition(1);
+            Assert.assertTrue("peak location " + x + "," + y + " is outside of image",
+                              (x > -1) && (x < imageProcessor.getWidth()) &&
+                              (y > -1) && (y < imageProcessor.getHeight()));
+        }
+
+        // thread count is an execution detail, so it should not distinguish extractors (e.g. for caching)
+        Assert.assertEquals("extractors with different thread counts should be equal",
+                            new CanvasPeakExtractor(gdParameters), new CanvasPeakExtractor(parallelParameters));
+        Assert.assertEquals("parameters with different thread counts should have the same hash code",
+                            gdParameters.hashCode(), parallelParameters.hashCode());
+    }
+
+    private static ByteProcessor buildBlobImage(final int width,
+                                                final int height) {
+        final ByteProcessor imageProcessor = new ByteProcessor(width, height);
+        final Random random = new Random(7);
+        for (int i = 0; i < 600; i++) {
+            imageProcessor.setValue(random.nextInt(256));
+            final int size = 4 + random.nextInt(40);
+            imageProcessor.fillOval(random.nextInt(width), random.nextInt(height), size, size);
+        }
+        return imageProcessor;
+    }
+
+}
@@ -0,0 +1,96 @@
+package org.janelia.alignment.match;
+
+import ij.process.ByteProcessor;
+import ij.process.ImageProcessor;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ParallelBlockExtractor} class.
+ *
+ * @author Eric Trautman
+ */
+public class ParallelBlockExtractorTest {
+
+    @Test
+    public void testGetBlockCores() {
+
+        final List<Rectangle> blockCores = ParallelBlockExtractor.getBlockCores(1200, 1100, 4, 512);
+        Assert.assertEquals("invalid number of blocks", 4, blockCores.size());
+
+        long coveredArea = 0;
+        for (final Rectangle core : blockCores) {
+            coveredArea += (long) core.width * core.height;
+        }
+        Assert.assertEquals("blocks should tile image", 1200 * 1100, coveredArea);
+
+        Assert.assertEquals("small image should not be split",
+                            1, ParallelBlockExtractor.getBlockCores(600, 600, 4, 512).size());
+        Assert.assertEquals("single thread should not split image",
+                            1, ParallelBlockExtractor.getBlockCores(1200, 1100, 1, 512).size());
+    }
+
+    @Test
+    public void testExtract() {
+
+        final ByteProcessor canvas = new ByteProcessor(300, 200);
+        final Set<String> expectedLocations = new HashSet<>();
+        for (int y = 5; y < 200; y += 10) {
+            for (int x = 3; x < 300; x += 10) {
+                canvas.set(x, y, 255);
+                expectedLocations.add(x + "," + y);
+            }
+        }
+
+        final List<Rectangle> blockCores = ParallelBlockExtractor.getBlockCores(300, 200, 4, 50);
+        Assert.assertTrue("canvas should be split", blockCores.size() > 1);
+
+        final List<Callable<List<double[]>>> additionalTasks =
+                Collections.singletonList(() -> Collections.singletonList(new double[] { -1, -1 }));
+
+        final List<double[]> locations = ParallelBlockExtractor.extract(canvas,
+                                                                        blockCores,
+                                                                        20,
+                                                                        4,
+                                                                        ParallelBlockExtractorTest::findBrightPixels,
+                                                                        (location, blockX, blockY) -> {
+                                                                            location[0] += blockX;
+                                                                            location[1] += blockY;
+                                                                            return location;
+                                                                        },
+                                                                        additionalTasks,
+                                                                        "bright pixels");
+
+        Assert.assertEquals("invalid number of locations (overlap duplicates should be dropped)",
+                            expectedLocations.size() + 1, locations.size());
+
+        final Set<String> actualLocations = new HashSet<>();
+        for (final double[] location : locations) {
+            actualLocations.add((int) location[0] + "," + (int) location[1]);
+        }
+        Assert.assertTrue("missing additional task location", actualLocations.remove("-1,-1"));
+        Assert.assertEquals("invalid locations", expectedLocations, actualLocations);
+    }
+
+    private static List<double[]> findBrightPixels(final ImageProcessor blockProcessor) {
+        final List<double[]> locations = new ArrayList<>();
+        for (int y = 0; y < blockProcessor.getHeight(); y++) {
+            for (int x = 0; x < blockProcessor.getWidth(); x++) {
+                if (blockProcessor.get(x, y) > 0) {
+                    locations.add(new double[] { x, y });
+                }
+            }
+        }
+        return locations;
+    }
+
+}
@@ -0,0 +1,149 @@
+package org.janelia.alignment.match;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import mpicbg.models.AffineModel2D;
+import mpicbg.models.NotEnoughDataPointsException;
+import mpicbg.models.Point;
+import mpicbg.models.PointMatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ParallelRansac} class.
+ *
+ * @author Eric Trautman
+ */
+public class ParallelRansacTest {
+
+    @Test
+    public void testGetRequiredIterations() {
+        Assert.assertEquals("invalid iterations for all inliers",
+                            1, ParallelRansac.getRequiredIterations(1.0, 3, 0.999, 1000));
+        Assert.assertEquals("invalid iterations for no inliers",
+                            1000, ParallelRansac.getRequiredIterations(0.0, 3, 0.999, 1000));
+        // log(0.001) / log(1 - 0.125) = 51.7
+        Assert.assertEquals("invalid iterations for half inliers",
+                            52, ParallelRansac.getRequiredIterations(0.5, 3, 0.999, 1000));
+    }
+
+    @Test
+    public void testFilterRansac() throws NotEnoughDataPointsException {
+
+        final Random random = new Random(11);
+        final List<PointMatch> trueInliers = new ArrayList<>();
+        final List<PointMatch> candidates = new ArrayList<>();
+
+        for (int i = 0; i < 300; i++) {
+            final double x = random.nextDouble() * 1000;
+            final double y = random.nextDouble() * 1000;
+            final PointMatch inlier = new PointMatch(new Point(new double[] { x, y }),
+                                                     new Point(new double[] { x + 25.0, y - 10.0 }));
+            trueInliers.add(inlier);
+            candidates.add(inlier);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            candidates.add(new PointMatch(new Point(new double[] { random.nextDouble() * 1000,
+                                                                   random.nextDouble() * 1000 }),
+                                          new Point(new double[] { random.nextDouble() * 1000,
+                                                                   random.nextDouble() * 1000 })));
+        }
+
+        Collections.shuffle(candidates, random);
+
+        for (final boolean ordered : new boolean[] { false, true }) {
+
+            final List<PointMatch> orderedCandidates = new ArrayList<>(candidates);
+            if (ordered) {
+                // put true inliers first to simulate ordering by descriptor ratio
+                orderedCandidates.sort((a, b) -> Boolean.compare(! trueInliers.contains(a),
+                                                                 ! trueInliers.contains(b)));
+            }
+
+            final ParallelRansac ransac = new ParallelRansac(4, 0.999, ordered);
+            final AffineModel2D model = new AffineModel2D();
+            final List<PointMatch> inliers = new ArrayList<>();
+
+            final boolean modelFound = ransac.filterRansac(model,
+                                                           orderedCandidates,
+                                                           inliers,
+                                                           1000,
+                                                           2.0,
+                                                           0.0,
+                                                           10,
+                                                           3.0);
+
+            Assert.assertTrue("model should be found (ordered=" + ordered + ")", modelFound);
+            Assert.assertEquals("invalid inliers (ordered=" + ordered + ")",
+                                new HashSet<>(trueInliers), new HashSet<>(inliers));
+
+            final double[] transformed = model.apply(new double[] { 100.0, 200.0 });
+            Assert.assertEquals("invalid x (ordered=" + ordered + ")", 125.0, transformed[0], 0.001);
+            Assert.assertEquals("invalid y (ordered=" + ordered + ")", 190.0, transformed[1], 0.001);
+        }
+    }
+
+    @Test
+    public void testResultsAreIndependentOfThreadCount() throws NotEnoughDataPointsException {
+
+        // add noise to the inliers so that different hypotheses produce different models
+        final Random random = new Random(23);
+        final List<PointMatch> candidates = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            final double x = random.nextDouble() * 1000;
+            final double y = random.nextDouble() * 1000;
+            final double dx = i < 150 ? 25.0 + random.nextGaussian() : random.nextDouble() * 1000;
+            final double dy = i < 150 ? -10.0 + random.nextGaussian() : random.nextDouble() * 1000;
+            candidates.add(new PointMatch(new Point(new double[] { x, y }),
+                                          new Point(new double[] { x + dx, y + dy })));
+        }
+        Collections.shuffle(candidates, random);
+
+        List<PointMatch> expectedInliers = null;
+        double[] expectedModel = null;
+
+        for (final int numberOfThreads : new int[] { 1, 2, 3, 8, 8, 8 }) {
+
+            final ParallelRansac ransac = new ParallelRansac(numberOfThreads, 0.99, false);
+            final AffineModel2D model = new AffineModel2D();
+            final List<PointMatch> inliers = new ArrayList<>();
+
+            Assert.assertTrue("model should be found with " + numberOfThreads + " threads",
+                              ransac.filterRansac(model, candidates, inliers, 1000, 2.5, 0.0, 10, 3.0));
+
+            final double[] modelData = new double[6];
+            model.toArray(modelData);
+
+            if (expectedInliers == null) {
+                expectedInliers = inliers;
+                expectedModel = modelData;
+            } else {
+                Assert.assertEquals("inliers differ for " + numberOfThreads + " threads",
+                                    expectedInliers, inliers);
+                Assert.assertArrayEquals("model differs for " + numberOfThreads + " threads",
+                                         expectedModel, modelData, 0.0);
+            }
+        }
+    }
+
+    @Test(expected = NotEnoughDataPointsException.class)
+    public void testNotEnoughCandidates() throws NotEnoughDataPointsException {
+        final List<PointMatch> candidates = new ArrayList<>();
+        candidates.add(new PointMatch(new Point(new double[] { 0, 0 }), new Point(new double[] { 1, 1 })));
+        new ParallelRansac(2, null, false).filterRansac(new AffineModel2D(),
+                                                        candidates,
+                                                        new ArrayList<>(),
+                                                        100,
+                                                        2.0,
+                                                        0.0,
+                                                        3,
+                                                        3.0);
+    }
+
+}
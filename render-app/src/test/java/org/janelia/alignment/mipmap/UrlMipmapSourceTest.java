@@ -0,0 +1,111 @@
+package org.janelia.alignment.mipmap;
+
+import ij.ImagePlus;
+import ij.io.FileSaver;
+import ij.process.ByteProcessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import mpicbg.trakem2.transform.TransformMeshMappingWithMasks.ImageProcessorWithMasks;
+
+import org.janelia.alignment.ChannelMap;
+import org.janelia.alignment.ImageAndMask;
+import org.janelia.alignment.spec.ChannelSpec;
+import org.janelia.alignment.util.FileUtil;
+import org.janelia.alignment.util.ImageProcessorCache;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link UrlMipmapSource} class.
+ *
+ * @author Eric Trautman
+ */
+public class UrlMipmapSourceTest {
+
+    private File testDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        testDirectory = Files.createTempDirectory("url_mipmap_source_test_").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.deleteRecursive(testDirectory);
+    }
+
+    @Test
+    public void testGetChannels() {
+
+        final List<ChannelSpec> channelSpecList = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            final File imageFile = saveImage("channel_" + i + ".png", i * 20);
+            final File maskFile = saveImage("mask_" + i + ".png", 255);
+            channelSpecList.add(buildChannelSpec("c" + i, imageFile, maskFile));
+        }
+
+        final UrlMipmapSource source = new UrlMipmapSource("test", 16, 16, channelSpecList,
+                                                           null, null, false,
+                                                           ImageProcessorCache.DISABLED_CACHE);
+
+        final ChannelMap channels = source.getChannels(0);
+
+        Assert.assertEquals("invalid number of channels loaded", 3, channels.size());
+        for (int i = 1; i <= 3; i++) {
+            final ImageProcessorWithMasks channel = channels.get("c" + i);
+            Assert.assertNotNull("missing channel " + i, channel);
+            Assert.assertEquals("invalid pixel value for channel " + i, i * 20, channel.ip.get(3, 4));
+            Assert.assertNotNull("missing mask for channel " + i, channel.mask);
+        }
+
+        final UrlMipmapSource sourceWithoutMasks = new UrlMipmapSource("test", 16, 16, channelSpecList,
+                                                                       null, null, true,
+                                                                       ImageProcessorCache.DISABLED_CACHE);
+        final ChannelMap channelsWithoutMasks = sourceWithoutMasks.getChannels(0);
+        Assert.assertNull("mask should be excluded", channelsWithoutMasks.get("c2").mask);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetChannelsWithMissingMask() {
+
+        final List<ChannelSpec> channelSpecList = new ArrayList<>();
+        channelSpecList.add(buildChannelSpec("c1",
+                                             saveImage("channel_1.png", 20),
+                                             saveImage("mask_1.png", 255)));
+        channelSpecList.add(buildChannelSpec("c2",
+                                             saveImage("channel_2.png", 40),
+                                             new File(testDirectory, "missing_mask.png")));
+
+        final UrlMipmapSource source = new UrlMipmapSource("test", 16, 16, channelSpecList,
+                                                           null, null, false,
+                                                           ImageProcessorCache.DISABLED_CACHE);
+        source.getChannels(0);
+    }
+
+    private File saveImage(final String fileName,
+                           final int value) {
+        final ByteProcessor processor = new ByteProcessor(16, 16);
+        processor.set(value);
+        final File file = new File(testDirectory, fileName);
+        Assert.assertTrue("failed to save " + file,
+                          new FileSaver(new ImagePlus(fileName, processor)).saveAsPng(file.getAbsolutePath()));
+        return file;
+    }
+
+    private ChannelSpec buildChannelSpec(final String name,
+                                         final File imageFile,
+                                         final File maskFile) {
+        final TreeMap<Integer, ImageAndMask> mipmapLevels = new TreeMap<>();
+        mipmapLevels.put(0, new ImageAndMask(imageFile, maskFile));
+        return new ChannelSpec(name, 0.0, 255.0, mipmapLevels, null);
+    }
+
+}
@@ -0,0 +1,127 @@
+package org.janelia.alignment.spec;
+
+import ij.process.ByteProcessor;
+import ij.process.ShortProcessor;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ImageStatistics} class.
+ *
+ * @author Eric Trautman
+ */
+public class ImageStatisticsTest {
+
+    @Test
+    public void testFromImageProcessor() {
+
+        final ByteProcessor imageProcessor = new ByteProcessor(2, 2, new byte[] { 10, 20, 30, 40 });
+
+        final ImageStatistics statistics = ImageStatistics.fromImageProcessor("test", null, imageProcessor, null);
+
+        Assert.assertEquals("invalid pixel count", 4, statistics.getPixelCount());
+        Assert.assertEquals("invalid min", 10.0, statistics.getMin(), 0.0);
+        Assert.assertEquals("invalid max", 40.0, statistics.getMax(), 0.0);
+        Assert.assertEquals("invalid mean", 25.0, statistics.getMean(), 0.0);
+        Assert.assertEquals("invalid histogram count", 1, statistics.getHistogram()[20]);
+        Assert.assertEquals("invalid median", 20.0, statistics.getPercentileIntensity(0.5), 0.0);
+        Assert.assertEquals("invalid high clip point", 40.0, statistics.getPercentileIntensity(0.99), 0.0);
+
+        final ByteProcessor maskProcessor = new ByteProcessor(2, 2, new byte[] { 1, 1, 1, 0 });
+        final ImageStatistics maskedStatistics =
+                ImageStatistics.fromImageProcessor("test", null, imageProcessor, maskProcessor);
+
+        Assert.assertEquals("invalid masked pixel count", 3, maskedStatistics.getPixelCount());
+        Assert.assertEquals("invalid masked max", 30.0, maskedStatistics.getMax(), 0.0);
+
+        final ImageStatistics parsedStatistics = ImageStatistics.fromJson(statistics.toJson());
+        Assert.assertEquals("invalid parsed url", "test", parsedStatistics.getImageUrl());
+        Assert.assertArrayEquals("invalid parsed histogram",
+                                 statistics.getHistogram(), parsedStatistics.getHistogram());
+    }
+
+    @Test
+    public void testShortPercentileIntensity() {
+
+        final short[] pixels = new short[1000];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (short) (1000 + i);
+        }
+        final ShortProcessor imageProcessor = new ShortProcessor(100, 10, pixels, null);
+
+        final ImageStatistics statistics = ImageStatistics.fromImageProcessor("test", 3, imageProcessor, null);
+
+        Assert.assertEquals("invalid slice number", Integer.valueOf(3), statistics.getImageSliceNumber());
+        Assert.assertEquals("histogram should start at min", 1000.0, statistics.getHistogramMin(), 0.0);
+        Assert.assertEquals("histogram should end after max", 2000.0, statistics.getHistogramMax(), 0.0);
+
+        // bins are almost 4 intensity values wide, so interpolation within the bin is needed for this accuracy
+        Assert.assertEquals("invalid median", 1499.0, statistics.getPercentileIntensity(0.5), 1.0);
+        Assert.assertEquals("invalid low clip point", 1009.0, statistics.getPercentileIntensity(0.01), 1.0);
+        Assert.assertEquals("invalid high clip point", 1989.0, statistics.getPercentileIntensity(0.99), 1.0);
+    }
+
+    @Test
+    public void testAggregate() {
+
+        final ImageStatistics byteStatistics =
+                ImageStatistics.fromImageProcessor("a",
+                                                   null,
+                                                   new ByteProcessor(2, 1, new byte[] { 10, 20 }),
+                                                   null);
+        final ImageStatistics shortStatistics =
+                ImageStatistics.fromImageProcessor("b",
+                                                   null,
+                                                   new ShortProcessor(2, 1, new short[] { 1000, 3000 }, null),
+                                                   null);
+
+        final ImageStatistics aggregated = ImageStatistics.aggregate(Arrays.asList(byteStatistics,
+                                                                                   shortStatistics));
+
+        Assert.assertNotNull("aggregated statistics should exist", aggregated);
+        Assert.assertNull("aggregated statistics should not have url", aggregated.getImageUrl());
+        Assert.assertEquals("invalid pixel count", 4, aggregated.getPixelCount());
+        Assert.assertEquals("invalid min", 10.0, aggregated.getMin(), 0.0);
+        Assert.assertEquals("invalid max", 3000.0, aggregated.getMax(), 0.0);
+        Assert.assertEquals("invalid mean", 1007.5, aggregated.getMean(), 0.0);
+        Assert.assertEquals("invalid histogram max", 3001.0, aggregated.getHistogramMax(), 0.0);
+        Assert.assertEquals("invalid total histogram count",
+                            4, Arrays.stream(aggregated.getHistogram()).sum());
+
+        Assert.assertNull("empty aggregation should be null", ImageStatistics.aggregate(Arrays.asList()));
+    }
+
+    @Test
+    public void testAggregateIgnoresEmptyStatistics() {
+
+        final ImageStatistics shortStatistics =
+                ImageStatistics.fromImageProcessor("a",
+                                                   null,
+                                                   new ShortProcessor(2, 1, new short[] { 1000, 3000 }, null),
+                                                   null);
+        final long[] emptyHistogram = new long[ImageStatistics.HISTOGRAM_BIN_COUNT];
+        emptyHistogram[0] = 7; // bogus count that should be ignored since the image has no pixels
+        final ImageStatistics emptyStatistics =
+                new ImageStatistics("b", null, 0, 0, 0, 0, -5000.0, 65536.0, emptyHistogram);
+
+        final ImageStatistics aggregated = ImageStatistics.aggregate(Arrays.asList(shortStatistics,
+                                                                                   emptyStatistics));
+
+        Assert.assertEquals("invalid pixel count", 2, aggregated.getPixelCount());
+        Assert.assertEquals("empty statistics should not widen histogram min",
+                            shortStatistics.getHistogramMin(), aggregated.getHistogramMin(), 0.0);
+        Assert.assertEquals("empty statistics should not widen histogram max",
+                            shortStatistics.getHistogramMax(), aggregated.getHistogramMax(), 0.0);
+        Assert.assertArrayEquals("empty statistics should not change histogram",
+                                 shortStatistics.getHistogram(), aggregated.getHistogram());
+
+        final ImageStatistics aggregatedEmpty = ImageStatistics.aggregate(Arrays.asList(emptyStatistics));
+        Assert.assertEquals("invalid empty pixel count", 0, aggregatedEmpty.getPixelCount());
+        Assert.assertEquals("invalid empty histogram min", 0.0, aggregatedEmpty.getHistogramMin(), 0.0);
+        Assert.assertEquals("invalid empty histogram max", 0.0, aggregatedEmpty.getHistogramMax(), 0.0);
+    }
+
+}
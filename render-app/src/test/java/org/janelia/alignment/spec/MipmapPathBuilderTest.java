@@ -97,6 +97,99 @@ public class MipmapPathBuilderTest {
                             expectedMaskUrl, derivedImageAndMask.getMaskUrl());
     }
 
+    @Test
+    public void testDeriveTiffPyramidImageAndMask() {
+        final int mipmapLevel = 3;
+        final MipmapPathBuilder mipmapPathBuilder =
+                new MipmapPathBuilder("/mipmaps",
+                                      7,
+                                      "tif",
+                                      null,
+                                      MipmapPathBuilder.StorageMode.TIFF_PYRAMID);
+
+        final Map.Entry<Integer, ImageAndMask> sourceEntry = buildMipmapEntry(
+                "file:///data/Merlin-6257_21-05-20_125416_0-0-0_InLens.png",
+                null,
+                "file:///masks/test-mask.png",
+                ImageLoader.LoaderType.IMAGEJ_DEFAULT);
+
+        final ImageAndMask derivedImageAndMask =
+                mipmapPathBuilder.deriveImageAndMask(mipmapLevel, sourceEntry, false).getValue();
+
+        final String expectedImageUrl = "file:/mipmaps/pyramid/data/Merlin-6257_21-05-20_125416_0-0-0_InLens.png.tif" +
+                                        "?level=" + mipmapLevel;
+        Assert.assertEquals("invalid derived imageUrl for " + sourceEntry.getValue(),
+                            expectedImageUrl, derivedImageAndMask.getImageUrl());
+        Assert.assertEquals("invalid derived imageLoaderType for " + sourceEntry.getValue(),
+                            ImageLoader.LoaderType.TIFF_PYRAMID, derivedImageAndMask.getImageLoaderType());
+
+        final String expectedMaskUrl = "file:/mipmaps/pyramid/masks/test-mask.png.tif?level=" + mipmapLevel;
+        Assert.assertEquals("invalid derived maskUrl for " + sourceEntry.getValue(),
+                            expectedMaskUrl, derivedImageAndMask.getMaskUrl());
+        Assert.assertEquals("invalid derived maskLoaderType for " + sourceEntry.getValue(),
+                            ImageLoader.LoaderType.TIFF_PYRAMID, derivedImageAndMask.getMaskLoaderType());
+
+        final MipmapPathBuilder parsedBuilder = MipmapPathBuilder.fromJson(mipmapPathBuilder.toJson());
+        Assert.assertTrue("storage mode lost during json processing", parsedBuilder.isTiffPyramid());
+    }
+
+    @Test
+    public void testDerivePerSliceImageAndMask() {
+        final int mipmapLevel = 2;
+        final String stackUrl = "file:///data/stack.tif";
+        final ImageAndMask sourceImageAndMask = new ImageAndMask(stackUrl,
+                                                                 ImageLoader.LoaderType.IMAGEJ_TIFF_STACK,
+                                                                 7,
+                                                                 "file:///masks/test-mask.png",
+                                                                 null,
+                                                                 null);
+        final ChannelSpec channelSpec = new ChannelSpec();
+        channelSpec.putMipmap(0, sourceImageAndMask);
+        final Map.Entry<Integer, ImageAndMask> sourceEntry = channelSpec.getFirstMipmapEntry();
+
+        final MipmapPathBuilder stackLevelBuilder = new MipmapPathBuilder("/mipmaps", 7, "tif", null);
+        ImageAndMask derivedImageAndMask =
+                stackLevelBuilder.deriveImageAndMask(mipmapLevel, sourceEntry, false).getValue();
+
+        Assert.assertEquals("invalid derived stack imageUrl",
+                            "file:/mipmaps/" + mipmapLevel + "/data/stack.tif.tif",
+                            derivedImageAndMask.getImageUrl());
+        Assert.assertEquals("invalid derived stack imageLoaderType",
+                            ImageLoader.LoaderType.IMAGEJ_TIFF_STACK, derivedImageAndMask.getImageLoaderType());
+        Assert.assertEquals("invalid derived stack imageSliceNumber",
+                            Integer.valueOf(7), derivedImageAndMask.getImageSliceNumber());
+
+        final MipmapPathBuilder perSliceBuilder =
+                new MipmapPathBuilder("/mipmaps", 7, "tif", null, null, true);
+        derivedImageAndMask = perSliceBuilder.deriveImageAndMask(mipmapLevel, sourceEntry, false).getValue();
+
+        Assert.assertEquals("invalid derived slice imageUrl",
+                            "file:/mipmaps/" + mipmapLevel + "/data/stack.tif.slice7.tif",
+                            derivedImageAndMask.getImageUrl());
+        Assert.assertEquals("invalid derived slice imageLoaderType",
+                            ImageLoader.LoaderType.IMAGEJ_DEFAULT, derivedImageAndMask.getImageLoaderType());
+        Assert.assertNull("derived slice imageSliceNumber should be null",
+                          derivedImageAndMask.getImageSliceNumber());
+        Assert.assertEquals("invalid derived slice maskUrl",
+                            "file:/mipmaps/" + mipmapLevel + "/masks/test-mask.png.tif",
+                            derivedImageAndMask.getMaskUrl());
+
+        final MipmapPathBuilder perSlicePyramidBuilder =
+                new MipmapPathBuilder("/mipmaps", 7, "tif", null, MipmapPathBuilder.StorageMode.TIFF_PYRAMID, true);
+        derivedImageAndMask = perSlicePyramidBuilder.deriveImageAndMask(mipmapLevel, sourceEntry, false).getValue();
+
+        Assert.assertEquals("invalid derived slice pyramid imageUrl",
+                            "file:/mipmaps/pyramid/data/stack.tif.slice7.tif?level=" + mipmapLevel,
+                            derivedImageAndMask.getImageUrl());
+        Assert.assertEquals("invalid derived slice pyramid imageLoaderType",
+                            ImageLoader.LoaderType.TIFF_PYRAMID, derivedImageAndMask.getImageLoaderType());
+
+        final MipmapPathBuilder parsedBuilder = MipmapPathBuilder.fromJson(perSliceBuilder.toJson());
+        Assert.assertTrue("per slice option lost during json processing", parsedBuilder.isPerSlice());
+        Assert.assertFalse("builders with different per slice options should differ",
+                           perSliceBuilder.hasSamePathAndExtension(stackLevelBuilder));
+    }
+
     private Map.Entry<Integer, ImageAndMask> buildMipmapEntry(final String imageUrl,
                                                               final ImageLoader.LoaderType imageLoaderType,
                                                               final String maskUrl,
@@ -0,0 +1,131 @@
+package org.janelia.alignment.spec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import mpicbg.trakem2.transform.AffineModel2D;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ResolvedTileSpecStreamReader} and {@link ResolvedTileSpecStreamWriter} classes.
+ *
+ * @author Eric Trautman
+ */
+public class ResolvedTileSpecStreamReaderTest {
+
+    @Test
+    public void testStreamRoundTrip() throws Exception {
+
+        final ResolvedTileSpecCollection collection = buildCollection();
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (final ResolvedTileSpecStreamWriter writer = new ResolvedTileSpecStreamWriter(outputStream)) {
+            for (final TransformSpec transformSpec : collection.getTransformSpecs()) {
+                writer.writeTransformSpec(transformSpec);
+            }
+            for (final TileSpec tileSpec : collection.getTileSpecs()) {
+                writer.writeTileSpec(tileSpec);
+            }
+        }
+
+        final String json = outputStream.toString();
+
+        // streamed JSON should be readable as a normal collection
+        final ResolvedTileSpecCollection parsedCollection = ResolvedTileSpecCollection.fromJson(json);
+        Assert.assertEquals("invalid number of parsed tiles", TILE_COUNT, parsedCollection.getTileCount());
+        Assert.assertEquals("invalid number of parsed transforms", 2, parsedCollection.getTransformCount());
+
+        validateStreamedTiles(json);
+    }
+
+    @Test
+    public void testReadCollectionJson() {
+        validateStreamedTiles(buildCollection().toJson());
+    }
+
+    @Test
+    public void testReadWithTilesBeforeTransforms() {
+
+        final ResolvedTileSpecCollection collection = buildCollection();
+        final StringBuilder json = new StringBuilder("{\"tileIdToSpecMap\": {");
+        for (final TileSpec tileSpec : collection.getTileSpecs()) {
+            if (json.charAt(json.length() - 1) != '{') {
+                json.append(',');
+            }
+            json.append('"').append(tileSpec.getTileId()).append("\": ").append(tileSpec.toJson());
+        }
+        json.append("}, \"transformIdToSpecMap\": {");
+        for (final TransformSpec transformSpec : collection.getTransformSpecs()) {
+            if (json.charAt(json.length() - 1) != '{') {
+                json.append(',');
+            }
+            json.append('"').append(transformSpec.getId()).append("\": ").append(transformSpec.toJson());
+        }
+        json.append("}}");
+
+        validateStreamedTiles(json.toString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWriteTransformAfterTile() throws Exception {
+        final ResolvedTileSpecCollection collection = buildCollection();
+        final ResolvedTileSpecStreamWriter writer = new ResolvedTileSpecStreamWriter(new ByteArrayOutputStream());
+        writer.writeTileSpec(collection.getTileSpecs().iterator().next());
+        writer.writeTransformSpec(collection.getTransformSpecs().iterator().next());
+    }
+
+    private static void validateStreamedTiles(final String json) {
+
+        final List<TileSpec> streamedTileSpecs = new ArrayList<>();
+        final ResolvedTileSpecStreamReader reader = new ResolvedTileSpecStreamReader(streamedTileSpecs::add);
+        final int tileCount = reader.read(new StringReader(json));
+
+        Assert.assertEquals("invalid tile count returned", TILE_COUNT, tileCount);
+        Assert.assertEquals("invalid number of tiles consumed", TILE_COUNT, streamedTileSpecs.size());
+        Assert.assertEquals("invalid number of transforms read", 2, reader.getTransformIdToSpecMap().size());
+
+        for (final TileSpec tileSpec : streamedTileSpecs) {
+            Assert.assertTrue("tile " + tileSpec.getTileId() + " transforms should be resolved",
+                              tileSpec.getTransforms().isFullyResolved());
+            Assert.assertNotNull("tile " + tileSpec.getTileId() + " transform instance should be built",
+                                 tileSpec.getTransforms().getNewInstance());
+        }
+    }
+
+    private static ResolvedTileSpecCollection buildCollection() {
+
+        final TransformSpec lensSpec =
+                new LeafTransformSpec("lens", null, AffineModel2D.class.getName(), "1 0 0 1 0 0");
+
+        // shared list that references another shared transform
+        final ListTransformSpec listSpec = new ListTransformSpec("lensAndShift", null);
+        listSpec.addSpec(new ReferenceTransformSpec("lens"));
+        listSpec.addSpec(new LeafTransformSpec(AffineModel2D.class.getName(), "1 0 0 1 10 0"));
+        listSpec.resolveReferences(Collections.singletonMap(lensSpec.getId(), lensSpec));
+
+        final List<TransformSpec> transformSpecs = new ArrayList<>();
+        transformSpecs.add(lensSpec);
+        transformSpecs.add(listSpec);
+
+        final List<TileSpec> tileSpecs = new ArrayList<>();
+        for (int i = 0; i < TILE_COUNT; i++) {
+            final TileSpec tileSpec = new TileSpec();
+            tileSpec.setTileId("tile-" + i);
+            tileSpec.setZ(1.0);
+            tileSpec.addTransformSpecs(Collections.singletonList(new ReferenceTransformSpec("lensAndShift")));
+            tileSpec.addTransformSpecs(
+                    Collections.singletonList(new LeafTransformSpec(AffineModel2D.class.getName(),
+                                                                    "1 0 0 1 " + (i * 100) + " 0")));
+            tileSpecs.add(tileSpec);
+        }
+
+        return new ResolvedTileSpecCollection(transformSpecs, tileSpecs);
+    }
+
+    private static final int TILE_COUNT = 5;
+}
@@ -130,6 +130,23 @@ public class TileSpecTest {
         Assert.assertEquals("incorrect first channel name with 3 channels", firstName, tileSpec.getFirstChannelName());
     }
 
+    @Test
+    public void testRepeatedValuesAreShared() {
+
+        final TileSpec tileSpecA = TileSpec.fromJson(JSON_WITH_UNSORTED_MIPMAP_LEVELS);
+        final TileSpec tileSpecB = TileSpec.fromJson(JSON_WITH_UNSORTED_MIPMAP_LEVELS);
+
+        final LeafTransformSpec transformSpecA = (LeafTransformSpec) tileSpecA.getLastTransform();
+        final LeafTransformSpec transformSpecB = (LeafTransformSpec) tileSpecB.getLastTransform();
+
+        Assert.assertSame("className should be shared",
+                          transformSpecA.getClassName(), transformSpecB.getClassName());
+        Assert.assertNotSame("per-tile dataString should not be interned",
+                             transformSpecA.getDataString(), transformSpecB.getDataString());
+        Assert.assertNotSame("tileId should not be shared",
+                             tileSpecA.getTileId(), tileSpecB.getTileId());
+    }
+
     @Test
     public void testDeriveBoundingBox() throws Exception {
         final byte[] jsonBytes = Files.readAllBytes(Paths.get("src/test/resources/tile-test/tile_with_only_affine_transforms.json"));
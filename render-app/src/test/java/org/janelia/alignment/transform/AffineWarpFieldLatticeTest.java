@@ -0,0 +1,111 @@
+package org.janelia.alignment.transform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.imglib2.RealRandomAccess;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.composite.RealComposite;
+
+/**
+ * Tests the {@link AffineWarpFieldLattice} class.
+ *
+ * @author Eric Trautman
+ */
+public class AffineWarpFieldLatticeTest {
+
+    @Test
+    public void testGetCoefficients() {
+
+        final AffineWarpField affineWarpField = buildRandomField();
+        final AffineWarpFieldLattice lattice = new AffineWarpFieldLattice(affineWarpField);
+        final RealRandomAccess<RealComposite<DoubleType>> accessor = affineWarpField.getAccessor();
+
+        final Random random = new Random(3);
+        final double[] coefficients = new double[6];
+
+        for (int i = 0; i < 1000; i++) {
+
+            // include locations outside of the field to verify border extension
+            final double x = (random.nextDouble() * 1400) - 200;
+            final double y = (random.nextDouble() * 1100) - 200;
+
+            lattice.getCoefficients(x, y, coefficients);
+
+            accessor.setPosition(x, 0);
+            accessor.setPosition(y, 1);
+            final RealComposite<DoubleType> expected = accessor.get();
+
+            for (int c = 0; c < coefficients.length; c++) {
+                Assert.assertEquals("invalid coefficient " + c + " for (" + x + ", " + y + ")",
+                                    expected.get(c).getRealDouble(), coefficients[c], 0.000001);
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentApply() throws Exception {
+
+        final AffineWarpFieldTransform transform =
+                new AffineWarpFieldTransform(new double[] { 100.0, 200.0 }, buildRandomField());
+        final AffineWarpFieldTransform sharedDataTransform = new AffineWarpFieldTransform();
+        sharedDataTransform.init(transform.toDataString());
+
+        final Random random = new Random(5);
+        final List<double[]> locations = new ArrayList<>();
+        final List<double[]> expectedResults = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            final double[] location = { random.nextDouble() * 1200, random.nextDouble() * 1100 };
+            locations.add(location);
+            expectedResults.add(transform.apply(location));
+        }
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executorService.submit(() -> {
+                    int mismatchCount = 0;
+                    for (int i = 0; i < locations.size(); i++) {
+                        final double[] result = sharedDataTransform.apply(locations.get(i));
+                        final double[] expected = expectedResults.get(i);
+                        if ((Math.abs(result[0] - expected[0]) > 0.000001) ||
+                            (Math.abs(result[1] - expected[1]) > 0.000001)) {
+                            mismatchCount++;
+                        }
+                    }
+                    return mismatchCount;
+                }));
+            }
+            for (final Future<Integer> future : futures) {
+                Assert.assertEquals("concurrent results differ", Integer.valueOf(0), future.get());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static AffineWarpField buildRandomField() {
+        final AffineWarpField affineWarpField =
+                new AffineWarpField(1000, 700, 3, 4, AffineWarpField.getDefaultInterpolatorFactory());
+        final Random random = new Random(1);
+        for (int row = 0; row < affineWarpField.getRowCount(); row++) {
+            for (int column = 0; column < affineWarpField.getColumnCount(); column++) {
+                affineWarpField.set(row, column, new double[] {
+                        1.0 + (random.nextDouble() * 0.1), random.nextDouble() * 0.1,
+                        random.nextDouble() * 0.1, 1.0 + (random.nextDouble() * 0.1),
+                        random.nextDouble() * 50, random.nextDouble() * 50
+                });
+            }
+        }
+        return affineWarpField;
+    }
+
+}
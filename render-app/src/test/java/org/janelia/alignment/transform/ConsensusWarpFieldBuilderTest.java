@@ -142,6 +142,31 @@ public class ConsensusWarpFieldBuilderTest {
                             6, mergedBuilder.getNumberOfConsensusSetsInGrid());
     }
 
+    @Test
+    public void testParallelIndexGrid() throws Exception {
+
+        final int gridRes = 37;
+        final ConsensusWarpFieldBuilder singleThreadBuilder =
+                new ConsensusWarpFieldBuilder(1000.0, 1000.0, gridRes, gridRes);
+        final ConsensusWarpFieldBuilder multiThreadBuilder =
+                new ConsensusWarpFieldBuilder(1000.0, 1000.0, gridRes, gridRes, 4);
+
+        for (int setIndex = 0; setIndex < 5; setIndex++) {
+            final List<RealPoint> pointList = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                addPoint((setIndex * 190) + (i * 7), ((i * 53) + (setIndex * 31)) % 1000, pointList);
+            }
+            singleThreadBuilder.addConsensusSetData(new AffineModel2D(), pointList);
+            multiThreadBuilder.addConsensusSetData(new AffineModel2D(), pointList);
+        }
+
+        Assert.assertEquals("multi-threaded grid should match single-threaded grid",
+                            singleThreadBuilder.toIndexGridString(), multiThreadBuilder.toIndexGridString());
+        Assert.assertEquals("invalid number of consensus sets left in grid",
+                            singleThreadBuilder.getNumberOfConsensusSetsInGrid(),
+                            multiThreadBuilder.getNumberOfConsensusSetsInGrid());
+    }
+
     private void addPoint(final int x,
                           final int y,
                           final List<RealPoint> pointList) {
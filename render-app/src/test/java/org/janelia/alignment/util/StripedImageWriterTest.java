@@ -0,0 +1,139 @@
+package org.janelia.alignment.util;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link StripedImageWriter} class.
+ *
+ * @author Eric Trautman
+ */
+public class StripedImageWriterTest {
+
+    private File imageFile;
+
+    @Before
+    public void setup() throws IOException {
+        imageFile = File.createTempFile("test_striped_", ".img");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(imageFile.toPath());
+    }
+
+    @Test
+    public void testPng() throws IOException {
+        writeAndValidate("png", null, null, null);
+    }
+
+    @Test
+    public void testTiff() throws IOException {
+        writeAndValidate("tif", null, null, null);
+    }
+
+    @Test
+    public void testTiffWithResolution() throws IOException {
+        writeAndValidate("tiff", 8.0, 8.0, "nm");
+    }
+
+    @Test
+    public void testTiffResolutionAlignment() throws IOException {
+
+        // "ImageJ=\nunit=nm\n\0" description has an odd length, so the resolution values need padding
+        writeAndValidate("tiff", 8.0, 4.0, "nm");
+
+        final ByteBuffer tiffBytes = ByteBuffer.wrap(Files.readAllBytes(imageFile.toPath()));
+        tiffBytes.order(ByteOrder.LITTLE_ENDIAN);
+
+        final int directoryOffset = tiffBytes.getInt(4);
+        final int entryCount = tiffBytes.getShort(directoryOffset);
+        int resolutionCount = 0;
+        for (int i = 0; i < entryCount; i++) {
+            final int entryOffset = directoryOffset + 2 + (i * 12);
+            final int tag = tiffBytes.getShort(entryOffset);
+            if ((tag == 282) || (tag == 283)) {
+                final int valueOffset = tiffBytes.getInt(entryOffset + 8);
+                Assert.assertEquals("resolution tag " + tag + " value offset " + valueOffset + " is not word aligned",
+                                    0, valueOffset % 2);
+                final double expectedResolution = tag == 282 ? 1.0 / 8.0 : 1.0 / 4.0;
+                Assert.assertEquals("invalid resolution for tag " + tag,
+                                    expectedResolution,
+                                    (double) tiffBytes.getInt(valueOffset) / tiffBytes.getInt(valueOffset + 4),
+                                    0.000001);
+                resolutionCount++;
+            }
+        }
+
+        Assert.assertEquals("resolution tags are missing", 2, resolutionCount);
+    }
+
+    @Test(expected = IOException.class)
+    public void testIncompleteImage() throws IOException {
+        try (final StripedImageWriter writer =
+                     StripedImageWriter.open(imageFile, "png", 10, 10, null, null, null)) {
+            writer.writeStripe(new byte[50], 5);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedFormat() throws IOException {
+        StripedImageWriter.open(imageFile, "jpg", 10, 10, null, null, null);
+    }
+
+    private void writeAndValidate(final String format,
+                                  final Double pixelWidth,
+                                  final Double pixelHeight,
+                                  final String resolutionUnit)
+            throws IOException {
+
+        final int width = 37;
+        final int height = 23;
+        final int stripeHeight = 10;
+
+        try (final StripedImageWriter writer =
+                     StripedImageWriter.open(imageFile, format, width, height,
+                                             pixelWidth, pixelHeight, resolutionUnit)) {
+            final byte[] stripe = new byte[width * stripeHeight];
+            for (int y = 0; y < height; y += stripeHeight) {
+                final int rowCount = Math.min(stripeHeight, height - y);
+                for (int row = 0; row < rowCount; row++) {
+                    for (int x = 0; x < width; x++) {
+                        stripe[(row * width) + x] = (byte) getExpectedPixel(x, y + row);
+                    }
+                }
+                writer.writeStripe(stripe, rowCount);
+            }
+        }
+
+        final BufferedImage image = ImageIO.read(imageFile);
+
+        Assert.assertNotNull(format + " image could not be read", image);
+        Assert.assertEquals("invalid " + format + " width", width, image.getWidth());
+        Assert.assertEquals("invalid " + format + " height", height, image.getHeight());
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                Assert.assertEquals("invalid " + format + " pixel at (" + x + "," + y + ")",
+                                    getExpectedPixel(x, y), image.getRaster().getSample(x, y, 0));
+            }
+        }
+    }
+
+    private static int getExpectedPixel(final int x,
+                                        final int y) {
+        return ((x * 7) + (y * 11)) % 256;
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.janelia.alignment.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link TimingHistogram} class.
+ *
+ * @author Eric Trautman
+ */
+public class TimingHistogramTest {
+
+    @Test
+    public void testGetBucketIndex() {
+        Assert.assertEquals("invalid index for 0", 0, TimingHistogram.getBucketIndex(0));
+        Assert.assertEquals("invalid index for 1", 0, TimingHistogram.getBucketIndex(1));
+        Assert.assertEquals("invalid index for 2", 1, TimingHistogram.getBucketIndex(2));
+        Assert.assertEquals("invalid index for 3", 2, TimingHistogram.getBucketIndex(3));
+        Assert.assertEquals("invalid index for overflow", 15, TimingHistogram.getBucketIndex(100_000));
+    }
+
+    @Test
+    public void testSnapshot() {
+
+        final TimingHistogram histogram = new TimingHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(4);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(150);
+        }
+        histogram.record(70_000);
+
+        final TimingHistogram.Snapshot snapshot = histogram.getSnapshot();
+
+        Assert.assertEquals("invalid count", 100, snapshot.getCount());
+        Assert.assertEquals("invalid total", (90 * 4) + (9 * 150) + 70_000, snapshot.getTotalMillis());
+        Assert.assertEquals("invalid max", 70_000, snapshot.getMaxMillis());
+        Assert.assertEquals("invalid p50", 5, snapshot.getP50Millis());
+        Assert.assertEquals("invalid p90", 5, snapshot.getP90Millis());
+        Assert.assertEquals("invalid p99", 200, snapshot.getP99Millis());
+        Assert.assertEquals("invalid number of non-empty buckets", 3, snapshot.getBucketCounts().size());
+        Assert.assertEquals("invalid overflow bucket count",
+                            Long.valueOf(1), snapshot.getBucketCounts().get(">60000"));
+    }
+
+    @Test
+    public void testEmptySnapshot() {
+        final TimingHistogram.Snapshot snapshot = new TimingHistogram().getSnapshot();
+        Assert.assertEquals("invalid count", 0, snapshot.getCount());
+        Assert.assertEquals("invalid mean", 0.0, snapshot.getMeanMillis(), 0.0);
+        Assert.assertEquals("invalid p99", 0, snapshot.getP99Millis());
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+
+        final TimingHistogram histogram = new TimingHistogram();
+        final int threadCount = 4;
+        final int recordsPerThread = 10_000;
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                futures.add(executorService.submit(() -> {
+                    for (int i = 0; i < recordsPerThread; i++) {
+                        histogram.record(i % 100);
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        Assert.assertEquals("records lost during concurrent recording",
+                            threadCount * recordsPerThread, histogram.getSnapshot().getCount());
+    }
+
+}
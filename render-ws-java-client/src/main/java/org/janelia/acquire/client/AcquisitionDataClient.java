@@ -12,7 +12,6 @@ import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.janelia.acquire.client.model.Acquisition;
 import org.janelia.acquire.client.model.AcquisitionList;
 import org.janelia.acquire.client.model.AcquisitionTileIdList;
@@ -21,7 +20,7 @@ import org.janelia.acquire.client.model.AcquisitionTileState;
 import org.janelia.acquire.client.model.Calibration;
 import org.janelia.acquire.client.model.CalibrationList;
 import org.janelia.alignment.json.JsonUtils;
-import org.janelia.render.client.request.WaitingRetryHandler;
+import org.janelia.render.client.request.SharedHttpClient;
 import org.janelia.render.client.response.EmptyResponseHandler;
 import org.janelia.render.client.response.JsonResponseHandler;
 import org.slf4j.Logger;
@@ -44,7 +43,7 @@ public class AcquisitionDataClient {
      */
     public AcquisitionDataClient(final String baseUrl) {
         this.baseUrl = baseUrl;
-        this.httpClient = HttpClientBuilder.create().setRetryHandler(new WaitingRetryHandler()).build();
+        this.httpClient = SharedHttpClient.getHttpClient();
     }
 
     @Override
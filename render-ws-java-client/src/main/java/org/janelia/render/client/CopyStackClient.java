@@ -20,6 +20,7 @@ import mpicbg.trakem2.transform.AffineModel2D;
 
 import org.janelia.alignment.json.JsonUtils;
 import org.janelia.alignment.spec.Bounds;
+import org.janelia.alignment.spec.ImageStatistics;
 import org.janelia.alignment.spec.LayoutData;
 import org.janelia.alignment.spec.LeafTransformSpec;
 import org.janelia.alignment.spec.ResolvedTileSpecCollection;
@@ -135,6 +136,20 @@ public class CopyStackClient {
                 arity = 0)
         public boolean replaceLastTransformWithStage = false;
 
+        @Parameter(
+                names = "--resetIntensityRangeFromImageStatistics",
+                description = "Reset the first channel min and max intensity of copied tiles using clip points " +
+                              "derived from each source layer's cataloged image statistics " +
+                              "(avoids reading full resolution source images)",
+                arity = 0)
+        public boolean resetIntensityRangeFromImageStatistics = false;
+
+        @Parameter(
+                names = "--intensityClipFraction",
+                description = "Fraction of layer pixels to clip at each end of the intensity range " +
+                              "when --resetIntensityRangeFromImageStatistics is specified")
+        public Double intensityClipFraction = 0.001;
+
         @Parameter(
                 names = "--addToZ",
                 description = "If specified, offset each tile's z value by adding this to it")
@@ -417,6 +432,10 @@ public class CopyStackClient {
             }
         }
 
+        if (parameters.resetIntensityRangeFromImageStatistics) {
+            resetIntensityRange(z, sourceCollection);
+        }
+
         if (moveStackTransform != null) {
             sourceCollection.addTransformSpecToCollection(moveStackTransform);
             sourceCollection.addReferenceTransformToAllTiles(moveStackTransform.getId(),
@@ -438,6 +457,28 @@ public class CopyStackClient {
         }
     }
 
+    private void resetIntensityRange(final Double z,
+                                     final ResolvedTileSpecCollection sourceCollection)
+            throws IOException {
+
+        final Map<Double, ImageStatistics> zToStatistics =
+                fromDataClient.getLayerImageStatistics(parameters.fromStack, z, z, null);
+        final ImageStatistics layerStatistics = zToStatistics.get(z);
+
+        if (layerStatistics == null) {
+            LOG.warn("resetIntensityRange: no image statistics cataloged for z {}, keeping existing intensity range",
+                     z);
+        } else {
+            final double minIntensity = layerStatistics.getPercentileIntensity(parameters.intensityClipFraction);
+            final double maxIntensity = layerStatistics.getPercentileIntensity(1.0 - parameters.intensityClipFraction);
+            for (final TileSpec tileSpec : sourceCollection.getTileSpecs()) {
+                tileSpec.setMinAndMaxIntensity(minIntensity, maxIntensity, tileSpec.getFirstChannelName());
+            }
+            LOG.info("resetIntensityRange: set intensity range to [{}, {}] for {} tiles with z {}",
+                     minIntensity, maxIntensity, sourceCollection.getTileCount(), z);
+        }
+    }
+
     private Set<String> getIdsForTilesInBox(final Double z) throws Exception {
 
         final List<TileBounds> tileBoundsList = fromDataClient.getTileBounds(parameters.fromStack, z);
@@ -14,12 +14,24 @@ import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import mpicbg.trakem2.util.Downsampler;
 
 import org.janelia.alignment.ImageAndMask;
 import org.janelia.alignment.Utils;
+import org.janelia.alignment.loader.ImageLoader;
+import org.janelia.alignment.loader.TiffPyramidLoader;
 import org.janelia.alignment.spec.ChannelSpec;
+import org.janelia.alignment.spec.ImageStatistics;
 import org.janelia.alignment.spec.ResolvedTileSpecCollection;
 import org.janelia.alignment.spec.TileSpec;
 import org.janelia.alignment.spec.stack.MipmapPathBuilder;
@@ -84,6 +96,7 @@ public class MipmapClient {
     private final String stack;
     private final MipmapPathBuilder mipmapPathBuilder;
     private final RenderDataClient renderDataClient;
+    private final Queue<ImageStatistics> imageStatisticsToSave;
 
     public MipmapClient(final RenderWebServiceParameters renderWebParameters,
                         final MipmapParameters parameters)
@@ -117,6 +130,7 @@ public class MipmapClient {
         }
 
         this.renderDataClient = renderWebParameters.getDataClient();
+        this.imageStatisticsToSave = new ConcurrentLinkedQueue<>();
     }
 
     MipmapPathBuilder getMipmapPathBuilder() {
@@ -176,14 +190,23 @@ public class MipmapClient {
         int removedFileCount = 0;
 
         final List<TileSpec> tileSpecsToRender = new ArrayList<>(tiles.getTileSpecs()).subList(startTile, stopTile);
-        for (final TileSpec tileSpec : tileSpecsToRender) {
-            if (parameters.removeAll) {
+        if (parameters.removeAll) {
+            for (final TileSpec tileSpec : tileSpecsToRender) {
                 removedFileCount += removeExistingMipmapFiles(tileSpec);
-            } else {
+            }
+        } else if ((parameters.numberOfThreads != null) && (parameters.numberOfThreads > 1)) {
+            generateMissingMipmapFilesInParallel(tileSpecsToRender, parameters.numberOfThreads);
+        } else {
+            for (final TileSpec tileSpec : tileSpecsToRender) {
                 generateMissingMipmapFiles(tileSpec);
             }
         }
 
+        if (imageStatisticsToSave.size() > 0) {
+            renderDataClient.saveImageStatistics(new ArrayList<>(imageStatisticsToSave));
+            imageStatisticsToSave.clear();
+        }
+
         final int renderedTileCount = tileSpecsToRender.size();
 
         if (parameters.removeAll) {
@@ -199,6 +222,72 @@ public class MipmapClient {
 
     void generateMissingMipmapFiles(final TileSpec tileSpec)
             throws IllegalArgumentException, IOException {
+        generateMissingMipmapFiles(tileSpec, null, null);
+    }
+
+    /**
+     * Pipelines mipmap generation for the specified tiles.
+     * Each tile's sources are decoded once by one of the tile workers which then derives all levels
+     * in memory and hands the encoding and writing of each level off to a separate (bounded) writer pool.
+     * This allows decoding, down-sampling, and encoding/writing of different tiles to overlap.
+     *
+     * @param  tileSpecs        tiles to process.
+     * @param  numberOfThreads  number of tile workers (and number of writers).
+     *
+     * @throws IOException
+     *   if any mipmap cannot be generated.
+     */
+    void generateMissingMipmapFilesInParallel(final List<TileSpec> tileSpecs,
+                                              final int numberOfThreads)
+            throws IOException {
+
+        LOG.info("generateMissingMipmapFilesInParallel: entry, processing {} tiles with {} threads",
+                 tileSpecs.size(), numberOfThreads);
+
+        final ExecutorService tileService = Executors.newFixedThreadPool(numberOfThreads);
+
+        // bound the number of queued level images so that fast decoders cannot exhaust memory,
+        // when the queue is full the tile worker writes the level itself
+        final ThreadPoolExecutor writerService =
+                new ThreadPoolExecutor(numberOfThreads,
+                                       numberOfThreads,
+                                       0L,
+                                       TimeUnit.MILLISECONDS,
+                                       new ArrayBlockingQueue<>(numberOfThreads * 4),
+                                       new ThreadPoolExecutor.CallerRunsPolicy());
+
+        final Queue<Future<?>> writeFutures = new ConcurrentLinkedQueue<>();
+
+        try {
+
+            final List<Future<?>> tileFutures = new ArrayList<>(tileSpecs.size());
+            for (final TileSpec tileSpec : tileSpecs) {
+                tileFutures.add(tileService.submit(() -> {
+                    generateMissingMipmapFiles(tileSpec, writerService, writeFutures);
+                    return null;
+                }));
+            }
+
+            for (final Future<?> future : tileFutures) {
+                waitFor(future);
+            }
+
+            for (final Future<?> future : writeFutures) {
+                waitFor(future);
+            }
+
+        } finally {
+            tileService.shutdownNow();
+            writerService.shutdownNow();
+        }
+
+        LOG.info("generateMissingMipmapFilesInParallel: exit, processed {} tiles", tileSpecs.size());
+    }
+
+    private void generateMissingMipmapFiles(final TileSpec tileSpec,
+                                            final ExecutorService writerService,
+                                            final Queue<Future<?>> writeFutures)
+            throws IllegalArgumentException, IOException {
 
         final String tileId = tileSpec.getTileId();
 
@@ -207,7 +296,10 @@ public class MipmapClient {
             final Map.Entry<Integer, ImageAndMask> firstEntry = channelSpec.getFirstMipmapEntry();
             final ImageAndMask sourceImageAndMask = channelSpec.getFirstMipmapImageAndMask(tileId);
 
-            if (parameters.forceGeneration || isMissingMipmaps(channelSpec, firstEntry, sourceImageAndMask.hasMask())) {
+            final boolean isGenerationNeeded =
+                    parameters.forceGeneration || isMissingMipmaps(channelSpec, firstEntry, sourceImageAndMask.hasMask());
+
+            if (isGenerationNeeded || parameters.storeImageStatistics) {
 
                 ImageProcessor sourceImageProcessor =
                         ImageProcessorCache.DISABLED_CACHE.get(sourceImageAndMask.getImageUrl(),
@@ -228,6 +320,30 @@ public class MipmapClient {
                                                                    sourceImageAndMask.getMaskSliceNumber());
                 }
 
+                if (parameters.storeImageStatistics) {
+                    // source pixels are already decoded here, so this is the cheapest place to catalog statistics
+                    imageStatisticsToSave.add(ImageStatistics.fromImageProcessor(sourceImageAndMask.getImageUrl(),
+                                                                                 sourceImageAndMask.getImageSliceNumber(),
+                                                                                 sourceImageProcessor,
+                                                                                 sourceMaskProcessor));
+                }
+
+                if (! isGenerationNeeded) {
+                    LOG.info("generateMissingMipmapFiles: all mipmap files exist for {}",
+                             channelSpec.getContext(tileId));
+                    continue;
+                }
+
+                if (mipmapPathBuilder.isTiffPyramid()) {
+                    generateTiffPyramids(channelSpec,
+                                         firstEntry,
+                                         sourceImageProcessor,
+                                         sourceMaskProcessor,
+                                         writerService,
+                                         writeFutures);
+                    continue;
+                }
+
                 Map.Entry<Integer, ImageAndMask> derivedEntry;
                 ImageAndMask derivedImageAndMask;
                 File imageMipmapFile;
@@ -250,7 +366,9 @@ public class MipmapClient {
                                                                   imageMipmapFile,
                                                                   channelSpec.getMinIntensity(),
                                                                   channelSpec.getMaxIntensity(),
-                                                                  isMipmapLevelInRange);
+                                                                  isMipmapLevelInRange,
+                                                                  writerService,
+                                                                  writeFutures);
 
                         if (sourceImageAndMask.hasMask()) {
                             if (isMipmapLevelInRange) {
@@ -261,7 +379,9 @@ public class MipmapClient {
                                                                      maskMipmapFile,
                                                                      channelSpec.getMinIntensity(),
                                                                      channelSpec.getMaxIntensity(),
-                                                                     isMipmapLevelInRange);
+                                                                     isMipmapLevelInRange,
+                                                                     writerService,
+                                                                     writeFutures);
                         }
 
                     }
@@ -273,6 +393,69 @@ public class MipmapClient {
         }
     }
 
+    /**
+     * Writes all levels of the specified channel's image (and mask) into single TIFF pyramid containers.
+     * Every level is written (regardless of minLevel or explicitly specified levels)
+     * because containers identify levels by page position.
+     */
+    private void generateTiffPyramids(final ChannelSpec channelSpec,
+                                      final Map.Entry<Integer, ImageAndMask> firstEntry,
+                                      final ImageProcessor sourceImageProcessor,
+                                      final ImageProcessor sourceMaskProcessor,
+                                      final ExecutorService writerService,
+                                      final Queue<Future<?>> writeFutures)
+            throws IllegalArgumentException, IOException {
+
+        final ImageAndMask levelOneImageAndMask = mipmapPathBuilder.deriveImageAndMask(1, firstEntry, false).getValue();
+
+        createMissingDirectories(levelOneImageAndMask.getImageUrl());
+        generateTiffPyramid(sourceImageProcessor,
+                            getFileForUrlString(levelOneImageAndMask.getImageUrl()),
+                            channelSpec.getMinIntensity(),
+                            channelSpec.getMaxIntensity(),
+                            writerService,
+                            writeFutures);
+
+        if ((sourceMaskProcessor != null) &&
+            ImageLoader.LoaderType.TIFF_PYRAMID.equals(levelOneImageAndMask.getMaskLoaderType())) {
+            createMissingDirectories(levelOneImageAndMask.getMaskUrl());
+            generateTiffPyramid(sourceMaskProcessor,
+                                getFileForUrlString(levelOneImageAndMask.getMaskUrl()),
+                                channelSpec.getMinIntensity(),
+                                channelSpec.getMaxIntensity(),
+                                writerService,
+                                writeFutures);
+        }
+    }
+
+    private void generateTiffPyramid(final ImageProcessor sourceProcessor,
+                                     final File containerFile,
+                                     final double minIntensity,
+                                     final double maxIntensity,
+                                     final ExecutorService writerService,
+                                     final Queue<Future<?>> writeFutures)
+            throws IOException {
+
+        if (parameters.forceGeneration || (! containerFile.exists())) {
+
+            final List<BufferedImage> levelImages = new ArrayList<>(mipmapPathBuilder.getNumberOfLevels());
+            ImageProcessor levelProcessor = sourceProcessor;
+            for (int mipmapLevel = 1; mipmapLevel <= mipmapPathBuilder.getNumberOfLevels(); mipmapLevel++) {
+                levelProcessor = Downsampler.downsampleImageProcessor(levelProcessor, 1);
+                levelImages.add(getGrayBufferedImage(levelProcessor, minIntensity, maxIntensity));
+            }
+
+            if (writerService == null) {
+                TiffPyramidLoader.saveTiffPyramid(levelImages, containerFile);
+            } else {
+                writeFutures.add(writerService.submit(() -> {
+                    TiffPyramidLoader.saveTiffPyramid(levelImages, containerFile);
+                    return null;
+                }));
+            }
+        }
+    }
+
     private int removeExistingMipmapFiles(final TileSpec tileSpec)
             throws IllegalArgumentException, IOException {
 
@@ -370,31 +553,67 @@ public class MipmapClient {
 
     private File getFileForUrlString(final String url) {
         final URI uri = Utils.convertPathOrUriStringToUri(url);
-        return new File(uri);
+        // pyramid container URLs identify the level with a query parameter that is not part of the file path
+        return uri.getQuery() == null ? new File(uri) : new File(uri.getPath());
     }
 
     private ImageProcessor generateMipmapFile(final ImageProcessor sourceProcessor,
                                               final File targetMipmapFile,
                                               final double minIntensity,
                                               final double maxIntensity,
-                                              final boolean isMipmapLevelInRange)
+                                              final boolean isMipmapLevelInRange,
+                                              final ExecutorService writerService,
+                                              final Queue<Future<?>> writeFutures)
             throws IOException {
 
         final int mipmapLevelDelta = 1;
         final ImageProcessor downSampledProcessor = Downsampler.downsampleImageProcessor(sourceProcessor,
                                                                                          mipmapLevelDelta);
         if (isMipmapLevelInRange && (parameters.forceGeneration || (! targetMipmapFile.exists()))) {
+            // convert on this thread since converting changes the processor's min and max
+            // and the processor is the source for the next level
             final BufferedImage image = getGrayBufferedImage(downSampledProcessor, minIntensity, maxIntensity);
-            Utils.saveImage(image,
-                            targetMipmapFile.getAbsolutePath(),
-                            parameters.format,
-                            false,
-                            0.85f);
+            if (writerService == null) {
+                saveMipmapFile(image, targetMipmapFile);
+            } else {
+                writeFutures.add(writerService.submit(() -> {
+                    saveMipmapFile(image, targetMipmapFile);
+                    return null;
+                }));
+            }
         }
 
         return downSampledProcessor;
     }
 
+    private void saveMipmapFile(final BufferedImage image,
+                                final File targetMipmapFile)
+            throws IOException {
+        Utils.saveImage(image,
+                        targetMipmapFile.getAbsolutePath(),
+                        parameters.format,
+                        false,
+                        0.85f);
+    }
+
+    private static void waitFor(final Future<?> future)
+            throws IOException {
+        try {
+            future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while generating mipmaps", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("failed to generate mipmaps", cause);
+        }
+    }
+
     private static BufferedImage getGrayBufferedImage(final ImageProcessor downSampledProcessor,
                                                       final double minIntensity,
                                                       final double maxIntensity) {
@@ -15,10 +15,10 @@ import org.apache.http.client.methods.HttpPut;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.janelia.alignment.RenderParameters;
 import org.janelia.render.client.parameter.CommandLineParameters;
 import org.janelia.render.client.parameter.RenderWebServiceParameters;
+import org.janelia.render.client.request.SharedHttpClient;
 import org.janelia.render.client.response.BufferedImageResponseHandler;
 import org.janelia.render.client.response.FileResponseHandler;
 import org.slf4j.Logger;
@@ -114,7 +114,7 @@ public class RenderClient {
         map.put(PNG_FORMAT.toLowerCase(), pngUri);
         this.formatToRenderUriMap = map;
 
-        this.httpClient = HttpClients.createDefault();
+        this.httpClient = SharedHttpClient.getHttpClient();
     }
 
     /**
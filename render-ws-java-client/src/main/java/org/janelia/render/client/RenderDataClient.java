@@ -13,6 +13,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.apache.http.client.methods.HttpDelete;
@@ -23,18 +25,20 @@ import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.janelia.alignment.RenderParameters;
 import org.janelia.alignment.json.JsonUtils;
 import org.janelia.alignment.match.CanvasMatches;
 import org.janelia.alignment.match.MatchCollectionMetaData;
 import org.janelia.alignment.spec.Bounds;
+import org.janelia.alignment.spec.ImageStatistics;
 import org.janelia.alignment.spec.LeafTransformSpec;
 import org.janelia.alignment.spec.ResolvedTileSpecCollection;
+import org.janelia.alignment.spec.ResolvedTileSpecStreamReader;
 import org.janelia.alignment.spec.SectionData;
 import org.janelia.alignment.spec.TileBounds;
 import org.janelia.alignment.spec.TileCoordinates;
 import org.janelia.alignment.spec.TileSpec;
+import org.janelia.alignment.spec.TransformSpec;
 import org.janelia.alignment.spec.stack.HierarchicalStack;
 import org.janelia.alignment.spec.stack.MipmapPathBuilder;
 import org.janelia.alignment.spec.stack.StackId;
@@ -43,9 +47,10 @@ import org.janelia.alignment.spec.stack.StackVersion;
 import org.janelia.alignment.transform.ConsensusWarpFieldBuilder;
 import org.janelia.alignment.util.RenderWebServiceUrls;
 import org.janelia.alignment.util.ZFilter;
-import org.janelia.render.client.request.WaitingRetryHandler;
+import org.janelia.render.client.request.SharedHttpClient;
 import org.janelia.render.client.response.EmptyResponseHandler;
 import org.janelia.render.client.response.JsonResponseHandler;
+import org.janelia.render.client.response.ResolvedTileSpecStreamResponseHandler;
 import org.janelia.render.client.response.ResourceCreatedResponseHandler;
 import org.janelia.render.client.response.TextResponseHandler;
 import org.slf4j.Logger;
@@ -66,6 +71,8 @@ public class RenderDataClient {
 
     /**
      * Creates a new client for the specified owner and project.
+     * All clients share one JVM wide pool of keep-alive connections (see {@link SharedHttpClient}),
+     * so creating many short-lived clients is cheap.
      *
      * @param  baseDataUrl  the base URL string for all requests (e.g. 'http://tem-services:8080/render-ws/v1')
      * @param  owner        the owner name for all requests.
@@ -76,7 +83,7 @@ public class RenderDataClient {
                             final String project) {
         this.project = project;
         this.urls = new RenderWebServiceUrls(baseDataUrl, owner, project);
-        this.httpClient = HttpClientBuilder.create().setRetryHandler(new WaitingRetryHandler()).build();
+        this.httpClient = SharedHttpClient.getHttpClient();
     }
 
     public RenderWebServiceUrls getUrls() {
@@ -907,6 +914,103 @@ public class RenderDataClient {
         return httpClient.execute(httpGet, responseHandler);
     }
 
+    /**
+     * @param  stack    name of stack.
+     * @param  z        z value for layer.
+     * @param  channel  name of channel whose source images should be used (null for the first channel).
+     *
+     * @return catalog statistics for the source image of each tile in the specified layer keyed by tileId
+     *         (tiles without catalog statistics are omitted).
+     *
+     * @throws IOException
+     *   if the request fails for any reason.
+     */
+    public Map<String, ImageStatistics> getTileImageStatistics(final String stack,
+                                                               final Double z,
+                                                               final String channel)
+            throws IOException {
+
+        final URIBuilder uriBuilder = new URIBuilder(getUri(urls.getZUrlString(stack, z) + "/tileImageStatistics"));
+        addParameterIfDefined("channel", channel, uriBuilder);
+
+        final URI uri = getUri(uriBuilder);
+        final HttpGet httpGet = new HttpGet(uri);
+        final String requestContext = "GET " + uri;
+        final TypeReference<Map<String, ImageStatistics>> typeReference =
+                new TypeReference<Map<String, ImageStatistics>>() {};
+        final JsonUtils.GenericHelper<Map<String, ImageStatistics>> helper =
+                new JsonUtils.GenericHelper<>(typeReference);
+        final JsonResponseHandler<Map<String, ImageStatistics>> responseHandler =
+                new JsonResponseHandler<>(requestContext, helper);
+
+        LOG.info("getTileImageStatistics: submitting {}", requestContext);
+
+        return httpClient.execute(httpGet, responseHandler);
+    }
+
+    /**
+     * @param  stack    name of stack.
+     * @param  minZ     (optional) minimum z value for layers to include.
+     * @param  maxZ     (optional) maximum z value for layers to include.
+     * @param  channel  name of channel whose source images should be used (null for the first channel).
+     *
+     * @return aggregated catalog source image statistics for each layer keyed by z
+     *         (layers without catalog statistics are omitted).
+     *
+     * @throws IOException
+     *   if the request fails for any reason.
+     */
+    public Map<Double, ImageStatistics> getLayerImageStatistics(final String stack,
+                                                                final Double minZ,
+                                                                final Double maxZ,
+                                                                final String channel)
+            throws IOException {
+
+        final URIBuilder uriBuilder = new URIBuilder(getUri(urls.getStackUrlString(stack) + "/layerImageStatistics"));
+        addParameterIfDefined("minZ", minZ, uriBuilder);
+        addParameterIfDefined("maxZ", maxZ, uriBuilder);
+        addParameterIfDefined("channel", channel, uriBuilder);
+
+        final URI uri = getUri(uriBuilder);
+        final HttpGet httpGet = new HttpGet(uri);
+        final String requestContext = "GET " + uri;
+        final TypeReference<Map<Double, ImageStatistics>> typeReference =
+                new TypeReference<Map<Double, ImageStatistics>>() {};
+        final JsonUtils.GenericHelper<Map<Double, ImageStatistics>> helper =
+                new JsonUtils.GenericHelper<>(typeReference);
+        final JsonResponseHandler<Map<Double, ImageStatistics>> responseHandler =
+                new JsonResponseHandler<>(requestContext, helper);
+
+        LOG.info("getLayerImageStatistics: submitting {}", requestContext);
+
+        return httpClient.execute(httpGet, responseHandler);
+    }
+
+    /**
+     * Saves the specified source image statistics to the (stack independent) image statistics catalog.
+     *
+     * @param  statisticsList  statistics to save.
+     *
+     * @throws IOException
+     *   if the request fails for any reason.
+     */
+    public void saveImageStatistics(final List<ImageStatistics> statisticsList)
+            throws IOException {
+
+        final String json = JsonUtils.FAST_MAPPER.writeValueAsString(statisticsList);
+        final StringEntity stringEntity = new StringEntity(json, ContentType.APPLICATION_JSON);
+        final URI uri = getUri(urls.getImageStatisticsUrlString());
+        final String requestContext = "PUT " + uri;
+        final ResourceCreatedResponseHandler responseHandler = new ResourceCreatedResponseHandler(requestContext);
+
+        final HttpPut httpPut = new HttpPut(uri);
+        httpPut.setEntity(stringEntity);
+
+        LOG.info("saveImageStatistics: submitting {} for {} images", requestContext, statisticsList.size());
+
+        httpClient.execute(httpPut, responseHandler);
+    }
+
     /**
      * Updates the z value for the specified tiles.
      *
@@ -1011,6 +1115,36 @@ public class RenderDataClient {
         return httpClient.execute(httpGet, responseHandler);
     }
 
+    /**
+     * Asynchronous version of {@link #getResolvedTiles(String, Double)}.
+     *
+     * @param  stack  name of stack.
+     * @param  z      z value for layer.
+     *
+     * @return future for the set of resolved tiles and transforms for the specified layer.
+     */
+    public CompletableFuture<ResolvedTileSpecCollection> getResolvedTilesAsync(final String stack,
+                                                                               final Double z) {
+        return SharedHttpClient.executeAsync(() -> getResolvedTiles(stack, z));
+    }
+
+    /**
+     * Concurrently retrieves the resolved tiles for each of the specified layers.
+     *
+     * @param  stack    name of stack.
+     * @param  zValues  z values for the layers.
+     *
+     * @return map of z values to the set of resolved tiles and transforms for each layer.
+     *
+     * @throws IOException
+     *   if any request fails for any reason.
+     */
+    public Map<Double, ResolvedTileSpecCollection> getResolvedTilesForZValues(final String stack,
+                                                                              final Collection<Double> zValues)
+            throws IOException {
+        return SharedHttpClient.executeAll(zValues, z -> getResolvedTiles(stack, z));
+    }
+
     /**
      * @param  stack    name of stack.
      * @param  minZ     minimum z value for all tiles (or null for no minimum).
@@ -1058,6 +1192,58 @@ public class RenderDataClient {
         return httpClient.execute(httpGet, responseHandler);
     }
 
+    /**
+     * Streams the resolved tiles that match the specified criteria, passing each resolved tile spec
+     * to the specified consumer as soon as it is read so that the full collection never needs to be held
+     * in memory by the client or the web service.
+     *
+     * @param  stack             name of stack.
+     * @param  minZ              minimum z value for all tiles (or null for no minimum).
+     * @param  maxZ              maximum z value for all tiles (or null for no maximum).
+     * @param  groupId           group id for all tiles (or null).
+     * @param  minX              minimum x value for all tiles (or null for no minimum).
+     * @param  maxX              maximum x value for all tiles (or null for no maximum).
+     * @param  minY              minimum y value for all tiles (or null for no minimum).
+     * @param  maxY              maximum y value for all tiles (or null for no maximum).
+     * @param  tileSpecConsumer  consumer for each resolved tile spec.
+     *
+     * @return number of tile specs passed to the consumer (zero if no tiles match the criteria).
+     *
+     * @throws IOException
+     *   if the request fails for any reason.
+     */
+    public int streamResolvedTiles(final String stack,
+                                   final Double minZ,
+                                   final Double maxZ,
+                                   final String groupId,
+                                   final Double minX,
+                                   final Double maxX,
+                                   final Double minY,
+                                   final Double maxY,
+                                   final Consumer<TileSpec> tileSpecConsumer)
+            throws IOException {
+
+        final URIBuilder uriBuilder = new URIBuilder(getUri(urls.getStackUrlString(stack) + "/resolvedTiles/stream"));
+        addParameterIfDefined("minZ", minZ, uriBuilder);
+        addParameterIfDefined("maxZ", maxZ, uriBuilder);
+        addParameterIfDefined("groupId", groupId, uriBuilder);
+        addParameterIfDefined("minX", minX, uriBuilder);
+        addParameterIfDefined("maxX", maxX, uriBuilder);
+        addParameterIfDefined("minY", minY, uriBuilder);
+        addParameterIfDefined("maxY", maxY, uriBuilder);
+
+        final URI uri = getUri(uriBuilder);
+        final HttpGet httpGet = new HttpGet(uri);
+        final String requestContext = "GET " + uri;
+        final ResolvedTileSpecStreamResponseHandler responseHandler =
+                new ResolvedTileSpecStreamResponseHandler(requestContext,
+                                                          new ResolvedTileSpecStreamReader(tileSpecConsumer));
+
+        LOG.info("streamResolvedTiles: submitting {}", requestContext);
+
+        return httpClient.execute(httpGet, responseHandler);
+    }
+
     /**
      * Saves the specified collection.
      *
@@ -1088,6 +1274,51 @@ public class RenderDataClient {
         httpClient.execute(httpPut, responseHandler);
     }
 
+    /**
+     * Applies the specified transform to all tiles in the specified z range and/or group within the web service
+     * (tile bounds are re-derived by the service as well).
+     *
+     * @param  stack              name of stack (must be in LOADING state).
+     * @param  minZ               minimum z value for tiles to update (or null for no minimum).
+     * @param  maxZ               maximum z value for tiles to update (or null for no maximum).
+     * @param  groupId            group id for tiles to update (or null for all groups).
+     * @param  transformSpec      transform to apply (may reference shared stack transforms).
+     * @param  applicationMethod  method used to apply the transform to each tile.
+     *
+     * @return number of updated tiles.
+     *
+     * @throws IOException
+     *   if the request fails for any reason.
+     */
+    public Integer applyTransformToTiles(final String stack,
+                                         final Double minZ,
+                                         final Double maxZ,
+                                         final String groupId,
+                                         final TransformSpec transformSpec,
+                                         final ResolvedTileSpecCollection.TransformApplicationMethod applicationMethod)
+            throws IOException {
+
+        final URIBuilder uriBuilder = new URIBuilder(getUri(urls.getStackUrlString(stack) + "/transformedTiles"));
+        addParameterIfDefined("minZ", minZ, uriBuilder);
+        addParameterIfDefined("maxZ", maxZ, uriBuilder);
+        addParameterIfDefined("groupId", groupId, uriBuilder);
+        addParameterIfDefined("applicationMethod", applicationMethod, uriBuilder);
+
+        final URI uri = getUri(uriBuilder);
+        final String json = transformSpec.toJson();
+        final StringEntity stringEntity = new StringEntity(json, ContentType.APPLICATION_JSON);
+        final String requestContext = "PUT " + uri;
+        final JsonUtils.Helper<Integer> helper = new JsonUtils.Helper<>(Integer.class);
+        final JsonResponseHandler<Integer> responseHandler = new JsonResponseHandler<>(requestContext, helper);
+
+        final HttpPut httpPut = new HttpPut(uri);
+        httpPut.setEntity(stringEntity);
+
+        LOG.info("applyTransformToTiles: submitting {}", requestContext);
+
+        return httpClient.execute(httpPut, responseHandler);
+    }
+
     /**
      * Updates the z value for the specified stack section.
      *
@@ -1327,6 +1558,23 @@ public class RenderDataClient {
                           excludeMatchDetails);
     }
 
+    /**
+     * Concurrently retrieves the matches within each of the specified groups.
+     *
+     * @param  groupIds             group ids (usually section ids).
+     * @param  excludeMatchDetails  if true, only retrieve pair identifiers and exclude detailed match points.
+     *
+     * @return map of group ids to the list of canvas matches within each group.
+     *
+     * @throws IOException
+     *   if any request fails for any reason.
+     */
+    public Map<String, List<CanvasMatches>> getMatchesWithinGroups(final Collection<String> groupIds,
+                                                                   final boolean excludeMatchDetails)
+            throws IOException {
+        return SharedHttpClient.executeAll(groupIds, groupId -> getMatchesWithinGroup(groupId, excludeMatchDetails));
+    }
+
     /**
      *
      * @param  pGroupId             first tile's section id.
@@ -1542,6 +1790,49 @@ public class RenderDataClient {
         return urls.getRenderParametersUrlString(stack, x, y, z, width, height, scale, filterListName);
     }
 
+    /**
+     * Loads render parameters using this client's pooled connections
+     * instead of opening a new connection like {@link RenderParameters#loadFromUrl} does.
+     *
+     * @param  parametersUrl  render parameters URL (e.g. from {@link #getRenderParametersUrlString}).
+     *
+     * @return render parameters (with derived values initialized) for the specified URL.
+     *
+     * @throws IOException
+     *   if the request fails for any reason.
+     */
+    public RenderParameters getRenderParameters(final String parametersUrl)
+            throws IOException {
+
+        final URI uri = getUri(parametersUrl);
+        final HttpGet httpGet = new HttpGet(uri);
+        final String requestContext = "GET " + uri;
+        final TextResponseHandler responseHandler = new TextResponseHandler(requestContext);
+
+        LOG.info("getRenderParameters: submitting {}", requestContext);
+
+        final RenderParameters renderParameters = RenderParameters.parseJson(httpClient.execute(httpGet,
+                                                                                                responseHandler));
+        renderParameters.initializeDerivedValues();
+
+        return renderParameters;
+    }
+
+    /**
+     * Concurrently loads render parameters for each of the specified URLs.
+     *
+     * @param  parametersUrls  render parameters URLs.
+     *
+     * @return map of URLs to render parameters.
+     *
+     * @throws IOException
+     *   if any request fails for any reason.
+     */
+    public Map<String, RenderParameters> getRenderParametersForUrls(final Collection<String> parametersUrls)
+            throws IOException {
+        return SharedHttpClient.executeAll(parametersUrls, this::getRenderParameters);
+    }
+
     private URI getStackUri(final String stack)
             throws IOException {
         return getUri(urls.getStackUrlString(stack));
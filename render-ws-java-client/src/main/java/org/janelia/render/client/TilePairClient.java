@@ -12,12 +12,16 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -42,6 +46,7 @@ import org.janelia.render.client.parameter.CommandLineParameters;
 import org.janelia.render.client.parameter.LayerBoundsParameters;
 import org.janelia.render.client.parameter.RenderWebServiceParameters;
 import org.janelia.render.client.parameter.ZRangeParameters;
+import org.janelia.render.client.request.SharedHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -179,6 +184,17 @@ public class TilePairClient {
                 description = "Maximum number of pairs to include in each file.")
         public Integer maxPairsPerFile = 100000;
 
+        @Parameter(
+                names = "--numberOfThreads",
+                description = "Number of threads to use for deriving neighbor pairs")
+        public int numberOfThreads = 1;
+
+        @Parameter(
+                names = "--prefetchLayerCount",
+                description = "Number of layers beyond the layer being saved whose tile bounds should be " +
+                              "concurrently loaded and whose neighbor pairs should be concurrently derived")
+        public int prefetchLayerCount = 16;
+
         @ParametersDelegate
         public LayerBoundsParameters bounds = new LayerBoundsParameters();
 
@@ -328,6 +344,15 @@ public class TilePairClient {
                                                 parameters.zValues);
     }
 
+    /**
+     * Derives neighbor pairs for all layers and saves them (in sorted chunks) to the configured file(s).
+     *
+     * Layers are processed as a pipeline: tile bounds trees for upcoming layers are concurrently loaded
+     * (and shared by every layer that needs them), neighbor pairs for upcoming layers are concurrently derived
+     * by a pool of {@link Parameters#numberOfThreads} threads, and full chunks of pairs are written by
+     * a separate thread while later layers are processed.  Derived pairs are consumed in z order,
+     * so the saved files are identical to those produced by sequentially processing each layer.
+     */
     void deriveAndSaveSortedNeighborPairs()
             throws IllegalArgumentException, IOException {
 
@@ -335,7 +360,7 @@ public class TilePairClient {
 
         final String renderParametersUrlTemplate = getRenderParametersUrlTemplate();
 
-        final List<Double> zValues = getZValues();
+        final List<Double> zValues = new ArrayList<>(getZValues());
 
         if (zValues.size() == 0) {
             throw new IllegalArgumentException(
@@ -364,122 +389,86 @@ public class TilePairClient {
             }
         }
 
-        final Map<Double, TileBoundsRTree> zToTreeMap = new LinkedHashMap<>(zValues.size());
+        final int numberOfThreads = Math.max(1, parameters.numberOfThreads);
+        final int prefetchLayerCount = Math.max(0, parameters.prefetchLayerCount);
 
-        // load the first zNeighborDistance trees
-        double z;
-        for (int zIndex = 0; (zIndex < zValues.size()) && (zIndex < parameters.zNeighborDistance); zIndex++) {
-            z = zValues.get(zIndex);
-            zToTreeMap.put(z, buildRTree(z));
-            if (existingMatchHelper != null) {
-                existingMatchHelper.addExistingPairs(z);
-            }
-        }
+        final ExecutorService pairExecutor = Executors.newFixedThreadPool(numberOfThreads);
+        final ExecutorService saveExecutor = Executors.newSingleThreadExecutor();
 
-        // edge case: add existing montage pairs (distance == 0)
-        if ((parameters.zNeighborDistance == 0) && (existingMatchHelper != null)) {
-            existingMatchHelper.addExistingPairs(zValues.get(0));
-        }
+        final Map<Double, CompletableFuture<TileBoundsRTree>> zToTreeFuture = new HashMap<>();
+        final List<CompletableFuture<Set<OrderedCanvasIdPair>>> pairFutures = new ArrayList<>(zValues.size());
 
         final Set<OrderedCanvasIdPair> neighborPairs = new TreeSet<>();
 
         int totalSavedPairCount = 0;
-        Double neighborZ;
-        TileBoundsRTree currentZTree;
-        List<TileBoundsRTree> neighborTreeList;
-        Set<OrderedCanvasIdPair> currentNeighborPairs;
-        for (int zIndex = 0; zIndex < zValues.size(); zIndex++) {
+        int existingPairsZIndex = -1;
+        Future<Void> previousSaveFuture = null;
+        try {
 
-            z = zValues.get(zIndex);
+            for (int zIndex = 0; zIndex < zValues.size(); zIndex++) {
 
-            if ((parameters.zNeighborDistance == 0) || (! zToTreeMap.containsKey(z))) {
-                zToTreeMap.put(z, buildRTree(z));
-            }
+                final double z = zValues.get(zIndex);
 
-            neighborTreeList = new ArrayList<>();
+                // keep pair derivation (and tree loading) for upcoming layers running while this layer is consumed
+                final int lastScheduledIndex = Math.min(zIndex + prefetchLayerCount, zValues.size() - 1);
+                while (pairFutures.size() <= lastScheduledIndex) {
+                    pairFutures.add(deriveNeighborPairsAsync(zValues, pairFutures.size(), maxZ,
+                                                             zToTreeFuture, pairExecutor));
+                }
 
-            final double idealMaxNeighborZ = Math.min(maxZ, z + parameters.zNeighborDistance);
-            for (int neighborZIndex = zIndex + 1; neighborZIndex < zValues.size(); neighborZIndex++) {
+                final Set<OrderedCanvasIdPair> currentNeighborPairs =
+                        getResult(pairFutures.get(zIndex), "neighbor pair derivation for z " + z);
 
-                neighborZ = zValues.get(neighborZIndex);
+                // release references for completed layers (only later layers can be neighbors of later layers)
+                pairFutures.set(zIndex, null);
+                zToTreeFuture.remove(z);
 
-                if (neighborZ > idealMaxNeighborZ) {
-                    break;
-                }
+                if (existingMatchHelper != null) {
 
-                if (! zToTreeMap.containsKey(neighborZ)) {
-                    if (zIndex > 0) {
-                        final double completedZ = zValues.get(zIndex - 1);
-                        zToTreeMap.remove(completedZ);
+                    // existing pairs must be tracked (in z order) for this layer and all of its neighbor layers
+                    final int lastNeighborIndex = Math.min(Math.max(getLastNeighborIndex(zValues, zIndex, maxZ),
+                                                                    parameters.zNeighborDistance - 1),
+                                                           zValues.size() - 1);
+                    for (; existingPairsZIndex < lastNeighborIndex; existingPairsZIndex++) {
+                        existingMatchHelper.addExistingPairs(zValues.get(existingPairsZIndex + 1));
                     }
-                    zToTreeMap.put(neighborZ, buildRTree(neighborZ));
-                    if (existingMatchHelper != null) {
-                        existingMatchHelper.addExistingPairs(neighborZ);
-                    }
-                }
-
-                neighborTreeList.add(zToTreeMap.get(neighborZ));
-            }
-
-            currentZTree = zToTreeMap.get(z);
 
-            final List<TileBounds> sourceTileBoundsList;
-            if (sourceTileIds == null) {
-                sourceTileBoundsList = currentZTree.getTileBoundsList();
-            } else {
-                sourceTileBoundsList = currentZTree.getTileBoundsList().stream()
-                        .filter(tb -> sourceTileIds.contains(tb.getTileId()))
-                        .collect(Collectors.toList());
-            }
+                    existingMatchHelper.removeExistingPairs(z, currentNeighborPairs);
+                }
 
-            currentNeighborPairs = currentZTree.getCircleNeighbors(sourceTileBoundsList,
-                                                                   neighborTreeList,
-                                                                   parameters.xyNeighborFactor,
-                                                                   parameters.explicitRadius,
-                                                                   parameters.excludeCornerNeighbors,
-                                                                   parameters.excludeSameLayerNeighbors,
-                                                                   parameters.excludeSameSectionNeighbors);
-
-            if (parameters.excludeSameLayerPairsWithPosition != null) {
-                final MontageRelativePosition excludedPosition = parameters.excludeSameLayerPairsWithPosition;
-                currentNeighborPairs.removeIf(pair -> excludedPosition.equals(pair.getP().getRelativePosition()) ||
-                                                      excludedPosition.equals(pair.getQ().getRelativePosition()));
-            }
+                neighborPairs.addAll(currentNeighborPairs);
+
+                if (neighborPairs.size() > parameters.maxPairsPerFile) {
+                    final List<OrderedCanvasIdPair> neighborPairsList = new ArrayList<>(neighborPairs);
+                    int fromIndex = 0;
+                    for (; ; fromIndex += parameters.maxPairsPerFile) {
+                        final int toIndex = fromIndex + parameters.maxPairsPerFile;
+                        if (toIndex <= neighborPairs.size()) {
+                            // wait for the prior chunk so that at most one chunk is being written at a time
+                            waitForSave(previousSaveFuture);
+                            previousSaveFuture = savePairsAsync(neighborPairsList.subList(fromIndex, toIndex),
+                                                                renderParametersUrlTemplate,
+                                                                getOutputFileName(),
+                                                                saveExecutor);
+                            numberOfOutputFiles++;
+                            totalSavedPairCount += parameters.maxPairsPerFile;
+                        } else {
+                            break;
+                        }
+                    }
 
-            if (existingMatchHelper != null) {
-                existingMatchHelper.removeExistingPairs(z, currentNeighborPairs);
+                    neighborPairs.clear();
+                    neighborPairs.addAll(neighborPairsList.subList(fromIndex, neighborPairsList.size()));
 
-                // edge case: add existing montage pairs (distance == 0) for next z
-                final int nextIndex = zIndex + 1;
-                if ((parameters.zNeighborDistance == 0) && (nextIndex < zValues.size())) {
-                    existingMatchHelper.addExistingPairs(zValues.get(nextIndex));
                 }
 
             }
 
-            neighborPairs.addAll(currentNeighborPairs);
-
-            if (neighborPairs.size() > parameters.maxPairsPerFile) {
-                final List<OrderedCanvasIdPair> neighborPairsList = new ArrayList<>(neighborPairs);
-                int fromIndex = 0;
-                for (; ; fromIndex += parameters.maxPairsPerFile) {
-                    final int toIndex = fromIndex + parameters.maxPairsPerFile;
-                    if (toIndex <= neighborPairs.size()) {
-                        savePairs(neighborPairsList.subList(fromIndex, toIndex),
-                                  renderParametersUrlTemplate,
-                                  getOutputFileName());
-                        numberOfOutputFiles++;
-                        totalSavedPairCount += parameters.maxPairsPerFile;
-                    } else {
-                        break;
-                    }
-                }
-
-                neighborPairs.clear();
-                neighborPairs.addAll(neighborPairsList.subList(fromIndex, neighborPairsList.size()));
-
-            }
+            waitForSave(previousSaveFuture);
 
+        } finally {
+            pairExecutor.shutdownNow();
+            saveExecutor.shutdownNow();
         }
 
         if (neighborPairs.size() > 0) {
@@ -492,6 +481,93 @@ public class TilePairClient {
         LOG.info("deriveAndSaveSortedNeighborPairs: exit, saved {} total pairs", totalSavedPairCount);
     }
 
+    /**
+     * @return index of the last layer within zNeighborDistance of the specified layer
+     *         (or the specified layer's index if it has no neighbor layers).
+     */
+    private int getLastNeighborIndex(final List<Double> sortedZValues,
+                                     final int zIndex,
+                                     final double maxZ) {
+        final double idealMaxNeighborZ = Math.min(maxZ, sortedZValues.get(zIndex) + parameters.zNeighborDistance);
+        int lastNeighborIndex = zIndex;
+        for (int neighborZIndex = zIndex + 1; neighborZIndex < sortedZValues.size(); neighborZIndex++) {
+            if (sortedZValues.get(neighborZIndex) > idealMaxNeighborZ) {
+                break;
+            }
+            lastNeighborIndex = neighborZIndex;
+        }
+        return lastNeighborIndex;
+    }
+
+    /**
+     * @return future for the neighbor pairs of the specified layer that completes once the trees for the
+     *         layer and all of its neighbor layers have been loaded and the pairs have been derived.
+     */
+    private CompletableFuture<Set<OrderedCanvasIdPair>> deriveNeighborPairsAsync(
+            final List<Double> sortedZValues,
+            final int zIndex,
+            final double maxZ,
+            final Map<Double, CompletableFuture<TileBoundsRTree>> zToTreeFuture,
+            final ExecutorService pairExecutor) {
+
+        final CompletableFuture<TileBoundsRTree> currentTreeFuture =
+                getTreeFuture(sortedZValues.get(zIndex), zToTreeFuture);
+
+        final List<CompletableFuture<TileBoundsRTree>> neighborTreeFutures = new ArrayList<>();
+        final int lastNeighborIndex = getLastNeighborIndex(sortedZValues, zIndex, maxZ);
+        for (int neighborZIndex = zIndex + 1; neighborZIndex <= lastNeighborIndex; neighborZIndex++) {
+            neighborTreeFutures.add(getTreeFuture(sortedZValues.get(neighborZIndex), zToTreeFuture));
+        }
+
+        final List<CompletableFuture<TileBoundsRTree>> allTreeFutures = new ArrayList<>(neighborTreeFutures);
+        allTreeFutures.add(currentTreeFuture);
+
+        return CompletableFuture
+                .allOf(allTreeFutures.toArray(new CompletableFuture[0]))
+                .thenApplyAsync(ignored -> deriveNeighborPairs(
+                                        currentTreeFuture.join(),
+                                        neighborTreeFutures.stream()
+                                                .map(CompletableFuture::join)
+                                                .collect(Collectors.toList())),
+                                pairExecutor);
+    }
+
+    private CompletableFuture<TileBoundsRTree> getTreeFuture(
+            final Double z,
+            final Map<Double, CompletableFuture<TileBoundsRTree>> zToTreeFuture) {
+        return zToTreeFuture.computeIfAbsent(z, treeZ -> SharedHttpClient.executeAsync(() -> buildRTree(treeZ)));
+    }
+
+    private Set<OrderedCanvasIdPair> deriveNeighborPairs(final TileBoundsRTree currentZTree,
+                                                         final List<TileBoundsRTree> neighborTreeList) {
+
+        final List<TileBounds> sourceTileBoundsList;
+        if (sourceTileIds == null) {
+            sourceTileBoundsList = currentZTree.getTileBoundsList();
+        } else {
+            sourceTileBoundsList = currentZTree.getTileBoundsList().stream()
+                    .filter(tb -> sourceTileIds.contains(tb.getTileId()))
+                    .collect(Collectors.toList());
+        }
+
+        final Set<OrderedCanvasIdPair> currentNeighborPairs =
+                currentZTree.getCircleNeighbors(sourceTileBoundsList,
+                                                neighborTreeList,
+                                                parameters.xyNeighborFactor,
+                                                parameters.explicitRadius,
+                                                parameters.excludeCornerNeighbors,
+                                                parameters.excludeSameLayerNeighbors,
+                                                parameters.excludeSameSectionNeighbors);
+
+        if (parameters.excludeSameLayerPairsWithPosition != null) {
+            final MontageRelativePosition excludedPosition = parameters.excludeSameLayerPairsWithPosition;
+            currentNeighborPairs.removeIf(pair -> excludedPosition.equals(pair.getP().getRelativePosition()) ||
+                                                  excludedPosition.equals(pair.getQ().getRelativePosition()));
+        }
+
+        return currentNeighborPairs;
+    }
+
     public TileBoundsRTree buildRTree(final double z)
             throws IOException {
 
@@ -593,6 +669,46 @@ public class TilePairClient {
         return String.format("%s_p%03d%s", outputFileNamePrefix, numberOfOutputFiles, outputFileNameSuffix);
     }
 
+    private Future<Void> savePairsAsync(final List<OrderedCanvasIdPair> neighborPairs,
+                                        final String renderParametersUrlTemplate,
+                                        final String outputFileName,
+                                        final ExecutorService saveExecutor) {
+        return saveExecutor.submit(() -> {
+            savePairs(neighborPairs, renderParametersUrlTemplate, outputFileName);
+            return null;
+        });
+    }
+
+    private static void waitForSave(final Future<Void> saveFuture)
+            throws IOException {
+        if (saveFuture != null) {
+            getResult(saveFuture, "pair file save");
+        }
+    }
+
+    /**
+     * @return the result of the specified future, unwrapping any failure cause.
+     */
+    private static <T> T getResult(final Future<T> future,
+                                   final String context)
+            throws IOException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for " + context, e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new IOException(context + " failed", cause);
+            }
+        }
+    }
+
     private void savePairs(final List<OrderedCanvasIdPair> neighborPairs,
                            final String renderParametersUrlTemplate,
                            final String outputFileName)
@@ -11,6 +11,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import mpicbg.trakem2.transform.AffineModel2D;
 
@@ -180,6 +185,9 @@ public class BoxGenerator
      * If the next level of mipmaps is to be rendered, parent boxes for complete 'families'
      * (where all siblings are specified) will also be rendered.
      *
+     * When more than one thread is configured (see {@link MaterializedBoxParameters#numberOfThreads}),
+     * boxes are rendered concurrently (see {@link #renderBoxesForLevelInParallel}).
+     *
      * @param  z                    z value for all boxes.
      * @param  level                mipmap level for all boxes.
      * @param  boxList              list of boxes to be rendered for a level.
@@ -198,6 +206,11 @@ public class BoxGenerator
                                              final boolean skipRendering)
             throws IOException {
 
+        if ((! skipRendering) &&
+            (boxParameters.numberOfThreads != null) && (boxParameters.numberOfThreads > 1)) {
+            return renderBoxesForLevelInParallel(z, level, boxList, imageProcessorCache);
+        }
+
         final Progress progress = new Progress(z, level, boxList.size(), 300);
         final List<BoxData> renderedBoxList = new ArrayList<>(boxList.size());
 
@@ -255,6 +268,113 @@ public class BoxGenerator
         return renderedBoxList;
     }
 
+    /**
+     * Renders the specified boxes concurrently using a shared image processor cache.
+     *
+     * Boxes are grouped into sibling families the same way they are for sequential rendering
+     * and the boxes in each family share a cached parent.
+     * Every box is rendered by its own task and the task that completes a family's last box
+     * assembles and saves the family's parent from the cached child pixels.
+     *
+     * @return list of all boxes rendered (including parents) in the same order as sequential rendering.
+     *
+     * @throws IOException
+     *   if any failures occur during rendering.
+     */
+    private List<BoxData> renderBoxesForLevelInParallel(final double z,
+                                                        final int level,
+                                                        final List<BoxData> boxList,
+                                                        final ImageProcessorCache imageProcessorCache)
+            throws IOException {
+
+        final List<SiblingFamily> families = new ArrayList<>();
+
+        SiblingFamily family = null;
+        BoxData parentBox;
+        for (final BoxData boxData : boxList) {
+            if (boxData.getLevel() < boxParameters.maxLevel) {
+                parentBox = boxData.getParentBoxData();
+                if ((family == null) || (! parentBox.equals(family.parentBox))) {
+                    family = new SiblingFamily(parentBox,
+                                               new RenderedBoxParent(parentBox, baseBoxPath, boxPathSuffix));
+                    families.add(family);
+                }
+                family.parentBox.addChild(boxData);
+            } else {
+                family = new SiblingFamily(null, null);
+                families.add(family);
+            }
+            family.children.add(boxData);
+        }
+
+        final Progress progress = new Progress(z, level, boxList.size(), 300);
+        final AtomicInteger renderedLevelBoxCount = new AtomicInteger(0);
+
+        final int numberOfThreads = Math.min(boxParameters.numberOfThreads, boxList.size());
+
+        LOG.info("renderBoxesForLevelInParallel: rendering {} boxes in {} families for layer {} level {} with {} threads",
+                 boxList.size(), families.size(), z, level, numberOfThreads);
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, numberOfThreads));
+        try {
+
+            final List<Future<Void>> futures = new ArrayList<>(boxList.size());
+            for (final SiblingFamily siblingFamily : families) {
+                final boolean isParentComplete = siblingFamily.isComplete();
+                final AtomicInteger remainingChildCount = new AtomicInteger(siblingFamily.children.size());
+                for (final BoxData boxData : siblingFamily.children) {
+                    futures.add(executorService.submit(() -> {
+
+                        renderBox(boxData, imageProcessorCache, siblingFamily.cachedParent);
+
+                        // the last sibling to finish builds the parent from the cached children
+                        if ((remainingChildCount.decrementAndGet() == 0) && isParentComplete) {
+                            final BufferedImage parentImage =
+                                    siblingFamily.cachedParent.buildImage(boxWidth, boxHeight);
+                            BoxMipmapGenerator.saveImage(parentImage,
+                                                         siblingFamily.cachedParent.getBoxFile(),
+                                                         format,
+                                                         boxParameters.isConvertToGray());
+                        }
+
+                        final int count = renderedLevelBoxCount.incrementAndGet();
+                        synchronized (progress) {
+                            progress.markProcessedBox(count, imageProcessorCache);
+                        }
+
+                        return null;
+                    }));
+                }
+            }
+
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while rendering boxes for layer " + z + " level " + level, e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IllegalStateException("failed to render boxes for layer " + z + " level " + level, cause);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        final List<BoxData> renderedBoxList = new ArrayList<>(boxList.size());
+        for (final SiblingFamily siblingFamily : families) {
+            renderedBoxList.addAll(siblingFamily.children);
+            if (siblingFamily.isComplete()) {
+                renderedBoxList.add(siblingFamily.parentBox);
+            }
+        }
+
+        return renderedBoxList;
+    }
+
     /**
      * Renders a CATMAID overview image for the specified layer.
      *
@@ -436,7 +556,10 @@ public class BoxGenerator
 
                 if (cachedParent != null) {
                     final RenderedBox renderedChild = new RenderedBox(boxFile, boxImage);
-                    cachedParent.setChild(renderedChild, boxData.getParentIndex());
+                    // synchronize since siblings may be rendered concurrently
+                    synchronized (cachedParent) {
+                        cachedParent.setChild(renderedChild, boxData.getParentIndex());
+                    }
                 }
             }
 
@@ -446,13 +569,41 @@ public class BoxGenerator
 
             if (cachedParent != null)  {
                 final RenderedBox renderedChild = new RenderedBox(boxFile);
-                cachedParent.setChild(renderedChild, boxData.getParentIndex());
+                synchronized (cachedParent) {
+                    cachedParent.setChild(renderedChild, boxData.getParentIndex());
+                }
             }
 
         }
 
     }
 
+    /**
+     * Consecutive boxes that share the same parent (or a single max level box without a parent).
+     */
+    private static class SiblingFamily {
+
+        private final BoxData parentBox;
+        private final RenderedBoxParent cachedParent;
+        private final List<BoxData> children;
+
+        SiblingFamily(final BoxData parentBox,
+                      final RenderedBoxParent cachedParent) {
+            this.parentBox = parentBox;
+            this.cachedParent = cachedParent;
+            this.children = new ArrayList<>(4);
+        }
+
+        /**
+         * @return true if all of the parent's children are in this family
+         *         (so that the parent can be built from cached child pixels).
+         */
+        boolean isComplete() {
+            return (parentBox != null) &&
+                   (parentBox.getChildCount() == children.get(children.size() - 1).getNumberOfSiblings());
+        }
+    }
+
     /**
      * Utility to support logging of progress during long running layer render processes.
      */
@@ -123,6 +123,13 @@ public class MaterializedBoxParameters implements Serializable {
     )
     public boolean sortByClusterGroupId = false;
 
+    @Parameter(
+            names = "--numberOfThreads",
+            description = "Number of threads to use for rendering the boxes of each level " +
+                          "(values greater than 1 render sibling box families concurrently)"
+    )
+    public Integer numberOfThreads = 1;
+
     public boolean isConvertToGray() {
         return (! label) && convertToGray;
     }
@@ -147,6 +154,7 @@ public class MaterializedBoxParameters implements Serializable {
         p.label = this.label;
         p.createIGrid = this.createIGrid;
         p.forceGeneration = this.forceGeneration;
+        p.numberOfThreads = this.numberOfThreads;
 
         p.renderGroup = group;
         p.numberOfRenderGroups = numberOfGroups;
@@ -69,6 +69,35 @@ public class MipmapParameters implements Serializable {
             description = "Indicates that existing mipmaps should be removed (instead of generated)")
     public Boolean removeAll = false;
 
+    @Parameter(
+            names = "--numberOfThreads",
+            description = "Number of threads to use for decoding, down-sampling, and writing tile mipmaps " +
+                          "(values greater than 1 pipeline tiles in parallel)"
+    )
+    public Integer numberOfThreads = 1;
+
+    @Parameter(
+            names = "--storeImageStatistics",
+            description = "Compute intensity statistics for each source image and save them to the " +
+                          "image statistics catalog (sources are decoded even if all mipmaps exist)",
+            arity = 0)
+    public boolean storeImageStatistics = false;
+
+    @Parameter(
+            names = "--storageMode",
+            description = "Identifies how derived levels are stored: FILE_PER_LEVEL or TIFF_PYRAMID " +
+                          "(one multi-page tif file per source, requires tiff format)"
+    )
+    public MipmapPathBuilder.StorageMode storageMode = MipmapPathBuilder.StorageMode.FILE_PER_LEVEL;
+
+    @Parameter(
+            names = "--perSlice",
+            description = "Generate separate 2D levels for each slice of TIFF stack sources " +
+                          "(slice numbers are included in derived paths so that slices of the same stack " +
+                          "do not share level files)",
+            arity = 0)
+    public boolean perSlice = false;
+
     public MipmapPathBuilder getMipmapPathBuilder()
             throws IOException {
 
@@ -88,7 +117,7 @@ public class MipmapParameters implements Serializable {
             extension = "tif";
         }
 
-        return new MipmapPathBuilder(dir.getPath(), maxLevel, extension, null);
+        return new MipmapPathBuilder(dir.getPath(), maxLevel, extension, null, storageMode, perSlice);
     }
 
 }
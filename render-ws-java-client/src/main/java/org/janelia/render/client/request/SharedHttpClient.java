@@ -0,0 +1,198 @@
+package org.janelia.render.client.request;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JVM wide HTTP client with a pool of keep-alive connections and a bounded request executor
+ * that are shared by all render web service clients.
+ *
+ * Spark functions often create a client for each partition (or even each record), so sharing one pool
+ * lets those short-lived clients reuse connections instead of paying for connection setup on every request.
+ *
+ * Pool sizes can be configured with the {@value #MAX_CONNECTIONS_PROPERTY} and
+ * {@value #MAX_CONCURRENT_REQUESTS_PROPERTY} system properties (e.g. -Drender.client.maxConnections=100).
+ *
+ * @author Eric Trautman
+ */
+public class SharedHttpClient {
+
+    /** System property for the maximum number of pooled connections (per route and in total). */
+    public static final String MAX_CONNECTIONS_PROPERTY = "render.client.maxConnections";
+
+    /** System property for the maximum number of batched or async requests that run concurrently. */
+    public static final String MAX_CONCURRENT_REQUESTS_PROPERTY = "render.client.maxConcurrentRequests";
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 64;
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 16;
+
+    /**
+     * Request that can be executed for a key (e.g. a z value or group id) by the shared request executor.
+     */
+    public interface KeyedRequest<K, V> {
+        V execute(final K key) throws IOException;
+    }
+
+    /**
+     * Request that can be executed asynchronously by the shared request executor.
+     */
+    public interface Request<V> {
+        V execute() throws IOException;
+    }
+
+    /**
+     * @return the shared pooled client.
+     *         The client should never be closed since it is used by every client in the JVM.
+     */
+    public static CloseableHttpClient getHttpClient() {
+        return Holder.HTTP_CLIENT;
+    }
+
+    /**
+     * @return the executor used for batched and async requests.
+     */
+    public static ExecutorService getRequestExecutor() {
+        return Holder.REQUEST_EXECUTOR;
+    }
+
+    /**
+     * Executes the specified request asynchronously on the shared request executor.
+     * Request failures complete the returned future exceptionally with a {@link CompletionException}
+     * that wraps the original {@link IOException}.
+     */
+    public static <V> CompletableFuture<V> executeAsync(final Request<V> request) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return request.execute();
+            } catch (final IOException e) {
+                throw new CompletionException(e);
+            }
+        }, getRequestExecutor());
+    }
+
+    /**
+     * Concurrently executes the specified request for each key (with at most
+     * {@value #MAX_CONCURRENT_REQUESTS_PROPERTY} requests in flight) and waits for all of them to complete.
+     *
+     * Since the request executor is bounded, this method must not be called from a request that is
+     * itself running on the request executor.
+     *
+     * @param  keys     keys for each request.
+     * @param  request  request to execute for each key.
+     *
+     * @return map of keys to results in key iteration order.
+     *
+     * @throws IOException
+     *   if any request fails (remaining requests are cancelled).
+     */
+    public static <K, V> Map<K, V> executeAll(final Collection<K> keys,
+                                              final KeyedRequest<K, V> request)
+            throws IOException {
+
+        final Map<K, Future<V>> keyToFuture = new LinkedHashMap<>();
+        for (final K key : keys) {
+            keyToFuture.put(key, getRequestExecutor().submit(() -> request.execute(key)));
+        }
+
+        final Map<K, V> keyToResult = new LinkedHashMap<>();
+        try {
+            for (final Map.Entry<K, Future<V>> entry : keyToFuture.entrySet()) {
+                keyToResult.put(entry.getKey(), entry.getValue().get());
+            }
+        } catch (final InterruptedException e) {
+            cancelAll(keyToFuture.values());
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for batched requests", e);
+        } catch (final ExecutionException e) {
+            cancelAll(keyToFuture.values());
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new IOException("batched request failed", cause);
+            }
+        }
+
+        return keyToResult;
+    }
+
+    private static void cancelAll(final Collection<? extends Future<?>> futures) {
+        for (final Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    private static int getIntegerProperty(final String name,
+                                          final int defaultValue) {
+        int value = defaultValue;
+        final String stringValue = System.getProperty(name);
+        if (stringValue != null) {
+            try {
+                value = Integer.parseInt(stringValue.trim());
+            } catch (final NumberFormatException e) {
+                LOG.warn("getIntegerProperty: ignoring invalid {} value '{}'", name, stringValue);
+            }
+        }
+        return value < 1 ? defaultValue : value;
+    }
+
+    /**
+     * Lazily builds the shared instances the first time they are needed.
+     */
+    private static class Holder {
+
+        private static final CloseableHttpClient HTTP_CLIENT;
+        private static final ExecutorService REQUEST_EXECUTOR;
+
+        static {
+            final int maxConnections = getIntegerProperty(MAX_CONNECTIONS_PROPERTY,
+                                                          DEFAULT_MAX_CONNECTIONS);
+            final int maxConcurrentRequests = getIntegerProperty(MAX_CONCURRENT_REQUESTS_PROPERTY,
+                                                                 DEFAULT_MAX_CONCURRENT_REQUESTS);
+
+            final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+            connectionManager.setMaxTotal(maxConnections);
+            // most clients only talk to one render web service, so let that route use the whole pool
+            connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+            HTTP_CLIENT = HttpClientBuilder.create()
+                    .setConnectionManager(connectionManager)
+                    .setRetryHandler(new WaitingRetryHandler())
+                    .evictExpiredConnections()
+                    .evictIdleConnections(30, TimeUnit.SECONDS)
+                    .build();
+
+            final AtomicInteger threadCount = new AtomicInteger(0);
+            REQUEST_EXECUTOR = Executors.newFixedThreadPool(maxConcurrentRequests, runnable -> {
+                final Thread thread = new Thread(runnable,
+                                                 "render-client-request-" + threadCount.incrementAndGet());
+                // don't keep JVMs (e.g. spark executors) alive just for idle request threads
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            LOG.info("built shared client with maxConnections {} and maxConcurrentRequests {}",
+                     maxConnections, maxConcurrentRequests);
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedHttpClient.class);
+}
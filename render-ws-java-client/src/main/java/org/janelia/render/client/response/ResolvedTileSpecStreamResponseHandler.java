@@ -0,0 +1,57 @@
+package org.janelia.render.client.response;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.ResponseHandler;
+import org.janelia.alignment.spec.ResolvedTileSpecStreamReader;
+
+/**
+ * Incrementally parses a JSON resolved tile spec collection response,
+ * passing each resolved tile spec to a reader's consumer as soon as it is read.
+ *
+ * @author Eric Trautman
+ */
+public class ResolvedTileSpecStreamResponseHandler
+        extends BaseResponseHandler
+        implements ResponseHandler<Integer> {
+
+    private final ResolvedTileSpecStreamReader streamReader;
+
+    /**
+     * @param  requestContext  context (e.g. "GET http://janelia.org") for use in error messages.
+     * @param  streamReader    reader for the response content.
+     */
+    public ResolvedTileSpecStreamResponseHandler(final String requestContext,
+                                                 final ResolvedTileSpecStreamReader streamReader) {
+        super(requestContext);
+        this.streamReader = streamReader;
+    }
+
+    /**
+     * @return number of tile specs read from the response.
+     */
+    @Override
+    public Integer handleResponse(final HttpResponse response)
+            throws IOException {
+
+        final HttpEntity entity = getValidatedResponseEntity(response, OK);
+        final Header contentTypeHeader = entity.getContentType();
+
+        if (contentTypeHeader == null) {
+            throw new ClientProtocolException("content type header missing for\n\n  " + getRequestContext() + "\n");
+        } else if (! JSON_MIME_TYPE.equals(contentTypeHeader.getValue())) {
+            throw new ClientProtocolException("invalid mime type '" + contentTypeHeader.getValue() + "' for\n\n  " +
+                                              getRequestContext() + "\n\n(expected '" + JSON_MIME_TYPE + "')");
+        }
+
+        final Reader reader = new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8);
+        return streamReader.read(reader);
+    }
+}
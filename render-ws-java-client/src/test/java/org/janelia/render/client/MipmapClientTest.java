@@ -5,6 +5,7 @@ import ij.process.ImageProcessor;
 import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Map;
 
@@ -137,6 +138,48 @@ public class MipmapClientTest {
 
     }
 
+    @Test
+    public void testGenerateMissingMipmapFilesInParallel() throws Exception {
+
+        final MipmapClient.Parameters parameters = new MipmapClient.Parameters();
+        parameters.mipmap.rootDirectory = mipmapRootDirectory.getAbsolutePath();
+        parameters.mipmap.maxLevel = 3;
+        parameters.mipmap.numberOfThreads = 2;
+
+        final MipmapClient mipmapClient = new MipmapClient(parameters.renderWeb, parameters.mipmap);
+
+        final ImageAndMask sourceImageAndMask = new ImageAndMask("src/test/resources/col0060_row0140_cam0.tif",
+                                                                 "src/test/resources/mask.tif");
+        final TileSpec tileSpec = new TileSpec();
+        tileSpec.setTileId("test-parallel-mipmap-tile");
+        final ChannelSpec channelSpec = new ChannelSpec();
+        channelSpec.putMipmap(0, sourceImageAndMask);
+        tileSpec.addChannel(channelSpec);
+        tileSpec.setMipmapPathBuilder(mipmapClient.getMipmapPathBuilder());
+
+        mipmapClient.generateMissingMipmapFilesInParallel(Collections.singletonList(tileSpec),
+                                                          parameters.mipmap.numberOfThreads);
+
+        ImageProcessor imageProcessor = ImageJDefaultLoader.INSTANCE.load(sourceImageAndMask.getImageUrl());
+        for (int level = 1; level <= parameters.mipmap.maxLevel; level++) {
+
+            final int expectedWidth = imageProcessor.getWidth() / 2;
+            final int expectedHeight = imageProcessor.getHeight() / 2;
+
+            final ImageAndMask imageAndMask = channelSpec.getFloorMipmapEntry(level).getValue();
+
+            imageProcessor = ImageJDefaultLoader.INSTANCE.load(imageAndMask.getImageUrl());
+            Assert.assertEquals("invalid width for level " + level + " image",
+                                expectedWidth, imageProcessor.getWidth());
+            Assert.assertEquals("invalid height for level " + level + " image",
+                                expectedHeight, imageProcessor.getHeight());
+
+            final ImageProcessor maskProcessor = ImageJDefaultLoader.INSTANCE.load(imageAndMask.getMaskUrl());
+            Assert.assertEquals("invalid width for level " + level + " mask",
+                                expectedWidth, maskProcessor.getWidth());
+        }
+    }
+
     public static File createTestDirectory(final String baseName)
             throws IOException {
         final SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddHHmmssSSS");
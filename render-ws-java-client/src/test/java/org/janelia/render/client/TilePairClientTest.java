@@ -9,11 +9,15 @@ import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
 
+import org.janelia.alignment.match.OrderedCanvasIdPair;
 import org.janelia.alignment.match.RenderableCanvasIdPairs;
 import org.janelia.alignment.spec.TileBounds;
 import org.janelia.alignment.spec.TileBoundsRTree;
@@ -118,6 +122,96 @@ public class TilePairClientTest {
         Assert.assertEquals("invalid number of pairs written", expectedNumberOfPairs, renderableCanvasIdPairs.size());
     }
 
+    @Test
+    public void testParallelDeriveMatchesSequentialDerive() throws Exception {
+
+        final int zNeighborDistance = 2;
+        final int maxPairsPerFile = 4;
+        final Double[] zValues = { 1.0, 2.0, 3.0, 5.0, 6.0, 7.0, 8.0 };
+
+        final String sequentialJson = baseFileName + "_sequential.json";
+        final TilePairClient.Parameters sequentialParameters =
+                getTestParameters(zNeighborDistance, maxPairsPerFile, sequentialJson);
+        sequentialParameters.prefetchLayerCount = 0;
+        new MockTilePairClient(sequentialParameters, zValues).deriveAndSaveSortedNeighborPairs();
+
+        final String parallelJson = baseFileName + "_parallel.json";
+        final TilePairClient.Parameters parallelParameters =
+                getTestParameters(zNeighborDistance, maxPairsPerFile, parallelJson);
+        parallelParameters.numberOfThreads = 4;
+        new MockTilePairClient(parallelParameters, zValues).deriveAndSaveSortedNeighborPairs();
+
+        // 7 double tile layers (missing layer 4) with distance 2 =>
+        //   z 1: 1 + 4 + 4, z 2: 1 + 4, z 3: 1 + 4, z 5: 1 + 4 + 4, z 6: 1 + 4 + 4, z 7: 1 + 4, z 8: 1
+        final Set<String> expectedPairs = new HashSet<>();
+        for (int i = 0; i < zValues.length; i++) {
+            final Double pz = zValues[i];
+            expectedPairs.add(getPairKey("a" + pz, "b" + pz));
+            for (int j = i + 1; (j < zValues.length) && (zValues[j] - pz <= zNeighborDistance); j++) {
+                final Double qz = zValues[j];
+                for (final String pTile : new String[] { "a", "b" }) {
+                    for (final String qTile : new String[] { "a", "b" }) {
+                        expectedPairs.add(getPairKey(pTile + pz, qTile + qz));
+                    }
+                }
+            }
+        }
+        Assert.assertEquals("invalid number of expected pairs", 43, expectedPairs.size());
+
+        final List<Path> sequentialPaths = getPairFilePaths(baseFileName + "_sequential");
+        final List<Path> parallelPaths = getPairFilePaths(baseFileName + "_parallel");
+
+        Assert.assertTrue("multiple pairs files should be created", sequentialPaths.size() > 1);
+
+        assertPairsMatch("sequential", expectedPairs, sequentialPaths);
+        assertPairsMatch("parallel", expectedPairs, parallelPaths);
+
+        Assert.assertEquals("invalid number of parallel pairs files created",
+                            sequentialPaths.size(), parallelPaths.size());
+
+        for (int i = 0; i < sequentialPaths.size(); i++) {
+            Assert.assertArrayEquals("parallel pairs differ from sequential pairs for " + parallelPaths.get(i),
+                                     Files.readAllBytes(sequentialPaths.get(i)),
+                                     Files.readAllBytes(parallelPaths.get(i)));
+        }
+    }
+
+    private static String getPairKey(final String pTileId,
+                                     final String qTileId) {
+        return pTileId + "::" + qTileId;
+    }
+
+    private static void assertPairsMatch(final String context,
+                                         final Set<String> expectedPairs,
+                                         final List<Path> pairFilePaths)
+            throws IOException {
+
+        final List<String> actualPairs = new ArrayList<>();
+        for (final Path path : pairFilePaths) {
+            try (final FileReader reader = new FileReader(path.toFile())) {
+                for (final OrderedCanvasIdPair pair : RenderableCanvasIdPairs.fromJson(reader).getNeighborPairs()) {
+                    actualPairs.add(getPairKey(pair.getP().getId(), pair.getQ().getId()));
+                }
+            }
+        }
+
+        Assert.assertEquals("duplicate " + context + " pairs written",
+                            actualPairs.size(), new HashSet<>(actualPairs).size());
+        Assert.assertEquals("invalid " + context + " pairs written",
+                            expectedPairs, new HashSet<>(actualPairs));
+    }
+
+    private List<Path> getPairFilePaths(final String fileNamePrefix) throws IOException {
+        final List<Path> pairFilePaths = new ArrayList<>();
+        Files.list(Paths.get(".")).forEach(path -> {
+            if (path.getFileName().toString().startsWith(fileNamePrefix)) {
+                pairFilePaths.add(path);
+            }
+        });
+        Collections.sort(pairFilePaths);
+        return pairFilePaths;
+    }
+
     private void testDeriveAndSaveSortedNeighborPairs(final int zNeighborDistance,
                                                       final int expectedNumberOfFiles) throws Exception {
 
@@ -0,0 +1,138 @@
+package org.janelia.render.client.betterbox;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.janelia.alignment.Utils;
+import org.janelia.alignment.betterbox.BoxData;
+import org.janelia.alignment.mipmap.BoxMipmapGenerator;
+import org.janelia.alignment.spec.Bounds;
+import org.janelia.alignment.util.FileUtil;
+import org.janelia.alignment.util.ImageProcessorCache;
+import org.janelia.render.client.parameter.MaterializedBoxParameters;
+import org.janelia.render.client.parameter.RenderWebServiceParameters;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link BoxGenerator} class.
+ *
+ * @author Eric Trautman
+ */
+public class BoxGeneratorTest {
+
+    private File rootDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        rootDirectory = Files.createTempDirectory("test_box_generator_").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.deleteRecursive(rootDirectory);
+    }
+
+    @Test
+    public void testRenderBoxesForLevelInParallel() throws Exception {
+
+        final MaterializedBoxParameters boxParameters = new MaterializedBoxParameters();
+        boxParameters.stack = "test_stack";
+        boxParameters.rootDirectory = rootDirectory.getAbsolutePath();
+        boxParameters.width = BOX_SIZE;
+        boxParameters.height = BOX_SIZE;
+        boxParameters.maxLevel = 2;
+        boxParameters.convertToGray = false;
+        boxParameters.numberOfThreads = 4;
+
+        final RenderWebServiceParameters renderWebParameters = new RenderWebServiceParameters();
+        renderWebParameters.baseDataUrl = "http://unused/render-ws/v1";
+        renderWebParameters.owner = "test_owner";
+        renderWebParameters.project = "test_project";
+
+        final BoxGenerator boxGenerator =
+                new BoxGenerator(renderWebParameters,
+                                 boxParameters,
+                                 new Bounds(0.0, 0.0, 4.0 * BOX_SIZE, 4.0 * BOX_SIZE));
+        boxGenerator.setupCommonDirectoriesAndFiles();
+
+        // one complete level 2 family: four level 1 boxes that each have four level 0 children on disk
+        final BoxData grandParent = new BoxData(Z, 2, 0, 0);
+        final List<BoxData> levelOneBoxes = new ArrayList<>();
+        for (int row = 0; row < 2; row++) {
+            for (int column = 0; column < 2; column++) {
+                final BoxData levelOneBox = new BoxData(Z, 1, row, column);
+                for (int childRow = row * 2; childRow < (row * 2) + 2; childRow++) {
+                    for (int childColumn = column * 2; childColumn < (column * 2) + 2; childColumn++) {
+                        final BoxData levelZeroBox = new BoxData(Z, 0, childRow, childColumn);
+                        saveFilledBox(boxGenerator, levelZeroBox, COLORS[(row * 2) + column]);
+                        levelOneBox.addChild(levelZeroBox);
+                    }
+                }
+                levelOneBox.updateSiblingCountForAllChildren();
+                grandParent.addChild(levelOneBox);
+                levelOneBoxes.add(levelOneBox);
+            }
+        }
+        grandParent.updateSiblingCountForAllChildren();
+
+        final List<BoxData> renderedBoxes = boxGenerator.renderBoxesForLevel(Z,
+                                                                             1,
+                                                                             levelOneBoxes,
+                                                                             ImageProcessorCache.DISABLED_CACHE,
+                                                                             false);
+
+        Assert.assertEquals("invalid number of rendered boxes", 5, renderedBoxes.size());
+        Assert.assertEquals("parent should follow its children", grandParent, renderedBoxes.get(4));
+
+        for (final BoxData levelOneBox : levelOneBoxes) {
+            final File boxFile = getBoxFile(boxGenerator, levelOneBox);
+            Assert.assertTrue(boxFile + " should exist", boxFile.exists());
+        }
+
+        final BufferedImage parentImage = ImageIO.read(getBoxFile(boxGenerator, grandParent));
+        Assert.assertNotNull("parent image should exist", parentImage);
+        Assert.assertEquals("invalid parent width", BOX_SIZE, parentImage.getWidth());
+
+        final int quadrantCenter = BOX_SIZE / 4;
+        for (int row = 0; row < 2; row++) {
+            for (int column = 0; column < 2; column++) {
+                final int x = quadrantCenter + (column * BOX_SIZE / 2);
+                final int y = quadrantCenter + (row * BOX_SIZE / 2);
+                Assert.assertEquals("invalid parent pixel for quadrant " + row + "," + column,
+                                    COLORS[(row * 2) + column].getRGB(), parentImage.getRGB(x, y));
+            }
+        }
+    }
+
+    private static File getBoxFile(final BoxGenerator boxGenerator,
+                                   final BoxData boxData) {
+        return boxData.getAbsoluteLevelFile(boxGenerator.getBaseBoxPath(), boxGenerator.getBoxPathSuffix());
+    }
+
+    private static void saveFilledBox(final BoxGenerator boxGenerator,
+                                      final BoxData boxData,
+                                      final Color color)
+            throws IOException {
+        final BufferedImage image = new BufferedImage(BOX_SIZE, BOX_SIZE, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, BOX_SIZE, BOX_SIZE);
+        graphics.dispose();
+        BoxMipmapGenerator.saveImage(image, getBoxFile(boxGenerator, boxData), Utils.PNG_FORMAT, false);
+    }
+
+    private static final double Z = 1.0;
+    private static final int BOX_SIZE = 8;
+    private static final Color[] COLORS = { Color.RED, Color.GREEN, Color.BLUE, Color.YELLOW };
+}
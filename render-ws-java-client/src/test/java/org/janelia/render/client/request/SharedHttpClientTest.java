@@ -0,0 +1,69 @@
+package org.janelia.render.client.request;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link SharedHttpClient} class.
+ *
+ * @author Eric Trautman
+ */
+public class SharedHttpClientTest {
+
+    @Test
+    public void testSharedInstances() {
+        Assert.assertSame("client should be shared",
+                          SharedHttpClient.getHttpClient(), SharedHttpClient.getHttpClient());
+        Assert.assertSame("executor should be shared",
+                          SharedHttpClient.getRequestExecutor(), SharedHttpClient.getRequestExecutor());
+    }
+
+    @Test
+    public void testExecuteAll() throws Exception {
+
+        final List<Integer> keys = new ArrayList<>();
+        for (int i = 100; i > 0; i--) {
+            keys.add(i);
+        }
+
+        final Map<Integer, String> keyToResult = SharedHttpClient.executeAll(keys, key -> "result-" + key);
+
+        Assert.assertEquals("invalid number of results", keys.size(), keyToResult.size());
+        Assert.assertEquals("results should be in key order", keys, new ArrayList<>(keyToResult.keySet()));
+        Assert.assertEquals("invalid result", "result-42", keyToResult.get(42));
+    }
+
+    @Test(expected = IOException.class)
+    public void testExecuteAllFailure() throws Exception {
+        SharedHttpClient.executeAll(Arrays.asList(1, 2, 3), key -> {
+            if (key == 2) {
+                throw new IOException("test failure");
+            }
+            return key;
+        });
+    }
+
+    @Test
+    public void testExecuteAsync() throws Exception {
+
+        Assert.assertEquals("invalid async result",
+                            "done", SharedHttpClient.executeAsync(() -> "done").get());
+
+        try {
+            SharedHttpClient.executeAsync(() -> {
+                throw new IOException("test failure");
+            }).join();
+            Assert.fail("async failure should have been thrown");
+        } catch (final CompletionException e) {
+            Assert.assertTrue("cause should be original exception", e.getCause() instanceof IOException);
+        }
+    }
+
+}
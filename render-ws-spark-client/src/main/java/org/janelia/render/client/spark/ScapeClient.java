@@ -20,6 +20,10 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.spark.SparkConf;
 import org.apache.spark.api.java.JavaRDD;
@@ -34,6 +38,7 @@ import org.janelia.alignment.spec.SectionData;
 import org.janelia.alignment.spec.stack.StackMetaData;
 import org.janelia.alignment.util.FileUtil;
 import org.janelia.alignment.util.ImageProcessorCache;
+import org.janelia.alignment.util.StripedImageWriter;
 import org.janelia.render.client.ClientRunner;
 import org.janelia.render.client.RenderDataClient;
 import org.janelia.render.client.parameter.CommandLineParameters;
@@ -155,6 +160,27 @@ public class ScapeClient
         )
         public Double height;
 
+        @Parameter(
+                names = "--stripeHeight",
+                description = "Render each scape in horizontal stripes of this many (scaled) pixels and stream " +
+                              "the stripes to a png or tiff file so that memory use is bounded by the stripe size " +
+                              "instead of the scape size (omit to render each scape as a single image)"
+        )
+        public Integer stripeHeight;
+
+        void validateStripeParameters()
+                throws IllegalArgumentException {
+            if (stripeHeight != null) {
+                if (stripeHeight < 1) {
+                    throw new IllegalArgumentException("stripeHeight must be positive");
+                }
+                if (! StripedImageWriter.isSupportedFormat(format)) {
+                    throw new IllegalArgumentException("striped rendering requires " + Utils.PNG_FORMAT +
+                                                       " or " + Utils.TIFF_FORMAT + " format");
+                }
+            }
+        }
+
         File getSectionRootDirectory() {
 
             final String scapeDir = "scape_" + new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
@@ -218,6 +244,8 @@ public class ScapeClient
     public void run(final SparkConf conf)
             throws IOException {
 
+        parameters.validateStripeParameters();
+
         final JavaSparkContext sparkContext = new JavaSparkContext(conf);
 
         final String sparkAppId = sparkContext.getConf().getAppId();
@@ -273,6 +301,14 @@ public class ScapeClient
                     final ImageProcessorCache imageProcessorCache =
                             new ImageProcessorCache(maxCachedPixels, false, false);
 
+                    if (parameters.stripeHeight != null) {
+                        renderStripedSection(renderSection,
+                                             workerDataClient,
+                                             imageProcessorCache,
+                                             stackResolutionValues);
+                        return 1;
+                    }
+
                     final boolean isProjectionNeeded = renderSection.isProjectionNeeded();
                     BufferedImage sectionImage = null;
                     ImageStack projectedStack = null;
@@ -291,7 +327,7 @@ public class ScapeClient
 
                         LOG.debug("generateScapeFunction: loading {}", parametersUrl);
 
-                        final RenderParameters renderParameters = RenderParameters.loadFromUrl(parametersUrl);
+                        final RenderParameters renderParameters = workerDataClient.getRenderParameters(parametersUrl);
                         renderParameters.setFillWithNoise(parameters.fillWithNoise);
                         renderParameters.setDoFilter(parameters.doFilter);
                         renderParameters.setChannels(parameters.channels);
@@ -357,6 +393,154 @@ public class ScapeClient
         sparkContext.stop();
     }
 
+    /**
+     * Renders the specified section in horizontal stripes, handing each completed stripe to a writer thread
+     * so that encoding of one stripe overlaps with rendering of the next.
+     * Only one stripe is rendered while at most one other stripe is being written,
+     * so memory use is bounded by the stripe size instead of the scape size.
+     */
+    private void renderStripedSection(final RenderSection renderSection,
+                                      final RenderDataClient workerDataClient,
+                                      final ImageProcessorCache imageProcessorCache,
+                                      final List<Double> stackResolutionValues)
+            throws Exception {
+
+        final SectionData firstSectionData = renderSection.getSectionDataList().get(0);
+        final int scapeWidth = (int) (parameters.scale * firstSectionData.getWidth());
+        final int scapeHeight = (int) (parameters.scale * firstSectionData.getHeight());
+
+        Double pixelWidth = null;
+        Double pixelHeight = null;
+        if ((stackResolutionValues != null) && (stackResolutionValues.size() > 1)) {
+            pixelWidth = stackResolutionValues.get(0) / parameters.scale;
+            pixelHeight = stackResolutionValues.get(1) / parameters.scale;
+        }
+
+        final File sectionFile =
+                Utils.prepareFileForWrite(renderSection.getOutputFile(parameters.format).getAbsolutePath());
+
+        LOG.debug("renderStripedSection: rendering {}x{} scape in stripes of {} rows",
+                  scapeWidth, scapeHeight, parameters.stripeHeight);
+
+        try (final StripedImageWriter writer = StripedImageWriter.open(sectionFile,
+                                                                       parameters.format,
+                                                                       scapeWidth,
+                                                                       scapeHeight,
+                                                                       pixelWidth,
+                                                                       pixelHeight,
+                                                                       parameters.resolutionUnit)) {
+
+            final ExecutorService writerService = Executors.newSingleThreadExecutor();
+            try {
+                Future<?> pendingWrite = null;
+                for (int minRow = 0; minRow < scapeHeight; minRow += parameters.stripeHeight) {
+
+                    final int rowCount = Math.min(parameters.stripeHeight, scapeHeight - minRow);
+                    final byte[] stripePixels = renderStripe(renderSection,
+                                                             workerDataClient,
+                                                             imageProcessorCache,
+                                                             scapeWidth,
+                                                             minRow,
+                                                             rowCount);
+
+                    // wait for prior stripe to be written before queueing this one to keep memory bounded
+                    if (pendingWrite != null) {
+                        pendingWrite.get();
+                    }
+
+                    pendingWrite = writerService.submit(() -> {
+                        writer.writeStripe(stripePixels, rowCount);
+                        return null;
+                    });
+                }
+
+                if (pendingWrite != null) {
+                    pendingWrite.get();
+                }
+
+            } finally {
+                // make sure writer thread is done before the writer gets closed
+                writerService.shutdown();
+                writerService.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        }
+
+        LOG.info("renderStripedSection: saved {}", sectionFile.getAbsolutePath());
+    }
+
+    /**
+     * @return 8-bit gray pixels for the specified stripe rows of the section
+     *         (averaged across all sections in the render section when a projection is needed).
+     */
+    private byte[] renderStripe(final RenderSection renderSection,
+                                final RenderDataClient workerDataClient,
+                                final ImageProcessorCache imageProcessorCache,
+                                final int scapeWidth,
+                                final int minRow,
+                                final int rowCount)
+            throws IllegalStateException, IOException {
+
+        final List<SectionData> sectionDataList = renderSection.getSectionDataList();
+        final int stripePixelCount = scapeWidth * rowCount;
+
+        // render a little extra (unused) height to ensure rounding does not leave the stripe short
+        final int worldStripeHeight = (int) Math.ceil(rowCount / parameters.scale) + 1;
+
+        final int[] projectedPixels = renderSection.isProjectionNeeded() ? new int[stripePixelCount] : null;
+        byte[] stripePixels = null;
+
+        for (final SectionData sectionData : sectionDataList) {
+
+            final String parametersUrl =
+                    workerDataClient.getRenderParametersUrlString(parameters.stack,
+                                                                  sectionData.getMinX(),
+                                                                  sectionData.getMinY() + (minRow / parameters.scale),
+                                                                  sectionData.getZ(),
+                                                                  sectionData.getWidth(),
+                                                                  worldStripeHeight,
+                                                                  parameters.scale,
+                                                                  parameters.filterListName);
+
+            LOG.debug("renderStripe: loading {}", parametersUrl);
+
+            final RenderParameters renderParameters = workerDataClient.getRenderParameters(parametersUrl);
+            renderParameters.setFillWithNoise(parameters.fillWithNoise);
+            renderParameters.setDoFilter(parameters.doFilter);
+            renderParameters.setChannels(parameters.channels);
+
+            final BufferedImage stripeImage = renderParameters.openTargetImage();
+
+            if ((stripeImage.getWidth() != scapeWidth) || (stripeImage.getHeight() < rowCount)) {
+                throw new IllegalStateException(
+                        "stripe for z " + sectionData.getZ() + " is " + stripeImage.getWidth() + "x" +
+                        stripeImage.getHeight() + " but needs to be at least " + scapeWidth + "x" + rowCount +
+                        ", all sections in a projection must have the same width");
+            }
+
+            ArgbRenderer.render(renderParameters, stripeImage, imageProcessorCache);
+
+            final byte[] sectionPixels = (byte[]) new ColorProcessor(stripeImage).convertToByteProcessor().getPixels();
+
+            if (projectedPixels == null) {
+                stripePixels = sectionPixels;
+            } else {
+                for (int i = 0; i < stripePixelCount; i++) {
+                    projectedPixels[i] += sectionPixels[i] & 0xff;
+                }
+            }
+        }
+
+        if (projectedPixels != null) {
+            final int sectionCount = sectionDataList.size();
+            stripePixels = new byte[stripePixelCount];
+            for (int i = 0; i < stripePixelCount; i++) {
+                stripePixels[i] = (byte) ((projectedPixels[i] + (sectionCount / 2)) / sectionCount);
+            }
+        }
+
+        return stripePixels;
+    }
+
     private List<RenderSection> getRenderSections(final RenderDataClient sourceDataClient,
                                                   final List<SectionData> sectionDataList,
                                                   final File sectionRootDirectory)
@@ -410,7 +594,8 @@ public class ScapeClient
             final long scaledSectionHeight = (long) (boundedSectionData.getHeight() * parameters.scale + 0.5);
             final long sectionPixelCount = scaledSectionWidth * scaledSectionHeight;
 
-            if (sectionPixelCount >= Integer.MAX_VALUE) {
+            // striped scapes are never held in memory as a single image, so only full scapes are limited
+            if ((parameters.stripeHeight == null) && (sectionPixelCount >= Integer.MAX_VALUE)) {
                 final DecimalFormat formatter = new DecimalFormat("#,###");
                 throw new IllegalArgumentException("section " + boundedSectionData + " has " +
                                                    formatter.format(sectionPixelCount) + " pixels at scale " +
@@ -433,11 +433,17 @@ public class N5Client {
     public static class BoxRenderer
             implements Serializable {
 
+        private final String baseUrl;
+        private final String owner;
+        private final String project;
         private final String stackUrl;
         private final String boxUrlSuffix;
         private final Double minIntensity;
         private final Double maxIntensity;
 
+        // clients are not serializable, so each deserialized renderer builds its own (pooled) client
+        private transient RenderDataClient dataClient;
+
         public BoxRenderer(final String baseUrl,
                            final String owner,
                            final String project,
@@ -447,6 +453,9 @@ public class N5Client {
                            final double scale,
                            final Double minIntensity,
                            final Double maxIntensity) {
+            this.baseUrl = baseUrl;
+            this.owner = owner;
+            this.project = project;
             this.stackUrl = String.format("%s/owner/%s/project/%s/stack/%s", baseUrl, owner, project, stack);
             this.boxUrlSuffix = String.format("%d,%d,%f/render-parameters", width, height, scale);
             this.minIntensity = minIntensity;
@@ -459,7 +468,16 @@ public class N5Client {
                                     final ImageProcessorCache ipCache) {
             final String renderParametersUrlString = String.format("%s/z/%d/box/%d,%d,%s",
                                                                    stackUrl, z, x, y, boxUrlSuffix);
-            final RenderParameters renderParameters = RenderParameters.loadFromUrl(renderParametersUrlString);
+            if (dataClient == null) {
+                dataClient = new RenderDataClient(baseUrl, owner, project);
+            }
+            final RenderParameters renderParameters;
+            try {
+                renderParameters = dataClient.getRenderParameters(renderParametersUrlString);
+            } catch (final IOException e) {
+                throw new IllegalStateException("failed to load render parameters from " +
+                                                renderParametersUrlString, e);
+            }
             if (minIntensity != null) {
                 renderParameters.setMinIntensity(minIntensity);
             }
@@ -1,10 +1,13 @@
 package org.janelia.render.service;
 
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.Maps;
 
 import java.io.InputStream;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -15,6 +18,8 @@ import javax.ws.rs.core.Response;
 
 import org.janelia.alignment.filter.FilterFactory;
 import org.janelia.alignment.util.ImageProcessorCache;
+import org.janelia.alignment.util.RenderMetrics;
+import org.janelia.render.service.util.RenderExecutor;
 import org.janelia.render.service.util.RenderServerProperties;
 import org.janelia.render.service.util.RenderServiceUtil;
 import org.janelia.render.service.util.SharedImageProcessorCache;
@@ -123,6 +128,62 @@ public class DeploymentConfigurationService {
         return response;
     }
 
+    @Path("v1/renderMetrics")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiOperation(
+            tags = "Service Configuration APIs",
+            value = "Aggregated render pipeline timings (in milliseconds), image cache, and render executor statistics",
+            notes = "Timings are accumulated since server start or since the last reset.  " +
+                    "Use them to tune webService.maxImageProcessorCacheGb and webService.maxConcurrentRenders.",
+            produces = MediaType.APPLICATION_JSON)
+    public Map<String, Object> getRenderMetrics() {
+
+        final Map<String, Object> metrics = new LinkedHashMap<>();
+        try {
+            metrics.put("timings", RenderMetrics.getSnapshots());
+
+            final ImageProcessorCache sharedCache = SharedImageProcessorCache.getInstance();
+            final CacheStats cacheStats = sharedCache.getStats();
+            final Map<String, Object> cacheMetrics = new LinkedHashMap<>();
+            cacheMetrics.put("entryCount", sharedCache.size());
+            cacheMetrics.put("hitCount", cacheStats.hitCount());
+            cacheMetrics.put("missCount", cacheStats.missCount());
+            cacheMetrics.put("hitRate", cacheStats.hitRate());
+            cacheMetrics.put("evictionCount", cacheStats.evictionCount());
+            cacheMetrics.put("loadExceptionCount", cacheStats.loadExceptionCount());
+            cacheMetrics.put("totalLoadTimeMillis", TimeUnit.NANOSECONDS.toMillis(cacheStats.totalLoadTime()));
+            cacheMetrics.put("averageLoadPenaltyMillis", cacheStats.averageLoadPenalty() / 1_000_000.0);
+            metrics.put("imageProcessorCache", cacheMetrics);
+
+            final RenderExecutor renderExecutor = RenderExecutor.getInstance();
+            final Map<String, Object> executorMetrics = new LinkedHashMap<>();
+            executorMetrics.put("activeRenders", renderExecutor.getActiveRenderCount());
+            executorMetrics.put("queuedRenders", renderExecutor.getQueuedRenderCount());
+            executorMetrics.put("admittedPixels", renderExecutor.getAdmittedPixels());
+            metrics.put("renderExecutor", executorMetrics);
+
+        } catch (final Throwable t) {
+            RenderServiceUtil.throwServiceException(t);
+        }
+
+        return metrics;
+    }
+
+    @Path("v1/renderMetrics")
+    @DELETE
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiOperation(
+            tags = "Service Configuration APIs",
+            value = "Discards all accumulated render pipeline timings",
+            notes = "Image cache statistics are cumulative for the life of the cache and are not reset.",
+            produces = MediaType.APPLICATION_JSON)
+    public Response resetRenderMetrics() {
+        LOG.info("resetRenderMetrics: entry");
+        RenderMetrics.reset();
+        return Response.ok().build();
+    }
+
     private FilterFactory getFilterFactory() {
         if (this.filterFactory == null) {
             // lazy-load factory configuration from JSON file
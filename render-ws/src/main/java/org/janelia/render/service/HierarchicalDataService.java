@@ -1,12 +1,24 @@
 package org.janelia.render.service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import javax.ws.rs.Consumes;
@@ -49,6 +61,7 @@ import org.janelia.alignment.util.ResidualCalculator;
 import org.janelia.render.service.dao.MatchDao;
 import org.janelia.render.service.dao.RenderDao;
 import org.janelia.render.service.model.ObjectNotFoundException;
+import org.janelia.render.service.util.RenderServerProperties;
 import org.janelia.render.service.util.RenderServiceUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -358,124 +371,44 @@ public class HierarchicalDataService {
 
         try {
             final List<StackMetaData> projectStacks = renderDao.getStackMetaDataList(owner, project);
-            final Map<String, StackMetaData> projectStackNamesToMetadataMap = new HashMap<>(projectStacks.size() * 2);
-            for (final StackMetaData stackMetaData : projectStacks) {
-                projectStackNamesToMetadataMap.put(stackMetaData.getStackId().getStack(), stackMetaData);
-            }
 
-            final List<HierarchicalStack> alignedTierStacks = new ArrayList<>(projectStacks.size());
+            // tile and match data for loading stacks can change without any meta data change,
+            // so only cache transforms that are derived entirely from completed stacks
+            if (isDerivedFromCompletedStacks(projectStacks)) {
 
-            HierarchicalStack hierarchicalStack;
-            for (final StackMetaData stackMetaData : projectStacks) {
-                hierarchicalStack = stackMetaData.getHierarchicalData();
-                if ((hierarchicalStack != null) &&
-                    (projectStackNamesToMetadataMap.containsKey(hierarchicalStack.getAlignedStackId().getStack()))) {
-                    alignedTierStacks.add(hierarchicalStack);
+                // any change to a project stack's meta data (state, stats, hierarchical data, ...) changes the key
+                final Hasher metaDataHasher = Hashing.sha256().newHasher();
+                for (final StackMetaData stackMetaData : projectStacks) {
+                    metaDataHasher.putString(stackMetaData.toJson(), StandardCharsets.UTF_8);
                 }
-            }
-
-            StackId alignedStackId;
-            AffineModel2D relativeAlignedModel;
-            final double[] affineMatrixElements = new double[6];
-
-            TileSpec tileSpecForZ;
-
-            if (alignedTierStacks.size() > 0) {
-
-                LOG.info("buildAffineWarpFieldTransform: retrieving data for z {} from {} aligned stacks",
-                         z, alignedTierStacks.size());
-
-                AffineWarpField warpField = null;
-                final Map<HierarchicalStack, AffineWarpField> tierStackToConsensusFieldMap = new HashMap<>();
-                double[] locationOffsets = AffineWarpFieldTransform.EMPTY_OFFSETS;
-
-                for (final HierarchicalStack tierStack : alignedTierStacks) {
-
-                    if (warpField == null) {
-                        warpField = new AffineWarpField(tierStack.getTotalTierFullScaleWidth(),
-                                                        tierStack.getTotalTierFullScaleHeight(),
-                                                        tierStack.getTotalTierRowCount(),
-                                                        tierStack.getTotalTierColumnCount(),
-                                                        AffineWarpField.getDefaultInterpolatorFactory());
-
-                        // derive tier upper left coordinates from this split stack's position
-                        final Bounds tierStackBounds = tierStack.getFullScaleBounds();
-                        final double tierMinX = tierStackBounds.getMinX() -
-                                                (tierStack.getTierColumn() * (tierStackBounds.getDeltaX()));
-                        final double tierMinY = tierStackBounds.getMinY() -
-                                               (tierStack.getTierRow() * (tierStackBounds.getDeltaY()));
-                        locationOffsets = new double[] { tierMinX, tierMinY };
-                    }
-
-                    alignedStackId = tierStack.getAlignedStackId();
-
-                    final String groupId = z.toString();
-
-                    if (tierStack.hasSplitGroupId(groupId)) {
 
-                        final Bounds tierStackBounds = tierStack.getFullScaleBounds();
-                        final ConsensusWarpFieldBuilder builder =
-                                new ConsensusWarpFieldBuilder(tierStackBounds.getDeltaX(),
-                                                              tierStackBounds.getDeltaY(),
-                                                              consensusRowCount,
-                                                              consensusColumnCount);
-                        final List<CanvasMatches> canvasMatchesList =
-                                matchDao.getMatchesOutsideGroup(tierStack.getMatchCollectionId(), groupId, false);
-                        final CanvasNameToPointsMap nameToPointsForGroup = new CanvasNameToPointsMap(1 / tierStack.getScale());
-                        nameToPointsForGroup.addPointsForGroup(groupId, canvasMatchesList);
+                final String cacheKey = owner + "::" + project + "::" + z + "::" + consensusRowCount + "::" +
+                                        consensusColumnCount + "::" + consensusBuildMethod + "::" +
+                                        metaDataHasher.hash();
 
-                        for (final String tileId : nameToPointsForGroup.getNames()) {
-
-                            tileSpecForZ = renderDao.getTileSpec(alignedStackId, tileId, false);
-
-                            relativeAlignedModel = getRelativeAlignedModel(tierStack,
-                                                                           tileSpecForZ,
-                                                                           alignedStackId);
-
-                            builder.addConsensusSetData(relativeAlignedModel, nameToPointsForGroup.getPoints(tileId));
-                        }
-
-                        tierStackToConsensusFieldMap.put(tierStack, builder.build());
-
-                    } else {
-
-                        tileSpecForZ = renderDao.getTileSpec(alignedStackId, tierStack.getTileIdForZ(z), false);
-
-                        relativeAlignedModel = getRelativeAlignedModel(tierStack,
-                                                                       tileSpecForZ,
-                                                                       alignedStackId);
-
-                        relativeAlignedModel.toArray(affineMatrixElements);
-
-                        warpField.set(tierStack.getTierRow(), tierStack.getTierColumn(), affineMatrixElements);
-
-                    }
-
-                }
-
-                final String warpFieldTransformId = z + "_AFFINE_WARP_FIELD";
-                if ((consensusBuildMethod == null) ||
-                    ConsensusWarpFieldBuilder.BuildMethod.SIMPLE.equals(consensusBuildMethod)) {
-
-                    transformSpec = ConsensusWarpFieldBuilder.buildSimpleWarpFieldTransformSpec(warpField,
-                                                                                                tierStackToConsensusFieldMap,
-                                                                                                locationOffsets,
-                                                                                                warpFieldTransformId);
-
-                } else {
-
-                    transformSpec = ConsensusWarpFieldBuilder.buildInterpolatedWarpFieldTransformSpec(warpField,
-                                                                                                      tierStackToConsensusFieldMap,
-                                                                                                      locationOffsets,
-                                                                                                      warpFieldTransformId);
-
-                }
+                transformSpec = WARP_FIELD_TRANSFORM_CACHE.get(
+                        cacheKey,
+                        () -> deriveAffineWarpFieldTransform(owner,
+                                                             project,
+                                                             z,
+                                                             projectStacks,
+                                                             consensusRowCount,
+                                                             consensusColumnCount,
+                                                             consensusBuildMethod));
 
             } else {
-                throw new ObjectNotFoundException("No aligned stacks exist for owner '" + owner +
-                                                  "' and project '"+ project + "'.");
+
+                transformSpec = deriveAffineWarpFieldTransform(owner,
+                                                               project,
+                                                               z,
+                                                               projectStacks,
+                                                               consensusRowCount,
+                                                               consensusColumnCount,
+                                                               consensusBuildMethod);
             }
 
+        } catch (final ExecutionException | UncheckedExecutionException e) {
+            RenderServiceUtil.throwServiceException(e.getCause());
         } catch (final Throwable t) {
             RenderServiceUtil.throwServiceException(t);
         }
@@ -693,6 +626,174 @@ public class HierarchicalDataService {
         return result;
     }
 
+    /**
+     * @return affine warp field transform spec derived from the specified project stacks for the specified layer.
+     */
+    private LeafTransformSpec deriveAffineWarpFieldTransform(final String owner,
+                                                             final String project,
+                                                             final Double z,
+                                                             final List<StackMetaData> projectStacks,
+                                                             final int consensusRowCount,
+                                                             final int consensusColumnCount,
+                                                             final ConsensusWarpFieldBuilder.BuildMethod consensusBuildMethod)
+            throws Exception {
+
+        final LeafTransformSpec transformSpec;
+
+        final Map<String, StackMetaData> projectStackNamesToMetadataMap = new HashMap<>(projectStacks.size() * 2);
+        for (final StackMetaData stackMetaData : projectStacks) {
+            projectStackNamesToMetadataMap.put(stackMetaData.getStackId().getStack(), stackMetaData);
+        }
+
+        final List<HierarchicalStack> alignedTierStacks = new ArrayList<>(projectStacks.size());
+
+        HierarchicalStack hierarchicalStack;
+        for (final StackMetaData stackMetaData : projectStacks) {
+            hierarchicalStack = stackMetaData.getHierarchicalData();
+            if ((hierarchicalStack != null) &&
+                (projectStackNamesToMetadataMap.containsKey(hierarchicalStack.getAlignedStackId().getStack()))) {
+                alignedTierStacks.add(hierarchicalStack);
+            }
+        }
+
+        if (alignedTierStacks.size() > 0) {
+
+            LOG.info("buildAffineWarpFieldTransform: retrieving data for z {} from {} aligned stacks",
+                     z, alignedTierStacks.size());
+
+            AffineWarpField warpField = null;
+            final Map<HierarchicalStack, AffineWarpField> tierStackToConsensusFieldMap = new HashMap<>();
+            double[] locationOffsets = AffineWarpFieldTransform.EMPTY_OFFSETS;
+
+            // consensus fields and affine data for each tier stack are independent,
+            // so retrieve and build them concurrently before populating the warp field
+            // (each consensus field is built with a single thread since the tasks already share the pool)
+            final String groupId = z.toString();
+
+            final ExecutorService executorService = getWarpFieldExecutor();
+            final List<Future<AffineWarpField>> consensusFieldFutures = new ArrayList<>(alignedTierStacks.size());
+            final List<Future<double[]>> affineElementsFutures = new ArrayList<>(alignedTierStacks.size());
+
+            for (final HierarchicalStack tierStack : alignedTierStacks) {
+                if (tierStack.hasSplitGroupId(groupId)) {
+                    consensusFieldFutures.add(
+                            executorService.submit(() -> buildConsensusField(tierStack,
+                                                                             groupId,
+                                                                             consensusRowCount,
+                                                                             consensusColumnCount)));
+                    affineElementsFutures.add(null);
+                } else {
+                    consensusFieldFutures.add(null);
+                    affineElementsFutures.add(
+                            executorService.submit(() -> getAffineMatrixElements(tierStack, z)));
+                }
+            }
+
+            for (int i = 0; i < alignedTierStacks.size(); i++) {
+
+                final HierarchicalStack tierStack = alignedTierStacks.get(i);
+
+                if (warpField == null) {
+                    warpField = new AffineWarpField(tierStack.getTotalTierFullScaleWidth(),
+                                                    tierStack.getTotalTierFullScaleHeight(),
+                                                    tierStack.getTotalTierRowCount(),
+                                                    tierStack.getTotalTierColumnCount(),
+                                                    AffineWarpField.getDefaultInterpolatorFactory());
+
+                    // derive tier upper left coordinates from this split stack's position
+                    final Bounds tierStackBounds = tierStack.getFullScaleBounds();
+                    final double tierMinX = tierStackBounds.getMinX() -
+                                            (tierStack.getTierColumn() * (tierStackBounds.getDeltaX()));
+                    final double tierMinY = tierStackBounds.getMinY() -
+                                           (tierStack.getTierRow() * (tierStackBounds.getDeltaY()));
+                    locationOffsets = new double[] { tierMinX, tierMinY };
+                }
+
+                final Future<AffineWarpField> consensusFieldFuture = consensusFieldFutures.get(i);
+                if (consensusFieldFuture == null) {
+                    warpField.set(tierStack.getTierRow(),
+                                  tierStack.getTierColumn(),
+                                  getResult(affineElementsFutures.get(i)));
+                } else {
+                    tierStackToConsensusFieldMap.put(tierStack, getResult(consensusFieldFuture));
+                }
+
+            }
+
+            final String warpFieldTransformId = z + "_AFFINE_WARP_FIELD";
+            if ((consensusBuildMethod == null) ||
+                ConsensusWarpFieldBuilder.BuildMethod.SIMPLE.equals(consensusBuildMethod)) {
+
+                transformSpec = ConsensusWarpFieldBuilder.buildSimpleWarpFieldTransformSpec(warpField,
+                                                                                            tierStackToConsensusFieldMap,
+                                                                                            locationOffsets,
+                                                                                            warpFieldTransformId);
+
+            } else {
+
+                transformSpec = ConsensusWarpFieldBuilder.buildInterpolatedWarpFieldTransformSpec(warpField,
+                                                                                                  tierStackToConsensusFieldMap,
+                                                                                                  locationOffsets,
+                                                                                                  warpFieldTransformId);
+
+            }
+
+        } else {
+            throw new ObjectNotFoundException("No aligned stacks exist for owner '" + owner +
+                                              "' and project '"+ project + "'.");
+        }
+
+        return transformSpec;
+    }
+
+    private AffineWarpField buildConsensusField(final HierarchicalStack tierStack,
+                                                final String groupId,
+                                                final int consensusRowCount,
+                                                final int consensusColumnCount)
+            throws IllegalArgumentException, ObjectNotFoundException {
+
+        final StackId alignedStackId = tierStack.getAlignedStackId();
+        final Bounds tierStackBounds = tierStack.getFullScaleBounds();
+        final ConsensusWarpFieldBuilder builder =
+                new ConsensusWarpFieldBuilder(tierStackBounds.getDeltaX(),
+                                              tierStackBounds.getDeltaY(),
+                                              consensusRowCount,
+                                              consensusColumnCount);
+        final List<CanvasMatches> canvasMatchesList =
+                matchDao.getMatchesOutsideGroup(tierStack.getMatchCollectionId(), groupId, false);
+        final CanvasNameToPointsMap nameToPointsForGroup = new CanvasNameToPointsMap(1 / tierStack.getScale());
+        nameToPointsForGroup.addPointsForGroup(groupId, canvasMatchesList);
+
+        for (final String tileId : nameToPointsForGroup.getNames()) {
+
+            final TileSpec tileSpecForZ = renderDao.getTileSpec(alignedStackId, tileId, false);
+
+            final AffineModel2D relativeAlignedModel = getRelativeAlignedModel(tierStack,
+                                                                               tileSpecForZ,
+                                                                               alignedStackId);
+
+            builder.addConsensusSetData(relativeAlignedModel, nameToPointsForGroup.getPoints(tileId));
+        }
+
+        return builder.build();
+    }
+
+    private double[] getAffineMatrixElements(final HierarchicalStack tierStack,
+                                             final Double z)
+            throws IllegalArgumentException, ObjectNotFoundException {
+
+        final StackId alignedStackId = tierStack.getAlignedStackId();
+        final TileSpec tileSpecForZ = renderDao.getTileSpec(alignedStackId, tierStack.getTileIdForZ(z), false);
+
+        final AffineModel2D relativeAlignedModel = getRelativeAlignedModel(tierStack,
+                                                                           tileSpecForZ,
+                                                                           alignedStackId);
+        final double[] affineMatrixElements = new double[6];
+        relativeAlignedModel.toArray(affineMatrixElements);
+
+        return affineMatrixElements;
+    }
+
     private AffineModel2D getRelativeAlignedModel(final HierarchicalStack tierStack,
                                                   final TileSpec tileSpecForZ,
                                                   final StackId alignedStackId)
@@ -741,6 +842,59 @@ public class HierarchicalDataService {
         return matchRenderParameters.getTileSpecs().get(0);
     }
 
+    /**
+     * @return result of the specified future, rethrowing the original cause of any task failure.
+     */
+    private static <T> T getResult(final Future<T> future)
+            throws Exception {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return true if every tier stack in the specified project and every aligned stack it references
+     *         is complete (or read only); otherwise false.
+     */
+    private static boolean isDerivedFromCompletedStacks(final List<StackMetaData> projectStacks) {
+
+        final Map<String, StackMetaData> projectStackNamesToMetadataMap = new HashMap<>(projectStacks.size() * 2);
+        for (final StackMetaData stackMetaData : projectStacks) {
+            projectStackNamesToMetadataMap.put(stackMetaData.getStackId().getStack(), stackMetaData);
+        }
+
+        boolean allCompleted = true;
+        HierarchicalStack hierarchicalStack;
+        StackMetaData alignedStackMetaData;
+        for (final StackMetaData stackMetaData : projectStacks) {
+            hierarchicalStack = stackMetaData.getHierarchicalData();
+            if (hierarchicalStack != null) {
+                alignedStackMetaData =
+                        projectStackNamesToMetadataMap.get(hierarchicalStack.getAlignedStackId().getStack());
+                if ((alignedStackMetaData != null) &&
+                    (! (isCompleted(stackMetaData) && isCompleted(alignedStackMetaData)))) {
+                    allCompleted = false;
+                    break;
+                }
+            }
+        }
+
+        return allCompleted;
+    }
+
+    private static boolean isCompleted(final StackMetaData stackMetaData) {
+        final StackMetaData.StackState state = stackMetaData.getState();
+        return StackMetaData.StackState.COMPLETE.equals(state) || StackMetaData.StackState.READ_ONLY.equals(state);
+    }
+
     private static void validateStackIsModifiable(final StackMetaData stackMetaData) {
         if (stackMetaData.isReadOnly()) {
             throw new IllegalStateException("Data for stack " + stackMetaData.getStackId().getStack() +
@@ -753,5 +907,41 @@ public class HierarchicalDataService {
         return StackMetaDataService.getStackMetaData(stackId, renderDao);
     }
 
+    /**
+     * @return number of threads used to build warp field transforms
+     *         (configured by the webService.maxWarpFieldThreads render-server property,
+     *         default is number of available processors).
+     */
+    private static int getWarpFieldThreadCount() {
+        if (warpFieldThreadCount == null) {
+            final Integer maxThreads = RenderServerProperties.getProperties().getInteger("webService.maxWarpFieldThreads");
+            warpFieldThreadCount = maxThreads == null ? Runtime.getRuntime().availableProcessors() :
+                                   Math.max(1, maxThreads);
+        }
+        return warpFieldThreadCount;
+    }
+
+    private static synchronized ExecutorService getWarpFieldExecutor() {
+        if (warpFieldExecutor == null) {
+            final AtomicInteger threadCount = new AtomicInteger(0);
+            warpFieldExecutor = Executors.newFixedThreadPool(getWarpFieldThreadCount(), runnable -> {
+                final Thread thread = new Thread(runnable, "warp-field-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            LOG.info("getWarpFieldExecutor: created executor with {} threads", getWarpFieldThreadCount());
+        }
+        return warpFieldExecutor;
+    }
+
+    private static Integer warpFieldThreadCount;
+    private static ExecutorService warpFieldExecutor;
+
+    // transform specs (derived only from completed stacks) are keyed by layer, build parameters,
+    // and a hash of the project's stack meta data so that stale specs are simply never requested again
+    // once any project stack changes
+    private static final Cache<String, LeafTransformSpec> WARP_FIELD_TRANSFORM_CACHE =
+            CacheBuilder.newBuilder().maximumSize(1000).build();
+
     private static final Logger LOG = LoggerFactory.getLogger(HierarchicalDataService.class);
 }
@@ -624,6 +624,36 @@ public class MatchService {
         return responseBuilder.build();
     }
 
+    @Path("v1/owner/{owner}/matchCollection/{matchCollection}/matchCounts")
+    @PUT
+    @ApiOperation(
+            value = "Update match counts for all pairs in the collection",
+            notes = "Only pairs with missing or stale counts are updated.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 201, message = "match counts successfully updated"),
+            @ApiResponse(code = 404, message = "Match collection not found")
+    })
+    public Response updateMatchCountsForCollection(@PathParam("owner") final String owner,
+                                                   @PathParam("matchCollection") final String matchCollection,
+                                                   @Context final UriInfo uriInfo) {
+
+        LOG.info("updateMatchCountsForCollection: entry, owner={}, matchCollection={}",
+                 owner, matchCollection);
+
+        final MatchCollectionId collectionId = getCollectionId(owner, matchCollection);
+        try {
+            matchDao.updateMatchCountsForCollection(collectionId);
+        } catch (final Throwable t) {
+            RenderServiceUtil.throwServiceException(t);
+        }
+
+        final Response.ResponseBuilder responseBuilder = Response.created(uriInfo.getRequestUri());
+
+        LOG.info("updateMatchCountsForCollection: exit, matchCollection={}", matchCollection);
+
+        return responseBuilder.build();
+    }
+
     @Path("v1/owner/{owner}/matchCollection/{matchCollection}")
     @DELETE
     @ApiOperation(
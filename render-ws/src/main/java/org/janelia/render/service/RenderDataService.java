@@ -1,5 +1,6 @@
 package org.janelia.render.service;
 
+import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -28,6 +29,7 @@ import javax.ws.rs.core.UriInfo;
 import org.janelia.alignment.RenderParameters;
 import org.janelia.alignment.filter.FilterFactory;
 import org.janelia.alignment.spec.Bounds;
+import org.janelia.alignment.spec.ImageStatistics;
 import org.janelia.alignment.spec.LastTileTransform;
 import org.janelia.alignment.spec.ResolvedTileSpecCollection;
 import org.janelia.alignment.spec.SectionData;
@@ -449,6 +451,98 @@ public class RenderDataService {
         return list;
     }
 
+    @Path("v1/owner/{owner}/project/{project}/stack/{stack}/z/{z}/tileImageStatistics")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiOperation(
+            tags = "Section Data APIs",
+            value = "Get catalog statistics for the source image of each tile with specified z",
+            notes = "Tiles whose source images do not have catalog statistics are omitted.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 404, message = "stack not found")
+    })
+    public Map<String, ImageStatistics> getTileImageStatisticsForZ(@PathParam("owner") final String owner,
+                                                                   @PathParam("project") final String project,
+                                                                   @PathParam("stack") final String stack,
+                                                                   @PathParam("z") final Double z,
+                                                                   @QueryParam("channel") final String channel) {
+
+        LOG.info("getTileImageStatisticsForZ: entry, owner={}, project={}, stack={}, z={}, channel={}",
+                 owner, project, stack, z, channel);
+
+        Map<String, ImageStatistics> tileIdToStatistics = null;
+        try {
+            final StackId stackId = new StackId(owner, project, stack);
+            getStackMetaData(stackId); // ensure stack exists
+            tileIdToStatistics = renderDao.getTileImageStatistics(stackId, z, channel);
+        } catch (final Throwable t) {
+            RenderServiceUtil.throwServiceException(t);
+        }
+        return tileIdToStatistics;
+    }
+
+    @Path("v1/owner/{owner}/project/{project}/stack/{stack}/layerImageStatistics")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiOperation(
+            tags = "Stack Data APIs",
+            value = "Get aggregated catalog source image statistics for each layer in the stack",
+            notes = "Aggregations only include tiles whose source images have catalog statistics.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 404, message = "stack not found")
+    })
+    public Map<Double, ImageStatistics> getLayerImageStatistics(@PathParam("owner") final String owner,
+                                                                @PathParam("project") final String project,
+                                                                @PathParam("stack") final String stack,
+                                                                @QueryParam("minZ") final Double minZ,
+                                                                @QueryParam("maxZ") final Double maxZ,
+                                                                @QueryParam("channel") final String channel) {
+
+        LOG.info("getLayerImageStatistics: entry, owner={}, project={}, stack={}, minZ={}, maxZ={}, channel={}",
+                 owner, project, stack, minZ, maxZ, channel);
+
+        Map<Double, ImageStatistics> zToStatistics = null;
+        try {
+            final StackId stackId = new StackId(owner, project, stack);
+            getStackMetaData(stackId); // ensure stack exists
+            zToStatistics = renderDao.getLayerImageStatistics(stackId, minZ, maxZ, channel);
+        } catch (final Throwable t) {
+            RenderServiceUtil.throwServiceException(t);
+        }
+        return zToStatistics;
+    }
+
+    @Path("v1/imageStatistics")
+    @PUT
+    @Consumes(MediaType.APPLICATION_JSON)
+    @ApiOperation(
+            tags = "Stack Data APIs",
+            value = "Save source image statistics to the (stack independent) image statistics catalog")
+    @ApiResponses(value = {
+            @ApiResponse(code = 400, message = "invalid statistics provided")
+    })
+    public Response saveImageStatistics(@Context final UriInfo uriInfo,
+                                        final List<ImageStatistics> statisticsList) {
+
+        LOG.info("saveImageStatistics: entry, statisticsList.size={}",
+                 statisticsList == null ? null : statisticsList.size());
+
+        try {
+            if (statisticsList == null) {
+                throw new IllegalServiceArgumentException("no image statistics provided");
+            }
+            renderDao.saveImageStatistics(statisticsList);
+        } catch (final Throwable t) {
+            RenderServiceUtil.throwServiceException(t);
+        }
+
+        final Response.ResponseBuilder responseBuilder = Response.created(uriInfo.getRequestUri());
+
+        LOG.info("saveImageStatistics: exit");
+
+        return responseBuilder.build();
+    }
+
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/z/{z}/tileIds")
     @PUT
     @Consumes(MediaType.APPLICATION_JSON)
@@ -491,6 +585,64 @@ public class RenderDataService {
         return responseBuilder.build();
     }
 
+    @Path("v1/owner/{owner}/project/{project}/stack/{stack}/transformedTiles")
+    @PUT
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiOperation(
+            tags = "Stack Data APIs",
+            value = "Apply specified transform to all tiles in the specified z range and/or group",
+            notes = "The transform (which may be a reference to a shared stack transform) is applied and " +
+                    "tile bounds are re-derived within the service, so tile specs do not need to be downloaded " +
+                    "and re-saved by clients.  Returns the number of updated tiles.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 400, message = "stack not in LOADING state, invalid transform or references"),
+            @ApiResponse(code = 404, message = "stack not found"),
+    })
+    public Integer applyTransformToTiles(@PathParam("owner") final String owner,
+                                         @PathParam("project") final String project,
+                                         @PathParam("stack") final String stack,
+                                         @QueryParam("minZ") final Double minZ,
+                                         @QueryParam("maxZ") final Double maxZ,
+                                         @QueryParam("groupId") final String groupId,
+                                         @QueryParam("applicationMethod") final ResolvedTileSpecCollection.TransformApplicationMethod applicationMethod,
+                                         final TransformSpec transformSpec) {
+
+        LOG.info("applyTransformToTiles: entry, owner={}, project={}, stack={}, minZ={}, maxZ={}, groupId={}, applicationMethod={}",
+                 owner, project, stack, minZ, maxZ, groupId, applicationMethod);
+
+        Integer updatedTileCount = null;
+        try {
+            if (transformSpec == null) {
+                throw new IllegalServiceArgumentException("no transform spec provided");
+            }
+
+            final StackId stackId = new StackId(owner, project, stack);
+            final StackMetaData stackMetaData = getStackMetaData(stackId);
+
+            if (! stackMetaData.isLoading()) {
+                throw new IllegalStateException("Transforms can only be applied to tiles in stacks in the " +
+                                                LOADING + " state, but this stack's state is " +
+                                                stackMetaData.getState() + ".");
+            }
+
+            updatedTileCount = renderDao.applyTransformToTiles(
+                    stackId,
+                    minZ,
+                    maxZ,
+                    groupId,
+                    transformSpec,
+                    applicationMethod == null ? ResolvedTileSpecCollection.TransformApplicationMethod.APPEND : applicationMethod);
+
+        } catch (final Throwable t) {
+            RenderServiceUtil.throwServiceException(t);
+        }
+
+        LOG.info("applyTransformToTiles: exit, updated {} tiles", updatedTileCount);
+
+        return updatedTileCount;
+    }
+
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/z/{z}/resolvedTiles")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
@@ -553,6 +705,54 @@ public class RenderDataService {
         return resolvedTiles;
     }
 
+    @Path("v1/owner/{owner}/project/{project}/stack/{stack}/resolvedTiles/stream")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiOperation(
+            tags = "Stack Data APIs",
+            value = "Stream raw tile and transform specs for specified z range, group, or bounding box",
+            notes = "Specs are written as they are read from the database, so there is no limit on the " +
+                    "number of tiles returned and an empty collection is returned if no tiles match.  " +
+                    "Transform specs always precede tile specs in the response.  " +
+                    "If a failure occurs after streaming starts, the response is aborted (left incomplete).")
+    public Response streamResolvedTiles(@PathParam("owner") final String owner,
+                                        @PathParam("project") final String project,
+                                        @PathParam("stack") final String stack,
+                                        @QueryParam("minZ") final Double minZ,
+                                        @QueryParam("maxZ") final Double maxZ,
+                                        @QueryParam("groupId") final String groupId,
+                                        @QueryParam("minX") final Double minX,
+                                        @QueryParam("maxX") final Double maxX,
+                                        @QueryParam("minY") final Double minY,
+                                        @QueryParam("maxY") final Double maxY) {
+
+        LOG.info("streamResolvedTiles: entry, owner={}, project={}, stack={}, minZ={}, maxZ={}, groupId={}, minX={}, maxX={}, minY={}, maxY={}",
+                 owner, project, stack, minZ, maxZ, groupId, minX, maxX, minY, maxY);
+
+        Response response = null;
+        try {
+            final StackId stackId = new StackId(owner, project, stack);
+            getStackMetaData(stackId); // ensure stack exists before starting to stream
+            final StreamingOutput responseOutput = output -> {
+                try {
+                    renderDao.writeResolvedTiles(stackId, minZ, maxZ, groupId, minX, maxX, minY, maxY, output);
+                } catch (final IOException e) {
+                    throw e;
+                } catch (final Throwable t) {
+                    // the response has already been committed, so the only way to signal failure to the client
+                    // is to abort the (incomplete) response by propagating the failure to the container
+                    LOG.error("streamResolvedTiles: aborting response for " + stackId, t);
+                    throw new IOException("failed to stream resolved tiles for " + stackId, t);
+                }
+            };
+            response = Response.ok(responseOutput).build();
+        } catch (final Throwable t) {
+            RenderServiceUtil.throwServiceException(t);
+        }
+
+        return response;
+    }
+
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/resolvedTiles")
     @PUT
     @Consumes(MediaType.APPLICATION_JSON)
@@ -607,7 +807,16 @@ public class RenderDataService {
                                                 stackMetaData.getState() + ".");
             }
 
-            if ((deriveData != null) && deriveData) {
+            final boolean deriveBounds = (deriveData != null) && deriveData;
+
+            // skip tiles that have not changed so that bounds are only derived and saved for modified tiles
+            final int unchangedTileCount = renderDao.removeUnchangedTileSpecs(stackId, resolvedTiles, deriveBounds);
+            if (unchangedTileCount > 0) {
+                LOG.info("saveResolvedTilesForZ: skipping {} unchanged tiles, {} tiles remain to be saved",
+                         unchangedTileCount, resolvedTiles.getTileCount());
+            }
+
+            if (deriveBounds) {
                 final ProcessTimer timer = new ProcessTimer();
                 int tileSpecCount = 0;
                 final Collection<TileSpec> tileSpecs = resolvedTiles.getTileSpecs();
@@ -625,9 +834,10 @@ public class RenderDataService {
                          tileSpecCount, timer.getElapsedSeconds());
             }
 
-            resolvedTiles.validateCollection(z);
-
-            renderDao.saveResolvedTiles(stackId, resolvedTiles);
+            if ((unchangedTileCount == 0) || (resolvedTiles.getTileCount() > 0)) {
+                resolvedTiles.validateCollection(z);
+                renderDao.saveResolvedTiles(stackId, resolvedTiles);
+            }
 
         } catch (final Throwable t) {
             RenderServiceUtil.throwServiceException(t);
@@ -3,6 +3,7 @@ package org.janelia.render.service;
 import java.io.File;
 import java.net.UnknownHostException;
 import java.nio.file.Paths;
+import java.util.concurrent.Callable;
 
 import javax.ws.rs.BeanParam;
 import javax.ws.rs.Consumes;
@@ -24,6 +25,8 @@ import org.janelia.alignment.spec.stack.StackId;
 import org.janelia.alignment.spec.stack.StackMetaData;
 import org.janelia.alignment.spec.stack.StackStats;
 import org.janelia.render.service.model.RenderQueryParameters;
+import org.janelia.render.service.util.MaterializedBoxComposer;
+import org.janelia.render.service.util.RenderServerProperties;
 import org.janelia.render.service.util.RenderServiceUtil;
 import org.janelia.render.service.util.ResponseHelper;
 import org.slf4j.Logger;
@@ -209,16 +212,9 @@ public class RenderImageService {
 
         LOG.info("renderJpegImageForBox: entry");
 
-        final ResponseHelper responseHelper = new ResponseHelper(request, getStackMetaData(owner, project, stack));
-        if (responseHelper.isModified()) {
-            final RenderParameters renderParameters =
-                    getRenderParametersForGroupBox(owner, project, stack, null,
-                                                   x, y, z, width, height, scale,
-                                                   renderQueryParameters);
-            return RenderServiceUtil.renderJpegImage(renderParameters, maxTileSpecsToRender, responseHelper);
-        } else {
-            return responseHelper.getNotModifiedResponse();
-        }
+        return renderImageForBox(owner, project, stack, x, y, z, width, height, scale,
+                                 Utils.JPEG_FORMAT, RenderServiceUtil.IMAGE_JPEG_MIME_TYPE,
+                                 renderQueryParameters, maxTileSpecsToRender, request);
     }
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/dvid/imagetile/raw/xy/{width}_{height}/{x}_{y}_{z}/jpg")
@@ -263,16 +259,9 @@ public class RenderImageService {
 
         LOG.info("renderPngImageForBox: entry");
 
-        final ResponseHelper responseHelper = new ResponseHelper(request, getStackMetaData(owner, project, stack));
-        if (responseHelper.isModified()) {
-            final RenderParameters renderParameters =
-                    getRenderParametersForGroupBox(owner, project, stack, null,
-                                                   x, y, z, width, height, scale,
-                                                   renderQueryParameters);
-            return RenderServiceUtil.renderPngImage(renderParameters, maxTileSpecsToRender, responseHelper);
-        } else {
-            return responseHelper.getNotModifiedResponse();
-        }
+        return renderImageForBox(owner, project, stack, x, y, z, width, height, scale,
+                                 Utils.PNG_FORMAT, RenderServiceUtil.IMAGE_PNG_MIME_TYPE,
+                                 renderQueryParameters, maxTileSpecsToRender, request);
     }
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/dvid/imagetile/raw/xy/{width}_{height}/{x}_{y}_{z}/png")
@@ -317,16 +306,9 @@ public class RenderImageService {
 
         LOG.info("renderTiffImageForBox: entry");
 
-        final ResponseHelper responseHelper = new ResponseHelper(request, getStackMetaData(owner, project, stack));
-        if (responseHelper.isModified()) {
-            final RenderParameters renderParameters =
-                    getRenderParametersForGroupBox(owner, project, stack, null,
-                                                   x, y, z, width, height, scale,
-                                                   renderQueryParameters);
-            return RenderServiceUtil.renderTiffImage(renderParameters, maxTileSpecsToRender, responseHelper);
-        } else {
-            return responseHelper.getNotModifiedResponse();
-        }
+        return renderImageForBox(owner, project, stack, x, y, z, width, height, scale,
+                                 Utils.TIFF_FORMAT, RenderServiceUtil.IMAGE_TIFF_MIME_TYPE,
+                                 renderQueryParameters, maxTileSpecsToRender, request);
     }
 
     @Path("v1/owner/{owner}/project/{project}/stack/{stack}/z/{z}/box/{x},{y},{width},{height},{scale}/tiff16-image")
@@ -747,6 +729,129 @@ public class RenderImageService {
                                        maxTileSpecsToRender, translateOrigin, request);
     }
 
+    private Response renderImageForBox(final String owner,
+                                       final String project,
+                                       final String stack,
+                                       final Double x,
+                                       final Double y,
+                                       final Double z,
+                                       final Integer width,
+                                       final Integer height,
+                                       final Double scale,
+                                       final String format,
+                                       final String mimeType,
+                                       final RenderQueryParameters renderQueryParameters,
+                                       final Integer maxTileSpecsToRender,
+                                       final Request request) {
+
+        final StackMetaData stackMetaData = getStackMetaData(owner, project, stack);
+        final ResponseHelper responseHelper = new ResponseHelper(request, stackMetaData);
+        if (responseHelper.isModified()) {
+
+            final MaterializedBoxComposer composer =
+                    getMaterializedBoxComposer(stackMetaData, x, y, z, width, height, scale,
+                                               renderQueryParameters, maxTileSpecsToRender);
+
+            if (composer == null) {
+
+                final RenderParameters renderParameters =
+                        getRenderParametersForGroupBox(owner, project, stack, null,
+                                                       x, y, z, width, height, scale,
+                                                       renderQueryParameters);
+                return RenderServiceUtil.renderImageStream(renderParameters,
+                                                           format,
+                                                           mimeType,
+                                                           maxTileSpecsToRender,
+                                                           responseHelper);
+
+            } else {
+
+                final boolean convertToGray = (renderQueryParameters.getConvertToGray() != null) &&
+                                              renderQueryParameters.getConvertToGray();
+
+                // if any box has not been materialized, the whole request is rendered dynamically
+                final Callable<RenderParameters> dynamicRenderParameters =
+                        () -> getRenderParametersForGroupBox(owner, project, stack, null,
+                                                             x, y, z, width, height, scale,
+                                                             renderQueryParameters);
+
+                return RenderServiceUtil.renderMaterializedBoxImageStream(composer,
+                                                                          x,
+                                                                          y,
+                                                                          z.intValue(),
+                                                                          width,
+                                                                          height,
+                                                                          format,
+                                                                          mimeType,
+                                                                          convertToGray,
+                                                                          dynamicRenderParameters,
+                                                                          maxTileSpecsToRender,
+                                                                          responseHelper);
+            }
+
+        } else {
+            return responseHelper.getNotModifiedResponse();
+        }
+    }
+
+    /**
+     * @return a composer for assembling the requested box from the stack's materialized boxes or
+     *         null if the request needs to be dynamically rendered
+     *         (e.g. materialized box use has not been enabled for the server, no boxes have been materialized,
+     *         the scale does not match a pyramid level,
+     *         or the request includes rendering options that materialized boxes do not reflect).
+     */
+    private MaterializedBoxComposer getMaterializedBoxComposer(final StackMetaData stackMetaData,
+                                                               final Double x,
+                                                               final Double y,
+                                                               final Double z,
+                                                               final Integer width,
+                                                               final Integer height,
+                                                               final Double scale,
+                                                               final RenderQueryParameters renderQueryParameters,
+                                                               final Integer maxTileSpecsToRender) {
+
+        MaterializedBoxComposer composer = null;
+
+        final Double effectiveScale = renderQueryParameters.getScale() == null ?
+                                      scale : renderQueryParameters.getScale();
+
+        final boolean hasDefaultRenderOptions =
+                (renderQueryParameters.getBinaryMask() == null) &&
+                (renderQueryParameters.getChannels() == null) &&
+                (renderQueryParameters.getExcludeMask() == null) &&
+                (renderQueryParameters.getFillWithNoise() == null) &&
+                (renderQueryParameters.getFilter() == null) &&
+                (renderQueryParameters.getFilterListName() == null) &&
+                (renderQueryParameters.getMinIntensity() == null) &&
+                (renderQueryParameters.getMaxIntensity() == null);
+
+        // maxTileSpecsToRender=0 is used to explicitly bypass materialized data (see renderLargeDataTileSource)
+        if (isMaterializedBoxUseEnabled() && hasDefaultRenderOptions &&
+            ((maxTileSpecsToRender == null) || (maxTileSpecsToRender != 0)) &&
+            (effectiveScale != null) && (z == Math.floor(z))) {
+
+            composer = MaterializedBoxComposer.forRequest(stackMetaData.getCurrentMaterializedBoxRootPath(),
+                                                          x, y, width, height, effectiveScale);
+        }
+
+        return composer;
+    }
+
+    /**
+     * @return true if box requests may be served from materialized boxes
+     *         (configured by the webService.useMaterializedBoxes render-server property, default is false).
+     */
+    private static boolean isMaterializedBoxUseEnabled() {
+        if (useMaterializedBoxes == null) {
+            final String value = RenderServerProperties.getProperties().get("webService.useMaterializedBoxes");
+            useMaterializedBoxes = (value != null) && Boolean.parseBoolean(value.trim());
+        }
+        return useMaterializedBoxes;
+    }
+
+    private static Boolean useMaterializedBoxes;
+
     private Response renderLargeDataTileSource(final String owner,
                                                final String project,
                                                final String stack,
@@ -0,0 +1,282 @@
+package org.janelia.render.service.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.BsonInvalidOperationException;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.janelia.alignment.match.CanvasMatches;
+import org.janelia.alignment.match.ConsensusSetData;
+import org.janelia.alignment.match.Matches;
+
+/**
+ * Encodes and decodes {@link CanvasMatches} directly to and from BSON so that match documents
+ * do not need to be converted to and from intermediate JSON strings and {@link org.bson.Document} maps.
+ *
+ * Documents have the same structure as the JSON representation of {@link CanvasMatches}
+ * (null values are omitted), so documents written by this codec and documents written by
+ * earlier JSON based code can be used interchangeably.
+ *
+ * @author Eric Trautman
+ */
+public class CanvasMatchesCodec
+        implements Codec<CanvasMatches> {
+
+    @Override
+    public Class<CanvasMatches> getEncoderClass() {
+        return CanvasMatches.class;
+    }
+
+    @Override
+    public void encode(final BsonWriter writer,
+                       final CanvasMatches canvasMatches,
+                       final EncoderContext encoderContext) {
+
+        writer.writeStartDocument();
+
+        writeString(writer, "pGroupId", canvasMatches.getpGroupId());
+        writeString(writer, "pId", canvasMatches.getpId());
+        writeString(writer, "qGroupId", canvasMatches.getqGroupId());
+        writeString(writer, "qId", canvasMatches.getqId());
+
+        final ConsensusSetData consensusSetData = canvasMatches.getConsensusSetData();
+        if (consensusSetData != null) {
+            writer.writeStartDocument("consensusSetData");
+            if (consensusSetData.getIndex() != null) {
+                writer.writeInt32("index", consensusSetData.getIndex());
+            }
+            writeString(writer, "originalPId", consensusSetData.getOriginalPId());
+            writeString(writer, "originalQId", consensusSetData.getOriginalQId());
+            writer.writeEndDocument();
+        }
+
+        final Matches matches = canvasMatches.getMatches();
+        if (matches != null) {
+            writer.writeStartDocument("matches");
+            writeMatrix(writer, "p", matches.getPs());
+            writeMatrix(writer, "q", matches.getQs());
+            writeArray(writer, "w", matches.getWs());
+            writer.writeEndDocument();
+        }
+
+        if (canvasMatches.getMatchCount() != null) {
+            writer.writeInt32("matchCount", canvasMatches.getMatchCount());
+        }
+
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public CanvasMatches decode(final BsonReader reader,
+                                final DecoderContext decoderContext) {
+
+        String pGroupId = null;
+        String pId = null;
+        String qGroupId = null;
+        String qId = null;
+        ConsensusSetData consensusSetData = null;
+        Matches matches = null;
+        Integer matchCount = null;
+
+        reader.readStartDocument();
+
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+
+            final String name = reader.readName();
+
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+                continue;
+            }
+
+            switch (name) {
+                case "pGroupId":
+                    pGroupId = reader.readString();
+                    break;
+                case "pId":
+                    pId = reader.readString();
+                    break;
+                case "qGroupId":
+                    qGroupId = reader.readString();
+                    break;
+                case "qId":
+                    qId = reader.readString();
+                    break;
+                case "consensusSetData":
+                    consensusSetData = readConsensusSetData(reader);
+                    break;
+                case "matches":
+                    matches = readMatches(reader);
+                    break;
+                case "matchCount":
+                    matchCount = (int) readNumber(reader);
+                    break;
+                default:
+                    // skips _id and any other fields that are not part of the model
+                    reader.skipValue();
+            }
+
+        }
+
+        reader.readEndDocument();
+
+        return CanvasMatches.fromStoredValues(pGroupId, pId, qGroupId, qId, consensusSetData, matches, matchCount);
+    }
+
+    private static void writeString(final BsonWriter writer,
+                                    final String name,
+                                    final String value) {
+        if (value != null) {
+            writer.writeString(name, value);
+        }
+    }
+
+    private static void writeMatrix(final BsonWriter writer,
+                                    final String name,
+                                    final double[][] values) {
+        if (values != null) {
+            writer.writeStartArray(name);
+            for (final double[] row : values) {
+                writer.writeStartArray();
+                for (final double value : row) {
+                    writer.writeDouble(value);
+                }
+                writer.writeEndArray();
+            }
+            writer.writeEndArray();
+        }
+    }
+
+    private static void writeArray(final BsonWriter writer,
+                                   final String name,
+                                   final double[] values) {
+        if (values != null) {
+            writer.writeStartArray(name);
+            for (final double value : values) {
+                writer.writeDouble(value);
+            }
+            writer.writeEndArray();
+        }
+    }
+
+    private static ConsensusSetData readConsensusSetData(final BsonReader reader) {
+
+        Integer index = null;
+        String originalPId = null;
+        String originalQId = null;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            final String name = reader.readName();
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+            } else if ("index".equals(name)) {
+                index = (int) readNumber(reader);
+            } else if ("originalPId".equals(name)) {
+                originalPId = reader.readString();
+            } else if ("originalQId".equals(name)) {
+                originalQId = reader.readString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        return new ConsensusSetData(index, originalPId, originalQId);
+    }
+
+    private static Matches readMatches(final BsonReader reader) {
+
+        double[][] p = null;
+        double[][] q = null;
+        double[] w = null;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            final String name = reader.readName();
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+            } else if ("p".equals(name)) {
+                p = readMatrix(reader);
+            } else if ("q".equals(name)) {
+                q = readMatrix(reader);
+            } else if ("w".equals(name)) {
+                w = readArray(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        return new Matches(p, q, w);
+    }
+
+    private static double[][] readMatrix(final BsonReader reader) {
+        final List<double[]> rows = new ArrayList<>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            rows.add(readArray(reader));
+        }
+        reader.readEndArray();
+        return rows.toArray(new double[0][]);
+    }
+
+    private static double[] readArray(final BsonReader reader) {
+        double[] values = new double[INITIAL_ARRAY_CAPACITY];
+        int count = 0;
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (count == values.length) {
+                final double[] expandedValues = new double[values.length * 2];
+                System.arraycopy(values, 0, expandedValues, 0, count);
+                values = expandedValues;
+            }
+            values[count] = readNumber(reader);
+            count++;
+        }
+        reader.readEndArray();
+
+        final double[] trimmedValues;
+        if (count == values.length) {
+            trimmedValues = values;
+        } else {
+            trimmedValues = new double[count];
+            System.arraycopy(values, 0, trimmedValues, 0, count);
+        }
+        return trimmedValues;
+    }
+
+    /**
+     * Reads the current numeric value, accepting integer types since
+     * JSON parsed documents store whole numbers (e.g. 1 instead of 1.0) as integers.
+     */
+    private static double readNumber(final BsonReader reader)
+            throws BsonInvalidOperationException {
+        final double value;
+        final BsonType type = reader.getCurrentBsonType();
+        switch (type) {
+            case DOUBLE:
+                value = reader.readDouble();
+                break;
+            case INT32:
+                value = reader.readInt32();
+                break;
+            case INT64:
+                value = reader.readInt64();
+                break;
+            case DECIMAL128:
+                value = reader.readDecimal128().doubleValue();
+                break;
+            default:
+                throw new BsonInvalidOperationException("expected numeric value but found " + type);
+        }
+        return value;
+    }
+
+    private static final int INITIAL_ARRAY_CAPACITY = 64;
+}
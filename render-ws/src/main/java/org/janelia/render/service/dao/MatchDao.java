@@ -1,5 +1,7 @@
 package org.janelia.render.service.dao;
 
+import com.mongodb.MongoException;
+import com.mongodb.MongoServerException;
 import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.AggregateIterable;
 import com.mongodb.client.MongoClient;
@@ -12,17 +14,21 @@ import com.mongodb.client.model.ReplaceOptions;
 import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
 import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistries;
 import org.bson.types.ObjectId;
 import org.janelia.alignment.match.CanvasMatches;
 import org.janelia.alignment.match.MatchCollectionId;
@@ -52,7 +58,10 @@ public class MatchDao {
     private final MongoDatabase matchDatabase;
 
     MatchDao(final MongoClient client) {
-        matchDatabase = client.getDatabase(MATCH_DB_NAME);
+        final MongoDatabase database = client.getDatabase(MATCH_DB_NAME);
+        matchDatabase = database.withCodecRegistry(
+                CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(new CanvasMatchesCodec()),
+                                               database.getCodecRegistry()));
     }
 
     /**
@@ -291,9 +300,10 @@ public class MatchDao {
 
         int matchCount = 0;
         CanvasMatches canvasMatches = null;
-        try (final MongoCursor<Document> cursor = collection.find(query).iterator()) {
+        try (final MongoCursor<CanvasMatches> cursor =
+                     collection.find(query, CanvasMatches.class).iterator()) {
             if (cursor.hasNext()) {
-                canvasMatches = CanvasMatches.fromJson(cursor.next().toJson());
+                canvasMatches = cursor.next();
                 matchCount = canvasMatches.size();
             }
         }
@@ -454,11 +464,10 @@ public class MatchDao {
 
             ensureMatchIndexes(collection);
 
-            final List<WriteModel<Document>> modelList = new ArrayList<>(matchesList.size());
+            final List<WriteModel<CanvasMatches>> modelList = new ArrayList<>(matchesList.size());
 
             final ReplaceOptions upsertOption = new ReplaceOptions().upsert(true);
             Document filter;
-            Document matchesObject;
             for (final CanvasMatches canvasMatches : matchesList) {
                 canvasMatches.normalize();
                 filter = new Document(
@@ -466,11 +475,11 @@ public class MatchDao {
                         "pId", canvasMatches.getpId()).append(
                         "qGroupId", canvasMatches.getqGroupId()).append(
                         "qId", canvasMatches.getqId());
-                matchesObject = Document.parse(canvasMatches.toJson());
-                modelList.add(new ReplaceOneModel<>(filter, matchesObject, upsertOption));
+                modelList.add(new ReplaceOneModel<>(filter, canvasMatches, upsertOption));
             }
 
-            final BulkWriteResult result = collection.bulkWrite(modelList, MongoUtil.UNORDERED_OPTION);
+            final BulkWriteResult result = collection.withDocumentClass(CanvasMatches.class)
+                    .bulkWrite(modelList, MongoUtil.UNORDERED_OPTION);
 
             if (LOG.isDebugEnabled()) {
                 final String bulkResultMessage = MongoUtil.toMessage("matches", result, matchesList.size());
@@ -579,34 +588,117 @@ public class MatchDao {
         LOG.debug("updateMatchCountsForPGroup: entry, collectionId={}, pGroupId={}",
                   collectionId, pGroupId);
 
-        final ProcessTimer timer = new ProcessTimer();
-
         final MongoCollection<Document> collection = getExistingCollection(collectionId);
 
         MongoUtil.validateRequiredParameter("pGroupId", pGroupId);
 
+        updateMatchCounts(collection, new Document("pGroupId", pGroupId));
+    }
+
+    public void updateMatchCountsForCollection(final MatchCollectionId collectionId) {
+
+        LOG.debug("updateMatchCountsForCollection: entry, collectionId={}", collectionId);
+
+        final MongoCollection<Document> collection = getExistingCollection(collectionId);
+
+        updateMatchCounts(collection, new Document());
+    }
+
+    /**
+     * Sets matchCount for all pairs identified by the specified criteria whose count is missing or stale.
+     * Counts are calculated and stored by the server with a single pipeline update (requires MongoDB 4.2+).
+     * Older servers fall back to calculating counts with an aggregation and writing them back in bulk.
+     */
+    private void updateMatchCounts(final MongoCollection<Document> collection,
+                                   final Document criteria) {
+
+        final ProcessTimer timer = new ProcessTimer();
+        final Document staleCountCriteria = getStaleCountCriteria(criteria);
+
+        if (! updateMatchCountsOnServer(collection, staleCountCriteria)) {
+            updateMatchCountsFromClient(collection, staleCountCriteria, timer);
+        }
+
+    }
+
+    /**
+     * @return criteria for pairs identified by the specified criteria whose matchCount is missing or stale.
+     */
+    static Document getStaleCountCriteria(final Document criteria) {
+        return new Document(criteria).append("$expr", new Document("$ne", Arrays.asList("$matchCount", MATCH_SIZE)));
+    }
+
+    /**
+     * Sets matchCount for all pairs identified by the specified criteria with a single pipeline update.
+     *
+     * @return true if the counts were updated; false if the server does not support pipeline updates.
+     *
+     * @throws MongoException
+     *   if the update fails for any other reason.
+     */
+    boolean updateMatchCountsOnServer(final MongoCollection<Document> collection,
+                                      final Document staleCountCriteria)
+            throws MongoException {
+
+        final ProcessTimer timer = new ProcessTimer();
+
+        // db.<matchCollection>.updateMany(
+        //     <staleCountCriteria>,
+        //     [
+        //         { "$set": { "matchCount": { "$size": "$matches.w" } } }
+        //     ]
+        // )
+
+        final List<Document> updatePipeline =
+                Collections.singletonList(new Document("$set", new Document("matchCount", MATCH_SIZE)));
+
+        boolean isUpdated = false;
+        try {
+
+            final UpdateResult result = collection.updateMany(staleCountCriteria, updatePipeline);
+            isUpdated = true;
+
+            LOG.debug("updateMatchCountsOnServer: updated {} of {} stale pair counts using {}.updateMany({}, {}), elapsedMilliseconds={}",
+                      result.getModifiedCount(), result.getMatchedCount(), MongoUtil.fullName(collection),
+                      staleCountCriteria.toJson(), MongoUtil.toJson(updatePipeline), timer.getElapsedMilliseconds());
+
+        } catch (final MongoServerException e) {
+
+            if (! isPipelineUpdateUnsupported(e)) {
+                throw e;
+            }
+
+            LOG.warn("updateMatchCountsOnServer: server does not support pipeline updates for {}, error code {}: {}",
+                     MongoUtil.fullName(collection), e.getCode(), e.getMessage());
+        }
+
+        return isUpdated;
+    }
+
+    /**
+     * @return true if the specified exception indicates that the server (older than 4.2) rejected
+     *         an update because it does not support update pipelines.
+     */
+    static boolean isPipelineUpdateUnsupported(final MongoServerException e) {
+        return PIPELINE_UPDATE_UNSUPPORTED_ERROR_CODES.contains(e.getCode());
+    }
+
+    private void updateMatchCountsFromClient(final MongoCollection<Document> collection,
+                                             final Document staleCountCriteria,
+                                             final ProcessTimer timer) {
+
         // db.<matchCollection>.aggregate(
         //     [
-        //         {
-        //             "$match":  {
-        //                 "pGroupId": "..."
-        //             }
-        //         },
-        //         {
-        //             "$project":  {
-        //                 "_id": "$_id",
-        //                 "matchCount": { "$size": "$matches.w" } } }
-        //             }
-        //         }
+        //         { "$match":  <staleCountCriteria> },
+        //         { "$project":  { "_id": "$_id", "matchCount": { "$size": "$matches.w" } } }
         //     ]
         // )
 
-        final Document matchCriteria = new Document("pGroupId", pGroupId);
         final Document projectCriteria = new Document("_id", "$_id").append("matchCount",
                                                                            new Document("$size", "$matches.w"));
 
         final List<Document> pipeline = new ArrayList<>();
-        pipeline.add(new Document("$match", matchCriteria));
+        pipeline.add(new Document("$match", staleCountCriteria));
         pipeline.add(new Document("$project", projectCriteria));
 
         final List<WriteModel<Document>> modelList = new ArrayList<>();
@@ -623,20 +715,23 @@ public class MatchDao {
         }
 
         if (LOG.isDebugEnabled()) {
-            LOG.debug("updateMatchCountsForPGroup: calculated match counts for {} pairs returned by {}.aggregate({})",
+            LOG.debug("updateMatchCountsFromClient: calculated match counts for {} pairs returned by {}.aggregate({})",
                       modelList.size(), MongoUtil.fullName(collection), MongoUtil.toJson(pipeline));
         }
 
-        final BulkWriteResult result = collection.bulkWrite(modelList, MongoUtil.UNORDERED_OPTION);
+        if (modelList.size() > 0) {
 
-        if (LOG.isDebugEnabled()) {
-            final String bulkResultMessage = MongoUtil.toMessage("matches", result, modelList.size());
-            LOG.debug("updateMatchCountsForPGroup: {} using {}.initializeUnorderedBulkOp(), elapsedMilliseconds={}",
-                      bulkResultMessage, MongoUtil.fullName(collection), timer.getElapsedMilliseconds());
+            final BulkWriteResult result = collection.bulkWrite(modelList, MongoUtil.UNORDERED_OPTION);
+
+            if (LOG.isDebugEnabled()) {
+                final String bulkResultMessage = MongoUtil.toMessage("matches", result, modelList.size());
+                LOG.debug("updateMatchCountsFromClient: {} using {}.initializeUnorderedBulkOp(), elapsedMilliseconds={}",
+                          bulkResultMessage, MongoUtil.fullName(collection), timer.getElapsedMilliseconds());
+            }
         }
 
     }
-    
+
     private MongoCollection<Document> getMatchTrialCollection() {
         return matchDatabase.getCollection(MATCH_TRIAL_COLLECTION_NAME);
     }
@@ -716,9 +811,10 @@ public class MatchDao {
 
         final Document projection = excludeMatchDetails ? EXCLUDE_MONGO_ID_KEY_AND_MATCHES : EXCLUDE_MONGO_ID_KEY;
 
-        try (final MongoCursor<Document> cursor = collection.find(query).projection(projection).iterator()) {
+        try (final MongoCursor<CanvasMatches> cursor =
+                     collection.find(query, CanvasMatches.class).projection(projection).iterator()) {
             while (cursor.hasNext()) {
-                canvasMatchesList.add(CanvasMatches.fromJson(cursor.next().toJson()));
+                canvasMatchesList.add(cursor.next());
             }
         }
 
@@ -793,7 +889,7 @@ public class MatchDao {
         int count = 0;
 
         final int numberOfCollections = collectionList.size();
-        final List<MongoCursor<Document>> cursorList = new ArrayList<>(numberOfCollections);
+        final List<MongoCursor<CanvasMatches>> cursorList = new ArrayList<>(numberOfCollections);
         final List<CanvasMatches> matchesList = new ArrayList<>(numberOfCollections);
 
         try {
@@ -802,7 +898,8 @@ public class MatchDao {
             MongoCollection<Document> collection;
             for (int i = 0; i < numberOfCollections; i++) {
                 collection = collectionList.get(i);
-                cursorList.add(collection.find(query).projection(projection).sort(MATCH_ORDER_BY).iterator());
+                cursorList.add(collection.find(query, CanvasMatches.class)
+                                       .projection(projection).sort(MATCH_ORDER_BY).iterator());
                 matchesList.add(null);
                 numberOfCompletedCursors += updateMatches(cursorList, matchesList, i);
             }
@@ -829,7 +926,7 @@ public class MatchDao {
 
         } finally {
 
-            for (final MongoCursor<Document> cursor : cursorList) {
+            for (final MongoCursor<CanvasMatches> cursor : cursorList) {
                 if (cursor != null) {
                     try {
                         cursor.close();
@@ -856,7 +953,7 @@ public class MatchDao {
         }
     }
 
-    private CanvasMatches getNextMergedMatches(final List<MongoCursor<Document>> cursorList,
+    private CanvasMatches getNextMergedMatches(final List<MongoCursor<CanvasMatches>> cursorList,
                                                final List<CanvasMatches> matchesList) {
 
         int numberOfCompletedCursors = 0;
@@ -885,9 +982,9 @@ public class MatchDao {
         return nextMatches;
     }
 
-    private void removeCompletedCursors(final List<MongoCursor<Document>> cursorList,
+    private void removeCompletedCursors(final List<MongoCursor<CanvasMatches>> cursorList,
                                         final List<CanvasMatches> matchesList) {
-        MongoCursor<Document> cursor;
+        MongoCursor<CanvasMatches> cursor;
         for (int i = matchesList.size() - 1; i >=0; i--) {
             if (matchesList.get(i) == null) {
                 matchesList.remove(i);
@@ -897,13 +994,13 @@ public class MatchDao {
         }
     }
 
-    private int updateMatches(final List<MongoCursor<Document>> cursorList,
+    private int updateMatches(final List<MongoCursor<CanvasMatches>> cursorList,
                               final List<CanvasMatches> matchesList,
                               final int index) {
         CanvasMatches canvasMatches = null;
-        final MongoCursor<Document> cursor = cursorList.get(index);
+        final MongoCursor<CanvasMatches> cursor = cursorList.get(index);
         if (cursor.hasNext()) {
-            canvasMatches = CanvasMatches.fromJson(cursor.next().toJson());
+            canvasMatches = cursor.next();
         }
         matchesList.set(index, canvasMatches);
         return (canvasMatches == null ? 1 : 0);
@@ -1045,6 +1142,16 @@ public class MatchDao {
     private static final byte[] COMMA_WITH_NEW_LINE = ",\n".getBytes();
     private static final byte[] CLOSE_BRACKET = "]".getBytes();
 
+    private static final Document MATCH_SIZE = new Document("$size", "$matches.w");
+
+    /**
+     * Server error codes returned by servers that do not support update pipelines:
+     * FailedToParse (9) and TypeMismatch (14) for an update specified as an array,
+     * CommandNotSupported (115), and unrecognized pipeline stage (40324).
+     */
+    private static final Set<Integer> PIPELINE_UPDATE_UNSUPPORTED_ERROR_CODES =
+            new HashSet<>(Arrays.asList(9, 14, 115, 40324));
+
     private static final IndexOptions MATCH_A_OPTIONS = new IndexOptions().unique(true).background(true).name("A");
     private static final IndexOptions MATCH_B_OPTIONS = new IndexOptions().background(true).name("B");
 
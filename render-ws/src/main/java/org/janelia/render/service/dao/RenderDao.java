@@ -7,9 +7,12 @@ import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.DeleteOneModel;
 import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.InsertOneModel;
 import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
 import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
@@ -21,20 +24,28 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.BiConsumer;
 
 import org.bson.Document;
+import org.janelia.alignment.ImageAndMask;
 import org.janelia.alignment.RenderParameters;
 import org.janelia.alignment.spec.Bounds;
+import org.janelia.alignment.spec.ChannelSpec;
+import org.janelia.alignment.spec.ImageStatistics;
 import org.janelia.alignment.spec.ListTransformSpec;
+import org.janelia.alignment.spec.ReferenceTransformSpec;
 import org.janelia.alignment.spec.ResolvedTileSpecCollection;
+import org.janelia.alignment.spec.ResolvedTileSpecStreamWriter;
 import org.janelia.alignment.spec.SectionData;
 import org.janelia.alignment.spec.TileBounds;
 import org.janelia.alignment.spec.TileCoordinates;
@@ -44,6 +55,7 @@ import org.janelia.alignment.spec.stack.StackId;
 import org.janelia.alignment.spec.stack.StackMetaData;
 import org.janelia.alignment.spec.stack.StackStats;
 import org.janelia.alignment.util.ProcessTimer;
+import org.janelia.alignment.util.RenderMetrics;
 import org.janelia.render.service.model.ObjectNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,6 +69,8 @@ public class RenderDao {
 
     public static final String RENDER_DB_NAME = "render";
     public static final String STACK_META_DATA_COLLECTION_NAME = "admin__stack_meta_data";
+    public static final String IMAGE_STATISTICS_COLLECTION_NAME = "admin__image_statistics";
+    public static final String CHANGED_Z_COLLECTION_NAME = "admin__stack_changed_z";
 
     public static RenderDao build()
             throws UnknownHostException {
@@ -534,6 +548,334 @@ public class RenderDao {
                                               renderParameters.getTileSpecs());
     }
 
+    /**
+     * Writes the resolved tile spec collection for all tiles that match the specified criteria
+     * to the specified stream.  Referenced transform specs are written first, followed by each tile spec
+     * as it is read from the database, so the full collection is never held in memory and
+     * (unlike {@link #getResolvedTiles}) there is no limit on the number of tiles that can be written.
+     * An empty collection is written if no tiles match the criteria.
+     * If writing fails part way through, the written JSON is left incomplete.
+     *
+     * @throws IllegalArgumentException
+     *   if any required parameters are missing.
+     *
+     * @throws IOException
+     *   if the data cannot be written for any reason.
+     */
+    public void writeResolvedTiles(final StackId stackId,
+                                   final Double minZ,
+                                   final Double maxZ,
+                                   final String groupId,
+                                   final Double minX,
+                                   final Double maxX,
+                                   final Double minY,
+                                   final Double maxY,
+                                   final OutputStream outputStream)
+            throws IllegalArgumentException, IOException {
+
+        LOG.debug("writeResolvedTiles: entry, stackId={}", stackId);
+
+        MongoUtil.validateRequiredParameter("stackId", stackId);
+
+        final Document tileQuery = getGroupQuery(minZ, maxZ, groupId, minX, maxX, minY, maxY);
+        final MongoCollection<Document> tileCollection = getTileCollection(stackId);
+
+        final ProcessTimer timer = new ProcessTimer();
+
+        // Shared transform specs must be written before any tile specs.  They are identified with server side
+        // distinct queries so that tile data is only read (and sent) once and the first bytes are written quickly.
+        final Set<String> referencedIds = new HashSet<>();
+        for (final String referenceIdPath : TILE_REFERENCE_ID_PATHS) {
+            try (final MongoCursor<String> cursor =
+                         tileCollection.distinct(referenceIdPath, tileQuery, String.class).iterator()) {
+                while (cursor.hasNext()) {
+                    referencedIds.add(cursor.next());
+                }
+            }
+        }
+
+        final Map<String, TransformSpec> resolvedIdToSpecMap = new HashMap<>();
+        if (referencedIds.size() > 0) {
+            getDataForTransformSpecReferences(getTransformCollection(stackId),
+                                              new HashSet<>(referencedIds),
+                                              resolvedIdToSpecMap,
+                                              1);
+        }
+
+        final Document orderBy = new Document("tileId", 1);
+
+        final ResolvedTileSpecStreamWriter writer = new ResolvedTileSpecStreamWriter(outputStream);
+        for (final TransformSpec transformSpec : resolvedIdToSpecMap.values()) {
+            writer.writeTransformSpec(transformSpec);
+        }
+        writer.flush();
+
+        // Any failure (including a reference missed by the distinct queries) is thrown before the writer
+        // is closed so that the response is left incomplete (invalid JSON) instead of looking complete.
+        final Set<String> tileReferencedIds = new HashSet<>();
+        try (final MongoCursor<Document> cursor = tileCollection.find(tileQuery).sort(orderBy).iterator()) {
+            while (cursor.hasNext()) {
+                final Document tileDocument = cursor.next();
+
+                tileReferencedIds.clear();
+                addReferenceTransformIds(tileDocument.get("transforms"), tileReferencedIds);
+                if (! referencedIds.containsAll(tileReferencedIds)) {
+                    tileReferencedIds.removeAll(referencedIds);
+                    throw new IllegalStateException("tile " + tileDocument.getString("tileId") +
+                                                    " has transform references " + tileReferencedIds +
+                                                    " that are nested too deeply to be streamed");
+                }
+
+                writer.writeTileSpec(TileSpec.fromJson(tileDocument.toJson()));
+                if (timer.hasIntervalPassed()) {
+                    LOG.debug("writeResolvedTiles: data written for {} tiles", writer.getTileSpecCount());
+                }
+            }
+        }
+
+        writer.close();
+
+        LOG.debug("writeResolvedTiles: wrote {} transform spec(s) and {} tile spec(s) returned by {}.find({}).sort({}), elapsedSeconds={}",
+                  writer.getTransformSpecCount(), writer.getTileSpecCount(), MongoUtil.fullName(tileCollection),
+                  tileQuery.toJson(), orderBy.toJson(), timer.getElapsedSeconds());
+    }
+
+    /**
+     * Adds the ids of all reference transform specs nested within the specified transform spec BSON value
+     * to the specified set.
+     */
+    private static void addReferenceTransformIds(final Object transformSpecValue,
+                                                 final Set<String> referenceIds) {
+        if (transformSpecValue instanceof Document) {
+            final Document transformSpecDocument = (Document) transformSpecValue;
+            if (ReferenceTransformSpec.TYPE.equals(transformSpecDocument.get("type"))) {
+                final Object refId = transformSpecDocument.get("refId");
+                if (refId instanceof String) {
+                    referenceIds.add((String) refId);
+                }
+            } else {
+                for (final Object childValue : transformSpecDocument.values()) {
+                    addReferenceTransformIds(childValue, referenceIds);
+                }
+            }
+        } else if (transformSpecValue instanceof List) {
+            for (final Object childValue : (List<?>) transformSpecValue) {
+                addReferenceTransformIds(childValue, referenceIds);
+            }
+        }
+    }
+
+    /**
+     * Applies the specified transform to all tiles that match the specified z and group criteria,
+     * re-deriving each tile's bounding box and updating the tile's transforms and bounds in place.
+     *
+     * Tiles are processed in batches entirely within the web service, so stack-wide corrections do not need
+     * to move tile specs to and from a client.  Matching tile ids are identified before any tiles are updated
+     * to ensure that (bounds) changes cannot cause a tile to be transformed more than once.
+     *
+     * @param  stackId            stack identifier.
+     * @param  minZ               minimum z value for tiles to update (or null for no minimum).
+     * @param  maxZ               maximum z value for tiles to update (or null for no maximum).
+     * @param  groupId            group (section) id for tiles to update (or null for all groups).
+     * @param  transformSpec      transform to apply (may be or contain references to shared stack transforms).
+     * @param  applicationMethod  method used to apply (add) the transform to each tile.
+     *
+     * @return number of updated tiles.
+     *
+     * @throws IllegalArgumentException
+     *   if any required parameters are missing or if transform references cannot be resolved.
+     */
+    public int applyTransformToTiles(final StackId stackId,
+                                     final Double minZ,
+                                     final Double maxZ,
+                                     final String groupId,
+                                     final TransformSpec transformSpec,
+                                     final ResolvedTileSpecCollection.TransformApplicationMethod applicationMethod)
+            throws IllegalArgumentException {
+
+        MongoUtil.validateRequiredParameter("stackId", stackId);
+        MongoUtil.validateRequiredParameter("transformSpec", transformSpec);
+        MongoUtil.validateRequiredParameter("applicationMethod", applicationMethod);
+
+        final MongoCollection<Document> tileCollection = getTileCollection(stackId);
+        final MongoCollection<Document> transformCollection = getTransformCollection(stackId);
+
+        // resolve any shared transforms referenced by the transform being applied
+        final Map<String, TransformSpec> appliedIdToSpecMap = new HashMap<>();
+        final Set<String> appliedUnresolvedIds = transformSpec.getUnresolvedIds();
+        if (appliedUnresolvedIds.size() > 0) {
+            getDataForTransformSpecReferences(transformCollection, appliedUnresolvedIds, appliedIdToSpecMap, 1);
+            for (final TransformSpec spec : appliedIdToSpecMap.values()) {
+                spec.resolveReferences(appliedIdToSpecMap);
+            }
+            transformSpec.resolveReferences(appliedIdToSpecMap);
+            if (! transformSpec.isFullyResolved()) {
+                throw new IllegalArgumentException("transform spec references the following unknown transform ids " +
+                                                   transformSpec.getUnresolvedIds());
+            }
+        }
+
+        final Document tileQuery = getGroupQuery(minZ, maxZ, groupId, null, null, null, null);
+        final List<String> tileIds = new ArrayList<>();
+        final Document tileIdKeys = new Document("_id", 0).append("tileId", 1);
+        try (final MongoCursor<Document> cursor = tileCollection.find(tileQuery).projection(tileIdKeys).iterator()) {
+            while (cursor.hasNext()) {
+                tileIds.add(cursor.next().getString("tileId"));
+            }
+        }
+
+        LOG.debug("applyTransformToTiles: applying {} transform to {} tiles returned by {}.find({})",
+                  applicationMethod, tileIds.size(), MongoUtil.fullName(tileCollection), tileQuery.toJson());
+
+        final ProcessTimer timer = new ProcessTimer();
+        int updatedCount = 0;
+        final int batchSize = 1000;
+        for (int fromIndex = 0; fromIndex < tileIds.size(); fromIndex += batchSize) {
+
+            final List<String> batchTileIds = tileIds.subList(fromIndex,
+                                                              Math.min(fromIndex + batchSize, tileIds.size()));
+            final Document batchQuery = new Document("tileId", new Document(MongoUtil.OP_IN, batchTileIds));
+
+            final List<TileSpec> batchTileSpecs = new ArrayList<>(batchTileIds.size());
+            try (final MongoCursor<Document> cursor = tileCollection.find(batchQuery).iterator()) {
+                while (cursor.hasNext()) {
+                    batchTileSpecs.add(TileSpec.fromJson(cursor.next().toJson()));
+                }
+            }
+
+            final Map<String, TransformSpec> batchIdToSpecMap =
+                    resolveTransformReferencesForTiles(stackId, batchTileSpecs);
+            batchIdToSpecMap.putAll(appliedIdToSpecMap);
+
+            final ResolvedTileSpecCollection batchCollection =
+                    new ResolvedTileSpecCollection(batchIdToSpecMap.values(), batchTileSpecs);
+
+            final Set<Double> batchZValues = new HashSet<>();
+            for (final TileSpec tileSpec : batchTileSpecs) {
+                batchZValues.add(tileSpec.getZ());
+            }
+            markChangedZValues(stackId, batchZValues);
+
+            final List<WriteModel<Document>> modelList = new ArrayList<>(batchTileSpecs.size());
+            for (final TileSpec tileSpec : batchTileSpecs) {
+                batchCollection.addTransformSpecToTile(tileSpec.getTileId(), transformSpec, applicationMethod);
+                final Document tileUpdates =
+                        new Document("transforms", Document.parse(tileSpec.getTransforms().toJson()))
+                                .append("minX", tileSpec.getMinX())
+                                .append("minY", tileSpec.getMinY())
+                                .append("maxX", tileSpec.getMaxX())
+                                .append("maxY", tileSpec.getMaxY());
+                modelList.add(new UpdateOneModel<>(new Document("tileId", tileSpec.getTileId()),
+                                                   new Document("$set", tileUpdates)));
+            }
+
+            if (modelList.size() > 0) {
+                final BulkWriteResult result = tileCollection.bulkWrite(modelList, MongoUtil.UNORDERED_OPTION);
+                updatedCount += result.getModifiedCount();
+            }
+
+            if (timer.hasIntervalPassed()) {
+                LOG.debug("applyTransformToTiles: updated {} out of {} tiles", updatedCount, tileIds.size());
+            }
+        }
+
+        LOG.debug("applyTransformToTiles: updated {} tiles in {}, elapsedSeconds={}",
+                  updatedCount, MongoUtil.fullName(tileCollection), timer.getElapsedSeconds());
+
+        return updatedCount;
+    }
+
+    /**
+     * Removes tile specs that are identical to their currently stored versions from the specified collection,
+     * so that re-saves of large collections with only a few changes only write (and derive bounds for)
+     * the tiles that actually changed.
+     *
+     * Stored and provided tile specs are compared as documents (so field order does not matter).
+     * Stored documents are read at comparison time (rather than comparing persisted hashes)
+     * so that tiles modified through other APIs can never be skipped because of a stale hash.
+     * Since tile documents only reference shared transforms, no tiles are removed if any of the
+     * collection's shared transforms differ from their stored versions.
+     *
+     * @param  stackId            stack identifier.
+     * @param  resolvedTileSpecs  collection of resolved tile specs (with referenced transforms).
+     * @param  ignoreBounds       if true, bounding box attributes are excluded from comparisons
+     *                            (for collections whose bounds will be derived after this check)
+     *                            unless a stored tile is missing bounds or has bounds that differ
+     *                            from the provided tile's bounds (in which case the tile is kept).
+     *
+     * @return number of unchanged tile specs removed from the collection.
+     *
+     * @throws IllegalArgumentException
+     *   if any required parameters are missing.
+     */
+    public int removeUnchangedTileSpecs(final StackId stackId,
+                                        final ResolvedTileSpecCollection resolvedTileSpecs,
+                                        final boolean ignoreBounds)
+            throws IllegalArgumentException {
+
+        MongoUtil.validateRequiredParameter("stackId", stackId);
+        MongoUtil.validateRequiredParameter("resolvedTileSpecs", resolvedTileSpecs);
+
+        final MongoCollection<Document> tileCollection = getTileCollection(stackId);
+
+        final Set<String> changedTransformIds = getChangedTransformIds(getTransformCollection(stackId),
+                                                                       resolvedTileSpecs.getTransformSpecs());
+        if (changedTransformIds.size() > 0) {
+            LOG.debug("removeUnchangedTileSpecs: keeping all tile specs because {} shared transforms changed",
+                      changedTransformIds.size());
+            return 0;
+        }
+
+        final ProcessTimer timer = new ProcessTimer();
+        final List<TileSpec> tileSpecs = new ArrayList<>(resolvedTileSpecs.getTileSpecs());
+        final Set<String> unchangedTileIds = new HashSet<>();
+        final Document storedTileKeys = new Document("_id", 0);
+        final int batchSize = 1000;
+        for (int fromIndex = 0; fromIndex < tileSpecs.size(); fromIndex += batchSize) {
+
+            final List<TileSpec> batchTileSpecs = tileSpecs.subList(fromIndex,
+                                                                    Math.min(fromIndex + batchSize, tileSpecs.size()));
+            final List<String> batchTileIds = new ArrayList<>(batchTileSpecs.size());
+            for (final TileSpec tileSpec : batchTileSpecs) {
+                batchTileIds.add(tileSpec.getTileId());
+            }
+
+            final Map<String, Document> tileIdToStoredDocument = new HashMap<>();
+            final Document batchQuery = new Document("tileId", new Document(MongoUtil.OP_IN, batchTileIds));
+            try (final MongoCursor<Document> cursor =
+                         tileCollection.find(batchQuery).projection(storedTileKeys).iterator()) {
+                while (cursor.hasNext()) {
+                    final Document document = cursor.next();
+                    tileIdToStoredDocument.put(document.getString("tileId"), document);
+                }
+            }
+
+            for (final TileSpec tileSpec : batchTileSpecs) {
+                final Document storedDocument = tileIdToStoredDocument.get(tileSpec.getTileId());
+                if ((storedDocument != null) &&
+                    isUnchanged(storedDocument, Document.parse(tileSpec.toJson()), ignoreBounds)) {
+                    unchangedTileIds.add(tileSpec.getTileId());
+                }
+            }
+
+            if (timer.hasIntervalPassed()) {
+                LOG.debug("removeUnchangedTileSpecs: compared {} out of {} tile specs",
+                          fromIndex + batchTileSpecs.size(), tileSpecs.size());
+            }
+        }
+
+        if (unchangedTileIds.size() > 0) {
+            resolvedTileSpecs.removeTileSpecs(unchangedTileIds);
+        }
+
+        LOG.debug("removeUnchangedTileSpecs: removed {} unchanged tile specs (out of {}) found in {}, " +
+                  "elapsedSeconds={}",
+                  unchangedTileIds.size(), tileSpecs.size(), MongoUtil.fullName(tileCollection),
+                  timer.getElapsedSeconds());
+
+        return unchangedTileIds.size();
+    }
+
     /**
      * Saves the specified tile spec to the database.
      *
@@ -561,6 +903,16 @@ public class RenderDao {
 
             final MongoCollection<Document> tileCollection = getTileCollection(stackId);
 
+            // replaced tiles may be moved to a different layer, so both old and new layers have changed
+            final List<String> tileIds = new ArrayList<>(tileSpecs.size());
+            final Set<Double> changedZValues = new HashSet<>();
+            for (final TileSpec tileSpec : tileSpecs) {
+                tileIds.add(tileSpec.getTileId());
+                changedZValues.add(tileSpec.getZ());
+            }
+            changedZValues.addAll(getZValuesForTileIds(tileCollection, tileIds));
+            markChangedZValues(stackId, changedZValues);
+
             final List<WriteModel<Document>> modelList = new ArrayList<>(tileSpecs.size());
             Document query;
             Document tileSpecObject;
@@ -603,6 +955,11 @@ public class RenderDao {
         final String context = "tile spec with id '" + tileSpec.getTileId();
         validateTransformReferences(context, stackId, tileSpec.getTransforms());
 
+        final Set<Double> changedZValues =
+                getZValuesForTileIds(tileCollection, Collections.singletonList(tileSpec.getTileId()));
+        changedZValues.add(tileSpec.getZ());
+        markChangedZValues(stackId, changedZValues);
+
         final Document query = new Document();
         query.put("tileId", tileSpec.getTileId());
 
@@ -617,6 +974,219 @@ public class RenderDao {
                   result.getUpsertedId());
     }
 
+    /**
+     * Saves (upserts) the specified source image statistics into the image statistics catalog.
+     * The catalog is keyed by image URL and slice number (rather than stack) so that statistics are shared by all
+     * stacks (e.g. copies) that reference the same source images.
+     *
+     * @param  statisticsList  statistics to save.
+     *
+     * @throws IllegalArgumentException
+     *   if any statistics are missing an image URL.
+     */
+    public void saveImageStatistics(final List<ImageStatistics> statisticsList)
+            throws IllegalArgumentException {
+
+        MongoUtil.validateRequiredParameter("statisticsList", statisticsList);
+
+        if (statisticsList.size() > 0) {
+
+            final MongoCollection<Document> statisticsCollection = getImageStatisticsCollection();
+            MongoUtil.createIndex(statisticsCollection,
+                                  new Document("imageUrl", 1).append("imageSliceNumber", 1),
+                                  IMAGE_STATISTICS_A_OPTIONS);
+
+            final List<WriteModel<Document>> modelList = new ArrayList<>(statisticsList.size());
+            for (final ImageStatistics statistics : statisticsList) {
+                MongoUtil.validateRequiredParameter("imageUrl", statistics.getImageUrl());
+                // a null slice number matches statistics for single images (where the slice number is not stored)
+                final Document query = new Document("imageUrl", statistics.getImageUrl())
+                        .append("imageSliceNumber", statistics.getImageSliceNumber());
+                modelList.add(new ReplaceOneModel<>(query,
+                                                    Document.parse(statistics.toJson()),
+                                                    MongoUtil.UPSERT_OPTION));
+            }
+
+            final BulkWriteResult result = statisticsCollection.bulkWrite(modelList, MongoUtil.UNORDERED_OPTION);
+
+            if (LOG.isDebugEnabled()) {
+                final String bulkResultMessage = MongoUtil.toMessage("image statistics", result, modelList.size());
+                LOG.debug("saveImageStatistics: {} using {}.initializeUnorderedBulkOp()",
+                          bulkResultMessage, MongoUtil.fullName(statisticsCollection));
+            }
+        }
+    }
+
+    /**
+     * @param  stackId      stack identifier.
+     * @param  z            layer z value.
+     * @param  channelName  name of channel whose source images should be used (null for the first channel).
+     *
+     * @return catalog statistics for each tile's source image in the specified layer keyed by tileId
+     *         (tiles without catalog statistics are omitted).
+     *
+     * @throws IllegalArgumentException
+     *   if any required parameters are missing.
+     */
+    public Map<String, ImageStatistics> getTileImageStatistics(final StackId stackId,
+                                                               final Double z,
+                                                               final String channelName)
+            throws IllegalArgumentException {
+
+        MongoUtil.validateRequiredParameter("stackId", stackId);
+        MongoUtil.validateRequiredParameter("z", z);
+
+        final Map<String, ImageAndMask> tileIdToSourceImage = new HashMap<>();
+        forEachTileSourceImage(stackId, z, z, channelName,
+                               (tileSpec, sourceImage) -> tileIdToSourceImage.put(tileSpec.getTileId(), sourceImage));
+
+        final Map<String, ImageStatistics> keyToStatistics = getCatalogImageStatistics(tileIdToSourceImage.values());
+
+        final Map<String, ImageStatistics> tileIdToStatistics = new TreeMap<>();
+        tileIdToSourceImage.forEach((tileId, sourceImage) -> {
+            final ImageStatistics statistics = keyToStatistics.get(getImageStatisticsKey(sourceImage));
+            if (statistics != null) {
+                tileIdToStatistics.put(tileId, statistics);
+            }
+        });
+
+        LOG.debug("getTileImageStatistics: found statistics for {} out of {} tiles in z {} of {}",
+                  tileIdToStatistics.size(), tileIdToSourceImage.size(), z, stackId);
+
+        return tileIdToStatistics;
+    }
+
+    /**
+     * Aggregates catalog statistics for the source images of all tiles in each layer of the specified z range.
+     * Tiles without catalog statistics are excluded from the aggregations.
+     * Layers are processed one at a time so that only one layer's source images and statistics
+     * are held in memory.
+     *
+     * @param  stackId      stack identifier.
+     * @param  minZ         minimum z value for layers to include (or null for no minimum).
+     * @param  maxZ         maximum z value for layers to include (or null for no maximum).
+     * @param  channelName  name of channel whose source images should be used (null for the first channel).
+     *
+     * @return aggregated statistics for each layer keyed by z (layers without catalog statistics are omitted).
+     *
+     * @throws IllegalArgumentException
+     *   if any required parameters are missing.
+     */
+    public Map<Double, ImageStatistics> getLayerImageStatistics(final StackId stackId,
+                                                                final Double minZ,
+                                                                final Double maxZ,
+                                                                final String channelName)
+            throws IllegalArgumentException {
+
+        MongoUtil.validateRequiredParameter("stackId", stackId);
+
+        final List<Double> zValues = getZValues(stackId, minZ, maxZ);
+
+        final Map<Double, ImageStatistics> zToStatistics = new TreeMap<>();
+        for (final Double z : zValues) {
+
+            final List<ImageAndMask> layerSourceImages = new ArrayList<>();
+            forEachTileSourceImage(stackId, z, z, channelName,
+                                   (tileSpec, sourceImage) -> layerSourceImages.add(sourceImage));
+
+            final Map<String, ImageStatistics> keyToStatistics = getCatalogImageStatistics(layerSourceImages);
+            final List<ImageStatistics> layerStatistics = new ArrayList<>(layerSourceImages.size());
+            for (final ImageAndMask sourceImage : layerSourceImages) {
+                final ImageStatistics statistics = keyToStatistics.get(getImageStatisticsKey(sourceImage));
+                if (statistics != null) {
+                    layerStatistics.add(statistics);
+                }
+            }
+            if (layerStatistics.size() > 0) {
+                zToStatistics.put(z, ImageStatistics.aggregate(layerStatistics));
+            }
+        }
+
+        LOG.debug("getLayerImageStatistics: aggregated statistics for {} out of {} layers in {}",
+                  zToStatistics.size(), zValues.size(), stackId);
+
+        return zToStatistics;
+    }
+
+    /**
+     * Passes each tile (with only id, z, and source image attributes loaded) and its source image
+     * for the specified channel to the specified consumer.
+     */
+    private void forEachTileSourceImage(final StackId stackId,
+                                        final Double minZ,
+                                        final Double maxZ,
+                                        final String channelName,
+                                        final BiConsumer<TileSpec, ImageAndMask> tileAndSourceImageConsumer) {
+
+        final MongoCollection<Document> tileCollection = getTileCollection(stackId);
+        final Document tileQuery = getGroupQuery(minZ, maxZ, null, null, null, null, null);
+        final Document tileKeys = new Document("_id", 0)
+                .append("tileId", 1)
+                .append("z", 1)
+                .append("mipmapLevels", 1)
+                .append("channels", 1);
+
+        try (final MongoCursor<Document> cursor = tileCollection.find(tileQuery).projection(tileKeys).iterator()) {
+            while (cursor.hasNext()) {
+                final TileSpec tileSpec = TileSpec.fromJson(cursor.next().toJson());
+                for (final ChannelSpec channelSpec : tileSpec.getAllChannels()) {
+                    if ((channelName == null) || channelName.equals(channelSpec.getName())) {
+                        final Map.Entry<Integer, ImageAndMask> firstEntry = channelSpec.getFirstMipmapEntry();
+                        if ((firstEntry != null) && (firstEntry.getValue() != null) &&
+                            firstEntry.getValue().hasImage()) {
+                            tileAndSourceImageConsumer.accept(tileSpec, firstEntry.getValue());
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return catalog statistics for the specified source images keyed by {@link #getImageStatisticsKey}.
+     */
+    private Map<String, ImageStatistics> getCatalogImageStatistics(final Collection<ImageAndMask> sourceImages) {
+
+        final MongoCollection<Document> statisticsCollection = getImageStatisticsCollection();
+        final Set<String> distinctUrlSet = new HashSet<>();
+        for (final ImageAndMask sourceImage : sourceImages) {
+            distinctUrlSet.add(sourceImage.getImageUrl());
+        }
+        final List<String> distinctUrls = new ArrayList<>(distinctUrlSet);
+        final Map<String, ImageStatistics> keyToStatistics = new HashMap<>(distinctUrls.size());
+
+        final int batchSize = 1000;
+        for (int fromIndex = 0; fromIndex < distinctUrls.size(); fromIndex += batchSize) {
+            final List<String> batchUrls = distinctUrls.subList(fromIndex,
+                                                                Math.min(fromIndex + batchSize, distinctUrls.size()));
+            final Document query = new Document("imageUrl", new Document(MongoUtil.OP_IN, batchUrls));
+            try (final MongoCursor<Document> cursor =
+                         statisticsCollection.find(query).projection(new Document("_id", 0)).iterator()) {
+                while (cursor.hasNext()) {
+                    final ImageStatistics statistics = ImageStatistics.fromJson(cursor.next().toJson());
+                    keyToStatistics.put(getImageStatisticsKey(statistics.getImageUrl(),
+                                                              statistics.getImageSliceNumber()),
+                                        statistics);
+                }
+            }
+        }
+
+        return keyToStatistics;
+    }
+
+    private static String getImageStatisticsKey(final ImageAndMask sourceImage) {
+        return getImageStatisticsKey(sourceImage.getImageUrl(), sourceImage.getImageSliceNumber());
+    }
+
+    /**
+     * @return key that distinguishes the slices of stack images (e.g. IMAGEJ_TIFF_STACK) that share the same URL.
+     */
+    private static String getImageStatisticsKey(final String imageUrl,
+                                                final Integer imageSliceNumber) {
+        return imageSliceNumber == null ? imageUrl : imageUrl + "::slice::" + imageSliceNumber;
+    }
+
     /**
      * @return the specified transform spec.
      *
@@ -778,6 +1348,10 @@ public class RenderDao {
         final Document query = new Document("layout.sectionId", sectionId);
         final Document update = new Document("$set", new Document("z", z));
 
+        final Set<Double> changedZValues = getDistinctZValues(tileCollection, query);
+        changedZValues.add(z);
+        markChangedZValues(stackId, changedZValues);
+
         final UpdateResult result = tileCollection.updateMany(query, update);
 
         LOG.debug("updateZForSection: updated {} tile specs with {}.update({},{})",
@@ -797,6 +1371,10 @@ public class RenderDao {
         final Document query = new Document("tileId", new Document("$in", tileIds));
         final Document update = new Document("$set", new Document("z", z));
 
+        final Set<Double> changedZValues = getZValuesForTileIds(tileCollection, tileIds);
+        changedZValues.add(z);
+        markChangedZValues(stackId, changedZValues);
+
         final UpdateResult result = tileCollection.updateMany(query, update);
 
         final String shortQueryForLog = "{ 'tileId': { '$in': [ " + tileIds.size() + " tile ids ... ] } }";
@@ -877,6 +1455,9 @@ public class RenderDao {
             }
         }
 
+        // incremental derivations append changed sections, so sort here instead of relying on natural order
+        list.sort(Comparator.comparing(SectionData::getSectionId).thenComparing(SectionData::getZ));
+
         LOG.debug("getSectionData: returning {} values for {}.find({})",
                   list.size(), sectionCollection.getNamespace().getFullName(), query.toJson());
 
@@ -1020,7 +1601,24 @@ public class RenderDao {
                   stackMetaDataCollection.getNamespace().getFullName(), action, query.toJson());
     }
 
-    public StackMetaData ensureIndexesAndDeriveStats(final StackMetaData stackMetaData) {
+    /**
+     * Ensures all tile indexes exist for the specified stack, derives the stack's section data and stats,
+     * and then marks the stack as COMPLETE.
+     *
+     * Layers changed since the last derivation are tracked as tiles are saved or removed,
+     * so if the stack's section data was previously derived, only the changed layers are re-aggregated
+     * and stack stats are then rolled up from the (much smaller) section collection.
+     * Stacks without previously derived (incremental capable) section data are fully aggregated.
+     *
+     * @param  stackMetaData  metadata for the stack.
+     *
+     * @return the updated metadata.
+     *
+     * @throws IllegalStateException
+     *   if the stack has no tiles or the stats cannot be derived for any other reason.
+     */
+    public StackMetaData ensureIndexesAndDeriveStats(final StackMetaData stackMetaData)
+            throws IllegalStateException {
 
         MongoUtil.validateRequiredParameter("stackMetaData", stackMetaData);
 
@@ -1037,9 +1635,19 @@ public class RenderDao {
 
         ensureSupplementaryTileIndexes(tileCollection);
 
-        deriveSectionData(stackId);
+        // read changes before deriving anything so that changes made during derivation are not lost
+        final Map<Double, Number> changedZToCount = getChangedZValues(stackId);
+
+        if (hasIncrementalSectionData(stackId)) {
+            deriveSectionData(stackId, changedZToCount.keySet());
+        } else {
+            deriveSectionData(stackId);
+        }
+
+        final MongoCollection<Document> sectionCollection = getSectionCollection(stackId);
 
-        final List<Double> zValues = getZValues(stackId);
+        final List<Double> zValues = sectionCollection.distinct("_id.z", Double.class).into(new ArrayList<>());
+        zValues.removeIf(Objects::isNull);
         final long sectionCount = zValues.size();
 
         long nonIntegralSectionCount = 0;
@@ -1051,54 +1659,31 @@ public class RenderDao {
             }
         }
 
-        // NOTE: do not use estimateDocumentCount here because we want to store accurate count
-        //       see https://docs.mongodb.com/v4.2/reference/method/db.collection.count/#db.collection.count
-        final long tileCount = tileCollection.countDocuments();
-        LOG.debug("ensureIndexesAndDeriveStats: tileCount for {} is {}", stackId, tileCount);
-
         final long transformCount = transformCollection.countDocuments();
         LOG.debug("ensureIndexesAndDeriveStats: transformCount for {} is {}, deriving aggregate stats ...",
                   stackId, transformCount);
 
-        // db.<stack_prefix>__tile.aggregate(
+        // db.<stack_prefix>__section.aggregate(
         //     [
         //         {
-        //             "$project":  {
-        //                 "z": "$z",
-        //                 "minX": "$minX",
-        //                 "minY": "$minY",
-        //                 "maxX": "$maxX",
-        //                 "maxY": "$maxY",
-        //                 "width":  { "$subtract": [ "$maxX", "$minX" ] },
-        //                 "height": { "$subtract": [ "$maxY", "$minY" ] }
-        //             }
-        //         },
-        //         {
         //             "$group": {
         //                 "_id": "minAndMaxValues",
         //                 "stackMinX": { "$min": "$minX" },
         //                 "stackMinY": { "$min": "$minY" },
-        //                 "stackMinZ": { "$min": "$z" },
+        //                 "stackMinZ": { "$min": "$_id.z" },
         //                 "stackMaxX": { "$max": "$maxX" },
         //                 "stackMaxY": { "$max": "$maxY" },
-        //                 "stackMaxZ": { "$max": "$z" } } } )
-        //                 "stackMinTileWidth":  { "$min": "$width" },
-        //                 "stackMaxTileWidth":  { "$max": "$width" },
-        //                 "stackMinTileHeight": { "$min": "$height" },
-        //                 "stackMaxTileHeight": { "$max": "$height" }
+        //                 "stackMaxZ": { "$max": "$_id.z" },
+        //                 "stackMinTileWidth":  { "$min": "$minTileWidth" },
+        //                 "stackMaxTileWidth":  { "$max": "$maxTileWidth" },
+        //                 "stackMinTileHeight": { "$min": "$minTileHeight" },
+        //                 "stackMaxTileHeight": { "$max": "$maxTileHeight" },
+        //                 "stackTileCount":     { "$sum": "$tileCount" }
         //             }
         //         }
         //     ]
         // )
 
-        final Document tileWidth = new Document("$subtract", buildBasicDBList(new String[] {"$maxX","$minX" }));
-        final Document tileHeight = new Document("$subtract", buildBasicDBList(new String[] {"$maxY","$minY" }));
-        final Document tileValues = new Document("z", "$z").append(
-                "minX", "$minX").append("minY", "$minY").append("maxX", "$maxX").append("maxY", "$maxY").append(
-                "width", tileWidth).append("height", tileHeight);
-
-        final Document projectStage = new Document("$project", tileValues);
-
         final String minXKey = "stackMinX";
         final String minYKey = "stackMinY";
         final String minZKey = "stackMinZ";
@@ -1109,39 +1694,43 @@ public class RenderDao {
         final String maxWidthKey = "stackMaxTileWidth";
         final String minHeightKey = "stackMinTileHeight";
         final String maxHeightKey = "stackMaxTileHeight";
+        final String tileCountKey = "stackTileCount";
 
         final Document minAndMaxValues = new Document("_id", "minAndMaxValues");
         minAndMaxValues.append(minXKey, new Document(MongoUtil.OP_MIN, "$minX"));
         minAndMaxValues.append(minYKey, new Document(MongoUtil.OP_MIN, "$minY"));
-        minAndMaxValues.append(minZKey, new Document(MongoUtil.OP_MIN, "$z"));
+        minAndMaxValues.append(minZKey, new Document(MongoUtil.OP_MIN, "$_id.z"));
         minAndMaxValues.append(maxXKey, new Document(MongoUtil.OP_MAX, "$maxX"));
         minAndMaxValues.append(maxYKey, new Document(MongoUtil.OP_MAX, "$maxY"));
-        minAndMaxValues.append(maxZKey, new Document(MongoUtil.OP_MAX, "$z"));
-        minAndMaxValues.append(minWidthKey, new Document(MongoUtil.OP_MIN, "$width"));
-        minAndMaxValues.append(maxWidthKey, new Document(MongoUtil.OP_MAX, "$width"));
-        minAndMaxValues.append(minHeightKey, new Document(MongoUtil.OP_MIN, "$height"));
-        minAndMaxValues.append(maxHeightKey, new Document(MongoUtil.OP_MAX, "$height"));
+        minAndMaxValues.append(maxZKey, new Document(MongoUtil.OP_MAX, "$_id.z"));
+        minAndMaxValues.append(minWidthKey, new Document(MongoUtil.OP_MIN, "$minTileWidth"));
+        minAndMaxValues.append(maxWidthKey, new Document(MongoUtil.OP_MAX, "$maxTileWidth"));
+        minAndMaxValues.append(minHeightKey, new Document(MongoUtil.OP_MIN, "$minTileHeight"));
+        minAndMaxValues.append(maxHeightKey, new Document(MongoUtil.OP_MAX, "$maxTileHeight"));
+        minAndMaxValues.append(tileCountKey, new Document("$sum", "$tileCount"));
         final Document groupStage = new Document("$group", minAndMaxValues);
 
         final List<Document> pipeline = new ArrayList<>();
-        pipeline.add(projectStage);
         pipeline.add(groupStage);
 
-
         // mongodb java 3.0 driver notes:
         // -- need to set cursor batchSize to prevent NPE from cursor creation
-        final Document aggregateResult = tileCollection.aggregate(pipeline).batchSize(1).first();
+        final Document aggregateResult = sectionCollection.aggregate(pipeline).batchSize(1).first();
         if (aggregateResult == null) {
             String cause = "";
             if (tileCollection.estimatedDocumentCount() == 0) {
                 cause = " because the stack has no tiles";
             }
             throw new IllegalStateException("Stack data aggregation returned no results" + cause + ".  " +
-                                            "The aggregation query was " + MongoUtil.fullName(tileCollection) +
+                                            "The aggregation query was " + MongoUtil.fullName(sectionCollection) +
                                             ".aggregate(" + pipeline + ") .");
         }
 
-        final List<String> channelNames = tileCollection.distinct("channels.name", String.class).into(new ArrayList<>());
+        final long tileCount = aggregateResult.get(tileCountKey, Number.class).longValue();
+        LOG.debug("ensureIndexesAndDeriveStats: tileCount for {} is {}", stackId, tileCount);
+
+        final List<String> channelNames =
+                sectionCollection.distinct(SECTION_CHANNEL_NAMES_KEY, String.class).into(new ArrayList<>());
         Collections.sort(channelNames);
 
         final Bounds stackBounds = new Bounds(aggregateResult.get(minXKey, Double.class),
@@ -1170,6 +1759,8 @@ public class RenderDao {
 
         LOG.debug("ensureIndexesAndDeriveStats: completed stat derivation for {}, stats={}", stackId, stats);
 
+        removeChangedZValues(stackId, changedZToCount);
+
         stackMetaData.setState(StackMetaData.StackState.COMPLETE);
 
         final MongoCollection<Document> stackMetaDataCollection = getStackMetaDataCollection();
@@ -1185,38 +1776,32 @@ public class RenderDao {
         return stackMetaData;
     }
 
-    private void deriveSectionData(final StackId stackId)
+    /**
+     * @return list of z values changed since the specified stack's last stat derivation.
+     *
+     * @throws IllegalArgumentException
+     *   if any required parameters are missing.
+     */
+    List<Double> getChangedZValueList(final StackId stackId)
             throws IllegalArgumentException {
 
-        final MongoCollection<Document> tileCollection = getTileCollection(stackId);
-        final String sectionCollectionName = stackId.getSectionCollectionName();
+        MongoUtil.validateRequiredParameter("stackId", stackId);
 
-        // db.<stack_prefix>__tile.aggregate(
-        //     [
-        //         { "$group": { "_id": { "sectionId": "$layout.sectionId", "z": "$z" } },
-        //                       "tileCount": { "$sum": 1 },
-        //                       "minX": { "$min": "$minX" }, "maxX": { "$max": "$maxX" },
-        //                       "minY": { "$min": "$minY" }, "maxY": { "$max": "$maxY" }},
-        //         { "$sort": { "_id.sectionId": 1 } }
-        //     ]
-        // )
+        final List<Double> list = new ArrayList<>(getChangedZValues(stackId).keySet());
+        Collections.sort(list);
+        return list;
+    }
 
-        final Document idComponents = new Document("sectionId", "$layout.sectionId").append("z", "$z");
-        final Document tileCountComponents = new Document("$sum", 1);
-        final Document minXComponents = new Document("$min", "$minX");
-        final Document maxXComponents = new Document("$max", "$maxX");
-        final Document minYComponents = new Document("$min", "$minY");
-        final Document maxYComponents = new Document("$max", "$maxY");
-        final Document group = new Document(
-                "_id", idComponents).append(
-                "tileCount", tileCountComponents).append(
-                "minX", minXComponents).append(
-                "maxX", maxXComponents).append(
-                "minY", minYComponents).append(
-                "maxY", maxYComponents);
+    /**
+     * Fully re-aggregates section data for the specified stack, replacing any previously derived data.
+     */
+    private void deriveSectionData(final StackId stackId)
+            throws IllegalStateException {
 
-        final List<Document> pipeline = new ArrayList<>();
-        pipeline.add(new Document("$group", group));
+        final MongoCollection<Document> tileCollection = getTileCollection(stackId);
+        final String sectionCollectionName = stackId.getSectionCollectionName();
+
+        final List<Document> pipeline = buildSectionDataPipeline(null);
         pipeline.add(new Document("$sort", new Document("_id.sectionId", 1)));
         pipeline.add(new Document("$out", sectionCollectionName));
 
@@ -1244,6 +1829,247 @@ public class RenderDao {
                   sectionCount, MongoUtil.fullName(sectionCollection));
     }
 
+    /**
+     * Re-aggregates section data for the specified changed layers,
+     * leaving previously derived data for all other layers as is.
+     */
+    private void deriveSectionData(final StackId stackId,
+                                   final Collection<Double> changedZValues) {
+
+        final MongoCollection<Document> tileCollection = getTileCollection(stackId);
+        final MongoCollection<Document> sectionCollection = getSectionCollection(stackId);
+
+        final List<Double> zValues = new ArrayList<>(changedZValues);
+        final ProcessTimer timer = new ProcessTimer();
+        int savedCount = 0;
+        final int batchSize = 1000;
+        for (int fromIndex = 0; fromIndex < zValues.size(); fromIndex += batchSize) {
+
+            final List<Double> batchZValues = zValues.subList(fromIndex,
+                                                              Math.min(fromIndex + batchSize, zValues.size()));
+            final Document tileQuery = new Document("z", new Document(MongoUtil.OP_IN, batchZValues));
+            final List<Document> pipeline = buildSectionDataPipeline(tileQuery);
+
+            final List<Document> sectionDocuments = tileCollection.aggregate(pipeline).into(new ArrayList<>());
+
+            // layers that no longer have any tiles are removed along with the stale data for changed layers
+            sectionCollection.deleteMany(new Document("_id.z", new Document(MongoUtil.OP_IN, batchZValues)));
+            if (sectionDocuments.size() > 0) {
+                sectionCollection.insertMany(sectionDocuments);
+                savedCount += sectionDocuments.size();
+            }
+
+            if (timer.hasIntervalPassed()) {
+                LOG.debug("deriveSectionData: processed {} out of {} changed layers",
+                          fromIndex + batchZValues.size(), zValues.size());
+            }
+        }
+
+        LOG.debug("deriveSectionData: saved data for {} sections in {} changed layers to {}, elapsedSeconds={}",
+                  savedCount, zValues.size(), MongoUtil.fullName(sectionCollection), timer.getElapsedSeconds());
+    }
+
+    /**
+     * @return pipeline for aggregating section data from tiles that match the specified query
+     *         (or from all tiles if the query is null).
+     */
+    private List<Document> buildSectionDataPipeline(final Document tileQuery) {
+
+        // db.<stack_prefix>__tile.aggregate(
+        //     [
+        //         { "$match": { "z": { "$in": [ <changed z values> ] } } },
+        //         { "$group": { "_id": { "sectionId": "$layout.sectionId", "z": "$z" } },
+        //                       "tileCount": { "$sum": 1 },
+        //                       "minX": { "$min": "$minX" }, "maxX": { "$max": "$maxX" },
+        //                       "minY": { "$min": "$minY" }, "maxY": { "$max": "$maxY" },
+        //                       "minTileWidth": { "$min": { "$subtract": [ "$maxX", "$minX" ] } }, ...
+        //                       "channelNameLists": { "$addToSet": "$channels.name" } },
+        //         { "$project": { "tileCount": 1, "minX": 1, ...,
+        //                         "channelNames": { "$reduce": { "input": "$channelNameLists",
+        //                                                        "initialValue": [],
+        //                                                        "in": { "$setUnion": [ "$$value",
+        //                                                                               "$$this" ] } } } } }
+        //     ]
+        // )
+
+        final Document tileWidth = new Document("$subtract", buildBasicDBList(new String[] {"$maxX","$minX" }));
+        final Document tileHeight = new Document("$subtract", buildBasicDBList(new String[] {"$maxY","$minY" }));
+
+        final Document idComponents = new Document("sectionId", "$layout.sectionId").append("z", "$z");
+        final Document group = new Document(
+                "_id", idComponents).append(
+                "tileCount", new Document("$sum", 1)).append(
+                "minX", new Document(MongoUtil.OP_MIN, "$minX")).append(
+                "maxX", new Document(MongoUtil.OP_MAX, "$maxX")).append(
+                "minY", new Document(MongoUtil.OP_MIN, "$minY")).append(
+                "maxY", new Document(MongoUtil.OP_MAX, "$maxY")).append(
+                "minTileWidth", new Document(MongoUtil.OP_MIN, tileWidth)).append(
+                "maxTileWidth", new Document(MongoUtil.OP_MAX, tileWidth)).append(
+                "minTileHeight", new Document(MongoUtil.OP_MIN, tileHeight)).append(
+                "maxTileHeight", new Document(MongoUtil.OP_MAX, tileHeight)).append(
+                "channelNameLists", new Document("$addToSet", "$channels.name"));
+
+        // flatten per-tile channel name lists into one set of names for the section
+        final List<Object> unionComponents = Arrays.asList("$$value",
+                                                           new Document("$ifNull",
+                                                                        Arrays.asList("$$this",
+                                                                                      new ArrayList<>())));
+        final Document channelNames = new Document(
+                "$reduce", new Document(
+                        "input", "$channelNameLists").append(
+                        "initialValue", new ArrayList<>()).append(
+                        "in", new Document("$setUnion", unionComponents)));
+
+        final Document projection = new Document(
+                "tileCount", 1).append(
+                "minX", 1).append(
+                "maxX", 1).append(
+                "minY", 1).append(
+                "maxY", 1).append(
+                "minTileWidth", 1).append(
+                "maxTileWidth", 1).append(
+                "minTileHeight", 1).append(
+                "maxTileHeight", 1).append(
+                SECTION_CHANNEL_NAMES_KEY, channelNames);
+
+        final List<Document> pipeline = new ArrayList<>();
+        if (tileQuery != null) {
+            pipeline.add(new Document("$match", tileQuery));
+        }
+        pipeline.add(new Document("$group", group));
+        pipeline.add(new Document("$project", projection));
+
+        return pipeline;
+    }
+
+    /**
+     * @return true if section data for the specified stack has been derived in a form that supports
+     *         incremental updates (section data derived before layer changes were tracked is not
+     *         incremental capable because changes made since then are unknown).
+     */
+    private boolean hasIncrementalSectionData(final StackId stackId) {
+        boolean hasIncrementalData = false;
+        if (MongoUtil.exists(renderDatabase, stackId.getSectionCollectionName())) {
+            final Document firstSection = getSectionCollection(stackId).find().first();
+            hasIncrementalData = (firstSection != null) && firstSection.containsKey(SECTION_CHANNEL_NAMES_KEY);
+        }
+        LOG.debug("hasIncrementalSectionData: returning {} for {}", hasIncrementalData, stackId);
+        return hasIncrementalData;
+    }
+
+    /**
+     * Records that tiles in the specified layers have changed (or are about to change)
+     * so that the layers' section data will be re-derived the next time the stack is completed.
+     */
+    private void markChangedZValues(final StackId stackId,
+                                    final Collection<Double> zValues) {
+
+        final Set<Double> distinctZValues = new HashSet<>(zValues);
+        distinctZValues.remove(null);
+
+        if (distinctZValues.size() > 0) {
+
+            final MongoCollection<Document> changedZCollection = getChangedZCollection();
+            MongoUtil.createIndex(changedZCollection,
+                                  new Document("stackId.owner", 1).append(
+                                          "stackId.project", 1).append(
+                                          "stackId.stack", 1).append(
+                                          "z", 1),
+                                  CHANGED_Z_A_OPTIONS);
+
+            // change counts allow derivations to only clear changes they have seen
+            final Document update = new Document("$inc", new Document("changeCount", 1));
+            final List<WriteModel<Document>> modelList = new ArrayList<>(distinctZValues.size());
+            for (final Double z : distinctZValues) {
+                modelList.add(new UpdateOneModel<>(getStackIdQuery(stackId).append("z", z),
+                                                   update,
+                                                   UPSERT_UPDATE_OPTION));
+            }
+
+            final BulkWriteResult result = changedZCollection.bulkWrite(modelList, MongoUtil.UNORDERED_OPTION);
+
+            if (LOG.isDebugEnabled()) {
+                final String bulkResultMessage = MongoUtil.toMessage("changed z values", result, modelList.size());
+                LOG.debug("markChangedZValues: {} for {} using {}.initializeUnorderedBulkOp()",
+                          bulkResultMessage, stackId, MongoUtil.fullName(changedZCollection));
+            }
+        }
+    }
+
+    /**
+     * @return map of z values changed since the last derivation to their current change counts.
+     */
+    private Map<Double, Number> getChangedZValues(final StackId stackId) {
+
+        final MongoCollection<Document> changedZCollection = getChangedZCollection();
+        final Document query = getStackIdQuery(stackId);
+        final Document keys = new Document("_id", 0).append("z", 1).append("changeCount", 1);
+
+        final Map<Double, Number> changedZToCount = new HashMap<>();
+        try (final MongoCursor<Document> cursor = changedZCollection.find(query).projection(keys).iterator()) {
+            Document document;
+            while (cursor.hasNext()) {
+                document = cursor.next();
+                changedZToCount.put(document.getDouble("z"), document.get("changeCount", Number.class));
+            }
+        }
+
+        LOG.debug("getChangedZValues: returning {} values for {}.find({})",
+                  changedZToCount.size(), MongoUtil.fullName(changedZCollection), query.toJson());
+
+        return changedZToCount;
+    }
+
+    /**
+     * Removes the specified change records, skipping any records that were changed again after they were read.
+     */
+    private void removeChangedZValues(final StackId stackId,
+                                      final Map<Double, Number> changedZToCount) {
+
+        if (changedZToCount.size() > 0) {
+
+            final MongoCollection<Document> changedZCollection = getChangedZCollection();
+
+            final List<WriteModel<Document>> modelList = new ArrayList<>(changedZToCount.size());
+            for (final Map.Entry<Double, Number> entry : changedZToCount.entrySet()) {
+                modelList.add(new DeleteOneModel<>(getStackIdQuery(stackId).append(
+                        "z", entry.getKey()).append(
+                        "changeCount", entry.getValue())));
+            }
+
+            final BulkWriteResult result = changedZCollection.bulkWrite(modelList, MongoUtil.UNORDERED_OPTION);
+
+            LOG.debug("removeChangedZValues: removed {} out of {} changed z values for {} from {}",
+                      result.getDeletedCount(), modelList.size(), stackId, MongoUtil.fullName(changedZCollection));
+        }
+    }
+
+    /**
+     * @return distinct z values for all tiles that match the specified query.
+     */
+    private Set<Double> getDistinctZValues(final MongoCollection<Document> tileCollection,
+                                           final Document tileQuery) {
+        final Set<Double> zValues = tileCollection.distinct("z", tileQuery, Double.class).into(new HashSet<>());
+        zValues.remove(null);
+        return zValues;
+    }
+
+    /**
+     * @return distinct z values for the specified tiles (tiles that do not exist are ignored).
+     */
+    private Set<Double> getZValuesForTileIds(final MongoCollection<Document> tileCollection,
+                                             final List<String> tileIds) {
+        final Set<Double> zValues = new HashSet<>();
+        final int batchSize = 1000;
+        for (int fromIndex = 0; fromIndex < tileIds.size(); fromIndex += batchSize) {
+            final List<String> batchTileIds = tileIds.subList(fromIndex,
+                                                              Math.min(fromIndex + batchSize, tileIds.size()));
+            final Document tileQuery = new Document("tileId", new Document(MongoUtil.OP_IN, batchTileIds));
+            zValues.addAll(getDistinctZValues(tileCollection, tileQuery));
+        }
+        return zValues;
+    }
+
     public void removeStack(final StackId stackId,
                             final boolean includeMetaData)
             throws IllegalArgumentException {
@@ -1270,9 +2096,17 @@ public class RenderDao {
         LOG.debug("removeStack: {}.drop() deleted {} document(s)",
                   MongoUtil.fullName(sectionCollection), sectionCount);
 
+        final MongoCollection<Document> changedZCollection = getChangedZCollection();
+        final Document stackIdQuery = getStackIdQuery(stackId);
+        final DeleteResult changedZRemoveResult = changedZCollection.deleteMany(stackIdQuery);
+
+        LOG.debug("removeStack: {}.remove({}) deleted {} document(s)",
+                  MongoUtil.fullName(changedZCollection),
+                  stackIdQuery.toJson(),
+                  changedZRemoveResult.getDeletedCount());
+
         if (includeMetaData) {
             final MongoCollection<Document> stackMetaDataCollection = getStackMetaDataCollection();
-            final Document stackIdQuery = getStackIdQuery(stackId);
             final DeleteResult stackMetaDataRemoveResult = stackMetaDataCollection.deleteOne(stackIdQuery);
 
             LOG.debug("removeStack: {}.remove({}) deleted {} document(s)",
@@ -1291,6 +2125,9 @@ public class RenderDao {
 
         final MongoCollection<Document> tileCollection = getTileCollection(stackId);
         final Document tileQuery = new Document("layout.sectionId", sectionId);
+
+        markChangedZValues(stackId, getDistinctZValues(tileCollection, tileQuery));
+
         final DeleteResult removeResult = tileCollection.deleteMany(tileQuery);
 
         LOG.debug("removeTilesWithSectionId: {}.remove({}) deleted {} document(s)",
@@ -1306,6 +2143,9 @@ public class RenderDao {
 
         final MongoCollection<Document> tileCollection = getTileCollection(stackId);
         final Document tileQuery = new Document("z", z);
+
+        markChangedZValues(stackId, Collections.singletonList(z));
+
         final DeleteResult removeResult = tileCollection.deleteMany(tileQuery);
 
         LOG.debug("removeTilesWithZ: {}.remove({}) deleted {} document(s)",
@@ -1327,6 +2167,9 @@ public class RenderDao {
                                                       new Document(MongoUtil.OP_IN,
                                                                    Arrays.asList("list of",
                                                                                  tileIds.size() + " tileIds")));
+
+        markChangedZValues(stackId, getZValuesForTileIds(tileCollection, tileIds));
+
         final DeleteResult removeResult = tileCollection.deleteMany(tileQuery);
 
         LOG.debug("removeTilesWithIds: {}.remove({}) deleted {} document(s)",
@@ -1342,6 +2185,9 @@ public class RenderDao {
 
         final MongoCollection<Document> tileCollection = getTileCollection(stackId);
         final Document tileQuery = new Document("tileId", tileId);
+
+        markChangedZValues(stackId, getDistinctZValues(tileCollection, tileQuery));
+
         final DeleteResult removeResult = tileCollection.deleteOne(tileQuery);
 
         LOG.debug("removeTile: {}.remove({}) deleted {} document(s)",
@@ -1481,6 +2327,10 @@ public class RenderDao {
 
         final MongoCollection<Document> fromTileCollection = getTileCollection(fromStackId);
         final MongoCollection<Document> toTileCollection = getTileCollection(toStackId);
+
+        // clones may add tiles to an existing stack, so track cloned layers like any other tile change
+        markChangedZValues(toStackId, getDistinctZValues(fromTileCollection, filterQuery));
+
         cloneCollection(fromTileCollection, toTileCollection, filterQuery);
     }
 
@@ -1525,6 +2375,12 @@ public class RenderDao {
         MongoUtil.renameCollection(renderDatabase,
                                    fromStackId.getTileCollectionName(), toStackId.getTileCollectionName());
 
+        final Document toStackIdValues = new Document(
+                "stackId.owner", toStackId.getOwner()).append(
+                "stackId.project", toStackId.getProject()).append(
+                "stackId.stack", toStackId.getStack());
+        getChangedZCollection().updateMany(getStackIdQuery(fromStackId), new Document("$set", toStackIdValues));
+
         toStackMetaData = StackMetaData.buildDerivedMetaData(toStackId, fromStackMetaData);
 
         final MongoCollection<Document> stackMetaDataCollection = getStackMetaDataCollection();
@@ -1840,6 +2696,8 @@ public class RenderDao {
                                                             final Document tileQuery,
                                                             final RenderParameters renderParameters) {
 
+        final long queryStart = System.currentTimeMillis();
+
         final MongoCollection<Document> tileCollection = getTileCollection(stackId);
 
         // EXAMPLE:   find({"z": 4050.0 , "minX": {"$lte": 239850.0} , "minY": {"$lte": 149074.0}, "maxX": {"$gte": -109.0}, "maxY": {"$gte": 370.0}}).sort({"tileId": 1})
@@ -1873,7 +2731,12 @@ public class RenderDao {
                       queryJson, orderBy.toJson());
         }
 
-        return resolveTransformReferencesForTiles(stackId, renderParameters.getTileSpecs());
+        final Map<String, TransformSpec> resolvedIdToSpecMap =
+                resolveTransformReferencesForTiles(stackId, renderParameters.getTileSpecs());
+
+        RenderMetrics.recordSince(RenderMetrics.TILE_SPEC_QUERY, queryStart);
+
+        return resolvedIdToSpecMap;
     }
 
     private Document lte(final double value) {
@@ -2123,11 +2986,15 @@ public class RenderDao {
                                         final Collection<TransformSpec> transformSpecs) {
 
         final MongoCollection<Document> transformCollection = getTransformCollection(stackId);
+        final Set<String> changedTransformIds = getChangedTransformIds(transformCollection, transformSpecs);
 
         int updateCount = 0;
         int insertCount = 0;
         UpdateResult result;
         for (final TransformSpec transformSpec : transformSpecs) {
+            if (! changedTransformIds.contains(transformSpec.getId())) {
+                continue; // skip unchanged transforms
+            }
             final Document query = new Document("id", transformSpec.getId());
             final Document transformSpecObject = Document.parse(transformSpec.toJson());
             try {
@@ -2157,15 +3024,77 @@ public class RenderDao {
         // TODO: re-derive bounding boxes for all tiles (outside this collection) that reference modified transforms
 
         if (LOG.isDebugEnabled()) {
-            LOG.debug("saveResolvedTransforms: inserted {} and updated {} documents in {})",
-                      insertCount, updateCount, transformCollection.getNamespace().getFullName());
+            LOG.debug("saveResolvedTransforms: inserted {}, updated {}, and skipped {} unchanged documents in {})",
+                      insertCount, updateCount, transformSpecs.size() - changedTransformIds.size(),
+                      transformCollection.getNamespace().getFullName());
         }
     }
 
+    /**
+     * @return ids of the specified transform specs that are new or differ from their stored versions.
+     */
+    private Set<String> getChangedTransformIds(final MongoCollection<Document> transformCollection,
+                                               final Collection<TransformSpec> transformSpecs) {
+
+        final Map<String, Document> idToContent = new HashMap<>();
+        for (final TransformSpec transformSpec : transformSpecs) {
+            idToContent.put(transformSpec.getId(), Document.parse(transformSpec.toJson()));
+        }
+
+        final Set<String> changedTransformIds = new HashSet<>(idToContent.keySet());
+        if (changedTransformIds.size() > 0) {
+            final Document query = new Document("id",
+                                                new Document(MongoUtil.OP_IN, new ArrayList<>(idToContent.keySet())));
+            try (final MongoCursor<Document> cursor =
+                         transformCollection.find(query).projection(new Document("_id", 0)).iterator()) {
+                while (cursor.hasNext()) {
+                    final Document document = cursor.next();
+                    final String id = document.getString("id");
+                    if (document.equals(idToContent.get(id))) {
+                        changedTransformIds.remove(id);
+                    }
+                }
+            }
+        }
+
+        return changedTransformIds;
+    }
+
+    /**
+     * @return true if the stored and provided tile documents are the same; otherwise false.
+     *         When bounds are ignored, stored documents without bounds are always considered changed
+     *         (so that their bounds get derived) as are stored bounds that differ from provided bounds.
+     */
+    private static boolean isUnchanged(final Document storedDocument,
+                                       final Document providedDocument,
+                                       final boolean ignoreBounds) {
+        boolean unchanged = true;
+        if (ignoreBounds) {
+            Object storedValue;
+            Object providedValue;
+            for (final String boundsKey : TILE_BOUNDS_KEYS) {
+                storedValue = storedDocument.remove(boundsKey);
+                providedValue = providedDocument.remove(boundsKey);
+                if ((storedValue == null) || ((providedValue != null) && (! providedValue.equals(storedValue)))) {
+                    unchanged = false;
+                }
+            }
+        }
+        return unchanged && storedDocument.equals(providedDocument);
+    }
+
     private MongoCollection<Document> getStackMetaDataCollection() {
         return renderDatabase.getCollection(STACK_META_DATA_COLLECTION_NAME);
     }
 
+    private MongoCollection<Document> getImageStatisticsCollection() {
+        return renderDatabase.getCollection(IMAGE_STATISTICS_COLLECTION_NAME);
+    }
+
+    private MongoCollection<Document> getChangedZCollection() {
+        return renderDatabase.getCollection(CHANGED_Z_COLLECTION_NAME);
+    }
+
     private MongoCollection<Document> getTileCollection(final StackId stackId) {
         return renderDatabase.getCollection(stackId.getTileCollectionName());
     }
@@ -2235,6 +3164,19 @@ public class RenderDao {
 
     /** Explicitly named index options allow a little more namespace room for stack id components. */
     private static final IndexOptions TRANSFORM_A_OPTIONS = new IndexOptions().unique(true).background(true).name("A");
+    /**
+     * Tile document paths for reference transform ids (in tile transform lists,
+     * nested transform lists, and interpolated transforms).
+     */
+    private static final List<String> TILE_REFERENCE_ID_PATHS = Arrays.asList("transforms.specList.refId",
+                                                                              "transforms.specList.specList.refId",
+                                                                              "transforms.specList.a.refId",
+                                                                              "transforms.specList.b.refId");
+
+    private static final IndexOptions IMAGE_STATISTICS_A_OPTIONS =
+            new IndexOptions().unique(true).background(true).name("A");
+    private static final IndexOptions CHANGED_Z_A_OPTIONS =
+            new IndexOptions().unique(true).background(true).name("A");
     private static final IndexOptions TILE_A_OPTIONS = new IndexOptions().unique(true).background(true).name("A");
     private static final IndexOptions TILE_B_OPTIONS = new IndexOptions().background(true).name("B");
     private static final IndexOptions TILE_C_OPTIONS = new IndexOptions().background(true).name("C");
@@ -2245,4 +3187,11 @@ public class RenderDao {
     private static final IndexOptions TILE_H_OPTIONS = new IndexOptions().background(true).name("H");
     private static final IndexOptions TILE_I_OPTIONS = new IndexOptions().background(true).name("I");
     private static final IndexOptions TILE_J_OPTIONS = new IndexOptions().background(true).name("J");
+
+    private static final String[] TILE_BOUNDS_KEYS = {"minX", "minY", "maxX", "maxY"};
+
+    /** Section data attribute that is only saved by derivations that support incremental updates. */
+    private static final String SECTION_CHANNEL_NAMES_KEY = "channelNames";
+
+    private static final UpdateOptions UPSERT_UPDATE_OPTION = new UpdateOptions().upsert(true);
 }
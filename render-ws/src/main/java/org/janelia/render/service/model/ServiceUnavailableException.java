@@ -0,0 +1,16 @@
+package org.janelia.render.service.model;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * This exception is thrown when a request cannot be accepted because the server is too busy to handle it.
+ *
+ * @author Eric Trautman
+ */
+public class ServiceUnavailableException
+        extends ServiceException {
+
+    public ServiceUnavailableException(String message) {
+        super(message, Response.Status.SERVICE_UNAVAILABLE);
+    }
+}
@@ -15,6 +15,7 @@ import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.StreamingOutput;
 
 import org.janelia.alignment.Utils;
+import org.janelia.alignment.util.RenderMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,6 +55,8 @@ public class BufferedImageStreamingOutput implements StreamingOutput {
 
         LOG.info("write: entry");
 
+        final long encodeStart = System.currentTimeMillis();
+
         if (Utils.RAW_FORMAT.equals(format)) {
             writeRawImage(targetImage, outputStream);
         } else if (Utils.PNG_FORMAT.equals(format)) {
@@ -65,6 +68,8 @@ public class BufferedImageStreamingOutput implements StreamingOutput {
             Utils.writeImage(targetImage, format, convertToGray, quality, imageOutputStream);
         }
 
+        RenderMetrics.recordSince(RenderMetrics.IMAGE_ENCODE_PREFIX + format, encodeStart);
+
         LOG.info("write: exit");
     }
 
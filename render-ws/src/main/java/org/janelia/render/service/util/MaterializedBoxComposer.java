@@ -0,0 +1,242 @@
+package org.janelia.render.service.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+
+import org.janelia.alignment.Utils;
+import org.janelia.alignment.mipmap.BoxMipmapGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Assembles bounding box images from a materialized (CATMAID style) box pyramid.
+ *
+ * Materialized boxes are stored as:
+ * <pre>
+ *     [materializedBoxRootPath]/[boxWidth]x[boxHeight]/[level]/[z]/[row]/[column].[format]
+ * </pre>
+ * where level n boxes cover (boxWidth * 2^n) x (boxHeight * 2^n) world pixels starting at the world origin.
+ * A composer is only built for requests whose scale matches a pyramid level and whose origin
+ * falls on a whole level pixel, so stored box pixels can be copied into the target without resampling.
+ * If any box covered by a request has not been materialized, nothing is composed and the caller
+ * is expected to dynamically render the whole request (once) instead.
+ *
+ * @author Eric Trautman
+ */
+public class MaterializedBoxComposer {
+
+    private final File boxDirectory;
+    private final int boxWidth;
+    private final int boxHeight;
+    private final int level;
+
+    public MaterializedBoxComposer(final File boxDirectory,
+                                   final int boxWidth,
+                                   final int boxHeight,
+                                   final int level) {
+        this.boxDirectory = boxDirectory;
+        this.boxWidth = boxWidth;
+        this.boxHeight = boxHeight;
+        this.level = level;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return a composer for the specified request or null if the request cannot be served
+     *         from a materialized pyramid under the specified root path.
+     */
+    public static MaterializedBoxComposer forRequest(final String materializedBoxRootPath,
+                                                     final double x,
+                                                     final double y,
+                                                     final int width,
+                                                     final int height,
+                                                     final double scale) {
+
+        MaterializedBoxComposer composer = null;
+
+        final Integer level = getPyramidLevel(scale);
+        if ((materializedBoxRootPath != null) && (level != null) &&
+            (x >= 0) && (y >= 0) && (width > 0) && (height > 0) &&
+            isWholeLevelPixel(x, scale) && isWholeLevelPixel(y, scale)) {
+
+            final File boxDirectory = getBoxDirectory(materializedBoxRootPath, level);
+            if (boxDirectory != null) {
+                final Matcher m = BOX_DIRECTORY_NAME_PATTERN.matcher(boxDirectory.getName());
+                if (m.matches()) {
+                    composer = new MaterializedBoxComposer(boxDirectory,
+                                                           Integer.parseInt(m.group(1)),
+                                                           Integer.parseInt(m.group(2)),
+                                                           level);
+                }
+            }
+        }
+
+        return composer;
+    }
+
+    /**
+     * @return the [boxWidth]x[boxHeight] pyramid directory that contains the specified level
+     *         or null if no pyramid under the root path contains the level.
+     *         Found directories are cached (and only re-verified with a single directory check)
+     *         so that the root directory does not need to be listed for every request.
+     *         Misses are not cached so that newly materialized levels are found.
+     */
+    static File getBoxDirectory(final String materializedBoxRootPath,
+                                final int level) {
+
+        final String key = materializedBoxRootPath + "::" + level;
+
+        File boxDirectory = BOX_DIRECTORY_CACHE.getIfPresent(key);
+
+        if ((boxDirectory != null) && (! new File(boxDirectory, String.valueOf(level)).isDirectory())) {
+            BOX_DIRECTORY_CACHE.invalidate(key);
+            boxDirectory = null;
+        }
+
+        if (boxDirectory == null) {
+
+            final File[] boxDirectories = new File(materializedBoxRootPath).listFiles(
+                    (dir, name) -> BOX_DIRECTORY_NAME_PATTERN.matcher(name).matches() &&
+                                   new File(new File(dir, name), String.valueOf(level)).isDirectory());
+
+            if ((boxDirectories != null) && (boxDirectories.length > 0)) {
+                // consistently prefer the same pyramid when more than one has been materialized
+                Arrays.sort(boxDirectories);
+                boxDirectory = boxDirectories[0];
+                BOX_DIRECTORY_CACHE.put(key, boxDirectory);
+            }
+        }
+
+        return boxDirectory;
+    }
+
+    /**
+     * Assembles the image for the specified world bounding box.
+     * The returned image has the same dimensions as a dynamic render of the same box.
+     *
+     * @return the assembled image or null if any box covered by the request has not been materialized.
+     *
+     * @throws IOException
+     *   if a materialized box exists but cannot be read.
+     */
+    public BufferedImage compose(final double x,
+                                 final double y,
+                                 final int z,
+                                 final int width,
+                                 final int height)
+            throws IOException {
+
+        final double scale = 1.0 / (1 << level);
+        final int targetWidth = (int) (scale * width);
+        final int targetHeight = (int) (scale * height);
+
+        // request bounds in level pixel coordinates
+        final long levelMinX = Math.round(x * scale);
+        final long levelMinY = Math.round(y * scale);
+        final long levelMaxX = levelMinX + targetWidth;
+        final long levelMaxY = levelMinY + targetHeight;
+
+        final int firstColumn = (int) (levelMinX / boxWidth);
+        final int lastColumn = (int) ((levelMaxX - 1) / boxWidth);
+        final int firstRow = (int) (levelMinY / boxHeight);
+        final int lastRow = (int) ((levelMaxY - 1) / boxHeight);
+
+        LOG.debug("compose: level {} rows {}-{}, columns {}-{} from {}",
+                  level, firstRow, lastRow, firstColumn, lastColumn, boxDirectory);
+
+        // make sure every box exists before reading any of them
+        final File[][] boxFiles = new File[lastRow - firstRow + 1][lastColumn - firstColumn + 1];
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                final File boxFile = getBoxFile(z, row, column);
+                if (boxFile == null) {
+                    LOG.debug("compose: level {} z {} row {} column {} box has not been materialized",
+                              level, z, row, column);
+                    return null;
+                }
+                boxFiles[row - firstRow][column - firstColumn] = boxFile;
+            }
+        }
+
+        final BufferedImage targetImage = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D targetGraphics = targetImage.createGraphics();
+
+        try {
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+
+                    final int offsetX = (int) (((long) column * boxWidth) - levelMinX);
+                    final int offsetY = (int) (((long) row * boxHeight) - levelMinY);
+
+                    final File boxFile = boxFiles[row - firstRow][column - firstColumn];
+                    final BufferedImage boxImage = ImageIO.read(boxFile);
+                    if (boxImage == null) {
+                        throw new IOException("failed to read materialized box " + boxFile.getAbsolutePath());
+                    }
+                    targetGraphics.drawImage(boxImage, offsetX, offsetY, null);
+                }
+            }
+        } finally {
+            targetGraphics.dispose();
+        }
+
+        return targetImage;
+    }
+
+    private File getBoxFile(final int z,
+                            final int row,
+                            final int column) {
+        for (final String format : BOX_FORMATS) {
+            final File file = BoxMipmapGenerator.getImageFile(format, boxDirectory, level, z, row, column);
+            if (file.exists()) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the pyramid level for the specified scale (scale = 1 / 2^level) or null if the
+     *         scale does not correspond to a level.
+     */
+    static Integer getPyramidLevel(final double scale) {
+        Integer level = null;
+        if ((scale > 0) && (scale <= 1)) {
+            final long levelFactor = Math.round(1.0 / scale);
+            if ((Long.bitCount(levelFactor) == 1) && (Math.abs((1.0 / levelFactor) - scale) < SCALE_TOLERANCE)) {
+                level = Long.numberOfTrailingZeros(levelFactor);
+            }
+        }
+        return level;
+    }
+
+    private static boolean isWholeLevelPixel(final double worldValue,
+                                             final double scale) {
+        final double levelValue = worldValue * scale;
+        return Math.abs(levelValue - Math.round(levelValue)) < SCALE_TOLERANCE;
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(MaterializedBoxComposer.class);
+
+    private static final Cache<String, File> BOX_DIRECTORY_CACHE =
+            CacheBuilder.newBuilder().maximumSize(1000).build();
+
+    private static final Pattern BOX_DIRECTORY_NAME_PATTERN = Pattern.compile("(\\d+)x(\\d+)");
+
+    private static final String[] BOX_FORMATS = { Utils.PNG_FORMAT, Utils.JPEG_FORMAT, Utils.TIF_FORMAT };
+
+    private static final double SCALE_TOLERANCE = 0.000001;
+}
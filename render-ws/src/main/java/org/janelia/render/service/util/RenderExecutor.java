@@ -0,0 +1,253 @@
+package org.janelia.render.service.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.janelia.alignment.RenderParameters;
+import org.janelia.alignment.spec.TileSpec;
+import org.janelia.alignment.util.RenderMetrics;
+import org.janelia.render.service.model.ServiceException;
+import org.janelia.render.service.model.ServiceUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The executor shared by all render web service requests.
+ *
+ * Renders are run on a fixed number of dedicated threads (instead of on the web server's request threads)
+ * so that a burst of large render requests cannot starve cheap data requests of CPU.
+ * Requests are rejected immediately with a 503 (service unavailable) response when the render queue
+ * is full or when admitting the request would exceed the configured (estimated) pixel budget.
+ *
+ * Configure with the following render-server.properties:
+ * <pre>
+ *   webService.maxConcurrentRenders  (default is number of available processors)
+ *   webService.maxQueuedRenders      (default is 2 * maxConcurrentRenders)
+ *   webService.maxRenderPixelsGb     (default is 1/8 of max heap)
+ * </pre>
+ *
+ * @author Eric Trautman
+ */
+public class RenderExecutor {
+
+    private static RenderExecutor sharedExecutor;
+
+    public static RenderExecutor getInstance() {
+        if (sharedExecutor == null) {
+            setSharedExecutor();
+        }
+        return sharedExecutor;
+    }
+
+    private static synchronized void setSharedExecutor() {
+        if (sharedExecutor == null) {
+
+            final RenderServerProperties properties = RenderServerProperties.getProperties();
+
+            Integer maxConcurrentRenders = properties.getInteger("webService.maxConcurrentRenders");
+            if (maxConcurrentRenders == null) {
+                maxConcurrentRenders = Runtime.getRuntime().availableProcessors();
+            }
+
+            Integer maxQueuedRenders = properties.getInteger("webService.maxQueuedRenders");
+            if (maxQueuedRenders == null) {
+                maxQueuedRenders = 2 * maxConcurrentRenders;
+            }
+
+            long maxAdmittedPixels = Long.MAX_VALUE;
+            final Integer maxPixelsGb = properties.getInteger("webService.maxRenderPixelsGb");
+            if (maxPixelsGb == null) {
+                final long maxMemory = Runtime.getRuntime().maxMemory();
+                if (maxMemory < Long.MAX_VALUE) {
+                    maxAdmittedPixels = maxMemory / 8;
+                }
+            } else {
+                maxAdmittedPixels = maxPixelsGb * 1_000_000_000L;
+            }
+
+            sharedExecutor = new RenderExecutor(maxConcurrentRenders, maxQueuedRenders, maxAdmittedPixels);
+
+            LOG.info("setSharedExecutor: exit, created {}", sharedExecutor);
+        }
+    }
+
+    private final int maxConcurrentRenders;
+    private final int maxQueuedRenders;
+    private final long maxAdmittedPixels;
+    private final ThreadPoolExecutor executor;
+
+    private long admittedPixels;
+
+    RenderExecutor(final int maxConcurrentRenders,
+                   final int maxQueuedRenders,
+                   final long maxAdmittedPixels) {
+
+        this.maxConcurrentRenders = Math.max(1, maxConcurrentRenders);
+        this.maxQueuedRenders = Math.max(1, maxQueuedRenders);
+        this.maxAdmittedPixels = maxAdmittedPixels;
+        this.admittedPixels = 0;
+
+        final AtomicInteger threadCount = new AtomicInteger(0);
+        final ThreadFactory threadFactory = runnable -> {
+            final Thread thread = new Thread(runnable, "render-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        this.executor = new ThreadPoolExecutor(this.maxConcurrentRenders,
+                                               this.maxConcurrentRenders,
+                                               0L,
+                                               TimeUnit.MILLISECONDS,
+                                               new ArrayBlockingQueue<>(this.maxQueuedRenders),
+                                               threadFactory,
+                                               new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Runs the specified render task on this executor and waits for it to complete.
+     *
+     * @param  renderParameters  parameters for the render (used to estimate cost).
+     * @param  renderTask        task that performs the render.
+     *
+     * @return the result of the render task.
+     *
+     * @throws ServiceUnavailableException
+     *   if the render cannot be admitted because the executor is busy.
+     *
+     * @throws IllegalArgumentException
+     *   if the render task fails because of invalid parameters.
+     */
+    public <T> T render(final RenderParameters renderParameters,
+                        final Callable<T> renderTask)
+            throws ServiceException, IllegalArgumentException {
+
+        final long estimatedPixels = estimatePixels(renderParameters);
+
+        if (! admit(estimatedPixels)) {
+            throw new ServiceUnavailableException(
+                    "server is busy (estimated render pixel budget exceeded), please retry later");
+        }
+
+        // Whoever claims the render first owns the release of its admitted pixels:
+        // the task claims it when it starts running, the waiting thread claims it when it gives up on a
+        // task that has not started (so the budget is released even though the cancelled task never runs).
+        final AtomicBoolean claimed = new AtomicBoolean(false);
+
+        final long submitTime = System.currentTimeMillis();
+        final Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                if (! claimed.compareAndSet(false, true)) {
+                    return null; // waiting thread gave up and already released the admitted pixels
+                }
+                final long renderStart = RenderMetrics.recordSince(RenderMetrics.RENDER_QUEUE_WAIT, submitTime);
+                try {
+                    return renderTask.call();
+                } finally {
+                    RenderMetrics.recordSince(RenderMetrics.RENDER, renderStart);
+                    release(estimatedPixels);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            release(estimatedPixels);
+            throw new ServiceUnavailableException("server is busy (render queue is full), please retry later");
+        }
+
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            future.cancel(true);
+            if (claimed.compareAndSet(false, true)) {
+                release(estimatedPixels);
+                executor.purge();
+            }
+            Thread.currentThread().interrupt();
+            throw new ServiceException("interrupted while waiting for render to complete", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ServiceException("render failed", cause);
+        }
+    }
+
+    /**
+     * @return estimated number of pixels that need to be produced for the specified render
+     *         (target pixels plus scaled pixels for each tile).
+     */
+    public static long estimatePixels(final RenderParameters renderParameters) {
+
+        renderParameters.initializeDerivedValues();
+
+        final double scale = renderParameters.getScale();
+        final long targetPixels = (long) Math.ceil(renderParameters.getWidth() * scale) *
+                                  (long) Math.ceil(renderParameters.getHeight() * scale);
+
+        long tilePixels = 0;
+        if (renderParameters.hasTileSpecs()) {
+            for (final TileSpec tileSpec : renderParameters.getTileSpecs()) {
+                if (tileSpec.isMissingWidthOrHeight()) {
+                    tilePixels += targetPixels / renderParameters.numberOfTileSpecs();
+                } else {
+                    tilePixels += (long) Math.ceil(tileSpec.getWidth() * scale) *
+                                  (long) Math.ceil(tileSpec.getHeight() * scale);
+                }
+            }
+        }
+
+        return targetPixels + tilePixels;
+    }
+
+    /**
+     * Admits the specified cost if it fits within the pixel budget.
+     * An idle executor always admits a request so that renders larger than the budget can still run on their own.
+     */
+    private synchronized boolean admit(final long estimatedPixels) {
+        final boolean isAdmitted = (admittedPixels == 0) || (admittedPixels + estimatedPixels <= maxAdmittedPixels);
+        if (isAdmitted) {
+            admittedPixels += estimatedPixels;
+        } else {
+            LOG.warn("admit: rejecting render with {} estimated pixels, {} of {} pixels already admitted",
+                     estimatedPixels, admittedPixels, maxAdmittedPixels);
+        }
+        return isAdmitted;
+    }
+
+    private synchronized void release(final long estimatedPixels) {
+        admittedPixels -= estimatedPixels;
+    }
+
+    public int getActiveRenderCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedRenderCount() {
+        return executor.getQueue().size();
+    }
+
+    public synchronized long getAdmittedPixels() {
+        return admittedPixels;
+    }
+
+    @Override
+    public String toString() {
+        return "{maxConcurrentRenders: " + maxConcurrentRenders +
+               ", maxQueuedRenders: " + maxQueuedRenders +
+               ", maxAdmittedPixels: " + maxAdmittedPixels +
+               ", activeRenders: " + executor.getActiveCount() +
+               ", queuedRenders: " + executor.getQueue().size() + '}';
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(RenderExecutor.class);
+}
@@ -3,6 +3,7 @@ package org.janelia.render.service.util;
 import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.concurrent.Callable;
 
 import javax.ws.rs.core.Response;
 
@@ -154,31 +155,8 @@ public class RenderServiceUtil {
         Response response = null;
         try {
 
-            // if we need to optimize render time (e.g. when we're rendering a box from a database stack)
-            // and there are too many tiles to dynamically render the result quickly,
-            // just render the tile bounding boxes instead ...
-            Integer maxTilesToRender = maxTileSpecsToRender;
-            if (maxTileSpecsToRender == null) {
-                maxTilesToRender = RenderServerProperties.getProperties().getInteger("webService.maxTileSpecsToRender");
-            }
-
-            boolean renderBoundingBoxesOnly = (maxTilesToRender != null) &&
-                                              (renderParameters.numberOfTileSpecs() > maxTilesToRender);
-
-            // TODO: replace this hack with a proper debugWarpField parameter
-            if ((maxTileSpecsToRender != null) && (maxTileSpecsToRender < 0)) {
-                final Integer defaultMaxTileSpecsToRender =
-                        RenderServerProperties.getProperties().getInteger("webService.maxTileSpecsToRender");
-                renderBoundingBoxesOnly = (defaultMaxTileSpecsToRender != null) &&
-                                          (renderParameters.numberOfTileSpecs() > defaultMaxTileSpecsToRender);
-                if (renderParameters.numberOfTileSpecs() < 40) {
-                    renderParameters.setAddWarpFieldDebugOverlay(true);
-                }
-            }
+            final BufferedImage targetImage = renderImage(renderParameters, maxTileSpecsToRender, render16bit);
 
-            final BufferedImage targetImage = validateParametersAndRenderImage(renderParameters,
-                                                                               renderBoundingBoxesOnly,
-                                                                               render16bit);
             final BufferedImageStreamingOutput out =
                     new BufferedImageStreamingOutput(targetImage,
                                                      format,
@@ -194,6 +172,101 @@ public class RenderServiceUtil {
         return response;
     }
 
+    /**
+     * Renders the image for the specified parameters, falling back to bounding boxes when
+     * there are too many tiles to dynamically render the result quickly.
+     *
+     * @return the rendered image.
+     */
+    public static BufferedImage renderImage(final RenderParameters renderParameters,
+                                            final Integer maxTileSpecsToRender,
+                                            final boolean render16bit)
+            throws Exception {
+
+        // if we need to optimize render time (e.g. when we're rendering a box from a database stack)
+        // and there are too many tiles to dynamically render the result quickly,
+        // just render the tile bounding boxes instead ...
+        Integer maxTilesToRender = maxTileSpecsToRender;
+        if (maxTileSpecsToRender == null) {
+            maxTilesToRender = RenderServerProperties.getProperties().getInteger("webService.maxTileSpecsToRender");
+        }
+
+        boolean renderBoundingBoxesOnly = (maxTilesToRender != null) &&
+                                          (renderParameters.numberOfTileSpecs() > maxTilesToRender);
+
+        // TODO: replace this hack with a proper debugWarpField parameter
+        if ((maxTileSpecsToRender != null) && (maxTileSpecsToRender < 0)) {
+            final Integer defaultMaxTileSpecsToRender =
+                    RenderServerProperties.getProperties().getInteger("webService.maxTileSpecsToRender");
+            renderBoundingBoxesOnly = (defaultMaxTileSpecsToRender != null) &&
+                                      (renderParameters.numberOfTileSpecs() > defaultMaxTileSpecsToRender);
+            if (renderParameters.numberOfTileSpecs() < 40) {
+                renderParameters.setAddWarpFieldDebugOverlay(true);
+            }
+        }
+
+        final BufferedImage targetImage;
+        if (renderBoundingBoxesOnly) {
+            targetImage = validateParametersAndRenderImage(renderParameters,
+                                                           true,
+                                                           render16bit);
+        } else {
+            // real renders are run on the bounded render executor to protect the request threads
+            targetImage = RenderExecutor.getInstance().render(
+                    renderParameters,
+                    () -> validateParametersAndRenderImage(renderParameters,
+                                                           false,
+                                                           render16bit));
+        }
+
+        return targetImage;
+    }
+
+    /**
+     * Streams an image assembled from materialized boxes.
+     * If any box covered by the request has not been materialized,
+     * the whole request is dynamically rendered (once) instead.
+     */
+    public static Response renderMaterializedBoxImageStream(final MaterializedBoxComposer composer,
+                                                            final double x,
+                                                            final double y,
+                                                            final int z,
+                                                            final int width,
+                                                            final int height,
+                                                            final String format,
+                                                            final String mimeType,
+                                                            final boolean convertToGray,
+                                                            final Callable<RenderParameters> dynamicRenderParameters,
+                                                            final Integer maxTileSpecsToRender,
+                                                            final ResponseHelper responseHelper) {
+
+        LOG.info("renderMaterializedBoxImageStream: entry, level={}, format={}, mimeType={}",
+                 composer.getLevel(), format, mimeType);
+
+        Response response = null;
+        try {
+
+            BufferedImage targetImage = composer.compose(x, y, z, width, height);
+            if (targetImage == null) {
+                LOG.info("renderMaterializedBoxImageStream: missing materialized box(es), rendering dynamically");
+                targetImage = renderImage(dynamicRenderParameters.call(), maxTileSpecsToRender, false);
+            }
+
+            final BufferedImageStreamingOutput out =
+                    new BufferedImageStreamingOutput(targetImage,
+                                                     format,
+                                                     convertToGray,
+                                                     DEFAULT_QUALITY);
+            response = responseHelper.getImageByteResponse(out, mimeType);
+        } catch (final Throwable t) {
+            RenderServiceUtil.throwServiceException(t);
+        }
+
+        LOG.info("renderMaterializedBoxImageStream: exit");
+
+        return response;
+    }
+
     public static Response streamImageFile(final File imageFile,
                                            final String mimeType,
                                            final ResponseHelper responseHelper) {
@@ -260,4 +333,6 @@ public class RenderServiceUtil {
     }
 
     private static final Logger LOG = LoggerFactory.getLogger(RenderServiceUtil.class);
+
+    private static final float DEFAULT_QUALITY = 0.85f;
 }
\ No newline at end of file
@@ -143,4 +143,9 @@ sed -i """
   s@view.renderStackProject=.*@view.renderStackProject=${VIEW_RENDER_STACK_PROJECT}@
   s@webService.maxTileSpecsToRender=.*@webService.maxTileSpecsToRender=${WEB_SERVICE_MAX_TILE_SPECS_TO_RENDER}@
   s@webService.maxImageProcessorCacheGb=.*@webService.maxImageProcessorCacheGb=${WEB_SERVICE_MAX_IMAGE_PROCESSOR_GB}@
+  s@webService.maxConcurrentRenders=.*@webService.maxConcurrentRenders=${WEB_SERVICE_MAX_CONCURRENT_RENDERS}@
+  s@webService.maxQueuedRenders=.*@webService.maxQueuedRenders=${WEB_SERVICE_MAX_QUEUED_RENDERS}@
+  s@webService.maxRenderPixelsGb=.*@webService.maxRenderPixelsGb=${WEB_SERVICE_MAX_RENDER_PIXELS_GB}@
+  s@webService.maxWarpFieldThreads=.*@webService.maxWarpFieldThreads=${WEB_SERVICE_MAX_WARP_FIELD_THREADS}@
+  s@webService.useMaterializedBoxes=.*@webService.useMaterializedBoxes=${WEB_SERVICE_USE_MATERIALIZED_BOXES}@
 """ "${JETTY_BASE}/resources/render-server.properties"
\ No newline at end of file
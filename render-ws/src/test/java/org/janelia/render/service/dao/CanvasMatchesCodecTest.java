@@ -0,0 +1,77 @@
+package org.janelia.render.service.dao;
+
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.janelia.alignment.match.CanvasMatches;
+import org.janelia.alignment.match.Matches;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link CanvasMatchesCodec} class.
+ *
+ * @author Eric Trautman
+ */
+public class CanvasMatchesCodecTest {
+
+    @Test
+    public void testRoundTrip() {
+
+        final CanvasMatches canvasMatches = buildCanvasMatches();
+
+        final BsonDocument bsonDocument = new BsonDocument();
+        CODEC.encode(new BsonDocumentWriter(bsonDocument), canvasMatches, EncoderContext.builder().build());
+
+        // encoded document should have same structure as JSON representation
+        final Document expectedDocument = Document.parse(canvasMatches.toJson());
+        Assert.assertEquals("invalid encoded document",
+                            expectedDocument.toJson(), Document.parse(bsonDocument.toJson()).toJson());
+
+        final CanvasMatches decodedMatches = decode(bsonDocument);
+        Assert.assertEquals("invalid decoded json", canvasMatches.toJson(), decodedMatches.toJson());
+    }
+
+    @Test
+    public void testDecodeJsonParsedDocument() {
+
+        final CanvasMatches canvasMatches = buildCanvasMatches();
+
+        // documents written before the codec existed were parsed from JSON and are read with their _id
+        final BsonDocument bsonDocument = BsonDocument.parse(canvasMatches.toJson());
+        bsonDocument.put("_id", new BsonObjectId(new ObjectId()));
+
+        final CanvasMatches decodedMatches = decode(bsonDocument);
+        Assert.assertEquals("invalid decoded json", canvasMatches.toJson(), decodedMatches.toJson());
+    }
+
+    @Test
+    public void testDecodeWithoutMatchDetails() {
+
+        final BsonDocument bsonDocument = BsonDocument.parse(buildCanvasMatches().toJson());
+        bsonDocument.remove("matches");
+
+        final CanvasMatches decodedMatches = decode(bsonDocument);
+        Assert.assertNull("matches should not be decoded", decodedMatches.getMatches());
+        Assert.assertEquals("stored match count should be retained",
+                            Integer.valueOf(3), decodedMatches.getMatchCount());
+    }
+
+    private static CanvasMatches decode(final BsonDocument bsonDocument) {
+        return CODEC.decode(new BsonDocumentReader(bsonDocument), DecoderContext.builder().build());
+    }
+
+    private static CanvasMatches buildCanvasMatches() {
+        final Matches matches = new Matches(new double[][] { { 1, 2.5, 3 }, { 4, 5, 6.25 } },
+                                            new double[][] { { 11, 12, 13 }, { 14, 15.5, 16 } },
+                                            new double[] { 1, 0.5, 0.75 });
+        return new CanvasMatches("section1", "tile1.1", "section2", "tile2.1", matches);
+    }
+
+    private static final CanvasMatchesCodec CODEC = new CanvasMatchesCodec();
+}
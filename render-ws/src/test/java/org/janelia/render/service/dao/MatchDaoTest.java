@@ -1,11 +1,15 @@
 package org.janelia.render.service.dao;
 
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
 import com.mongodb.client.MongoCollection;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.bson.BsonDocument;
 import org.bson.Document;
 import org.janelia.alignment.match.CanvasMatches;
 import org.janelia.alignment.match.MatchCollectionId;
@@ -13,11 +17,14 @@ import org.janelia.alignment.match.MatchCollectionMetaData;
 import org.janelia.alignment.match.MatchTrial;
 import org.janelia.alignment.match.Matches;
 import org.janelia.render.service.model.ObjectNotFoundException;
+import org.janelia.test.EmbeddedMongoDb;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import de.flapdoodle.embed.mongo.distribution.Version;
+
 /**
  * Tests {@link MatchDao} methods that change persisted data.
  * The embedded database is rebuilt for each test, so these tests take longer to run.
@@ -355,6 +362,87 @@ public class MatchDaoTest {
 
     }
 
+    @Test
+    public void testUpdateMatchCountsForCollection() {
+
+        final MongoCollection<Document> matchCollection = dao.getExistingCollection(collectionId);
+
+        // clear all counts so that every pair is stale
+        matchCollection.updateMany(new Document(), new Document("$unset", new Document("matchCount", "")));
+
+        dao.updateMatchCountsForCollection(collectionId);
+
+        final List<CanvasMatches> updatedMatchList = dao.getMatches(matchCollection, new Document(), false);
+
+        Assert.assertTrue("no matches returned", updatedMatchList.size() > 0);
+
+        for (final CanvasMatches canvasMatches : updatedMatchList) {
+            final Matches matches = canvasMatches.getMatches();
+            final Integer expectedMatchCount = matches.getWs().length;
+            Assert.assertEquals("match counts not updated for " + canvasMatches,
+                                expectedMatchCount, canvasMatches.getMatchCount());
+        }
+
+    }
+
+    @Test
+    public void testUpdateMatchCountsOnServer() throws Exception {
+
+        // default embedded version (4.0) does not support update pipelines, so use a newer version for this test
+        final EmbeddedMongoDb pipelineMongoDb = new EmbeddedMongoDb(MatchDao.MATCH_DB_NAME, Version.Main.V4_4);
+        try {
+            pipelineMongoDb.importCollection(collectionId.getDbCollectionName(),
+                                             new File("src/test/resources/mongodb/match.json"),
+                                             true,
+                                             false,
+                                             true);
+
+            final MatchDao pipelineDao = new MatchDao(pipelineMongoDb.getMongoClient());
+            final MongoCollection<Document> matchCollection = pipelineDao.getExistingCollection(collectionId);
+            matchCollection.updateMany(new Document(), new Document("$unset", new Document("matchCount", "")));
+
+            Assert.assertTrue("server side update should be supported",
+                              pipelineDao.updateMatchCountsOnServer(matchCollection,
+                                                                    MatchDao.getStaleCountCriteria(new Document())));
+
+            final List<CanvasMatches> updatedMatchList = pipelineDao.getMatches(matchCollection, new Document(), false);
+            Assert.assertTrue("no matches returned", updatedMatchList.size() > 0);
+            for (final CanvasMatches canvasMatches : updatedMatchList) {
+                final Integer expectedMatchCount = canvasMatches.getMatches().getWs().length;
+                Assert.assertEquals("match counts not updated for " + canvasMatches,
+                                    expectedMatchCount, canvasMatches.getMatchCount());
+            }
+
+        } finally {
+            pipelineMongoDb.stop();
+        }
+    }
+
+    @Test
+    public void testUpdateMatchCountsOnUnsupportedServer() {
+
+        final MongoCollection<Document> matchCollection = dao.getExistingCollection(collectionId);
+
+        Assert.assertFalse("server side update should not be supported by default embedded version",
+                           dao.updateMatchCountsOnServer(matchCollection,
+                                                         MatchDao.getStaleCountCriteria(new Document())));
+    }
+
+    @Test
+    public void testIsPipelineUpdateUnsupported() {
+
+        Assert.assertTrue("type mismatch should indicate unsupported pipeline update",
+                          MatchDao.isPipelineUpdateUnsupported(buildCommandException(14)));
+        Assert.assertFalse("interrupted operation should not indicate unsupported pipeline update",
+                           MatchDao.isPipelineUpdateUnsupported(buildCommandException(11601)));
+    }
+
+    private static MongoCommandException buildCommandException(final int code) {
+        final BsonDocument response = BsonDocument.parse("{ \"ok\": 0, \"code\": " + code +
+                                                         ", \"errmsg\": \"test\" }");
+        return new MongoCommandException(response, new ServerAddress());
+    }
+
     private MatchCollectionMetaData getCollectionMetaData(final MatchCollectionId collectionId) {
         MatchCollectionMetaData metaData = null;
         for (final MatchCollectionMetaData md : dao.getMatchCollectionMetaData()) {
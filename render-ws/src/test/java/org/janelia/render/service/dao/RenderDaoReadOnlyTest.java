@@ -2,6 +2,8 @@ package org.janelia.render.service.dao;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -368,6 +370,40 @@ public class RenderDaoReadOnlyTest {
 
     }
 
+    @Test
+    public void testWriteResolvedTiles() throws Exception {
+        final Double z = 3903.0;
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024 * 1024);
+        dao.writeResolvedTiles(stackId, z, z, null, null, null, null, null, outputStream);
+
+        final ResolvedTileSpecCollection writtenTiles = ResolvedTileSpecCollection.fromJson(outputStream.toString());
+        final ResolvedTileSpecCollection resolvedTiles = dao.getResolvedTiles(stackId, z);
+
+        Assert.assertEquals("invalid number of tiles written",
+                            resolvedTiles.getTileCount(), writtenTiles.getTileCount());
+        Assert.assertEquals("invalid number of referenced transforms written",
+                            resolvedTiles.getTransformCount(), writtenTiles.getTransformCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void testWriteResolvedTilesFailurePropagates() throws Exception {
+
+        // stream that fails part way through the response (e.g. because the client disconnected)
+        final OutputStream failingOutputStream = new OutputStream() {
+            private int byteCount = 0;
+            @Override
+            public void write(final int b) throws IOException {
+                byteCount++;
+                if (byteCount > 100) {
+                    throw new IOException("test failure after " + byteCount + " bytes");
+                }
+            }
+        };
+
+        dao.writeResolvedTiles(stackId, 3903.0, 3903.0, null, null, null, null, null, failingOutputStream);
+    }
+
     @Test
     public void testWriteTileIds() throws Exception {
 
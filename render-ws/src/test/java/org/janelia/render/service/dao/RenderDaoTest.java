@@ -1,18 +1,26 @@
 package org.janelia.render.service.dao;
 
+import com.mongodb.client.MongoCollection;
+
+import java.awt.Rectangle;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import mpicbg.trakem2.transform.AffineModel2D;
 
+import org.bson.Document;
 import org.janelia.alignment.spec.Bounds;
+import org.janelia.alignment.spec.ImageStatistics;
 import org.janelia.alignment.spec.LayoutData;
 import org.janelia.alignment.spec.LeafTransformSpec;
 import org.janelia.alignment.spec.ListTransformSpec;
 import org.janelia.alignment.spec.ReferenceTransformSpec;
+import org.janelia.alignment.spec.ResolvedTileSpecCollection;
 import org.janelia.alignment.spec.SectionData;
 import org.janelia.alignment.spec.TileBounds;
 import org.janelia.alignment.spec.TileSpec;
@@ -228,6 +236,60 @@ public class RenderDaoTest {
         Assert.assertEquals("invalid number of sections found for filtered list", 2, filteredList.size());
     }
 
+    @Test
+    public void testIncrementalDeriveStats() throws Exception {
+
+        // use a cloned stack so that incrementally derived section data does not leak into other tests
+        final StackId incrementalStackId = new StackId(stackId.getOwner(), stackId.getProject(), "incrementalStack");
+        dao.cloneStack(stackId, incrementalStackId, null, null);
+
+        final List<Double> clonedZValues = dao.getZValues(incrementalStackId);
+        Collections.sort(clonedZValues);
+        Assert.assertEquals("cloned layers should be tracked as changed",
+                            clonedZValues, dao.getChangedZValueList(incrementalStackId));
+
+        final StackVersion version = dao.getStackMetaData(stackId).getCurrentVersion();
+        dao.ensureIndexesAndDeriveStats(new StackMetaData(incrementalStackId, version));
+
+        Assert.assertEquals("changes should be cleared after full derivation",
+                            0, dao.getChangedZValueList(incrementalStackId).size());
+
+        // move one tile to a new layer and remove another tile
+        final TileSpec movedTileSpec = dao.getTileSpec(incrementalStackId, "134", false);
+        final Double originalZ = movedTileSpec.getZ();
+        final Double newZ = 3904.0;
+        movedTileSpec.setZ(newZ);
+        dao.saveTileSpec(incrementalStackId, movedTileSpec);
+        dao.removeTile(incrementalStackId, "135");
+
+        Assert.assertEquals("invalid changed layers",
+                            Arrays.asList(originalZ, newZ), dao.getChangedZValueList(incrementalStackId));
+
+        final StackMetaData incrementalMetaData =
+                dao.ensureIndexesAndDeriveStats(new StackMetaData(incrementalStackId, version));
+
+        Assert.assertEquals("changes should be cleared after incremental derivation",
+                            0, dao.getChangedZValueList(incrementalStackId).size());
+
+        // fully derive a copy of the changed stack to verify incremental results
+        final StackId fullStackId = new StackId(stackId.getOwner(), stackId.getProject(), "fullCopyStack");
+        dao.cloneStack(incrementalStackId, fullStackId, null, null);
+        final StackMetaData fullMetaData = dao.ensureIndexesAndDeriveStats(new StackMetaData(fullStackId, version));
+
+        final StackStats incrementalStats = incrementalMetaData.getStats();
+        Assert.assertEquals("invalid tile count", new Long(13), incrementalStats.getTileCount());
+        Assert.assertEquals("incremental stats differ from full stats",
+                            fullMetaData.getStats().toJson(), incrementalStats.toJson());
+
+        final List<SectionData> incrementalSectionData = dao.getSectionData(incrementalStackId, null, null);
+        final List<SectionData> fullSectionData = dao.getSectionData(fullStackId, null, null);
+        Assert.assertEquals("invalid number of sections", fullSectionData.size(), incrementalSectionData.size());
+        for (int i = 0; i < fullSectionData.size(); i++) {
+            Assert.assertEquals("incremental section data differs from full section data for index " + i,
+                                fullSectionData.get(i).toJson(), incrementalSectionData.get(i).toJson());
+        }
+    }
+
     @Test
     public void testRemoveStack() throws Exception {
 
@@ -436,6 +498,153 @@ public class RenderDaoTest {
         Assert.assertEquals("z not updated for tile '" + tileIdB + "'", updatedZ, zAfterUpdateB);
     }
 
+    @Test
+    public void testApplyTransformToTiles() throws Exception {
+
+        final String tileId = "134";
+        final LeafTransformSpec translation = new LeafTransformSpec(AffineModel2D.class.getName(),
+                                                                    "1 0 0 1 100 0");
+
+        final TileSpec expectedTileSpec = dao.getTileSpec(stackId, tileId, true);
+        final int transformCountBeforeUpdate = expectedTileSpec.getTransforms().size();
+        expectedTileSpec.addTransformSpecs(Collections.singletonList(translation));
+        expectedTileSpec.deriveBoundingBox(expectedTileSpec.getMeshCellSize(), true);
+
+        final int updatedCount = dao.applyTransformToTiles(stackId,
+                                                           expectedTileSpec.getZ(),
+                                                           expectedTileSpec.getZ(),
+                                                           null,
+                                                           translation,
+                                                           ResolvedTileSpecCollection.TransformApplicationMethod.APPEND);
+
+        Assert.assertTrue("no tiles updated", updatedCount > 0);
+
+        final TileSpec tileSpecAfterUpdate = dao.getTileSpec(stackId, tileId, true);
+        Assert.assertEquals("invalid number of transforms after update",
+                            transformCountBeforeUpdate + 1, tileSpecAfterUpdate.getTransforms().size());
+        Assert.assertEquals("invalid minX after update",
+                            expectedTileSpec.getMinX(), tileSpecAfterUpdate.getMinX(), 0.01);
+        Assert.assertEquals("invalid maxX after update",
+                            expectedTileSpec.getMaxX(), tileSpecAfterUpdate.getMaxX(), 0.01);
+        Assert.assertEquals("invalid minY after update",
+                            expectedTileSpec.getMinY(), tileSpecAfterUpdate.getMinY(), 0.01);
+    }
+
+    @Test
+    public void testRemoveUnchangedTileSpecs() throws Exception {
+
+        final Double z = 3903.0;
+        final String changedTileId = "134";
+        final Rectangle changedBox = new Rectangle(0, 0, 10, 10);
+
+        // re-save imported tiles so that stored documents have the same form as saved specs
+        ResolvedTileSpecCollection resolvedTiles = dao.getResolvedTiles(stackId, z);
+        dao.saveResolvedTiles(stackId, resolvedTiles);
+
+        // reverse the field order of one stored tile to ensure that field order is not considered a change
+        final MongoCollection<Document> tileCollection =
+                embeddedMongoDb.getMongoClient().getDatabase(RenderDao.RENDER_DB_NAME)
+                        .getCollection(stackId.getTileCollectionName());
+        final Document storedDocument = tileCollection.find(new Document("tileId", "135")).first();
+        Assert.assertNotNull("missing stored tile 135", storedDocument);
+        final List<String> storedKeys = new ArrayList<>(storedDocument.keySet());
+        Collections.reverse(storedKeys);
+        final Document reorderedDocument = new Document();
+        for (final String key : storedKeys) {
+            reorderedDocument.append(key, storedDocument.get(key));
+        }
+        tileCollection.replaceOne(new Document("tileId", "135"), reorderedDocument);
+
+        resolvedTiles = dao.getResolvedTiles(stackId, z);
+        final int tileCount = resolvedTiles.getTileCount();
+        resolvedTiles.getTileSpec(changedTileId).setGroupId("changedGroup");
+
+        int unchangedCount = dao.removeUnchangedTileSpecs(stackId, resolvedTiles, false);
+
+        Assert.assertEquals("invalid number of unchanged tiles", tileCount - 1, unchangedCount);
+        Assert.assertEquals("invalid number of remaining tiles", 1, resolvedTiles.getTileCount());
+        Assert.assertNotNull("changed tile should remain", resolvedTiles.getTileSpec(changedTileId));
+
+        resolvedTiles = dao.getResolvedTiles(stackId, z);
+        TileSpec changedTileSpec = resolvedTiles.getTileSpec(changedTileId);
+        changedTileSpec.setBoundingBox(changedBox, changedTileSpec.getMeshCellSize());
+
+        unchangedCount = dao.removeUnchangedTileSpecs(stackId, resolvedTiles, false);
+        Assert.assertEquals("bounds change should be detected", tileCount - 1, unchangedCount);
+
+        resolvedTiles = dao.getResolvedTiles(stackId, z);
+        changedTileSpec = resolvedTiles.getTileSpec(changedTileId);
+        changedTileSpec.setBoundingBox(changedBox, changedTileSpec.getMeshCellSize());
+
+        unchangedCount = dao.removeUnchangedTileSpecs(stackId, resolvedTiles, true);
+        Assert.assertEquals("bounds that differ from stored bounds should be detected when deriving bounds",
+                            tileCount - 1, unchangedCount);
+        Assert.assertNotNull("tile with differing bounds should remain", resolvedTiles.getTileSpec(changedTileId));
+
+        resolvedTiles = dao.getResolvedTiles(stackId, z);
+        unchangedCount = dao.removeUnchangedTileSpecs(stackId, resolvedTiles, true);
+        Assert.assertEquals("matching bounds should be ignored when deriving bounds", tileCount, unchangedCount);
+        Assert.assertEquals("all tiles should be removed", 0, resolvedTiles.getTileCount());
+
+        // remove stored bounds for one tile to ensure that it is kept so that its bounds get derived
+        final Document unsetBounds = new Document();
+        for (final String boundsKey : new String[] {"minX", "minY", "maxX", "maxY"}) {
+            unsetBounds.append(boundsKey, "");
+        }
+        tileCollection.updateOne(new Document("tileId", "135"), new Document("$unset", unsetBounds));
+
+        resolvedTiles = dao.getResolvedTiles(stackId, z);
+        unchangedCount = dao.removeUnchangedTileSpecs(stackId, resolvedTiles, true);
+        Assert.assertEquals("missing stored bounds should be detected when deriving bounds",
+                            tileCount - 1, unchangedCount);
+        Assert.assertNotNull("tile without stored bounds should remain", resolvedTiles.getTileSpec("135"));
+    }
+
+    @Test
+    public void testImageStatisticsCatalog() throws Exception {
+
+        final Double z = 3903.0;
+        final TileSpec tileSpecA = dao.getTileSpec(stackId, "134", false);
+        final TileSpec tileSpecB = dao.getTileSpec(stackId, "135", false);
+
+        final long[] histogram = new long[ImageStatistics.HISTOGRAM_BIN_COUNT];
+        histogram[10] = 100;
+        final ImageStatistics statisticsA =
+                new ImageStatistics(tileSpecA.getFirstMipmapEntry().getValue().getImageUrl(), null,
+                                    100, 10.0, 10.0, 10.0, 0, 256, histogram);
+        final ImageStatistics statisticsB =
+                new ImageStatistics(tileSpecB.getFirstMipmapEntry().getValue().getImageUrl(), null,
+                                    300, 20.0, 30.0, 25.0, 0, 256, null);
+
+        dao.saveImageStatistics(Arrays.asList(statisticsA, statisticsB));
+        dao.saveImageStatistics(Collections.singletonList(statisticsA)); // re-save should replace
+
+        // statistics for slices of a stack image with the same URL should neither replace nor be used for the tile
+        final ImageStatistics sliceStatisticsA =
+                new ImageStatistics(statisticsA.getImageUrl(), 2,
+                                    100, 99.0, 99.0, 99.0, 0, 256, null);
+        dao.saveImageStatistics(Collections.singletonList(sliceStatisticsA));
+
+        final Map<String, ImageStatistics> tileIdToStatistics = dao.getTileImageStatistics(stackId, z, null);
+        Assert.assertEquals("invalid number of tile statistics", 2, tileIdToStatistics.size());
+        Assert.assertEquals("invalid statistics for tile " + tileSpecA.getTileId(),
+                            10.0, tileIdToStatistics.get(tileSpecA.getTileId()).getMax(), 0.0);
+
+        // reacquired tiles in another layer share the source image of the first tile
+        Assert.assertEquals("invalid number of layer statistics for stack",
+                            2, dao.getLayerImageStatistics(stackId, null, null, null).size());
+
+        final Map<Double, ImageStatistics> zToStatistics = dao.getLayerImageStatistics(stackId, z, z, null);
+        Assert.assertEquals("invalid number of layer statistics", 1, zToStatistics.size());
+
+        final ImageStatistics layerStatistics = zToStatistics.get(z);
+        Assert.assertNotNull("missing statistics for z " + z, layerStatistics);
+        Assert.assertEquals("invalid layer pixel count", 400, layerStatistics.getPixelCount());
+        Assert.assertEquals("invalid layer min", 10.0, layerStatistics.getMin(), 0.0);
+        Assert.assertEquals("invalid layer max", 30.0, layerStatistics.getMax(), 0.0);
+        Assert.assertEquals("invalid layer mean", 21.25, layerStatistics.getMean(), 0.0);
+    }
+
     public static void validateStackMetaData(final String context,
                                              final StackMetaData.StackState expectedState,
                                              final Integer expectedVersionNumber,
@@ -0,0 +1,144 @@
+package org.janelia.render.service.util;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import javax.imageio.ImageIO;
+
+import org.janelia.alignment.Utils;
+import org.janelia.alignment.mipmap.BoxMipmapGenerator;
+import org.janelia.alignment.util.FileUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link MaterializedBoxComposer} class.
+ *
+ * @author Eric Trautman
+ */
+public class MaterializedBoxComposerTest {
+
+    private File rootDirectory;
+    private File boxDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        rootDirectory = Files.createTempDirectory("test_materialized_box_").toFile();
+        boxDirectory = new File(rootDirectory, "4x4");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.deleteRecursive(rootDirectory);
+    }
+
+    @Test
+    public void testGetPyramidLevel() {
+        Assert.assertEquals("invalid level for full scale", Integer.valueOf(0),
+                            MaterializedBoxComposer.getPyramidLevel(1.0));
+        Assert.assertEquals("invalid level for quarter scale", Integer.valueOf(2),
+                            MaterializedBoxComposer.getPyramidLevel(0.25));
+        Assert.assertNull("level should not exist for non power of two scale",
+                          MaterializedBoxComposer.getPyramidLevel(0.3));
+        Assert.assertNull("level should not exist for scale greater than one",
+                          MaterializedBoxComposer.getPyramidLevel(2.0));
+    }
+
+    @Test
+    public void testForRequest() throws IOException {
+
+        final String rootPath = rootDirectory.getAbsolutePath();
+
+        Assert.assertNull("composer should not exist before boxes are materialized",
+                          MaterializedBoxComposer.forRequest(rootPath, 0, 0, 16, 16, 0.5));
+
+        saveBox(1, 0, 0, Color.RED);
+
+        final MaterializedBoxComposer composer = MaterializedBoxComposer.forRequest(rootPath, 0, 0, 16, 16, 0.5);
+        Assert.assertNotNull("composer should exist for level 1 request", composer);
+        Assert.assertEquals("invalid level", 1, composer.getLevel());
+
+        Assert.assertNull("composer should not exist for level without boxes",
+                          MaterializedBoxComposer.forRequest(rootPath, 0, 0, 16, 16, 0.25));
+        Assert.assertNull("composer should not exist for origin between level pixels",
+                          MaterializedBoxComposer.forRequest(rootPath, 1, 0, 16, 16, 0.5));
+    }
+
+    @Test
+    public void testCompose() throws Exception {
+
+        // level 1 boxes cover 8x8 world pixels
+        saveBox(1, 0, 0, Color.RED);
+        saveBox(1, 1, 1, Color.GREEN);
+
+        final MaterializedBoxComposer composer =
+                MaterializedBoxComposer.forRequest(rootDirectory.getAbsolutePath(), 4, 4, 8, 8, 0.5);
+        Assert.assertNotNull("composer should exist", composer);
+
+        // request spans the four level 1 boxes around world (8, 8), two of which are missing
+        Assert.assertNull("nothing should be composed when boxes are missing",
+                          composer.compose(4, 4, Z, 8, 8));
+
+        saveBox(1, 0, 1, Color.BLUE);
+        saveBox(1, 1, 0, Color.BLUE);
+
+        final BufferedImage image = composer.compose(4, 4, Z, 8, 8);
+        Assert.assertNotNull("image should be composed once all boxes exist", image);
+
+        Assert.assertEquals("invalid width", 4, image.getWidth());
+        Assert.assertEquals("invalid height", 4, image.getHeight());
+
+        Assert.assertEquals("invalid upper left pixel", Color.RED.getRGB(), image.getRGB(0, 0));
+        Assert.assertEquals("invalid upper right pixel", Color.BLUE.getRGB(), image.getRGB(3, 0));
+        Assert.assertEquals("invalid lower left pixel", Color.BLUE.getRGB(), image.getRGB(0, 3));
+        Assert.assertEquals("invalid lower right pixel", Color.GREEN.getRGB(), image.getRGB(3, 3));
+    }
+
+    @Test
+    public void testGetBoxDirectory() throws IOException {
+
+        final String rootPath = rootDirectory.getAbsolutePath();
+
+        saveBox(1, 0, 0, Color.RED);
+
+        final File boxDirectoryForLevel = MaterializedBoxComposer.getBoxDirectory(rootPath, 1);
+        Assert.assertEquals("invalid box directory", boxDirectory, boxDirectoryForLevel);
+        Assert.assertSame("box directory should be cached",
+                          boxDirectoryForLevel, MaterializedBoxComposer.getBoxDirectory(rootPath, 1));
+
+        FileUtil.deleteRecursive(new File(boxDirectory, "1"));
+        Assert.assertNull("removed level should not be returned from cache",
+                          MaterializedBoxComposer.getBoxDirectory(rootPath, 1));
+    }
+
+    private void saveBox(final int level,
+                         final int row,
+                         final int column,
+                         final Color color)
+            throws IOException {
+        final File boxFile = BoxMipmapGenerator.getImageFile(Utils.PNG_FORMAT, boxDirectory, level, Z, row, column);
+        if (! boxFile.getParentFile().mkdirs()) {
+            Assert.assertTrue("failed to create " + boxFile.getParentFile(), boxFile.getParentFile().exists());
+        }
+        ImageIO.write(getFilledImage(4, 4, color), Utils.PNG_FORMAT, boxFile);
+    }
+
+    private static BufferedImage getFilledImage(final int width,
+                                                final int height,
+                                                final Color color) {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return image;
+    }
+
+    private static final int Z = 1;
+}
@@ -0,0 +1,180 @@
+package org.janelia.render.service.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import org.janelia.alignment.RenderParameters;
+import org.janelia.render.service.model.ServiceException;
+import org.janelia.render.service.model.ServiceUnavailableException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link RenderExecutor} class.
+ *
+ * @author Eric Trautman
+ */
+public class RenderExecutorTest {
+
+    private final CountDownLatch finishRenders = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        finishRenders.countDown();
+    }
+
+    @Test
+    public void testEstimatePixels() {
+        Assert.assertEquals("invalid estimate for render without tiles",
+                            PIXELS_PER_RENDER, RenderExecutor.estimatePixels(buildParameters()));
+    }
+
+    @Test
+    public void testRenderAndRelease() {
+
+        final RenderExecutor executor = new RenderExecutor(1, 1, Long.MAX_VALUE);
+
+        Assert.assertEquals("invalid render result",
+                            "done", executor.render(buildParameters(), () -> "done"));
+        Assert.assertEquals("admitted pixels should be released after render",
+                            0, executor.getAdmittedPixels());
+    }
+
+    @Test
+    public void testFailedRenderReleasesPixels() {
+
+        final RenderExecutor executor = new RenderExecutor(1, 1, Long.MAX_VALUE);
+
+        try {
+            executor.render(buildParameters(), () -> {
+                throw new IllegalArgumentException("test failure");
+            });
+            Assert.fail("render failure should have been thrown");
+        } catch (final IllegalArgumentException e) {
+            Assert.assertEquals("invalid exception", "test failure", e.getMessage());
+        }
+
+        Assert.assertEquals("admitted pixels should be released after failed render",
+                            0, executor.getAdmittedPixels());
+    }
+
+    @Test
+    public void testRejectWhenPixelBudgetExceeded() throws Exception {
+
+        final RenderExecutor executor = new RenderExecutor(2, 2, (3 * PIXELS_PER_RENDER) / 2);
+
+        final Thread blockedRenderThread = startBlockedRender(executor);
+        waitFor(() -> executor.getActiveRenderCount() == 1, "first render to start");
+
+        try {
+            executor.render(buildParameters(), () -> "should not run");
+            Assert.fail("render exceeding pixel budget should have been rejected");
+        } catch (final ServiceUnavailableException e) {
+            Assert.assertEquals("rejected render should not change admitted pixels",
+                                PIXELS_PER_RENDER, executor.getAdmittedPixels());
+        }
+
+        finishRenders.countDown();
+        blockedRenderThread.join(MAX_WAIT_MILLISECONDS);
+
+        Assert.assertEquals("admitted pixels should be released after renders complete",
+                            0, executor.getAdmittedPixels());
+    }
+
+    @Test
+    public void testRejectWhenQueueIsFull() throws Exception {
+
+        final RenderExecutor executor = new RenderExecutor(1, 1, Long.MAX_VALUE);
+
+        final Thread runningRenderThread = startBlockedRender(executor);
+        waitFor(() -> executor.getActiveRenderCount() == 1, "first render to start");
+
+        final Thread queuedRenderThread = startBlockedRender(executor);
+        waitFor(() -> executor.getQueuedRenderCount() == 1, "second render to be queued");
+
+        try {
+            executor.render(buildParameters(), () -> "should not run");
+            Assert.fail("render should have been rejected when queue is full");
+        } catch (final ServiceUnavailableException e) {
+            Assert.assertEquals("rejected render should not change admitted pixels",
+                                2 * PIXELS_PER_RENDER, executor.getAdmittedPixels());
+        }
+
+        finishRenders.countDown();
+        runningRenderThread.join(MAX_WAIT_MILLISECONDS);
+        queuedRenderThread.join(MAX_WAIT_MILLISECONDS);
+
+        Assert.assertEquals("admitted pixels should be released after renders complete",
+                            0, executor.getAdmittedPixels());
+    }
+
+    @Test
+    public void testInterruptedWaitReleasesQueuedRenderPixels() throws Exception {
+
+        final RenderExecutor executor = new RenderExecutor(1, 1, Long.MAX_VALUE);
+
+        final Thread runningRenderThread = startBlockedRender(executor);
+        waitFor(() -> executor.getActiveRenderCount() == 1, "first render to start");
+
+        final AtomicBoolean queuedRenderRan = new AtomicBoolean(false);
+        final AtomicReference<Throwable> queuedRenderFailure = new AtomicReference<>();
+        final Thread queuedRenderThread = new Thread(() -> {
+            try {
+                executor.render(buildParameters(), () -> {
+                    queuedRenderRan.set(true);
+                    return "queued";
+                });
+            } catch (final Throwable t) {
+                queuedRenderFailure.set(t);
+            }
+        });
+        queuedRenderThread.start();
+        waitFor(() -> executor.getQueuedRenderCount() == 1, "second render to be queued");
+
+        queuedRenderThread.interrupt();
+        queuedRenderThread.join(MAX_WAIT_MILLISECONDS);
+
+        Assert.assertTrue("interrupted wait should fail with service exception",
+                          queuedRenderFailure.get() instanceof ServiceException);
+        Assert.assertEquals("pixels for cancelled queued render should be released",
+                            PIXELS_PER_RENDER, executor.getAdmittedPixels());
+
+        finishRenders.countDown();
+        runningRenderThread.join(MAX_WAIT_MILLISECONDS);
+
+        Assert.assertEquals("admitted pixels should be released after renders complete",
+                            0, executor.getAdmittedPixels());
+        Assert.assertFalse("cancelled render should never run", queuedRenderRan.get());
+    }
+
+    private Thread startBlockedRender(final RenderExecutor executor) {
+        final Thread thread = new Thread(
+                () -> executor.render(buildParameters(),
+                                      () -> finishRenders.await(MAX_WAIT_MILLISECONDS, TimeUnit.MILLISECONDS)));
+        thread.start();
+        return thread;
+    }
+
+    private static void waitFor(final BooleanSupplier condition,
+                                final String description)
+            throws InterruptedException {
+        final long stopTime = System.currentTimeMillis() + MAX_WAIT_MILLISECONDS;
+        while (! condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > stopTime) {
+                Assert.fail("timed out waiting for " + description);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static RenderParameters buildParameters() {
+        return new RenderParameters(null, 0, 0, 10, 10, 1.0);
+    }
+
+    private static final long PIXELS_PER_RENDER = 100;
+    private static final long MAX_WAIT_MILLISECONDS = 10000;
+}
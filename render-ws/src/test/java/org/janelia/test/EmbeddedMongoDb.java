@@ -47,14 +47,26 @@ public class EmbeddedMongoDb {
 
     public EmbeddedMongoDb(final String dbName)
             throws IOException {
+        this(dbName, DEFAULT_VERSION);
+    }
+
+    /**
+     * @param  dbName   name of the database to use.
+     * @param  version  mongo version to run (e.g. for testing features not supported by the default version).
+     */
+    public EmbeddedMongoDb(final String dbName,
+                           final IFeatureAwareVersion version)
+            throws IOException {
 
-        this.version = Version.Main.V4_0;
+        this.version = version;
         this.port = Network.freeServerPort(Network.getLocalHost());
 
         // use ephemeralForTest storage engine to fix super slow run times on Mac
         // see https://github.com/flapdoodle-oss/de.flapdoodle.embed.mongo/issues/166
-        final ImmutableMongoCmdOptions mongoCmdOptions =
-                MongoCmdOptions.builder().storageEngine("ephemeralForTest").build();
+        // (only for the default version since the engine is not included in all release builds)
+        final ImmutableMongoCmdOptions mongoCmdOptions = DEFAULT_VERSION.equals(version) ?
+                                                         MongoCmdOptions.builder().storageEngine("ephemeralForTest").build() :
+                                                         MongoCmdOptions.builder().build();
 
         final MongodConfig mongodConfig = MongodConfig.builder()
                 .version(version)
@@ -123,6 +135,8 @@ public class EmbeddedMongoDb {
 
     private static final Logger LOG = LoggerFactory.getLogger(EmbeddedMongoDb.class);
 
+    private static final IFeatureAwareVersion DEFAULT_VERSION = Version.Main.V4_0;
+
     private static final RuntimeConfig MONGO_IMPORT_RUNTIME_CONFIG = ImmutableRuntimeConfig.builder()
             .processOutput(ProcessOutput.silent())
             .artifactStore(Defaults.extractedArtifactStoreFor(Command.MongoImport))